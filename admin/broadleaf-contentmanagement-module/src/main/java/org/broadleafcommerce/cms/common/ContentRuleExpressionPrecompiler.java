@@ -0,0 +1,79 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.cms.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.page.service.PageService;
+import org.broadleafcommerce.cms.structure.service.StructuredContentService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the rules of every structured content item and page into the {@link MvelExpressionCacheService} once the
+ * application context has started, so that the first requests evaluating content rules do not pay for compilation.
+ */
+@Service("blContentRuleExpressionPrecompiler")
+public class ContentRuleExpressionPrecompiler implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Log LOG = LogFactory.getLog(ContentRuleExpressionPrecompiler.class);
+
+    @Value("${rule.expression.precompile.enabled}")
+    protected boolean precompileEnabled = true;
+
+    @Resource(name = "blMvelExpressionCacheService")
+    protected MvelExpressionCacheService expressionCacheService;
+
+    @Resource(name = "blStructuredContentService")
+    protected StructuredContentService structuredContentService;
+
+    @Resource(name = "blPageService")
+    protected PageService pageService;
+
+    protected final AtomicBoolean precompiled = new AtomicBoolean(false);
+
+    @Override
+    @Transactional(value = "blTransactionManager", readOnly = true)
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // Child contexts publish their own refresh events to this listener as well
+        if (!precompileEnabled || !precompiled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<String> contentExpressions = structuredContentService.readAllRuleExpressions();
+            List<String> pageExpressions = pageService.readAllRuleExpressions();
+            int compiled = expressionCacheService.precompile(contentExpressions, expressionCacheService.getDefaultImports())
+                    + expressionCacheService.precompile(pageExpressions, expressionCacheService.getDefaultImports());
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Precompiled " + compiled + " structured content and page rule expressions");
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to precompile the structured content and page rule expressions", e);
+        }
+    }
+
+}
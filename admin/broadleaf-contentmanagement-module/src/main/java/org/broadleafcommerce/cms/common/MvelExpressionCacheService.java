@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.cms.common;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Compiles MVEL expressions and keeps the compiled form in a single, size bounded cache that is shared by every 
+ * component that evaluates rules (offer processors, page and structured content rule processors, fee rules). Lookups 
+ * do not take a global lock, so rule evaluation on concurrent requests does not serialize on the cache.
+ * 
+ * Compiled expressions are keyed by the expression text together with the imports it was compiled against, since the 
+ * same text can resolve differently depending on the imports available.
+ */
+public interface MvelExpressionCacheService {
+
+    /**
+     * @return the imports used by {@link #executeExpression(String, Map)}, which are MVEL and MvelHelper
+     */
+    public Map<String, Class<?>> getDefaultImports();
+
+    /**
+     * Returns the compiled form of the expression, compiling and caching it on first use. Expressions that fail to
+     * compile are not cached.
+     * 
+     * @param expression
+     * @param imports
+     * @return the compiled expression
+     * @throws org.mvel2.CompileException if the expression cannot be compiled
+     */
+    public Serializable getCompiledExpression(String expression, Map<String, Class<?>> imports);
+
+    /**
+     * Executes the compiled form of the expression against the given variables using the default imports
+     * 
+     * @param expression
+     * @param vars
+     * @return the result of the expression
+     * @see #executeExpression(String, Map, Map)
+     */
+    public Object executeExpression(String expression, Map<String, Object> vars);
+
+    /**
+     * Executes the compiled form of the expression against the given variables. Compilation and execution errors are
+     * propagated to the caller.
+     * 
+     * @param expression
+     * @param imports
+     * @param vars
+     * @return the result of the expression
+     */
+    public Object executeExpression(String expression, Map<String, Class<?>> imports, Map<String, Object> vars);
+
+    /**
+     * Compiles and caches the given expressions ahead of time. Expressions that fail to compile are logged and skipped.
+     * 
+     * @param expressions
+     * @param imports
+     * @return the number of expressions that were compiled successfully
+     */
+    public int precompile(Collection<String> expressions, Map<String, Class<?>> imports);
+
+    /**
+     * Removes every compiled expression from the cache
+     */
+    public void clearCache();
+
+}
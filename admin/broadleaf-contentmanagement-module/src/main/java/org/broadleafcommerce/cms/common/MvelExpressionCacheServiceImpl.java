@@ -0,0 +1,230 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.cms.common;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default implementation of {@link MvelExpressionCacheService} backed by a Guava cache, which uses striped locking for
+ * writes and lock-free reads, and loads each missing expression only once even when it is requested concurrently.
+ */
+@Service("blMvelExpressionCacheService")
+@ManagedResource(objectName="org.broadleafcommerce:name=MvelExpressionCache", description="MVEL Expression Cache", currencyTimeLimit=15)
+public class MvelExpressionCacheServiceImpl implements MvelExpressionCacheService {
+
+    private static final Log LOG = LogFactory.getLog(MvelExpressionCacheServiceImpl.class);
+
+    protected static final Map<String, Class<?>> DEFAULT_IMPORTS;
+    static {
+        Map<String, Class<?>> imports = new HashMap<String, Class<?>>();
+        imports.put("MVEL", MVEL.class);
+        imports.put("MvelHelper", MvelHelper.class);
+        DEFAULT_IMPORTS = Collections.unmodifiableMap(imports);
+    }
+
+    @Value("${rule.expression.cache.size}")
+    protected long maximumSize = 5000;
+
+    protected volatile Cache<ExpressionKey, Serializable> cache;
+
+    @Override
+    public Map<String, Class<?>> getDefaultImports() {
+        return DEFAULT_IMPORTS;
+    }
+
+    @Override
+    public Serializable getCompiledExpression(final String expression, final Map<String, Class<?>> imports) {
+        try {
+            return getCache().get(new ExpressionKey(expression, imports), new Callable<Serializable>() {
+                @Override
+                public Serializable call() {
+                    return compile(expression, imports);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+    }
+
+    @Override
+    public Object executeExpression(String expression, Map<String, Object> vars) {
+        return executeExpression(expression, DEFAULT_IMPORTS, vars);
+    }
+
+    @Override
+    public Object executeExpression(String expression, Map<String, Class<?>> imports, Map<String, Object> vars) {
+        return MVEL.executeExpression(getCompiledExpression(expression, imports), vars);
+    }
+
+    @Override
+    public int precompile(Collection<String> expressions, Map<String, Class<?>> imports) {
+        int compiled = 0;
+        for (String expression : expressions) {
+            if (StringUtils.isBlank(expression)) {
+                continue;
+            }
+            try {
+                getCompiledExpression(expression, imports);
+                compiled++;
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to precompile the MVEL expression: " + expression, e);
+            }
+        }
+        return compiled;
+    }
+
+    @Override
+    @ManagedOperation(description="Removes every compiled expression from the cache")
+    public void clearCache() {
+        getCache().invalidateAll();
+    }
+
+    /**
+     * Compiles the expression against a new ParserContext holding the given imports. Having a parser context that 
+     * imports the classes speeds MVEL by up to 60%.
+     * 
+     * @param expression
+     * @param imports
+     * @return the compiled expression
+     */
+    protected Serializable compile(String expression, Map<String, Class<?>> imports) {
+        ParserContext context = new ParserContext();
+        for (Map.Entry<String, Class<?>> entry : imports.entrySet()) {
+            context.addImport(entry.getKey(), entry.getValue());
+        }
+        return MVEL.compileExpression(expression, context);
+    }
+
+    protected Cache<ExpressionKey, Serializable> getCache() {
+        Cache<ExpressionKey, Serializable> result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    result = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+                    cache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @ManagedAttribute(description="The number of compiled expressions in the cache")
+    public long getSize() {
+        return getCache().size();
+    }
+
+    @ManagedAttribute(description="The number of lookups that found a compiled expression")
+    public long getHitCount() {
+        return getCache().stats().hitCount();
+    }
+
+    @ManagedAttribute(description="The number of lookups that had to compile the expression")
+    public long getMissCount() {
+        return getCache().stats().missCount();
+    }
+
+    @ManagedAttribute(description="The ratio of lookups that found a compiled expression")
+    public double getHitRate() {
+        return getCache().stats().hitRate();
+    }
+
+    @ManagedAttribute(description="The number of expressions that failed to compile")
+    public long getCompileFailureCount() {
+        return getCache().stats().loadExceptionCount();
+    }
+
+    @ManagedAttribute(description="The number of compiled expressions evicted to stay within the maximum size")
+    public long getEvictionCount() {
+        return getCache().stats().evictionCount();
+    }
+
+    @ManagedAttribute(description="The average time in milliseconds spent compiling an expression")
+    public double getAverageCompileTime() {
+        return getCache().stats().averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedAttribute(description="The total time in milliseconds spent compiling expressions")
+    public long getTotalCompileTime() {
+        CacheStats stats = getCache().stats();
+        return TimeUnit.NANOSECONDS.toMillis(stats.totalLoadTime());
+    }
+
+    /**
+     * Cache key made of the expression text and the imports it is compiled against
+     */
+    protected static class ExpressionKey {
+
+        protected final String expression;
+        protected final Map<String, Class<?>> imports;
+        protected final int hashCode;
+
+        public ExpressionKey(String expression, Map<String, Class<?>> imports) {
+            this.expression = expression;
+            this.imports = imports;
+            this.hashCode = 31 * expression.hashCode() + imports.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) obj;
+            return expression.equals(other.expression) && (imports == other.imports || imports.equals(other.imports));
+        }
+    }
+
+}
@@ -38,10 +38,9 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -54,8 +53,20 @@ import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 /**
@@ -96,6 +107,13 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     @Resource(name="blNamedOperationManager")
     protected NamedOperationManager namedOperationManager;
 
+    @Value("${asset.server.image.processing.threads}")
+    protected int imageProcessingThreads = 0;
+
+    protected final ConcurrentMap<String, FutureTask<File>> cacheFileGenerations = new ConcurrentHashMap<String, FutureTask<File>>();
+
+    protected volatile ExecutorService imageProcessingExecutor;
+
     protected StaticAsset findStaticAsset(String fullUrl, SandBox sandBox) {
         StaticAsset staticAsset = staticAssetService.findStaticAssetByFullUrl(fullUrl, sandBox);
         if (staticAsset == null && sandBox != null) {
@@ -182,7 +200,7 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     @Transactional("blTransactionManagerAssetStorageInfo")
     @Override
     public Map<String, String> getCacheFileModel(String fullUrl, SandBox sandBox, Map<String, String> parameterMap) throws Exception {
-        StaticAsset staticAsset = findStaticAsset(fullUrl, sandBox);
+        final StaticAsset staticAsset = findStaticAsset(fullUrl, sandBox);
         if (staticAsset == null) {
             if (sandBox == null) {
                 throw new AssetNotFoundException("Unable to find an asset for the url (" + fullUrl + ") using the production sandBox.");
@@ -193,24 +211,34 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         String mimeType = staticAsset.getMimeType();
 
         //extract the values for any named parameters
-        Map<String, String> convertedParameters = namedOperationManager.manageNamedParameters(parameterMap);   
+        final Map<String, String> convertedParameters = namedOperationManager.manageNamedParameters(parameterMap);   
         String returnFilePath = null;
 
         if (StorageType.FILESYSTEM.equals(staticAsset.getStorageType()) && convertedParameters.isEmpty()) {
             InputStream classPathInputStream = getResourceFromClasspath(staticAsset);
             if (classPathInputStream != null) {
+                classPathInputStream.close();
                 // Create a file system cache file representing this file.
                 String cacheName = constructCacheFileName(staticAsset, convertedParameters, true);
                 File cacheFile = new File(cacheName);
                 if (!cacheFile.exists()) {
-                    createCacheFile(classPathInputStream, cacheFile);
+                    final File targetFile = cacheFile;
+                    cacheFile = generateCacheFile(targetFile, new Callable<File>() {
+                        @Override
+                        public File call() throws Exception {
+                            if (!targetFile.exists()) {
+                                createCacheFile(getResourceFromClasspath(staticAsset), targetFile);
+                            }
+                            return targetFile;
+                        }
+                    });
                 }
                 returnFilePath = cacheFile.getAbsolutePath();
             } else {
                 returnFilePath = generateStorageFileName(staticAsset.getFullUrl(), false);
             }
         } else {
-            String sharedCacheName = constructCacheFileName(staticAsset, convertedParameters, true);
+            final String sharedCacheName = constructCacheFileName(staticAsset, convertedParameters, true);
             File cacheFile = new File(sharedCacheName);
 
             // See if the shared file exists.   This is primarily to support a multi-tenant
@@ -222,35 +250,163 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
             }
 
             if (!cacheFile.exists()) {
-                InputStream original = findInputStreamForStaticAsset(staticAsset);
-                boolean useSharedFile = shouldUseSharedFile(original);
-    
-                if (!convertedParameters.isEmpty()) {
-                    Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
-                    InputStream converted = artifactService.convert(original, operations, staticAsset.getMimeType());
-                    createCacheFile(converted, cacheFile);
-                    if ("image/gif".equals(mimeType)) {
-                        mimeType = "image/png";
+                final File targetFile = cacheFile;
+                cacheFile = generateCacheFile(targetFile, new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        File sharedFile = new File(sharedCacheName);
+                        if (sharedFile.exists()) {
+                            return sharedFile;
+                        }
+                        if (targetFile.exists()) {
+                            return targetFile;
+                        }
+                        InputStream original = findInputStreamForStaticAsset(staticAsset, !convertedParameters.isEmpty());
+                        boolean useSharedFile = shouldUseSharedFile(original);
+
+                        if (!convertedParameters.isEmpty()) {
+                            try {
+                                InputStream converted = convertOnImageProcessingExecutor(staticAsset, convertedParameters, original);
+                                createCacheFile(converted, targetFile);
+                            } finally {
+                                original.close();
+                            }
+                            return targetFile;
+                        } else if (useSharedFile) {
+                            createCacheFile(original, sharedFile);
+                            return sharedFile;
+                        } else {
+                            createCacheFile(original, targetFile);
+                            return targetFile;
+                        }
                     }
-                } else {
-                    if (useSharedFile) {
-                        cacheFile = new File(sharedCacheName);
-                        createCacheFile(original, cacheFile);
-                    } else {
-                        createCacheFile(original, cacheFile);
-                    }
-                }
+                });
+            }
+            if (!convertedParameters.isEmpty() && "image/gif".equals(mimeType)) {
+                // converted images are written as png
+                mimeType = "image/png";
             }
             returnFilePath = cacheFile.getAbsolutePath();
         }
-        Map<String, String> model = new HashMap<String, String>(2);
+        Map<String, String> model = new HashMap<String, String>(3);
         model.put("cacheFilePath", returnFilePath);
         model.put("mimeType", mimeType);
+        model.put("assetKey", buildAssetKey(staticAsset, convertedParameters));
 
         return model;
     }
 
+    /**
+     * Runs the generator for the given cache file unless another thread is already generating the same file, in which
+     * case the result of that thread's generator is returned instead. The generator should check again whether the
+     * file exists, since another thread may have finished generating it before this call.
+     * 
+     * @param cacheFile the cache file that is missing
+     * @param generator creates the cache file and returns the file that was written
+     * @return the generated file
+     * @throws Exception
+     */
+    protected File generateCacheFile(File cacheFile, Callable<File> generator) throws Exception {
+        String key = cacheFile.getAbsolutePath();
+        FutureTask<File> generation = new FutureTask<File>(generator);
+        FutureTask<File> inFlight = cacheFileGenerations.putIfAbsent(key, generation);
+        if (inFlight == null) {
+            try {
+                generation.run();
+            } finally {
+                cacheFileGenerations.remove(key, generation);
+            }
+            inFlight = generation;
+        }
+        try {
+            return inFlight.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Applies the named operations on the image processing executor, so that the number of concurrent conversions is 
+     * capped by asset.server.image.processing.threads regardless of the number of request threads. The original stream
+     * is opened and closed by the calling thread but is read on the executor thread, while the calling thread waits for
+     * the conversion; a stream backed by the database therefore stays open on the caller's connection until then.
+     * 
+     * @param staticAsset
+     * @param convertedParameters
+     * @param original
+     * @return the converted image
+     * @throws Exception
+     */
+    protected InputStream convertOnImageProcessingExecutor(final StaticAsset staticAsset, 
+            final Map<String, String> convertedParameters, final InputStream original) throws Exception {
+        Future<InputStream> conversion = getImageProcessingExecutor().submit(new Callable<InputStream>() {
+            @Override
+            public InputStream call() throws Exception {
+                Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
+                return artifactService.convert(original, operations, staticAsset.getMimeType());
+            }
+        });
+        try {
+            return conversion.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    protected ExecutorService getImageProcessingExecutor() {
+        if (imageProcessingExecutor == null) {
+            synchronized (this) {
+                if (imageProcessingExecutor == null) {
+                    int threads = imageProcessingThreads > 0 ? imageProcessingThreads : Runtime.getRuntime().availableProcessors();
+                    imageProcessingExecutor = Executors.newFixedThreadPool(threads, new ImageProcessingThreadFactory());
+                }
+            }
+        }
+        return imageProcessingExecutor;
+    }
+
+    @PreDestroy
+    public void shutdownImageProcessingExecutor() {
+        if (imageProcessingExecutor != null) {
+            imageProcessingExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Identifies the asset and the named operations applied to it. The StaticAssetView combines this with the cache 
+     * file's size and modification time to build the ETag, so sorting the parameters keeps the key stable.
+     * 
+     * @param staticAsset
+     * @param convertedParameters
+     * @return the key
+     */
+    protected String buildAssetKey(StaticAsset staticAsset, Map<String, String> convertedParameters) {
+        return staticAsset.getId() + ":" + staticAsset.getFullUrl() + ":" + new TreeMap<String, String>(convertedParameters);
+    }
+
     protected InputStream findInputStreamForStaticAsset(StaticAsset staticAsset) throws SQLException, IOException {
+        return findInputStreamForStaticAsset(staticAsset, true);
+    }
+
+    /**
+     * Opens the stored bytes of the asset. Database assets are read straight from the Blob unless the stream must 
+     * support {@link InputStream#reset()}, as it must for the image artifact processor. In that case the Blob is 
+     * spooled to a temporary file that is deleted when the stream is closed, so the asset is never held on the heap.
+     * Resettable streams seek back in the underlying file, so they can be reset no matter how much has been read.
+     * 
+     * @param staticAsset
+     * @param resettable whether the caller will reset the stream
+     * @return the asset stream
+     * @throws SQLException
+     * @throws IOException
+     */
+    protected InputStream findInputStreamForStaticAsset(StaticAsset staticAsset, boolean resettable) throws SQLException, IOException {
         InputStream classPathInputStream = getResourceFromClasspath(staticAsset);
         if (classPathInputStream != null) {
             return classPathInputStream;
@@ -258,33 +414,35 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
 
         if (StorageType.DATABASE.equals(staticAsset.getStorageType())) {
             StaticAssetStorage storage = readStaticAssetStorageByStaticAssetId(staticAsset.getId());
-            //there are filter operations to perform on the asset
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            InputStream is = null;
+            InputStream is = storage.getFileData().getBinaryStream();
+            if (!resettable) {
+                return new BufferedInputStream(is, fileBufferSize);
+            }
+            File spoolFile = File.createTempFile("asset-", ".tmp");
+            OutputStream os = null;
             try {
-                is = storage.getFileData().getBinaryStream();
-                byte[] buffer = new byte[fileBufferSize];
-                int bytesRead;
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    baos.write(buffer, 0, bytesRead);
-                }
-                baos.flush();
+                os = new BufferedOutputStream(new FileOutputStream(spoolFile));
+                copyStream(is, os);
+            } catch (IOException e) {
+                spoolFile.delete();
+                throw e;
             } finally {
-                if (is != null) {
-                    try {
-                        is.close();
-                    } catch (Throwable e) {
-                        //do nothing
+                try {
+                    is.close();
+                    if (os != null) {
+                        os.close();
                     }
+                } catch (Throwable e) {
+                    //do nothing
                 }
             }
-            InputStream original = new ByteArrayInputStream(baos.toByteArray());
-            return original;
+            return new SpooledFileInputStream(spoolFile);
         } else if (StorageType.FILESYSTEM.equals(staticAsset.getStorageType())) {
-            FileInputStream assetFile = new FileInputStream(generateStorageFileName(staticAsset.getFullUrl(), false));
-            BufferedInputStream bufferedStream = new BufferedInputStream(assetFile);
-            bufferedStream.mark(0);
-            return bufferedStream;
+            File assetFile = new File(generateStorageFileName(staticAsset.getFullUrl(), false));
+            if (resettable) {
+                return new ResettableFileInputStream(assetFile);
+            }
+            return new BufferedInputStream(new FileInputStream(assetFile));
         } else {
             throw new IllegalArgumentException("Unknown storage type while trying to read static asset.");
         }
@@ -352,24 +510,27 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         return staticAssetStorageDao.createBlob(uploadedFile);
     }
 
+    /**
+     * Writes the stream to a temporary file next to the cache file and then renames it, so that readers never see a 
+     * partially written cache file. The temporary file is removed if the stream cannot be copied.
+     * 
+     * @param is
+     * @param cacheFile
+     * @throws SQLException
+     * @throws IOException
+     */
     protected void createCacheFile(InputStream is, File cacheFile) throws SQLException, IOException {
         if (!cacheFile.getParentFile().exists()) {
-            if (!cacheFile.getParentFile().mkdirs()) {
+            if (!cacheFile.getParentFile().mkdirs() && !cacheFile.getParentFile().exists()) {
                 throw new RuntimeException("Unable to create middle directories for file: " + cacheFile.getAbsolutePath());
             }
         }
-        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(cacheFile));
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + "." + UUID.randomUUID() + ".tmp");
+        BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(tempFile));
+        boolean written = false;
         try {
-            boolean eof = false;
-            int temp;
-            while (!eof) {
-                temp = is.read();
-                if (temp < 0) {
-                    eof = true;
-                } else {
-                    bos.write(temp);
-                }
-            }
+            copyStream(is, bos);
+            written = true;
         } finally {
             try {
                 bos.flush();
@@ -377,6 +538,32 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
             } catch (Throwable e) {
                 //do nothing
             }
+            try {
+                is.close();
+            } catch (Throwable e) {
+                //do nothing
+            }
+            if (!written && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+        if (!tempFile.renameTo(cacheFile)) {
+            // Some platforms will not rename over an existing file - in that case another server already wrote it
+            boolean published = cacheFile.exists();
+            if (!tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+            if (!published) {
+                throw new IOException("Unable to move the generated file to " + cacheFile.getAbsolutePath());
+            }
+        }
+    }
+
+    protected void copyStream(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = new byte[fileBufferSize];
+        int bytesRead;
+        while ((bytesRead = is.read(buffer)) != -1) {
+            os.write(buffer, 0, bytesRead);
         }
     }
 
@@ -470,6 +657,7 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
                 }
             } finally {
                 output.close();
+                input.close();
                 if (deleteFile && tmpFile.exists()) {
                     tmpFile.delete();
                 }
@@ -483,4 +671,77 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         }
     }
 
+    /**
+     * Reads a file and supports {@link #reset()} by seeking back to the marked position, so unlike a 
+     * {@link BufferedInputStream} the mark never expires however much of the file has been read
+     */
+    protected static class ResettableFileInputStream extends FileInputStream {
+
+        protected long markPosition = 0;
+
+        public ResettableFileInputStream(File file) throws FileNotFoundException {
+            super(file);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            try {
+                markPosition = getChannel().position();
+            } catch (IOException e) {
+                markPosition = -1;
+            }
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            if (markPosition < 0) {
+                throw new IOException("Resetting to invalid mark");
+            }
+            getChannel().position(markPosition);
+        }
+    }
+
+    /**
+     * Reads a temporary copy of a database asset and deletes it once closed
+     */
+    protected static class SpooledFileInputStream extends ResettableFileInputStream {
+
+        protected final File spoolFile;
+
+        public SpooledFileInputStream(File spoolFile) throws FileNotFoundException {
+            super(spoolFile);
+            this.spoolFile = spoolFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (spoolFile.exists() && !spoolFile.delete()) {
+                    spoolFile.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Daemon threads named after the image processing pool, so conversions are easy to spot in thread dumps
+     */
+    protected static class ImageProcessingThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "asset-image-processor-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
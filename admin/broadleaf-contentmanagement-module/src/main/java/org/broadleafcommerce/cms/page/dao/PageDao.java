@@ -55,6 +55,23 @@ public interface PageDao {
      * @return all Pages configured in the system
      */
     public List<Page> readAllPages();
+
+    /**
+     * Reads the routing fields of every page that has a full url and is neither archived nor deleted, without loading
+     * the pages themselves. Each row holds the page id, full url, sandbox id and sandbox type, in that order; the 
+     * sandbox fields are null for pages without a sandbox.
+     * 
+     * @return a row for every such page
+     */
+    public List<Object[]> readAllPageRoutes();
+
+    /**
+     * Reads the routing fields of a single page, as in {@link #readAllPageRoutes()}
+     * 
+     * @param pageId
+     * @return the row for the page, or null if the page does not exist, has no full url or is archived or deleted
+     */
+    public Object[] readPageRouteById(Long pageId);
     
     /**
      * Returns all page templates, regardless of any sandbox they are apart of
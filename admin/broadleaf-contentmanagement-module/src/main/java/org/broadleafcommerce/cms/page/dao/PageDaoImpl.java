@@ -39,6 +39,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -149,6 +150,20 @@ public class PageDaoImpl implements PageDao {
         }
     }
     
+    @Override
+    public List<Object[]> readAllPageRoutes() {
+        return em.createNamedQuery("BC_READ_ALL_PAGE_ROUTES", Object[].class).getResultList();
+    }
+
+    @Override
+    public Object[] readPageRouteById(Long pageId) {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_PAGE_ROUTE_BY_ID", Object[].class);
+        query.setParameter("pageId", pageId);
+
+        List<Object[]> rows = query.getResultList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
     @Override
     public List<PageTemplate> readAllPageTemplates() {
         CriteriaBuilder builder = em.getCriteriaBuilder();
@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.cms.page.domain;
 
+import org.broadleafcommerce.cms.url.domain.URLRoutePersistedEntityListener;
 import org.broadleafcommerce.common.admin.domain.AdminMainEntity;
 import org.broadleafcommerce.common.presentation.AdminPresentation;
 import org.broadleafcommerce.common.presentation.AdminPresentationClass;
@@ -68,7 +69,7 @@ import javax.persistence.Table;
 @Entity
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_PAGE")
-@EntityListeners(value = { AdminAuditableListener.class })
+@EntityListeners(value = { AdminAuditableListener.class, URLRoutePersistedEntityListener.class })
 @AdminPresentationOverrides(
     {
         @AdminPresentationOverride(name="auditable.createdBy.id", value=@AdminPresentation(readOnly = true, visibility = VisibilityEnum.HIDDEN_ALL)),
@@ -145,6 +145,14 @@ public interface PageService {
      * @return all {@link Page}s configured in the system
      */
     public List<Page> readAllPages();
+
+    /**
+     * Returns the MVEL rule expressions evaluated for pages that are neither deleted nor archived. This includes the
+     * combined page match rule of each page as well as its item criteria rules, and is used to compile the rules
+     * ahead of time.
+     * @return the rule expressions
+     */
+    public List<String> readAllRuleExpressions();
     
     /**
      * Returns all page templates, regardless of any sandbox they are apart of
@@ -534,6 +534,26 @@ public class PageServiceImpl extends AbstractContentService implements PageServi
         return pageDao.readAllPages();
     }
 
+    @Override
+    public List<String> readAllRuleExpressions() {
+        List<String> expressions = new ArrayList<String>();
+        for (Page page : readAllPages()) {
+            if (Boolean.TRUE.equals(page.getDeletedFlag()) || Boolean.TRUE.equals(page.getArchivedFlag())) {
+                continue;
+            }
+            String ruleExpression = buildRuleExpression(page);
+            if (ruleExpression != null) {
+                expressions.add(ruleExpression);
+            }
+            for (PageItemCriteria criteria : page.getQualifyingItemCriteria()) {
+                if (criteria.getMatchRule() != null) {
+                    expressions.add(criteria.getMatchRule());
+                }
+            }
+        }
+        return expressions;
+    }
+
     @Override
     public List<PageTemplate> readAllPageTemplates() {
         return pageDao.readAllPageTemplates();
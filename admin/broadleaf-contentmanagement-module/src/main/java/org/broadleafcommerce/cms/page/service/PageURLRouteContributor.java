@@ -0,0 +1,115 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.page.service;
+
+import org.broadleafcommerce.cms.page.dao.PageDao;
+import org.broadleafcommerce.cms.page.domain.Page;
+import org.broadleafcommerce.cms.url.service.URLRoute;
+import org.broadleafcommerce.cms.url.service.URLRouteContributor;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
+import org.broadleafcommerce.common.sandbox.domain.SandBox;
+import org.broadleafcommerce.common.sandbox.domain.SandBoxType;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Routes the full url of every production {@link Page} to the page, reading only the fields needed to route it. Since
+ * pages are resolved per production sandbox, the routed uri is prefixed with the id of the page's production sandbox -
+ * see {@link #buildRouteUri(SandBox, String)}.
+ * Pages that only exist in a user sandbox are not routed, and requests made from a user sandbox should not use the
+ * index.
+ */
+@Service("blPageURLRouteContributor")
+public class PageURLRouteContributor implements URLRouteContributor {
+
+    @Resource(name = "blPageDao")
+    protected PageDao pageDao;
+
+    @Resource(name = "blURLRoutingService")
+    protected URLRoutingService urlRoutingService;
+
+    @PostConstruct
+    public void register() {
+        urlRoutingService.registerContributor(this);
+    }
+
+    /**
+     * @param productionSandbox the production sandbox of the page, or null for the default production pages
+     * @param uri
+     * @return the uri under which the page is routed
+     */
+    public static String buildRouteUri(SandBox productionSandbox, String uri) {
+        return buildRouteUri(productionSandbox == null ? null : productionSandbox.getId(), uri);
+    }
+
+    /**
+     * @param productionSandboxId the id of the production sandbox of the page, or null for the default production pages
+     * @param uri
+     * @return the uri under which the page is routed
+     */
+    public static String buildRouteUri(Long productionSandboxId, String uri) {
+        if (productionSandboxId == null) {
+            return uri;
+        }
+        return productionSandboxId + "|" + uri;
+    }
+
+    @Override
+    public String getRouteType() {
+        return URLRoutingService.PAGE_ROUTE_TYPE;
+    }
+
+    @Override
+    public List<URLRoute> readAllRoutes() {
+        List<URLRoute> routes = new ArrayList<URLRoute>();
+        for (Object[] row : pageDao.readAllPageRoutes()) {
+            if (isRoutable(row)) {
+                routes.add(buildRoute(row));
+            }
+        }
+        return routes;
+    }
+
+    @Override
+    public List<URLRoute> readRoutes(Long targetId) {
+        Object[] row = pageDao.readPageRouteById(targetId);
+        if (row == null || !isRoutable(row)) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(buildRoute(row));
+    }
+
+    /**
+     * @param row a row from {@link PageDao#readAllPageRoutes()}, which only holds pages that have a full url and are
+     * neither archived nor deleted
+     * @return whether the page is outside of any sandbox or in a production sandbox
+     */
+    protected boolean isRoutable(Object[] row) {
+        return row[2] == null || SandBoxType.PRODUCTION.getType().equals(row[3]);
+    }
+
+    protected URLRoute buildRoute(Object[] row) {
+        return new URLRoute(getRouteType(), buildRouteUri((Long) row[2], (String) row[1]), (Long) row[0]);
+    }
+
+}
@@ -106,6 +106,14 @@ public interface StructuredContentService extends SandBoxItemListener {
      * @return
      */
     public List<StructuredContent> findAllContentItems();
+
+    /**
+     * Returns the MVEL rule expressions evaluated for content items that are neither deleted nor archived. This 
+     * includes the combined match rule of each item as well as its item criteria rules, and is used to compile the
+     * rules ahead of time.
+     * @return the rule expressions
+     */
+    public List<String> readAllRuleExpressions();
     
     /**
      * Follows the same rules as {@link #findContentItems(org.broadleafcommerce.common.sandbox.domain.SandBox, org.hibernate.Criteria) findContentItems}.
@@ -129,6 +129,26 @@ public class StructuredContentServiceImpl extends AbstractContentService impleme
         return structuredContentDao.findAllContentItems();
     }
 
+    @Override
+    public List<String> readAllRuleExpressions() {
+        List<String> expressions = new ArrayList<String>();
+        for (StructuredContent sc : findAllContentItems()) {
+            if (Boolean.TRUE.equals(sc.getDeletedFlag()) || Boolean.TRUE.equals(sc.getArchivedFlag())) {
+                continue;
+            }
+            String ruleExpression = buildRuleExpression(sc);
+            if (ruleExpression != null) {
+                expressions.add(ruleExpression);
+            }
+            for (StructuredContentItemCriteria criteria : sc.getQualifyingItemCriteria()) {
+                if (criteria.getMatchRule() != null) {
+                    expressions.add(criteria.getMatchRule());
+                }
+            }
+        }
+        return expressions;
+    }
+
     @Override
     public Long countContentItems(SandBox sandbox, Criteria c) {
        return countItems(sandbox, c, StructuredContentImpl.class, "originalItemId");
@@ -19,6 +19,7 @@ package org.broadleafcommerce.cms.url.dao;
 import org.broadleafcommerce.cms.url.domain.URLHandler;
 
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -35,6 +36,21 @@ public interface URLHandlerDao {
      */
     public List<URLHandler> findAllURLHandlers();
 
+    /**
+     * Reads the incoming url of every URL handler, without loading the handlers themselves
+     * 
+     * @return a map of handler id to the handler's incoming url
+     */
+    public Map<Long, String> readAllURLHandlerIncomingUrls();
+
+    /**
+     * Reads the incoming url of a single URL handler, without loading the handler itself
+     * 
+     * @param id
+     * @return the incoming url of the handler, or null if the handler does not exist
+     */
+    public String readURLHandlerIncomingUrlById(Long id);
+
     public URLHandler saveURLHandler(URLHandler handler);
 
 }
@@ -22,13 +22,16 @@ import org.broadleafcommerce.common.persistence.EntityConfiguration;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -73,6 +76,26 @@ public class URlHandlerDaoImpl implements URLHandlerDao {
         }
     }
     
+    @Override
+    public Map<Long, String> readAllURLHandlerIncomingUrls() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_URL_HANDLER_ROUTES", Object[].class);
+
+        Map<Long, String> urls = new HashMap<Long, String>();
+        for (Object[] row : query.getResultList()) {
+            urls.put((Long) row[0], (String) row[1]);
+        }
+        return urls;
+    }
+
+    @Override
+    public String readURLHandlerIncomingUrlById(Long id) {
+        TypedQuery<String> query = em.createNamedQuery("BC_READ_URL_HANDLER_INCOMING_URL_BY_ID", String.class);
+        query.setParameter("handlerId", id);
+
+        List<String> urls = query.getResultList();
+        return urls.isEmpty() ? null : urls.get(0);
+    }
+
     public URLHandler saveURLHandler(URLHandler handler) {
         return em.merge(handler);
     }
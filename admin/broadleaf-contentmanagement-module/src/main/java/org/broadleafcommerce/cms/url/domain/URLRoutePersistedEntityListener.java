@@ -0,0 +1,81 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.domain;
+
+import org.broadleafcommerce.cms.page.domain.Page;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+
+/**
+ * Publishes a {@link URLRoutePersistedEvent} when a {@link Page} or {@link URLHandler} changes, once the surrounding
+ * transaction commits
+ *
+ * @see {@link URLRoutingService}
+ */
+public class URLRoutePersistedEntityListener {
+
+    /**
+     * Invoked on PostPersist, PostUpdate and PostRemove.
+     * 
+     * @param entity the page or url handler that changed
+     */
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void routedEntityUpdated(final Object entity) {
+        final String routeType = getRouteType(entity);
+        final Long targetId = getTargetId(entity);
+        if (routeType != null && targetId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+                    if (context != null) {
+                        context.publishEvent(new URLRoutePersistedEvent(routeType, targetId));
+                    }
+                }
+            });
+        }
+    }
+
+    protected String getRouteType(Object entity) {
+        if (entity instanceof Page) {
+            return URLRoutingService.PAGE_ROUTE_TYPE;
+        } else if (entity instanceof URLHandler) {
+            return URLRoutingService.URL_HANDLER_ROUTE_TYPE;
+        }
+        return null;
+    }
+
+    protected Long getTargetId(Object entity) {
+        if (entity instanceof Page) {
+            return ((Page) entity).getId();
+        } else if (entity instanceof URLHandler) {
+            return ((URLHandler) entity).getId();
+        }
+        return null;
+    }
+
+}
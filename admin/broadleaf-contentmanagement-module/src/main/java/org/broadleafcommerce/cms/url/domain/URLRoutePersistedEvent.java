@@ -0,0 +1,56 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.domain;
+
+import org.springframework.context.ApplicationEvent;
+
+
+/**
+ * An event for whenever an entity that the storefront routes requests to has been persisted or removed
+ *
+ * @see {@link URLRoutePersistedEntityListener}
+ * @see {@link org.broadleafcommerce.cms.url.service.URLRoutingService}
+ */
+public class URLRoutePersistedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final String routeType;
+
+    /**
+     * @param routeType the route type of the entity
+     * @param targetId the id of the entity
+     */
+    public URLRoutePersistedEvent(String routeType, Long targetId) {
+        super(targetId);
+        this.routeType = routeType;
+    }
+
+    public String getRouteType() {
+        return routeType;
+    }
+
+    /**
+     * Gets the id of the entity whose routes changed
+     * 
+     * @return
+     */
+    public Long getTargetId() {
+        return (Long) source;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import org.broadleafcommerce.cms.url.dao.URLHandlerDao;
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Routes the incoming url of every {@link URLHandler} to the handler. Only the ids and incoming urls of the handlers
+ * are read.
+ */
+@Service("blURLHandlerURLRouteContributor")
+public class URLHandlerURLRouteContributor implements URLRouteContributor {
+
+    @Resource(name = "blURLHandlerDao")
+    protected URLHandlerDao urlHandlerDao;
+
+    @Resource(name = "blURLRoutingService")
+    protected URLRoutingService urlRoutingService;
+
+    @PostConstruct
+    public void register() {
+        urlRoutingService.registerContributor(this);
+    }
+
+    @Override
+    public String getRouteType() {
+        return URLRoutingService.URL_HANDLER_ROUTE_TYPE;
+    }
+
+    @Override
+    public List<URLRoute> readAllRoutes() {
+        List<URLRoute> routes = new ArrayList<URLRoute>();
+        for (Map.Entry<Long, String> entry : urlHandlerDao.readAllURLHandlerIncomingUrls().entrySet()) {
+            routes.add(new URLRoute(getRouteType(), entry.getValue(), entry.getKey()));
+        }
+        return routes;
+    }
+
+    @Override
+    public List<URLRoute> readRoutes(Long targetId) {
+        String incomingUrl = urlHandlerDao.readURLHandlerIncomingUrlById(targetId);
+        if (incomingUrl == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new URLRoute(getRouteType(), incomingUrl, targetId));
+    }
+
+}
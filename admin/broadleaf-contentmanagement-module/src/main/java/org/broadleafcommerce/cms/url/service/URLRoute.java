@@ -0,0 +1,69 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import java.io.Serializable;
+
+/**
+ * A single entry of the routing index kept by the {@link URLRoutingService}: a request uri, or the last segment of 
+ * one, that resolves to the target of the given route type with the given id.
+ * 
+ * @see URLRouteContributor
+ */
+public class URLRoute implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final String routeType;
+    protected final String uri;
+    protected final Long targetId;
+    protected final boolean lastSegmentMatch;
+
+    /**
+     * @param routeType the route type of the contributor
+     * @param uri the uri, or the last segment of a uri including its leading '/'
+     * @param targetId the id of the target
+     * @param lastSegmentMatch whether the uri is matched against the last segment of the request uri only
+     */
+    public URLRoute(String routeType, String uri, Long targetId, boolean lastSegmentMatch) {
+        this.routeType = routeType;
+        this.uri = uri;
+        this.targetId = targetId;
+        this.lastSegmentMatch = lastSegmentMatch;
+    }
+
+    public URLRoute(String routeType, String uri, Long targetId) {
+        this(routeType, uri, targetId, false);
+    }
+
+    public String getRouteType() {
+        return routeType;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public boolean isLastSegmentMatch() {
+        return lastSegmentMatch;
+    }
+
+}
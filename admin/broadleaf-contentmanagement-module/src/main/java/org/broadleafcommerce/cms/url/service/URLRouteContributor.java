@@ -0,0 +1,48 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import java.util.List;
+
+/**
+ * Supplies the routes of one route type, such as categories or CMS pages, to the {@link URLRoutingService}. 
+ * Contributors register themselves with {@link URLRoutingService#registerContributor(URLRouteContributor)}.
+ */
+public interface URLRouteContributor {
+
+    /**
+     * @return the route type of every route this contributor supplies
+     */
+    public String getRouteType();
+
+    /**
+     * Reads every route of this contributor's type
+     * 
+     * @return the routes
+     */
+    public List<URLRoute> readAllRoutes();
+
+    /**
+     * Reads the current routes of a single target, which are empty if the target was removed or is no longer
+     * routable
+     * 
+     * @param targetId
+     * @return the routes
+     */
+    public List<URLRoute> readRoutes(Long targetId);
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import java.util.List;
+
+/**
+ * Keeps an in-memory index of every routable uri - category and product urls, production CMS pages and URL handlers -
+ * so that handler mappings and filters can tell from a hash lookup whether a request uri belongs to them, instead of
+ * querying the database for every request, including the ones that match nothing.
+ * 
+ * Uris are matched exactly, including their case, so that a uri is only routed to a target whose own url it is.
+ */
+public interface URLRoutingService {
+
+    public static final String PAGE_ROUTE_TYPE = "PAGE";
+    public static final String URL_HANDLER_ROUTE_TYPE = "URL_HANDLER";
+
+    /**
+     * Adds a contributor to the index. The index is rebuilt to include its routes.
+     * 
+     * @param contributor
+     */
+    public void registerContributor(URLRouteContributor contributor);
+
+    /**
+     * Finds the targets of the given route type that the uri resolves to.
+     * 
+     * @param routeType
+     * @param uri the request uri without the context path
+     * @return the ids of the targets, an empty list if the uri does not resolve to any target of the type, or null if
+     * the index is disabled, not yet built or has no contributor for the type - in which case the caller should look 
+     * the uri up itself
+     */
+    public List<Long> findTargetIds(String routeType, String uri);
+
+    /**
+     * Replaces the routes of a single target with the ones its contributor currently reads
+     * 
+     * @param routeType
+     * @param targetId
+     */
+    public void refreshRoutes(String routeType, Long targetId);
+
+    /**
+     * Rebuilds the whole index from the contributors
+     */
+    public void rebuildIndex();
+
+    /**
+     * Marks the index to be rebuilt on its next use
+     */
+    public void invalidateIndex();
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.url.domain.URLRoutePersistedEvent;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link URLRoutingService}.
+ * 
+ * The index is rebuilt lazily by the first request that finds it stale, either because a contributor was registered
+ * or because it is older than url.routing.index.refreshInterval milliseconds, which picks up changes made on other
+ * nodes. Other requests keep using the previous index while it is rebuilt. Changes made on this node are applied to
+ * the index as soon as they are committed, one target at a time, through {@link URLRoutePersistedEvent}s and the
+ * contributors' own change events.
+ */
+@Service("blURLRoutingService")
+@ManagedResource(objectName="org.broadleafcommerce:name=URLRoutingService", description="URL Routing Service", currencyTimeLimit=15)
+public class URLRoutingServiceImpl implements URLRoutingService, ApplicationListener<URLRoutePersistedEvent> {
+    private static final Log LOG = LogFactory.getLog(URLRoutingServiceImpl.class);
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
+    @Value("${url.routing.index.enabled}")
+    protected boolean enabled = true;
+
+    @Value("${url.routing.index.refreshInterval}")
+    protected long refreshInterval = 300000L;
+
+    protected final ConcurrentMap<String, URLRouteContributor> contributors = new ConcurrentHashMap<String, URLRouteContributor>();
+
+    protected volatile RoutingIndex index;
+    protected volatile boolean stale = true;
+    protected final ReentrantLock rebuildLock = new ReentrantLock();
+
+    protected final AtomicLong lookupCount = new AtomicLong();
+    protected final AtomicLong unroutedCount = new AtomicLong();
+    protected final AtomicLong rebuildCount = new AtomicLong();
+
+    @Override
+    public void onApplicationEvent(URLRoutePersistedEvent event) {
+        refreshRoutes(event.getRouteType(), event.getTargetId());
+    }
+
+    @Override
+    public void registerContributor(URLRouteContributor contributor) {
+        contributors.put(contributor.getRouteType(), contributor);
+        stale = true;
+    }
+
+    @Override
+    public List<Long> findTargetIds(String routeType, String uri) {
+        if (!enabled || uri == null) {
+            return null;
+        }
+        RoutingIndex current = getCurrentIndex();
+        if (current == null || !current.routeTypes.contains(routeType)) {
+            return null;
+        }
+
+        List<Long> exactIds = current.exactRoutes.get(buildKey(routeType, uri));
+        List<Long> lastSegmentIds = null;
+        int pos = uri.lastIndexOf('/');
+        if (pos >= 0) {
+            lastSegmentIds = current.lastSegmentRoutes.get(buildKey(routeType, uri.substring(pos)));
+        }
+
+        lookupCount.incrementAndGet();
+        if (exactIds == null && lastSegmentIds == null) {
+            unroutedCount.incrementAndGet();
+            return Collections.emptyList();
+        } else if (lastSegmentIds == null) {
+            return exactIds;
+        } else if (exactIds == null) {
+            return lastSegmentIds;
+        }
+        List<Long> targetIds = new ArrayList<Long>(exactIds);
+        for (Long id : lastSegmentIds) {
+            if (!targetIds.contains(id)) {
+                targetIds.add(id);
+            }
+        }
+        return targetIds;
+    }
+
+    /**
+     * Returns the index, rebuilding it first if it is stale and no other thread is already doing so.
+     * 
+     * @return the current index, or null if no index has been built yet
+     */
+    protected RoutingIndex getCurrentIndex() {
+        RoutingIndex current = index;
+        boolean expired = current == null || SystemTime.asMillis() - current.buildTime > refreshInterval;
+        if ((stale || expired) && rebuildLock.tryLock()) {
+            try {
+                rebuildIndex();
+            } catch (RuntimeException e) {
+                LOG.error("Unable to rebuild the url routing index", e);
+            } finally {
+                rebuildLock.unlock();
+            }
+            current = index;
+        }
+        return current;
+    }
+
+    @Override
+    @ManagedOperation(description="Rebuild the url routing index")
+    public void rebuildIndex() {
+        rebuildLock.lock();
+        try {
+            // Cleared before reading so that contributors registered while the index is being built mark it stale again
+            stale = false;
+            TransactionStatus status = TransactionUtils.createTransaction("rebuildURLRoutingIndex",
+                    TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+            try {
+                long start = System.currentTimeMillis();
+                RoutingIndex newIndex = new RoutingIndex(SystemTime.asMillis());
+                for (URLRouteContributor contributor : contributors.values()) {
+                    newIndex.routeTypes.add(contributor.getRouteType());
+                    for (URLRoute route : contributor.readAllRoutes()) {
+                        newIndex.add(route);
+                    }
+                }
+                index = newIndex;
+                rebuildCount.incrementAndGet();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Built the url routing index with " + newIndex.routesByTarget.size() + " targets in " 
+                            + (System.currentTimeMillis() - start) + "ms");
+                }
+            } finally {
+                TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for any rebuild in progress, so that the refreshed routes are applied to the index that is current once
+     * it completes
+     */
+    @Override
+    public void refreshRoutes(String routeType, Long targetId) {
+        URLRouteContributor contributor = contributors.get(routeType);
+        if (contributor == null || targetId == null) {
+            return;
+        }
+        rebuildLock.lock();
+        try {
+            RoutingIndex current = index;
+            if (current == null) {
+                return;
+            }
+            TransactionStatus status = TransactionUtils.createTransaction("refreshURLRoutes",
+                    TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+            try {
+                current.replace(routeType, targetId, contributor.readRoutes(targetId));
+            } finally {
+                TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Unable to refresh the routes of " + routeType + " " + targetId + ", rebuilding the index instead", e);
+            stale = true;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Mark the url routing index to be rebuilt on its next use")
+    public void invalidateIndex() {
+        stale = true;
+    }
+
+    @ManagedAttribute(description="The number of routed targets in the current index", currencyTimeLimit=15)
+    public int getTargetCount() {
+        RoutingIndex current = index;
+        return current == null ? 0 : current.routesByTarget.size();
+    }
+
+    @ManagedAttribute(description="The number of uris looked up in the index", currencyTimeLimit=15)
+    public long getLookupCount() {
+        return lookupCount.get();
+    }
+
+    @ManagedAttribute(description="The number of uri lookups answered without a database query because no target matched", currencyTimeLimit=15)
+    public long getUnroutedCount() {
+        return unroutedCount.get();
+    }
+
+    @ManagedAttribute(description="The number of times the index has been rebuilt", currencyTimeLimit=15)
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    protected static String buildKey(String routeType, String uri) {
+        return routeType + "|" + uri;
+    }
+
+    /**
+     * The routes by request uri and by last uri segment, plus the routes of every target so that a target's routes 
+     * can be replaced when it changes. The lists held by the maps are never modified, only replaced.
+     */
+    protected static class RoutingIndex {
+
+        protected final long buildTime;
+        protected final Set<String> routeTypes = new HashSet<String>();
+        protected final ConcurrentMap<String, List<Long>> exactRoutes = new ConcurrentHashMap<String, List<Long>>();
+        protected final ConcurrentMap<String, List<Long>> lastSegmentRoutes = new ConcurrentHashMap<String, List<Long>>();
+        protected final ConcurrentMap<String, List<URLRoute>> routesByTarget = new ConcurrentHashMap<String, List<URLRoute>>();
+
+        protected RoutingIndex(long buildTime) {
+            this.buildTime = buildTime;
+        }
+
+        protected void add(URLRoute route) {
+            if (route.getUri() == null || route.getTargetId() == null) {
+                return;
+            }
+            String targetKey = buildKey(route.getRouteType(), String.valueOf(route.getTargetId()));
+            routesByTarget.put(targetKey, append(routesByTarget.get(targetKey), route));
+            Map<String, List<Long>> routes = route.isLastSegmentMatch() ? lastSegmentRoutes : exactRoutes;
+            String key = buildKey(route.getRouteType(), route.getUri());
+            List<Long> ids = routes.get(key);
+            if (ids == null || !ids.contains(route.getTargetId())) {
+                routes.put(key, append(ids, route.getTargetId()));
+            }
+        }
+
+        protected void replace(String routeType, Long targetId, List<URLRoute> newRoutes) {
+            String targetKey = buildKey(routeType, String.valueOf(targetId));
+            List<URLRoute> oldRoutes = routesByTarget.remove(targetKey);
+            if (oldRoutes != null) {
+                for (URLRoute route : oldRoutes) {
+                    Map<String, List<Long>> routes = route.isLastSegmentMatch() ? lastSegmentRoutes : exactRoutes;
+                    String key = buildKey(routeType, route.getUri());
+                    List<Long> ids = routes.get(key);
+                    if (ids != null) {
+                        List<Long> remaining = new ArrayList<Long>(ids);
+                        remaining.remove(targetId);
+                        if (remaining.isEmpty()) {
+                            routes.remove(key);
+                        } else {
+                            routes.put(key, Collections.unmodifiableList(remaining));
+                        }
+                    }
+                }
+            }
+            for (URLRoute route : newRoutes) {
+                add(route);
+            }
+        }
+
+        protected static <T> List<T> append(List<T> list, T item) {
+            List<T> appended = list == null ? new ArrayList<T>(1) : new ArrayList<T>(list);
+            appended.add(item);
+            return Collections.unmodifiableList(appended);
+        }
+
+    }
+
+}
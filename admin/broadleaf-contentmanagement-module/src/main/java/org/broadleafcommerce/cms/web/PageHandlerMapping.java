@@ -19,9 +19,13 @@ package org.broadleafcommerce.cms.web;
 import org.broadleafcommerce.cms.page.dto.NullPageDTO;
 import org.broadleafcommerce.cms.page.dto.PageDTO;
 import org.broadleafcommerce.cms.page.service.PageService;
+import org.broadleafcommerce.cms.page.service.PageURLRouteContributor;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
 import org.broadleafcommerce.cms.web.controller.BroadleafPageController;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
+import org.broadleafcommerce.common.sandbox.domain.SandBox;
+import org.broadleafcommerce.common.sandbox.domain.SandBoxType;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
@@ -29,6 +33,7 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -54,6 +59,9 @@ public class PageHandlerMapping extends BLCAbstractHandlerMapping {
     
     @Resource(name = "blPageService")
     private PageService pageService;
+
+    @Resource(name = "blURLRoutingService")
+    private URLRoutingService urlRoutingService;
     
     public static final String PAGE_ATTRIBUTE_NAME = "BLC_PAGE";        
 
@@ -61,6 +69,9 @@ public class PageHandlerMapping extends BLCAbstractHandlerMapping {
     protected Object getHandlerInternal(HttpServletRequest request) throws Exception {
         BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
         if (context != null && context.getRequestURIWithoutContext() != null) {
+            if (!isRoutedToPage(context)) {
+                return null;
+            }
             PageDTO page = pageService.findPageByURI(context.getSandbox(), context.getLocale(), context.getRequestURIWithoutContext(), buildMvelParameters(request), context.isSecure());
 
             if (page != null && ! (page instanceof NullPageDTO)) {
@@ -71,6 +82,27 @@ public class PageHandlerMapping extends BLCAbstractHandlerMapping {
         return null;
     }
     
+    /**
+     * Checks the routing index for a production page at the requested uri. Requests from a user sandbox may see pages
+     * that only exist in that sandbox, so they are always looked up.
+     * 
+     * @param context
+     * @return false only if the index shows that no page exists for the uri
+     */
+    protected boolean isRoutedToPage(BroadleafRequestContext context) {
+        SandBox sandbox = context.getSandbox();
+        if (sandbox != null && !SandBoxType.PRODUCTION.equals(sandbox.getSandBoxType())) {
+            return true;
+        }
+        SandBox productionSandbox = null;
+        if (sandbox != null && sandbox.getSite() != null) {
+            productionSandbox = sandbox.getSite().getProductionSandbox();
+        }
+        String routeUri = PageURLRouteContributor.buildRouteUri(productionSandbox, context.getRequestURIWithoutContext());
+        List<Long> pageIds = urlRoutingService.findTargetIds(URLRoutingService.PAGE_ROUTE_TYPE, routeUri);
+        return pageIds == null || !pageIds.isEmpty();
+    }
+    
      /**
      * MVEL is used to process the content targeting rules.
      *
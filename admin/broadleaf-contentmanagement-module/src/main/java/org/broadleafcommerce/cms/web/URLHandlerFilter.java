@@ -18,6 +18,7 @@ package org.broadleafcommerce.cms.web;
 
 import org.broadleafcommerce.cms.url.domain.URLHandler;
 import org.broadleafcommerce.cms.url.service.URLHandlerService;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
 import org.broadleafcommerce.cms.url.type.URLRedirectType;
 import org.broadleafcommerce.common.util.UrlUtil;
 import org.springframework.stereotype.Component;
@@ -29,6 +30,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Responsible for setting up the site and locale used by Broadleaf Commerce components.
@@ -41,6 +43,9 @@ public class URLHandlerFilter extends OncePerRequestFilter {
     @Resource(name = "blURLHandlerService")
     private URLHandlerService urlHandlerService;
 
+    @Resource(name = "blURLRoutingService")
+    private URLRoutingService urlRoutingService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
             HttpServletResponse response, FilterChain filterChain)
@@ -53,7 +58,11 @@ public class URLHandlerFilter extends OncePerRequestFilter {
         } else {
             requestURIWithoutContext = request.getRequestURI();
         }
-        URLHandler handler = urlHandlerService.findURLHandlerByURI(requestURIWithoutContext);
+        URLHandler handler = null;
+        List<Long> handlerIds = urlRoutingService.findTargetIds(URLRoutingService.URL_HANDLER_ROUTE_TYPE, requestURIWithoutContext);
+        if (handlerIds == null || !handlerIds.isEmpty()) {
+            handler = urlHandlerService.findURLHandlerByURI(requestURIWithoutContext);
+        }
         
         if (handler != null) {
             if (URLRedirectType.FORWARD == handler.getUrlRedirectType()) {              
@@ -17,6 +17,7 @@
 package org.broadleafcommerce.cms.web.file;
 
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -24,15 +25,24 @@ import org.springframework.web.servlet.View;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.OutputStream;
 import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.Map;
 
 /**
+ * Streams a cached static asset file to the response. The file is transferred through a {@link FileChannel} rather 
+ * than byte by byte, and the view answers conditional requests (<code>If-None-Match</code>, 
+ * <code>If-Modified-Since</code>) and single byte-range requests (<code>Range</code>, <code>If-Range</code>).
+ * 
+ * The ETag is built from the "assetKey" model entry, which identifies the asset and its named operation parameters,
+ * together with the size and modification time of the cache file.
+ * 
  * Created by jfischer
  */
 public class StaticAssetView implements View {
@@ -50,10 +60,20 @@ public class StaticAssetView implements View {
     @Override
     public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String cacheFilePath = (String) model.get("cacheFilePath");
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(cacheFilePath));
+        File cacheFile = new File(cacheFilePath);
+        FileInputStream fis = new FileInputStream(cacheFile);
         try {
+            FileChannel channel = fis.getChannel();
+            long length = channel.size();
+            // HTTP dates only carry whole seconds
+            long lastModified = (cacheFile.lastModified() / 1000) * 1000;
+            String eTag = buildETag((String) model.get("assetKey"), length, lastModified);
+
             String mimeType = (String) model.get("mimeType");
             response.setContentType(mimeType);
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("ETag", eTag);
+            response.setDateHeader("Last-Modified", lastModified);
             if (!browserAssetCachingEnabled) {
                 response.setHeader("Cache-Control","no-cache");
                 response.setHeader("Pragma","no-cache");
@@ -61,34 +81,50 @@ public class StaticAssetView implements View {
             } else {
                 response.setHeader("Cache-Control","public");
                 response.setHeader("Pragma","cache");
-                if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
-                    long lastModified = request.getDateHeader("If-Modified-Since");
-                    Calendar last = Calendar.getInstance();
-                    last.setTime(new Date(lastModified));
-                    Calendar check = Calendar.getInstance();
-                    check.add(Calendar.SECOND, -2 * new Long(cacheSeconds).intValue());
-                    if (check.compareTo(last) < 0) {
-                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                        return;
-                    }
-                } else {
-                    Calendar check = Calendar.getInstance();
-                    check.add(Calendar.SECOND, -1 * new Long(cacheSeconds).intValue());
-                    response.setDateHeader ("Last-Modified", check.getTimeInMillis());
-                }
                 Calendar cal = Calendar.getInstance();
                 cal.add(Calendar.SECOND, new Long(cacheSeconds).intValue());
                 response.setDateHeader ("Expires", cal.getTimeInMillis());
             }
+
+            if (isNotModified(request, eTag, lastModified)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader("Range");
+            if (!StringUtils.isEmpty(range) && isRangeApplicable(request, eTag, lastModified)) {
+                long[] byteRange = parseRange(range, length);
+                if (byteRange == null) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (byteRange.length == 2) {
+                    start = byteRange[0];
+                    end = byteRange[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+                }
+            }
+            long count = end - start + 1;
+            response.setHeader("Content-Length", String.valueOf(count));
+
+            if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+                return;
+            }
             OutputStream os = response.getOutputStream();
-            boolean eof = false;
-            while (!eof) {
-                int temp = bis.read();
-                if (temp < 0) {
-                    eof = true;
-                } else {
-                    os.write(temp);
+            WritableByteChannel target = Channels.newChannel(os);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
                 }
+                position += transferred;
+                remaining -= transferred;
             }
             os.flush();
         } catch (Exception e) {
@@ -102,13 +138,111 @@ public class StaticAssetView implements View {
             }
         } finally {
             try {
-                bis.close();
+                fis.close();
             } catch (Throwable e) {
                 //do nothing
             }
         }
     }
 
+    protected String buildETag(String assetKey, long length, long lastModified) {
+        return "\"" + DigestUtils.md5Hex(assetKey + ":" + length + ":" + lastModified) + "\"";
+    }
+
+    /**
+     * If-None-Match takes precedence over If-Modified-Since when both are sent
+     */
+    protected boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (!StringUtils.isEmpty(ifNoneMatch)) {
+            return matchesETag(ifNoneMatch, eTag);
+        }
+        long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * A Range header is ignored, and the whole file is sent, when If-Range names a different version of the asset
+     */
+    protected boolean isRangeApplicable(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (StringUtils.isEmpty(ifRange)) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return eTag.equals(ifRange.trim());
+        }
+        long ifRangeDate = getDateHeader(request, "If-Range");
+        return ifRangeDate >= 0 && lastModified <= ifRangeDate;
+    }
+
+    protected boolean matchesETag(String header, String eTag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a single "bytes=" range. Multiple ranges are not supported and are answered with the whole file.
+     * 
+     * @param range the Range header
+     * @param length the file length
+     * @return the inclusive start and end of the range, an empty array if the whole file should be sent, or null if 
+     * the range cannot be satisfied
+     */
+    protected long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.length() == 0) {
+                // suffix range - the last n bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.length() == 0 ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (end < start) {
+                    return start >= length ? null : new long[0];
+                }
+            }
+            if (start >= length) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    protected long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
     public boolean isBrowserAssetCachingEnabled() {
         return browserAssetCachingEnabled;
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.cms.common;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class MvelExpressionCacheServiceImplTest extends TestCase {
+
+    protected MvelExpressionCacheServiceImpl service;
+
+    @Override
+    protected void setUp() throws Exception {
+        service = new MvelExpressionCacheServiceImpl();
+    }
+
+    public void testCompiledExpressionReused() {
+        Serializable first = service.getCompiledExpression("a + 1", service.getDefaultImports());
+        Serializable second = service.getCompiledExpression("a + 1", service.getDefaultImports());
+
+        assertSame(first, second);
+        assertEquals(1, service.getMissCount());
+        assertEquals(1, service.getHitCount());
+        assertEquals(1, service.getSize());
+    }
+
+    public void testImportsArePartOfTheKey() {
+        Map<String, Class<?>> imports = new HashMap<String, Class<?>>(service.getDefaultImports());
+        imports.put("Arrays", Arrays.class);
+
+        Serializable withDefaults = service.getCompiledExpression("a + 1", service.getDefaultImports());
+        Serializable withExtraImport = service.getCompiledExpression("a + 1", imports);
+
+        assertNotSame(withDefaults, withExtraImport);
+        assertEquals(2, service.getMissCount());
+        assertEquals(0, service.getHitCount());
+        assertEquals(2, service.getSize());
+    }
+
+    public void testExecuteExpression() {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("a", 2);
+
+        assertEquals(3, ((Number) service.executeExpression("a + 1", vars)).intValue());
+        vars.put("a", 5);
+        assertEquals(6, ((Number) service.executeExpression("a + 1", vars)).intValue());
+        assertEquals(1, service.getMissCount());
+        assertEquals(1, service.getHitCount());
+    }
+
+    public void testInvalidExpressionNotCached() {
+        for (int i = 1; i <= 2; i++) {
+            try {
+                service.getCompiledExpression("(a + 1", service.getDefaultImports());
+                fail("Expected the invalid expression to fail compilation");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            assertEquals(i, service.getCompileFailureCount());
+        }
+        assertEquals(0, service.getSize());
+    }
+
+    public void testPrecompileSkipsBlankAndInvalidExpressions() {
+        int compiled = service.precompile(Arrays.asList("a + 1", " ", null, "(a + 1", "a == 2"),
+                service.getDefaultImports());
+
+        assertEquals(2, compiled);
+        assertEquals(2, service.getSize());
+        assertEquals(1, service.getCompileFailureCount());
+    }
+
+    public void testCacheBoundedByMaximumSize() {
+        service.maximumSize = 2;
+        for (int i = 0; i < 10; i++) {
+            service.getCompiledExpression("a + " + i, service.getDefaultImports());
+        }
+
+        assertTrue(service.getSize() <= 2);
+        assertTrue(service.getEvictionCount() >= 8);
+    }
+
+    public void testClearCache() {
+        Serializable first = service.getCompiledExpression("a + 1", service.getDefaultImports());
+        service.clearCache();
+
+        assertEquals(0, service.getSize());
+        assertNotSame(first, service.getCompiledExpression("a + 1", service.getDefaultImports()));
+    }
+
+}
@@ -19,14 +19,48 @@ package org.broadleafcommerce.cms.file.service;
 import org.broadleafcommerce.cms.field.type.StorageType;
 import org.broadleafcommerce.cms.file.domain.StaticAsset;
 import org.broadleafcommerce.cms.file.domain.StaticAssetImpl;
+import org.broadleafcommerce.cms.file.domain.StaticAssetStorage;
+import org.broadleafcommerce.cms.file.domain.StaticAssetStorageImpl;
+import org.broadleafcommerce.cms.file.service.operation.NamedOperationManager;
+import org.broadleafcommerce.common.sandbox.domain.SandBox;
 import org.broadleafcommerce.common.site.domain.Site;
 import org.broadleafcommerce.common.site.domain.SiteImpl;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactProcessor;
+import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactServiceImpl;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.ImageArtifactProcessor;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.Operation;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.EffectsManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.conversion.ConversionManager;
 import org.springframework.mock.web.MockMultipartFile;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import javax.sql.rowset.serial.SerialBlob;
 
 import junit.framework.TestCase;
 
@@ -155,4 +189,277 @@ public class StaticAssetStorageServiceImplTest extends TestCase {
             f.delete();
         }
     }
+
+    /**
+     * Resizes a database asset whose header is larger than the 8K a BufferedInputStream mark covers. The header is read
+     * to find the dimensions of the image, so the conversion can only read the image after resetting the stream.
+     * @throws Exception
+     */
+    public void testResizeDatabaseAssetWithLargeHeader() throws Exception {
+        byte[] fileData = createJpegWithLargeHeader(200, 100, 16000);
+        StaticAssetStorageServiceImpl staticAssetStorageService = createDatabaseStorageService(fileData);
+
+        final EffectsManager imageEffectsManager = new EffectsManager();
+        imageEffectsManager.setConversionManager(new ConversionManager());
+        ImageArtifactProcessor imageArtifactProcessor = new ImageArtifactProcessor() {
+            {
+                effectsManager = imageEffectsManager;
+            }
+        };
+        ArtifactServiceImpl artifactService = new ArtifactServiceImpl();
+        artifactService.setArtifactProcessors(new ArtifactProcessor[] { imageArtifactProcessor });
+        staticAssetStorageService.artifactService = artifactService;
+
+        StaticAsset staticAsset = new StaticAssetImpl();
+        staticAsset.setId(1L);
+        staticAsset.setFullUrl("/product/myproductimage.jpg");
+        staticAsset.setMimeType("image/jpeg");
+        staticAsset.setStorageType(StorageType.DATABASE);
+
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("resize-width-amount", "100");
+        parameters.put("resize-height-amount", "50");
+
+        InputStream original = staticAssetStorageService.findInputStreamForStaticAsset(staticAsset, true);
+        try {
+            assertEquals(200, imageArtifactProcessor.getImageMetadata(original).getWidth());
+            original.reset();
+
+            InputStream converted = staticAssetStorageService.convertOnImageProcessingExecutor(staticAsset, parameters, original);
+            BufferedImage resized = ImageIO.read(converted);
+            assertEquals(100, resized.getWidth());
+            assertEquals(50, resized.getHeight());
+
+            original.reset();
+            ByteArrayOutputStream reread = new ByteArrayOutputStream();
+            staticAssetStorageService.copyStream(original, reread);
+            assertTrue(Arrays.equals(fileData, reread.toByteArray()));
+        } finally {
+            original.close();
+            staticAssetStorageService.shutdownImageProcessingExecutor();
+        }
+    }
+
+    /**
+     * Requests that arrive while a resized image is being generated wait for that generation rather than converting 
+     * the image again, and all of them are given the same cache file.
+     * @throws Exception
+     */
+    public void testConcurrentRequestsForMissingArtifactConvertOnce() throws Exception {
+        File directory = createTempDirectory();
+        final StaticAsset staticAsset = new StaticAssetImpl();
+        staticAsset.setId(1L);
+        staticAsset.setFullUrl("/product/myproductimage.png");
+        staticAsset.setMimeType("image/png");
+        staticAsset.setStorageType(StorageType.DATABASE);
+        final StaticAssetStorageServiceImpl staticAssetStorageService = createDatabaseStorageService("original".getBytes(), staticAsset);
+        staticAssetStorageService.assetFileSystemPath = directory.getAbsolutePath();
+        staticAssetStorageService.assetServerMaxGeneratedDirectories = 2;
+        staticAssetStorageService.namedOperationManager = new NamedOperationManager() {
+            @Override
+            public Map<String, String> manageNamedParameters(Map<String, String> parameterMap) {
+                return parameterMap;
+            }
+        };
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger conversions = new AtomicInteger();
+        staticAssetStorageService.artifactService = new ArtifactServiceImpl() {
+            @Override
+            public Operation[] buildOperations(Map<String, String> parameterMap, InputStream artifactStream, String mimeType) {
+                return new Operation[0];
+            }
+
+            @Override
+            public InputStream convert(InputStream artifactStream, Operation[] operations, String mimeType) throws Exception {
+                conversions.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return new ByteArrayInputStream("converted".getBytes());
+            }
+        };
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("resize-width-amount", "100");
+
+        int threadCount = 4;
+        final CountDownLatch started = new CountDownLatch(threadCount);
+        final List<String> cacheFilePaths = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        cacheFilePaths.add(staticAssetStorageService.getCacheFileModel(staticAsset.getFullUrl(), null, 
+                                parameters).get("cacheFilePath"));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            started.await(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+
+            assertEquals(1, conversions.get());
+            assertEquals(threadCount, cacheFilePaths.size());
+            for (String cacheFilePath : cacheFilePaths) {
+                assertEquals(cacheFilePaths.get(0), cacheFilePath);
+            }
+            File cacheFile = new File(cacheFilePaths.get(0));
+            assertEquals("converted", readFile(staticAssetStorageService, cacheFile));
+            assertEquals(0, findTempFiles(cacheFile.getParentFile()).length);
+        } finally {
+            staticAssetStorageService.shutdownImageProcessingExecutor();
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Cache files are written to a temporary file that is renamed into place, so a failed write leaves neither a 
+     * partial cache file nor the temporary file behind.
+     * @throws Exception
+     */
+    public void testCacheFilePublishedByRename() throws Exception {
+        File directory = createTempDirectory();
+        StaticAssetStorageServiceImpl staticAssetStorageService = new StaticAssetStorageServiceImpl();
+        File cacheFile = new File(directory, "35/ec/myproductimage.png");
+        try {
+            staticAssetStorageService.createCacheFile(new ByteArrayInputStream("first".getBytes()), cacheFile);
+            assertEquals("first", readFile(staticAssetStorageService, cacheFile));
+
+            staticAssetStorageService.createCacheFile(new ByteArrayInputStream("second".getBytes()), cacheFile);
+            assertEquals("second", readFile(staticAssetStorageService, cacheFile));
+            assertEquals(0, findTempFiles(cacheFile.getParentFile()).length);
+
+            InputStream failing = new InputStream() {
+                protected int remaining = 3;
+
+                @Override
+                public int read() throws IOException {
+                    if (remaining-- == 0) {
+                        throw new IOException("connection reset");
+                    }
+                    return 'x';
+                }
+            };
+            try {
+                staticAssetStorageService.createCacheFile(failing, cacheFile);
+                fail("Expected the read failure to be rethrown");
+            } catch (IOException e) {
+                // expected
+            }
+            assertEquals("second", readFile(staticAssetStorageService, cacheFile));
+            assertEquals(0, findTempFiles(cacheFile.getParentFile()).length);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    protected StaticAssetStorageServiceImpl createDatabaseStorageService(final byte[] fileData, final StaticAsset staticAsset) {
+        return new StaticAssetStorageServiceImpl() {
+            @Override
+            protected StaticAsset findStaticAsset(String fullUrl, SandBox sandBox) {
+                return staticAsset;
+            }
+
+            @Override
+            public StaticAssetStorage readStaticAssetStorageByStaticAssetId(Long id) {
+                StaticAssetStorage storage = new StaticAssetStorageImpl();
+                try {
+                    storage.setFileData(new SerialBlob(fileData));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                return storage;
+            }
+        };
+    }
+
+    protected File createTempDirectory() throws IOException {
+        File directory = File.createTempFile("assets-", "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    protected void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+
+    protected File[] findTempFiles(File directory) {
+        return directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".tmp");
+            }
+        });
+    }
+
+    protected String readFile(StaticAssetStorageServiceImpl staticAssetStorageService, File file) throws IOException {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        InputStream is = new FileInputStream(file);
+        try {
+            staticAssetStorageService.copyStream(is, contents);
+        } finally {
+            is.close();
+        }
+        return contents.toString();
+    }
+
+    protected StaticAssetStorageServiceImpl createDatabaseStorageService(final byte[] fileData) {
+        return new StaticAssetStorageServiceImpl() {
+            @Override
+            public StaticAssetStorage readStaticAssetStorageByStaticAssetId(Long id) {
+                StaticAssetStorage storage = new StaticAssetStorageImpl();
+                try {
+                    storage.setFileData(new SerialBlob(fileData));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                return storage;
+            }
+        };
+    }
+
+    /**
+     * Writes a jpeg that starts with a comment of the given length, which an image reader has to skip to find the size
+     */
+    protected byte[] createJpegWithLargeHeader(int width, int height, int commentLength) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        String metadataFormat = "javax_imageio_jpeg_image_1.0";
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), null);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(metadataFormat);
+        IIOMetadataNode markerSequence = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+        char[] comment = new char[commentLength];
+        Arrays.fill(comment, 'x');
+        IIOMetadataNode commentNode = new IIOMetadataNode("com");
+        commentNode.setAttribute("comment", new String(comment));
+        markerSequence.insertBefore(commentNode, markerSequence.getFirstChild());
+        metadata.setFromTree(metadataFormat, root);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageOutputStream output = ImageIO.createImageOutputStream(baos);
+        try {
+            writer.setOutput(output);
+            writer.write(new IIOImage(image, null, metadata));
+        } finally {
+            output.close();
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.url.service;
+
+import org.broadleafcommerce.cms.url.service.URLRoutingServiceImpl.RoutingIndex;
+import org.broadleafcommerce.common.time.SystemTime;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+public class URLRoutingServiceImplTest extends TestCase {
+
+    protected URLRoutingServiceImpl service;
+
+    @Override
+    protected void setUp() throws Exception {
+        service = new URLRoutingServiceImpl();
+        RoutingIndex index = new RoutingIndex(SystemTime.asMillis());
+        index.routeTypes.add("CATEGORY");
+        index.routeTypes.add("PRODUCT");
+        index.add(new URLRoute("CATEGORY", "/hot-sauces", 1L));
+        index.add(new URLRoute("PRODUCT", "/hot-sauces/sudden_death_sauce", 10L));
+        index.add(new URLRoute("PRODUCT", "/sudden_death_sauce", 11L, true));
+        service.index = index;
+        service.stale = false;
+    }
+
+    public void testExactMatch() throws Exception {
+        assertEquals(Arrays.asList(1L), service.findTargetIds("CATEGORY", "/hot-sauces"));
+        assertEquals(Collections.emptyList(), service.findTargetIds("CATEGORY", "/mild-sauces"));
+        assertNull(service.findTargetIds("PAGE", "/hot-sauces"));
+    }
+
+    public void testMatchIsCaseSensitive() throws Exception {
+        assertEquals(Collections.emptyList(), service.findTargetIds("CATEGORY", "/HOT-SAUCES"));
+        assertEquals(Collections.emptyList(), service.findTargetIds("PRODUCT", "/hot-sauces/SUDDEN_DEATH_SAUCE"));
+    }
+
+    public void testLastSegmentMatch() throws Exception {
+        assertEquals(Arrays.asList(10L, 11L), service.findTargetIds("PRODUCT", "/hot-sauces/sudden_death_sauce"));
+        assertEquals(Arrays.asList(11L), service.findTargetIds("PRODUCT", "/sale/sudden_death_sauce"));
+    }
+
+    public void testReplaceRoutes() throws Exception {
+        service.index.replace("CATEGORY", 1L, Collections.singletonList(new URLRoute("CATEGORY", "/Hot-Sauces", 1L)));
+
+        assertEquals(Collections.emptyList(), service.findTargetIds("CATEGORY", "/hot-sauces"));
+        assertEquals(Arrays.asList(1L), service.findTargetIds("CATEGORY", "/Hot-Sauces"));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.cms.web.file;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class StaticAssetViewTest extends TestCase {
+
+    protected StaticAssetView view = new StaticAssetView();
+
+    public void testClosedRange() throws Exception {
+        assertRange(view.parseRange("bytes=0-99", 1000), 0, 99);
+        assertRange(view.parseRange("bytes=100-5000", 1000), 100, 999);
+    }
+
+    public void testOpenEndedRange() throws Exception {
+        assertRange(view.parseRange("bytes=500-", 1000), 500, 999);
+        assertRange(view.parseRange("bytes=999-", 1000), 999, 999);
+    }
+
+    public void testSuffixRange() throws Exception {
+        assertRange(view.parseRange("bytes=-100", 1000), 900, 999);
+        assertRange(view.parseRange("bytes=-5000", 1000), 0, 999);
+    }
+
+    public void testUnsatisfiableRange() throws Exception {
+        assertNull(view.parseRange("bytes=1000-", 1000));
+        assertNull(view.parseRange("bytes=2000-3000", 1000));
+        assertNull(view.parseRange("bytes=-0", 1000));
+    }
+
+    public void testWholeFileRanges() throws Exception {
+        // Multiple ranges are not supported, and invalid ranges are ignored
+        assertEquals(0, view.parseRange("bytes=0-99,200-299", 1000).length);
+        assertEquals(0, view.parseRange("bytes=500-100", 1000).length);
+        assertEquals(0, view.parseRange("bytes=abc-", 1000).length);
+        assertEquals(0, view.parseRange("items=0-99", 1000).length);
+    }
+
+    public void testRenderPartialContent() throws Exception {
+        File file = createAsset("0123456789");
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/test.txt");
+            request.addHeader("Range", "bytes=2-4");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            view.render(buildModel(file), request, response);
+
+            assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+            assertEquals("bytes 2-4/10", response.getHeader("Content-Range"));
+            assertEquals("234", response.getContentAsString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testRenderUnsatisfiableRange() throws Exception {
+        File file = createAsset("0123456789");
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/test.txt");
+            request.addHeader("Range", "bytes=10-");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            view.render(buildModel(file), request, response);
+
+            assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+            assertEquals("bytes */10", response.getHeader("Content-Range"));
+            assertEquals(0, response.getContentAsByteArray().length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testRenderMultipleRanges() throws Exception {
+        File file = createAsset("0123456789");
+        try {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/test.txt");
+            request.addHeader("Range", "bytes=0-1,4-5");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            view.render(buildModel(file), request, response);
+
+            assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+            assertEquals("0123456789", response.getContentAsString());
+        } finally {
+            file.delete();
+        }
+    }
+
+    protected void assertRange(long[] byteRange, long start, long end) {
+        assertEquals(Arrays.toString(new long[] { start, end }), Arrays.toString(byteRange));
+    }
+
+    protected File createAsset(String contents) throws Exception {
+        File file = File.createTempFile("staticAssetView", ".txt");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(contents.getBytes("UTF-8"));
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    protected Map<String, Object> buildModel(File file) {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("cacheFilePath", file.getAbsolutePath());
+        model.put("assetKey", "/img/test.txt");
+        model.put("mimeType", "text/plain");
+        return model;
+    }
+
+}
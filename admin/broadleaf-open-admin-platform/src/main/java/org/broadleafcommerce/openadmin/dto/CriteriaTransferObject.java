@@ -35,6 +35,7 @@ public class CriteriaTransferObject {
 
     private Integer firstResult;
     private Integer maxResults;
+    private Long lastId;
     
     private Map<String, FilterAndSortCriteria> criteriaMap = new HashMap<String, FilterAndSortCriteria>();
 
@@ -76,6 +77,26 @@ public class CriteriaTransferObject {
         this.maxResults = maxResults;
     }
     
+    /**
+     * The id of the record that precedes the first record to fetch. When set and no sort is requested, records are
+     * fetched in id order starting after this id (keyset pagination) instead of skipping {@link #getFirstResult()}
+     * records, which the database would otherwise have to read and discard.
+     *
+     * @return the id of the preceding record, or null
+     */
+    public Long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * The id of the record that precedes the first record to fetch.
+     *
+     * @param lastId the id of the preceding record, or null
+     */
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+    
     /**
      * Add a {@link FilterAndSortCriteria} instance. Contains information about which records are retrieved
      * and in what direction they're sorted.
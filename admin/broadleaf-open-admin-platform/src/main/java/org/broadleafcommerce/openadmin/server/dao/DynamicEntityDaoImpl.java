@@ -17,6 +17,7 @@
 package org.broadleafcommerce.openadmin.server.dao;
 
 
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -42,7 +43,6 @@ import org.broadleafcommerce.openadmin.server.dao.provider.metadata.request.Late
 import org.broadleafcommerce.openadmin.server.service.AppConfigurationService;
 import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldManager;
 import org.broadleafcommerce.openadmin.server.service.type.FieldProviderResponse;
-import org.codehaus.jackson.map.util.LRUMap;
 import org.hibernate.Criteria;
 import org.hibernate.MappingException;
 import org.hibernate.SessionFactory;
@@ -74,6 +74,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -89,7 +94,29 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao {
     
     private static final Log LOG = LogFactory.getLog(DynamicEntityDaoImpl.class);
     
-    protected static final Map<String,Map<String, FieldMetadata>> METADATA_CACHE = new LRUMap<String, Map<String, FieldMetadata>>(100, 1000);
+    protected static final int METADATA_CACHE_MAX_SIZE = 1000;
+    /*
+     * Bounded to METADATA_CACHE_MAX_SIZE keys, evicting the least recently used. This is a map view of a Guava cache 
+     * so that lookups stay lock free and the cache can still be cleared like a map.
+     */
+    protected static final Map<String,Map<String, FieldMetadata>> METADATA_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(METADATA_CACHE_MAX_SIZE).<String, Map<String, FieldMetadata>>build().asMap();
+    /*
+     * Metadata builds that are currently in flight, keyed the same as METADATA_CACHE. Concurrent requests for the same
+     * key wait on the single build rather than each walking the entity hierarchy.
+     */
+    protected static final ConcurrentMap<String, FutureTask<Map<String, FieldMetadata>>> METADATA_LOADS = new ConcurrentHashMap<String, FutureTask<Map<String, FieldMetadata>>>();
+    /*
+     * Cache keys being built by the current thread. Building metadata for an entity recurses into the metadata of its
+     * to-one fields, possibly back into the same key (e.g. self-referencing to-one fields). Such nested requests never
+     * wait on another load, since two threads building related entities could otherwise wait on each other.
+     */
+    protected static final ThreadLocal<Set<String>> METADATA_LOADS_IN_PROGRESS = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<String>();
+        }
+    };
     /*
      * This is the same as POLYMORPHIC_ENTITY_CACHE, except that it does not contain classes that are abstract or have been marked for exclusion 
      * from polymorphism
@@ -193,6 +220,7 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao {
             if ((System.currentTimeMillis() - lastCacheFlushTime) > cacheEntityMetaDataTtl) {
                 lastCacheFlushTime = System.currentTimeMillis();
                 METADATA_CACHE.clear();
+                METADATA_LOADS.clear();
                 DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE.clear();
                 DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS.clear();
                 return true; // cache is empty
@@ -611,54 +639,159 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao {
         for (Class<?> clazz : entities) {
             String cacheKey = getCacheKey(foreignField, additionalNonPersistentProperties, additionalForeignFields, mergedPropertyType, populateManyToOneFields, clazz, configurationKey, isParentExcluded);
 
-            Map<String, FieldMetadata> cacheData = null;
-            synchronized(DynamicDaoHelperImpl.LOCK_OBJECT) {
-                if (useCache()) {
-                    cacheData = METADATA_CACHE.get(cacheKey);
+            MetadataBuilder builder = new MetadataBuilder(entities, clazz, foreignField, additionalNonPersistentProperties,
+                    additionalForeignFields, mergedPropertyType, populateManyToOneFields, includeFields, excludeFields,
+                    configurationKey, ceilingEntityFullyQualifiedClassname, parentClasses, prefix, isParentExcluded);
+            if (useCache()) {
+                // The merged metadata is customized in place (overrides, includes and excludes), so only copies of 
+                // the shared cached instances may be handed to the system
+                for (Map.Entry<String, FieldMetadata> entry : getCachedProperties(cacheKey, builder).entrySet()) {
+                    mergedProperties.put(entry.getKey(), entry.getValue().cloneFieldMetadata());
                 }
+            } else {
+                // Built for this call only, so there is nothing to protect
+                mergedProperties.putAll(builder.call());
+            }
+        }
+    }
+
+    /**
+     * Returns the metadata for the given cache key, building it at most once across concurrent top level callers. Cache 
+     * hits do not acquire any lock; callers are responsible for cloning the returned {@link FieldMetadata} before 
+     * customizing it.
+     * 
+     * Requests made while the current thread is already building metadata are built directly instead of waiting on a 
+     * load in progress elsewhere. Two threads building different keys whose to-one fields lead to each other's key would 
+     * otherwise each wait for the other to finish.
+     */
+    protected Map<String, FieldMetadata> getCachedProperties(String cacheKey, MetadataBuilder builder) {
+        Map<String, FieldMetadata> cacheData = METADATA_CACHE.get(cacheKey);
+        if (cacheData != null) {
+            return cacheData;
+        }
+
+        Set<String> inProgress = METADATA_LOADS_IN_PROGRESS.get();
+        if (!inProgress.isEmpty()) {
+            // Nested request from another build on this thread. Build directly rather than waiting on a load that may
+            // itself be waiting on this thread.
+            cacheData = builder.call();
+            METADATA_CACHE.put(cacheKey, cacheData);
+            return cacheData;
+        }
+
+        FutureTask<Map<String, FieldMetadata>> load = new FutureTask<Map<String, FieldMetadata>>(builder);
+        FutureTask<Map<String, FieldMetadata>> existing = METADATA_LOADS.putIfAbsent(cacheKey, load);
+        if (existing == null) {
+            inProgress.add(cacheKey);
+            try {
+                load.run();
+            } finally {
+                inProgress.remove(cacheKey);
+            }
+        } else {
+            load = existing;
+        }
+
+        try {
+            cacheData = load.get();
+            if (existing == null) {
+                METADATA_CACHE.put(cacheKey, cacheData);
+            }
+            return cacheData;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            if (existing == null) {
+                METADATA_LOADS.remove(cacheKey, load);
+            }
+        }
+    }
 
-                if (cacheData == null) {
-                    Map<String, FieldMetadata> props = getPropertiesForEntityClass(
-                        clazz,
-                        foreignField,
-                        additionalNonPersistentProperties,
-                        additionalForeignFields,
-                        mergedPropertyType,
-                        populateManyToOneFields,
-                        includeFields,
-                        excludeFields,
-                        configurationKey,
-                        ceilingEntityFullyQualifiedClassname,
-                        parentClasses,
-                        prefix,
-                        isParentExcluded
-                    );
-                    //first check all the properties currently in there to see if my entity inherits from them
-                    for (Class<?> clazz2 : entities) {
-                        if (!clazz2.getName().equals(clazz.getName())) {
-                            for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
-                                FieldMetadata metadata = entry.getValue();
-                                try {
-                                    if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
-                                        String[] both = (String[]) ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
-                                        metadata.setAvailableToTypes(both);
-                                    }
-                                } catch (ClassNotFoundException e) {
-                                    throw new RuntimeException(e);
-                                }
+    /**
+     * Builds the metadata for a single polymorphic entity, including the types each inherited property is available to.
+     */
+    protected class MetadataBuilder implements Callable<Map<String, FieldMetadata>> {
+
+        protected final Class<?>[] entities;
+        protected final Class<?> clazz;
+        protected final ForeignKey foreignField;
+        protected final String[] additionalNonPersistentProperties;
+        protected final ForeignKey[] additionalForeignFields;
+        protected final MergedPropertyType mergedPropertyType;
+        protected final Boolean populateManyToOneFields;
+        protected final String[] includeFields;
+        protected final String[] excludeFields;
+        protected final String configurationKey;
+        protected final String ceilingEntityFullyQualifiedClassname;
+        protected final List<Class<?>> parentClasses;
+        protected final String prefix;
+        protected final Boolean isParentExcluded;
+
+        public MetadataBuilder(Class<?>[] entities, Class<?> clazz, ForeignKey foreignField,
+                String[] additionalNonPersistentProperties, ForeignKey[] additionalForeignFields,
+                MergedPropertyType mergedPropertyType, Boolean populateManyToOneFields, String[] includeFields,
+                String[] excludeFields, String configurationKey, String ceilingEntityFullyQualifiedClassname,
+                List<Class<?>> parentClasses, String prefix, Boolean isParentExcluded) {
+            this.entities = entities;
+            this.clazz = clazz;
+            this.foreignField = foreignField;
+            this.additionalNonPersistentProperties = additionalNonPersistentProperties;
+            this.additionalForeignFields = additionalForeignFields;
+            this.mergedPropertyType = mergedPropertyType;
+            this.populateManyToOneFields = populateManyToOneFields;
+            this.includeFields = includeFields;
+            this.excludeFields = excludeFields;
+            this.configurationKey = configurationKey;
+            this.ceilingEntityFullyQualifiedClassname = ceilingEntityFullyQualifiedClassname;
+            this.parentClasses = parentClasses;
+            this.prefix = prefix;
+            this.isParentExcluded = isParentExcluded;
+        }
+
+        @Override
+        public Map<String, FieldMetadata> call() {
+            Map<String, FieldMetadata> props = getPropertiesForEntityClass(
+                clazz,
+                foreignField,
+                additionalNonPersistentProperties,
+                additionalForeignFields,
+                mergedPropertyType,
+                populateManyToOneFields,
+                includeFields,
+                excludeFields,
+                configurationKey,
+                ceilingEntityFullyQualifiedClassname,
+                parentClasses,
+                prefix,
+                isParentExcluded
+            );
+            //first check all the properties currently in there to see if my entity inherits from them
+            for (Class<?> clazz2 : entities) {
+                if (!clazz2.getName().equals(clazz.getName())) {
+                    for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
+                        FieldMetadata metadata = entry.getValue();
+                        try {
+                            if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
+                                String[] both = (String[]) ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
+                                metadata.setAvailableToTypes(both);
                             }
+                        } catch (ClassNotFoundException e) {
+                            throw new RuntimeException(e);
                         }
                     }
-                    METADATA_CACHE.put(cacheKey, props);
-                    cacheData = props;
                 }
             }
-            //clone the metadata before passing to the system
-            Map<String, FieldMetadata> clonedCache = new HashMap<String, FieldMetadata>(cacheData.size());
-            for (Map.Entry<String, FieldMetadata> entry : cacheData.entrySet()) {
-                clonedCache.put(entry.getKey(), entry.getValue().cloneFieldMetadata());
-            }
-            mergedProperties.putAll(clonedCache);
+            return Collections.unmodifiableMap(props);
         }
     }
 
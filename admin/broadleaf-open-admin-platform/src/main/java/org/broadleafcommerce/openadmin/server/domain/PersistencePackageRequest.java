@@ -55,6 +55,7 @@ public class PersistencePackageRequest {
     protected ForeignKey foreignKey;
     protected Integer startIndex;
     protected Integer maxIndex;
+    protected Long lastId;
     protected Map<String, PersistencePackageRequest> subRequests = new LinkedHashMap<String, PersistencePackageRequest>();
 
     protected OperationTypes operationTypesOverride = null;
@@ -225,6 +226,11 @@ public class PersistencePackageRequest {
         setMaxIndex(maxIndex);
         return this;
     }
+    
+    public PersistencePackageRequest withLastId(Long lastId) {
+        setLastId(lastId);
+        return this;
+    }
 
     /* *********** */
     /* ADD METHODS */
@@ -382,6 +388,14 @@ public class PersistencePackageRequest {
         this.maxIndex = maxIndex;
     }
 
+    public Long getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(Long lastId) {
+        this.lastId = lastId;
+    }
+
     public Map<String, PersistencePackageRequest> getSubRequests() {
         return subRequests;
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.openadmin.server.security.service.navigation;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.openadmin.dto.ForeignKey;
+import org.broadleafcommerce.openadmin.dto.MergedPropertyType;
+import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDao;
+import org.broadleafcommerce.openadmin.server.security.dao.AdminNavigationDao;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminSection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+/**
+ * Builds the entity metadata for the ceiling entity of every admin section once the application context has started,
+ * so that the first admin users to open each section do not pay for the metadata inspection.
+ */
+@Component("blAdminSectionMetadataCacheWarmer")
+public class AdminSectionMetadataCacheWarmer implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Log LOG = LogFactory.getLog(AdminSectionMetadataCacheWarmer.class);
+
+    @Value("${admin.metadata.prewarm.enabled}")
+    protected boolean prewarmEnabled = true;
+
+    @Resource(name="blDynamicEntityDao")
+    protected DynamicEntityDao dynamicEntityDao;
+
+    @Resource(name = "blAdminNavigationDao")
+    protected AdminNavigationDao adminNavigationDao;
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    protected final AtomicBoolean warmed = new AtomicBoolean(false);
+
+    @PostConstruct
+    public void init() {
+        dynamicEntityDao.setStandardEntityManager(em);
+    }
+
+    @Override
+    @Transactional(value = "blTransactionManager", readOnly = true)
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // Child contexts publish their own refresh events to this listener as well
+        if (!prewarmEnabled || !warmed.compareAndSet(false, true)) {
+            return;
+        }
+
+        List<AdminSection> sections;
+        try {
+            sections = adminNavigationDao.readAllAdminSections();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to read the admin sections to warm the entity metadata cache", e);
+            return;
+        }
+
+        Set<String> ceilingEntities = new HashSet<String>();
+        for (AdminSection section : sections) {
+            if (!StringUtils.isBlank(section.getCeilingEntity())) {
+                ceilingEntities.add(section.getCeilingEntity());
+            }
+        }
+
+        int warmedCount = 0;
+        for (String ceilingEntity : ceilingEntities) {
+            try {
+                warmMetadata(ceilingEntity);
+                warmedCount++;
+            } catch (Exception e) {
+                LOG.warn("Unable to warm the entity metadata cache for " + ceilingEntity, e);
+            }
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Warmed the entity metadata cache for " + warmedCount + " admin section ceiling entities");
+        }
+    }
+
+    /**
+     * Inspects the given ceiling entity with the same arguments used by a standard admin section request.
+     */
+    protected void warmMetadata(String ceilingEntity) throws ClassNotFoundException {
+        Class<?>[] entities = dynamicEntityDao.getAllPolymorphicEntitiesFromCeiling(Class.forName(ceilingEntity));
+        dynamicEntityDao.getMergedProperties(
+            ceilingEntity,
+            entities,
+            null,
+            new String[]{},
+            new ForeignKey[]{},
+            MergedPropertyType.PRIMARY,
+            false,
+            new String[]{},
+            new String[]{},
+            null,
+            ""
+        );
+    }
+
+}
@@ -39,6 +39,7 @@ import org.broadleafcommerce.openadmin.dto.DynamicResultSet;
 import org.broadleafcommerce.openadmin.dto.Entity;
 import org.broadleafcommerce.openadmin.dto.EntityResult;
 import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+import org.broadleafcommerce.openadmin.dto.FilterAndSortCriteria;
 import org.broadleafcommerce.openadmin.dto.ForeignKey;
 import org.broadleafcommerce.openadmin.dto.MergedPropertyType;
 import org.broadleafcommerce.openadmin.dto.PersistencePackage;
@@ -92,6 +93,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 import javax.annotation.Resource;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -133,6 +135,9 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
     @Resource(name="blRestrictionFactory")
     protected RestrictionFactory restrictionFactory;
 
+    @Resource(name="blRecordCountCacheService")
+    protected RecordCountCacheService recordCountCacheService;
+
     public BasicPersistenceModule() {
         decimalFormat = (DecimalFormat) NumberFormat.getInstance(Locale.US);
         decimalFormat.applyPattern("0.########");
@@ -874,6 +879,7 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
                 instance = createPopulatedInstance(instance, entity, mergedProperties, false);
 
                 instance = persistenceManager.getDynamicEntityDao().merge(instance);
+                recordCountCacheService.invalidate(persistencePackage.getCeilingEntityFullyQualifiedClassname());
                 if (includeRealEntityObject) {
                     entityResult.setEntityBackingObject(instance);
                 }
@@ -940,6 +946,7 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
                     break;
                 case BASIC:
                     persistenceManager.getDynamicEntityDao().remove(instance);
+                    recordCountCacheService.invalidate(persistencePackage.getCeilingEntityFullyQualifiedClassname());
                     break;
             }
         } catch (Exception e) {
@@ -1003,9 +1010,9 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
                     );
                 filterMappings.add(filterMapping);
             }
-            List<Serializable> records = getPersistentRecords(persistencePackage.getFetchTypeFullyQualifiedClassname(), filterMappings, cto.getFirstResult(), cto.getMaxResults());
+            List<Serializable> records = getPersistentRecords(persistencePackage.getFetchTypeFullyQualifiedClassname(), filterMappings, cto.getFirstResult(), cto.getMaxResults(), cto.getLastId());
             payload = getRecords(mergedProperties, records, null, null);
-            totalRecords = getTotalRecords(persistencePackage.getFetchTypeFullyQualifiedClassname(), filterMappings);
+            totalRecords = getTotalRecords(persistencePackage, cto, filterMappings);
 
         } catch (Exception e) {
             throw new ServiceException("Unable to fetch results for " + ceilingEntityFullyQualifiedClassname, e);
@@ -1020,11 +1027,79 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
                 ceilingEntity, filterMappings).getSingleResult()).intValue();
     }
 
+    /**
+     * Returns the total number of records matching the fetch, using the {@link RecordCountCacheService} for fetches 
+     * whose filters can be identified by the {@link CriteriaTransferObject} alone
+     * 
+     * @param persistencePackage
+     * @param cto
+     * @param filterMappings
+     * @return the total number of records
+     */
+    protected Integer getTotalRecords(PersistencePackage persistencePackage, CriteriaTransferObject cto, List<FilterMapping> filterMappings) {
+        String ceilingEntity = persistencePackage.getCeilingEntityFullyQualifiedClassname();
+        String criteriaKey = buildCountCriteriaKey(persistencePackage, cto);
+        if (criteriaKey != null) {
+            Integer totalRecords = recordCountCacheService.getTotalRecords(ceilingEntity, criteriaKey);
+            if (totalRecords != null) {
+                return totalRecords;
+            }
+        }
+        Integer totalRecords = getTotalRecords(persistencePackage.getFetchTypeFullyQualifiedClassname(), filterMappings);
+        if (criteriaKey != null) {
+            recordCountCacheService.putTotalRecords(ceilingEntity, criteriaKey, totalRecords);
+        }
+        return totalRecords;
+    }
+
+    /**
+     * @param persistencePackage
+     * @param cto
+     * @return a key made of the fetched type and every filter applied to it, or null if the fetch carries additional
+     * filter mappings, which cannot be identified
+     */
+    protected String buildCountCriteriaKey(PersistencePackage persistencePackage, CriteriaTransferObject cto) {
+        if (CollectionUtils.isNotEmpty(cto.getAdditionalFilterMappings())) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        PersistencePerspective persistencePerspective = persistencePackage.getPersistencePerspective();
+        key.append(persistencePackage.getFetchTypeFullyQualifiedClassname())
+            .append(';').append(persistencePerspective.getConfigurationKey())
+            .append(';').append(persistencePerspective.getShowArchivedFields());
+        if (persistencePackage.getCustomCriteria() != null) {
+            for (String customCriteria : persistencePackage.getCustomCriteria()) {
+                key.append(';').append(customCriteria);
+            }
+        }
+        Map<String, FilterAndSortCriteria> criteriaMap = new TreeMap<String, FilterAndSortCriteria>(cto.getCriteriaMap());
+        for (Entry<String, FilterAndSortCriteria> entry : criteriaMap.entrySet()) {
+            // The paging parameters of the request arrive as criteria as well, but do not filter the records
+            if (FilterAndSortCriteria.START_INDEX_PARAMETER.equals(entry.getKey()) 
+                    || FilterAndSortCriteria.MAX_INDEX_PARAMETER.equals(entry.getKey())) {
+                continue;
+            }
+            List<String> filterValues = entry.getValue().getFilterValues();
+            if (CollectionUtils.isNotEmpty(filterValues)) {
+                key.append(';').append(entry.getKey()).append('=').append(filterValues);
+            }
+        }
+        return key.toString();
+    }
+
     @Override
     public List<Serializable> getPersistentRecords(String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults) {
         return criteriaTranslator.translateQuery(persistenceManager.getDynamicEntityDao(), ceilingEntity, filterMappings, firstResult, maxResults).getResultList();
     }
 
+    /**
+     * Same as {@link #getPersistentRecords(String, List, Integer, Integer)}, but reads the records after lastId instead 
+     * of skipping firstResult records when lastId is given and no sort is requested
+     */
+    public List<Serializable> getPersistentRecords(String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults, Long lastId) {
+        return criteriaTranslator.translateQuery(persistenceManager.getDynamicEntityDao(), ceilingEntity, filterMappings, firstResult, maxResults, lastId).getResultList();
+    }
+
     @Override
     public boolean validate(Entity entity, Serializable populatedInstance, Map<String, FieldMetadata> mergedProperties) {
         entityValidatorService.validate(entity, populatedInstance, mergedProperties);
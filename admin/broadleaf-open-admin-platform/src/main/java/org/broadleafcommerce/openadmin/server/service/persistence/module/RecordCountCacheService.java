@@ -0,0 +1,51 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+/**
+ * Caches the total record counts of admin list grids, which otherwise require an exact count over the whole filtered 
+ * entity table on every fetch. Only large counts are cached, since an approximate total has no value for a small 
+ * table that is cheap to count.
+ * 
+ * @see {@link BasicPersistenceModule#fetch(org.broadleafcommerce.openadmin.dto.PersistencePackage, org.broadleafcommerce.openadmin.dto.CriteriaTransferObject)}
+ */
+public interface RecordCountCacheService {
+
+    /**
+     * @param ceilingEntity
+     * @param criteriaKey identifies the filters applied to the count
+     * @return the cached count, or null if it is not cached
+     */
+    public Integer getTotalRecords(String ceilingEntity, String criteriaKey);
+
+    /**
+     * Caches the given count if it is large enough to be worth caching
+     * 
+     * @param ceilingEntity
+     * @param criteriaKey identifies the filters applied to the count
+     * @param totalRecords
+     */
+    public void putTotalRecords(String ceilingEntity, String criteriaKey, int totalRecords);
+
+    /**
+     * Removes the cached counts of the given entity, for example because a record was added or removed
+     * 
+     * @param ceilingEntity
+     */
+    public void invalidate(String ceilingEntity);
+
+}
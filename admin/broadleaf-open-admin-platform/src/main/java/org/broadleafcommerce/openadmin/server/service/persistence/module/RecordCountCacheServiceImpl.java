@@ -0,0 +1,125 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default implementation of {@link RecordCountCacheService} backed by a Guava cache. Counts of at least 
+ * admin.grid.count.cache.minRecords records are kept for admin.grid.count.cache.ttl seconds, so the total shown by a 
+ * large grid may be off by the records added or removed by other nodes within that time. Records added or removed
+ * through this node's admin invalidate the counts of their entity immediately. A ttl of 0 disables the cache.
+ */
+@Service("blRecordCountCacheService")
+@ManagedResource(objectName="org.broadleafcommerce:name=AdminRecordCountCache", description="Admin Record Count Cache", currencyTimeLimit=15)
+public class RecordCountCacheServiceImpl implements RecordCountCacheService {
+
+    protected static final String KEY_SEPARATOR = "|";
+
+    @Value("${admin.grid.count.cache.ttl}")
+    protected long timeToLive = 60;
+
+    @Value("${admin.grid.count.cache.minRecords}")
+    protected int minRecords = 10000;
+
+    @Value("${admin.grid.count.cache.size}")
+    protected long maximumSize = 1000;
+
+    protected volatile Cache<String, Integer> cache;
+
+    @Override
+    public Integer getTotalRecords(String ceilingEntity, String criteriaKey) {
+        if (timeToLive <= 0) {
+            return null;
+        }
+        return getCache().getIfPresent(buildKey(ceilingEntity, criteriaKey));
+    }
+
+    @Override
+    public void putTotalRecords(String ceilingEntity, String criteriaKey, int totalRecords) {
+        if (timeToLive > 0 && totalRecords >= minRecords) {
+            getCache().put(buildKey(ceilingEntity, criteriaKey), totalRecords);
+        }
+    }
+
+    @Override
+    public void invalidate(String ceilingEntity) {
+        if (timeToLive <= 0) {
+            return;
+        }
+        String prefix = ceilingEntity + KEY_SEPARATOR;
+        Iterator<String> itr = getCache().asMap().keySet().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().startsWith(prefix)) {
+                itr.remove();
+            }
+        }
+    }
+
+    @ManagedOperation(description="Removes every cached record count")
+    public void clearCache() {
+        getCache().invalidateAll();
+    }
+
+    protected String buildKey(String ceilingEntity, String criteriaKey) {
+        return ceilingEntity + KEY_SEPARATOR + criteriaKey;
+    }
+
+    protected Cache<String, Integer> getCache() {
+        Cache<String, Integer> result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    result = CacheBuilder.newBuilder()
+                            .maximumSize(maximumSize)
+                            .expireAfterWrite(Math.max(timeToLive, 1L), TimeUnit.SECONDS)
+                            .recordStats()
+                            .build();
+                    cache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @ManagedAttribute(description="The number of record counts in the cache")
+    public long getSize() {
+        return getCache().size();
+    }
+
+    @ManagedAttribute(description="The number of grid fetches that used a cached record count")
+    public long getHitCount() {
+        return getCache().stats().hitCount();
+    }
+
+    @ManagedAttribute(description="The ratio of grid fetches that used a cached record count")
+    public double getHitRate() {
+        return getCache().stats().hitRate();
+    }
+
+}
@@ -29,6 +29,13 @@ public interface CriteriaTranslator {
 
     TypedQuery<Serializable> translateQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults);
 
+    /**
+     * Same as {@link #translateQuery(DynamicEntityDao, String, List, Integer, Integer)}, but when lastId is given and 
+     * the filter mappings request no sort, records are read in id order starting after lastId instead of skipping
+     * firstResult records
+     */
+    TypedQuery<Serializable> translateQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults, Long lastId);
+
     TypedQuery<Serializable> translateCountQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings);
 
 }
@@ -23,11 +23,13 @@ import org.broadleafcommerce.openadmin.dto.ClassTree;
 import org.broadleafcommerce.openadmin.dto.SortDirection;
 import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDao;
 import org.broadleafcommerce.openadmin.server.service.persistence.module.EmptyFilterValues;
+import org.hibernate.type.Type;
 import org.springframework.stereotype.Service;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
@@ -46,12 +48,17 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
 
     @Override
     public TypedQuery<Serializable> translateCountQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings) {
-        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, true, null, null);
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, true, null, null, null);
     }
 
     @Override
     public TypedQuery<Serializable> translateQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults) {
-        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, firstResult, maxResults);
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, firstResult, maxResults, null);
+    }
+
+    @Override
+    public TypedQuery<Serializable> translateQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, Integer firstResult, Integer maxResults, Long lastId) {
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, false, firstResult, maxResults, lastId);
     }
     
     /**
@@ -137,8 +144,16 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         return null;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * This method is deprecated in favor of {@link #constructQuery(DynamicEntityDao, String, List, boolean, Integer, Integer, Long)}
+     */
+    @Deprecated
     protected TypedQuery<Serializable> constructQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, boolean isCount, Integer firstResult, Integer maxResults) {
+        return constructQuery(dynamicEntityDao, ceilingEntity, filterMappings, isCount, firstResult, maxResults, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected TypedQuery<Serializable> constructQuery(DynamicEntityDao dynamicEntityDao, String ceilingEntity, List<FilterMapping> filterMappings, boolean isCount, Integer firstResult, Integer maxResults, Long lastId) {
         CriteriaBuilder criteriaBuilder = dynamicEntityDao.getStandardEntityManager().getCriteriaBuilder();
         
         Class<Serializable> ceilingMarker;
@@ -161,6 +176,11 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         List<Predicate> restrictions = new ArrayList<Predicate>();
         List<Order> sorts = new ArrayList<Order>();
         addRestrictions(ceilingEntity, filterMappings, criteriaBuilder, original, restrictions, sorts, criteria);
+
+        boolean isKeyset = false;
+        if (!isCount && sorts.isEmpty()) {
+            isKeyset = addKeyOrdering(dynamicEntityDao, ceilingClass, criteriaBuilder, original, restrictions, sorts, lastId);
+        }
         
         criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
         if (!isCount) {
@@ -169,12 +189,43 @@ public class CriteriaTranslatorImpl implements CriteriaTranslator {
         TypedQuery<Serializable> response = dynamicEntityDao.getStandardEntityManager().createQuery(criteria);
 
         if (!isCount) {
-            addPaging(response, firstResult, maxResults);
+            addPaging(response, isKeyset ? null : firstResult, maxResults);
         }
 
         return response;
     }
 
+    /**
+     * Orders unsorted queries by a numeric primary key so that pages are stable, and restricts them to the records after
+     * lastId when it is given. This allows reading a page by seeking on the primary key index rather than reading and
+     * discarding every record before the requested offset.
+     * 
+     * @param dynamicEntityDao
+     * @param ceilingClass
+     * @param criteriaBuilder
+     * @param original
+     * @param restrictions
+     * @param sorts
+     * @param lastId the id of the record preceding the requested page, or null
+     * @return whether the query was restricted to the records after lastId, in which case the offset must not be applied
+     */
+    protected boolean addKeyOrdering(DynamicEntityDao dynamicEntityDao, Class<Serializable> ceilingClass, 
+            CriteriaBuilder criteriaBuilder, Root<Serializable> original, List<Predicate> restrictions, List<Order> sorts, 
+            Long lastId) {
+        Map<String, Object> idMetadata = dynamicEntityDao.getIdMetadata(ceilingClass);
+        if (idMetadata == null || !(idMetadata.get("type") instanceof Type) 
+                || !Long.class.equals(((Type) idMetadata.get("type")).getReturnedClass())) {
+            return false;
+        }
+        Path<Long> idPath = original.get((String) idMetadata.get("name"));
+        sorts.add(criteriaBuilder.asc(idPath));
+        if (lastId == null) {
+            return false;
+        }
+        restrictions.add(criteriaBuilder.greaterThan(idPath, lastId));
+        return true;
+    }
+
     protected void addPaging(Query response, Integer firstResult, Integer maxResults) {
         if (firstResult != null) {
             response.setFirstResult(firstResult);
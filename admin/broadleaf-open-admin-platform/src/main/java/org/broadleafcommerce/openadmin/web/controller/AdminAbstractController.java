@@ -17,6 +17,7 @@
 package org.broadleafcommerce.openadmin.web.controller;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.common.persistence.EntityConfiguration;
 import org.broadleafcommerce.common.util.BLCMapUtils;
@@ -368,7 +369,8 @@ public abstract class AdminAbstractController extends BroadleafAbstractControlle
         List<FilterAndSortCriteria> result = new ArrayList<FilterAndSortCriteria>();
         for (Entry<String, List<String>> entry : requestParams.entrySet()) {
             if (!entry.getKey().equals(FilterAndSortCriteria.SORT_PROPERTY_PARAMETER) &&
-                    !entry.getKey().equals(FilterAndSortCriteria.SORT_DIRECTION_PARAMETER)) {
+                    !entry.getKey().equals(FilterAndSortCriteria.SORT_DIRECTION_PARAMETER) &&
+                    !entry.getKey().equals(FilterAndSortCriteria.LAST_ID_PARAMETER)) {
                 List<String> values = entry.getValue();
                 List<String> collapsedValues = new ArrayList<String>();
                 for (String value : values) {
@@ -529,6 +531,29 @@ public abstract class AdminAbstractController extends BroadleafAbstractControlle
         return CollectionUtils.isEmpty(maxIndex) ? null : Integer.parseInt(maxIndex.get(0));
     }
     
+    /**
+     * Obtains the requested last id parameter, which is the id of the record preceding the requested start index. Ids
+     * that are not numeric are ignored, in which case the records are fetched by their start index.
+     * 
+     * @param requestParams
+     * @return
+     */
+    protected Long getLastId(Map<String, List<String>> requestParams) {
+        if (requestParams == null || requestParams.isEmpty()) {
+            return null;
+        }
+        
+        List<String> lastId = requestParams.get(FilterAndSortCriteria.LAST_ID_PARAMETER);
+        if (CollectionUtils.isEmpty(lastId) || !StringUtils.isNumeric(lastId.get(0))) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastId.get(0));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
     // ************************
     // GENERIC HELPER METHODS *
     // ************************
@@ -581,7 +606,8 @@ public abstract class AdminAbstractController extends BroadleafAbstractControlle
         return getSectionPersistencePackageRequest(sectionClassName)
                 .withFilterAndSortCriteria(fascs)
                 .withStartIndex(getStartIndex(requestParams))
-                .withMaxIndex(getMaxIndex(requestParams));
+                .withMaxIndex(getMaxIndex(requestParams))
+                .withLastId(getLastId(requestParams));
     }
     
 
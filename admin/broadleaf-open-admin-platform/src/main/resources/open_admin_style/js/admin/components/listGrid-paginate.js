@@ -371,6 +371,13 @@
                 var url = BLCAdmin.history.getUrlWithParameter('startIndex', startIndex, null, baseUrl);
                 url = BLCAdmin.history.getUrlWithParameter('maxIndex', maxIndex, null, url);
                 
+                // When the preceding record is loaded, its id lets the server seek to this range instead of 
+                // skipping startIndex records. The server falls back to startIndex for sorted grids.
+                var lastId = this.getRecordId($tbody, startIndex - 1);
+                if (lastId != null) {
+                    url = BLCAdmin.history.getUrlWithParameter('lastId', lastId, null, url);
+                }
+                
                 var params = $tbody.closest('.listgrid-container').find('.listgrid-header-wrapper table').data('currentparams');
                 for (var param in params) {
                     url = BLCAdmin.history.getUrlWithParameter(param, params[param], null, url);
@@ -393,6 +400,12 @@
         // CUSTOM SCROLLER FUNCTIONS *
         // ************************* *
         
+        getRecordId : function($tbody, index) {
+            var $tr = $tbody.find('tr[data-index="' + index + '"]');
+            var id = $tr.length ? $tr.attr('data-id') : null;
+            return id ? id : null;
+        },
+        
         getRowHeight : function($tbody) {
             return $tbody.find('tr:not(.blank-padding):first').height();
         },
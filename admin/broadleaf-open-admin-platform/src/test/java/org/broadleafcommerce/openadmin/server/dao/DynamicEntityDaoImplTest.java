@@ -0,0 +1,223 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata;
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+import org.broadleafcommerce.openadmin.dto.ForeignKey;
+import org.broadleafcommerce.openadmin.dto.MergedPropertyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class DynamicEntityDaoImplTest extends TestCase {
+
+    protected DynamicEntityDaoImpl dao;
+    protected AtomicInteger builds;
+
+    @Override
+    protected void setUp() throws Exception {
+        DynamicEntityDaoImpl.METADATA_CACHE.clear();
+        DynamicEntityDaoImpl.METADATA_LOADS.clear();
+        dao = new DynamicEntityDaoImpl();
+        dao.cacheEntityMetaDataTtl = -1;
+        builds = new AtomicInteger();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DynamicEntityDaoImpl.METADATA_CACHE.clear();
+        DynamicEntityDaoImpl.METADATA_LOADS.clear();
+    }
+
+    public void testCachedPropertiesAreBuiltOnce() throws Exception {
+        Map<String, FieldMetadata> properties = dao.getCachedProperties("key", new TestMetadataBuilder("name"));
+
+        assertSame(properties, dao.getCachedProperties("key", new TestMetadataBuilder("name")));
+        assertEquals(1, builds.get());
+        assertSame(properties, DynamicEntityDaoImpl.METADATA_CACHE.get("key"));
+        assertTrue(DynamicEntityDaoImpl.METADATA_LOADS.isEmpty());
+    }
+
+    public void testConcurrentRequestsShareOneBuild() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Map<String, FieldMetadata>> results = 
+                Collections.synchronizedList(new ArrayList<Map<String, FieldMetadata>>());
+
+        Thread first = new Thread(new MetadataRequest("key", new TestMetadataBuilder("name") {
+            @Override
+            public Map<String, FieldMetadata> call() {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.call();
+            }
+        }, results));
+        Thread second = new Thread(new MetadataRequest("key", new TestMetadataBuilder("name"), results));
+
+        first.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        second.start();
+        // Give the second request time to find the load in progress before letting the build finish
+        Thread.sleep(100);
+        assertEquals(0, results.size());
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertEquals(2, results.size());
+        assertSame(results.get(0), results.get(1));
+        assertEquals(1, builds.get());
+        assertSame(results.get(0), DynamicEntityDaoImpl.METADATA_CACHE.get("key"));
+        assertTrue(DynamicEntityDaoImpl.METADATA_LOADS.isEmpty());
+    }
+
+    public void testNestedRequestIsBuiltDirectlyAndCached() throws Exception {
+        // A load of the nested key that never finishes, as if another thread building it were waiting on this one
+        FutureTask<Map<String, FieldMetadata>> stalledLoad = 
+                new FutureTask<Map<String, FieldMetadata>>(new TestMetadataBuilder("stalled"));
+        DynamicEntityDaoImpl.METADATA_LOADS.put("nested", stalledLoad);
+
+        final TestMetadataBuilder nestedBuilder = new TestMetadataBuilder("nestedName");
+        final List<Map<String, FieldMetadata>> results = 
+                Collections.synchronizedList(new ArrayList<Map<String, FieldMetadata>>());
+        Thread request = new Thread(new MetadataRequest("outer", new TestMetadataBuilder("outerName") {
+            @Override
+            public Map<String, FieldMetadata> call() {
+                results.add(dao.getCachedProperties("nested", nestedBuilder));
+                return super.call();
+            }
+        }, results));
+        request.start();
+        request.join(5000);
+
+        assertFalse("The nested request waited on another load", request.isAlive());
+        assertEquals(2, results.size());
+        assertEquals(2, builds.get());
+        assertTrue(results.get(0).containsKey("nestedName"));
+        assertSame(results.get(0), DynamicEntityDaoImpl.METADATA_CACHE.get("nested"));
+        assertSame(results.get(1), DynamicEntityDaoImpl.METADATA_CACHE.get("outer"));
+        assertSame(stalledLoad, DynamicEntityDaoImpl.METADATA_LOADS.get("nested"));
+        assertFalse(DynamicEntityDaoImpl.METADATA_LOADS.containsKey("outer"));
+    }
+
+    public void testFailedBuildIsNotCached() throws Exception {
+        try {
+            dao.getCachedProperties("key", new TestMetadataBuilder("name") {
+                @Override
+                public Map<String, FieldMetadata> call() {
+                    throw new IllegalStateException("Could not build metadata");
+                }
+            });
+            fail("Expected the build to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Could not build metadata", e.getMessage());
+        }
+
+        assertFalse(DynamicEntityDaoImpl.METADATA_CACHE.containsKey("key"));
+        assertTrue(DynamicEntityDaoImpl.METADATA_LOADS.isEmpty());
+        dao.getCachedProperties("key", new TestMetadataBuilder("name"));
+        assertEquals(1, builds.get());
+    }
+
+    public void testCacheIsBoundedAndClearable() throws Exception {
+        for (int i = 0; i < DynamicEntityDaoImpl.METADATA_CACHE_MAX_SIZE * 2; i++) {
+            DynamicEntityDaoImpl.METADATA_CACHE.put("key" + i, new HashMap<String, FieldMetadata>());
+        }
+        assertTrue(DynamicEntityDaoImpl.METADATA_CACHE.size() <= DynamicEntityDaoImpl.METADATA_CACHE_MAX_SIZE);
+
+        DynamicEntityDaoImpl.METADATA_CACHE.clear();
+        assertTrue(DynamicEntityDaoImpl.METADATA_CACHE.isEmpty());
+    }
+
+    public void testMergedPropertiesAreCopiesOfCachedMetadata() throws Exception {
+        String cacheKey = dao.getCacheKey(null, new String[0], new ForeignKey[0], MergedPropertyType.PRIMARY, false, 
+                String.class, null, false);
+        DynamicEntityDaoImpl.METADATA_CACHE.put(cacheKey, new TestMetadataBuilder("name").call());
+
+        Map<String, FieldMetadata> mergedProperties = new HashMap<String, FieldMetadata>();
+        dao.buildPropertiesFromPolymorphicEntities(new Class<?>[] { String.class }, null, new String[0], 
+                new ForeignKey[0], MergedPropertyType.PRIMARY, false, new String[0], new String[0], null, 
+                String.class.getName(), mergedProperties, new ArrayList<Class<?>>(), "", false);
+
+        assertEquals(1, builds.get());
+        FieldMetadata cached = DynamicEntityDaoImpl.METADATA_CACHE.get(cacheKey).get("name");
+        FieldMetadata merged = mergedProperties.get("name");
+        assertNotSame(cached, merged);
+        assertEquals("name", ((BasicFieldMetadata) merged).getName());
+
+        // Customizing the merged metadata must not leak into the cache
+        merged.setExcluded(true);
+        assertFalse(Boolean.TRUE.equals(cached.getExcluded()));
+    }
+
+    /**
+     * Builds metadata with a single property of the given name, counting every build
+     */
+    protected class TestMetadataBuilder extends DynamicEntityDaoImpl.MetadataBuilder {
+
+        protected final String propertyName;
+
+        public TestMetadataBuilder(String propertyName) {
+            dao.super(null, null, null, null, null, null, null, null, null, null, null, null, null, null);
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public Map<String, FieldMetadata> call() {
+            builds.incrementAndGet();
+            BasicFieldMetadata metadata = new BasicFieldMetadata();
+            metadata.setName(propertyName);
+            Map<String, FieldMetadata> properties = new HashMap<String, FieldMetadata>();
+            properties.put(propertyName, metadata);
+            return Collections.unmodifiableMap(properties);
+        }
+    }
+
+    protected class MetadataRequest implements Runnable {
+
+        protected final String cacheKey;
+        protected final DynamicEntityDaoImpl.MetadataBuilder builder;
+        protected final List<Map<String, FieldMetadata>> results;
+
+        public MetadataRequest(String cacheKey, DynamicEntityDaoImpl.MetadataBuilder builder, 
+                List<Map<String, FieldMetadata>> results) {
+            this.cacheKey = cacheKey;
+            this.builder = builder;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            results.add(dao.getCachedProperties(cacheKey, builder));
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
+import org.broadleafcommerce.openadmin.dto.FilterAndSortCriteria;
+import org.broadleafcommerce.openadmin.dto.PersistencePackage;
+import org.broadleafcommerce.openadmin.dto.PersistencePerspective;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class BasicPersistenceModuleTest extends TestCase {
+
+    private static final String CEILING_ENTITY = "org.broadleafcommerce.core.order.domain.Order";
+
+    protected BasicPersistenceModule module;
+    protected RecordCountCacheServiceImpl recordCountCacheService;
+    protected PersistencePackage persistencePackage;
+    protected int counts;
+
+    @Override
+    protected void setUp() throws Exception {
+        counts = 0;
+        module = new BasicPersistenceModule() {
+            @Override
+            public Integer getTotalRecords(String ceilingEntity, List<FilterMapping> filterMappings) {
+                counts++;
+                return 25000;
+            }
+        };
+        recordCountCacheService = new RecordCountCacheServiceImpl();
+        recordCountCacheService.minRecords = 10000;
+        module.recordCountCacheService = recordCountCacheService;
+
+        PersistencePerspective persistencePerspective = new PersistencePerspective();
+        persistencePerspective.setConfigurationKey("orders");
+        persistencePerspective.setShowArchivedFields(false);
+        persistencePackage = new PersistencePackage(CEILING_ENTITY, CEILING_ENTITY, null, persistencePerspective, 
+                new String[0], null);
+    }
+
+    public void testCountKeyIgnoresPaging() throws Exception {
+        CriteriaTransferObject firstPage = createCriteria("42", 0, 50);
+        CriteriaTransferObject laterPage = createCriteria("42", 950, 1000);
+
+        String key = module.buildCountCriteriaKey(persistencePackage, firstPage);
+
+        assertNotNull(key);
+        assertEquals(key, module.buildCountCriteriaKey(persistencePackage, laterPage));
+        assertFalse(key.contains(FilterAndSortCriteria.START_INDEX_PARAMETER));
+        assertFalse(key.contains(FilterAndSortCriteria.MAX_INDEX_PARAMETER));
+    }
+
+    public void testCountKeyFollowsFilters() throws Exception {
+        String key = module.buildCountCriteriaKey(persistencePackage, createCriteria("42", 0, 50));
+
+        assertFalse(key.equals(module.buildCountCriteriaKey(persistencePackage, createCriteria("43", 0, 50))));
+        assertFalse(key.equals(module.buildCountCriteriaKey(persistencePackage, createCriteria(null, 0, 50))));
+    }
+
+    public void testNoCountKeyWithAdditionalFilterMappings() throws Exception {
+        CriteriaTransferObject cto = createCriteria("42", 0, 50);
+        List<FilterMapping> additionalFilterMappings = new ArrayList<FilterMapping>();
+        additionalFilterMappings.add(new FilterMapping());
+        cto.setAdditionalFilterMappings(additionalFilterMappings);
+
+        assertNull(module.buildCountCriteriaKey(persistencePackage, cto));
+    }
+
+    public void testLaterPagesUseCachedTotal() throws Exception {
+        List<FilterMapping> filterMappings = new ArrayList<FilterMapping>();
+
+        assertEquals(Integer.valueOf(25000), module.getTotalRecords(persistencePackage, createCriteria("42", 0, 50), filterMappings));
+        assertEquals(Integer.valueOf(25000), module.getTotalRecords(persistencePackage, createCriteria("42", 950, 1000), filterMappings));
+        assertEquals(1, counts);
+
+        recordCountCacheService.invalidate(CEILING_ENTITY);
+        module.getTotalRecords(persistencePackage, createCriteria("42", 0, 50), filterMappings);
+        assertEquals(2, counts);
+    }
+
+    public void testSmallTotalsAreNotCached() throws Exception {
+        recordCountCacheService.minRecords = 30000;
+        List<FilterMapping> filterMappings = new ArrayList<FilterMapping>();
+
+        module.getTotalRecords(persistencePackage, createCriteria("42", 0, 50), filterMappings);
+        module.getTotalRecords(persistencePackage, createCriteria("42", 50, 100), filterMappings);
+
+        assertEquals(2, counts);
+    }
+
+    /**
+     * Builds the criteria of a grid request, which carries its paging parameters as criteria alongside the filters
+     */
+    protected CriteriaTransferObject createCriteria(String customerId, int startIndex, int maxIndex) {
+        CriteriaTransferObject cto = new CriteriaTransferObject();
+        if (customerId != null) {
+            cto.add(new FilterAndSortCriteria("customer.id", customerId));
+        }
+        cto.add(new FilterAndSortCriteria(FilterAndSortCriteria.START_INDEX_PARAMETER, String.valueOf(startIndex)));
+        cto.add(new FilterAndSortCriteria(FilterAndSortCriteria.MAX_INDEX_PARAMETER, String.valueOf(maxIndex)));
+        cto.setFirstResult(startIndex);
+        cto.setMaxResults(maxIndex - startIndex);
+        return cto;
+    }
+
+}
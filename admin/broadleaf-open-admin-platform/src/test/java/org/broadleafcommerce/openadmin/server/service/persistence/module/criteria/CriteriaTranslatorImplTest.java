@@ -0,0 +1,180 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.openadmin.server.service.persistence.module.criteria;
+
+import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDao;
+import org.easymock.EasyMock;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import junit.framework.TestCase;
+
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class CriteriaTranslatorImplTest extends TestCase {
+
+    protected CriteriaTranslatorImpl translator;
+    protected Order requestedSort;
+
+    protected DynamicEntityDao dynamicEntityDao;
+    protected EntityManager entityManager;
+    protected CriteriaBuilder criteriaBuilder;
+    protected CriteriaQuery criteria;
+    protected Root root;
+    protected Path idPath;
+    protected Type idType;
+    protected TypedQuery query;
+
+    @Override
+    protected void setUp() throws Exception {
+        requestedSort = null;
+        translator = new CriteriaTranslatorImpl() {
+            @Override
+            protected Class<Serializable> determineRoot(DynamicEntityDao dynamicEntityDao, Class<Serializable> ceilingMarker,
+                    List<FilterMapping> filterMappings) {
+                return ceilingMarker;
+            }
+
+            @Override
+            protected void addRestrictions(String ceilingEntity, List<FilterMapping> filterMappings, CriteriaBuilder criteriaBuilder,
+                    Root original, List<Predicate> restrictions, List<Order> sorts, CriteriaQuery criteria) {
+                if (requestedSort != null) {
+                    sorts.add(requestedSort);
+                }
+            }
+        };
+
+        dynamicEntityDao = EasyMock.createMock(DynamicEntityDao.class);
+        entityManager = EasyMock.createMock(EntityManager.class);
+        criteriaBuilder = EasyMock.createMock(CriteriaBuilder.class);
+        criteria = EasyMock.createNiceMock(CriteriaQuery.class);
+        root = EasyMock.createMock(Root.class);
+        idPath = EasyMock.createMock(Path.class);
+        idType = EasyMock.createMock(Type.class);
+        query = EasyMock.createMock(TypedQuery.class);
+
+        EasyMock.expect(dynamicEntityDao.getStandardEntityManager()).andReturn(entityManager).anyTimes();
+        EasyMock.expect(entityManager.getCriteriaBuilder()).andReturn(criteriaBuilder).anyTimes();
+        EasyMock.expect(entityManager.createQuery(criteria)).andReturn(query);
+        EasyMock.expect(criteriaBuilder.createQuery(TestEntity.class)).andReturn(criteria);
+        EasyMock.expect(criteria.from(TestEntity.class)).andReturn(root);
+        EasyMock.expect(root.get("id")).andReturn(idPath).anyTimes();
+    }
+
+    public void testUnsortedFirstPageOrdersById() throws Exception {
+        Order idOrder = EasyMock.createMock(Order.class);
+        expectIdMetadata(Long.class);
+        EasyMock.expect(criteriaBuilder.asc(idPath)).andReturn(idOrder);
+        EasyMock.expect(query.setFirstResult(0)).andReturn(query);
+        EasyMock.expect(query.setMaxResults(20)).andReturn(query);
+        replayAll();
+
+        translate(0, 20, null);
+
+        verifyAll();
+    }
+
+    public void testUnsortedPageSeeksAfterLastId() throws Exception {
+        Order idOrder = EasyMock.createMock(Order.class);
+        Predicate afterLastId = EasyMock.createMock(Predicate.class);
+        expectIdMetadata(Long.class);
+        EasyMock.expect(criteriaBuilder.asc(idPath)).andReturn(idOrder);
+        EasyMock.expect(criteriaBuilder.greaterThan(idPath, Long.valueOf(500L))).andReturn(afterLastId);
+        // The seek replaces the offset, so only the page size is applied
+        EasyMock.expect(query.setMaxResults(20)).andReturn(query);
+        replayAll();
+
+        translate(40, 20, 500L);
+
+        verifyAll();
+    }
+
+    public void testSortedPageFallsBackToOffset() throws Exception {
+        requestedSort = EasyMock.createMock(Order.class);
+        EasyMock.expect(query.setFirstResult(40)).andReturn(query);
+        EasyMock.expect(query.setMaxResults(20)).andReturn(query);
+        replayAll();
+
+        translate(40, 20, 500L);
+
+        // Neither the id metadata nor the id path were consulted
+        verifyAll();
+    }
+
+    public void testNonLongIdFallsBackToOffset() throws Exception {
+        expectIdMetadata(String.class);
+        EasyMock.expect(query.setFirstResult(40)).andReturn(query);
+        EasyMock.expect(query.setMaxResults(20)).andReturn(query);
+        replayAll();
+
+        translate(40, 20, 500L);
+
+        verifyAll();
+    }
+
+    public void testMissingIdMetadataFallsBackToOffset() throws Exception {
+        EasyMock.expect(dynamicEntityDao.getIdMetadata(TestEntity.class)).andReturn(null);
+        EasyMock.expect(query.setFirstResult(40)).andReturn(query);
+        EasyMock.expect(query.setMaxResults(20)).andReturn(query);
+        replayAll();
+
+        translate(40, 20, 500L);
+
+        verifyAll();
+    }
+
+    protected void translate(Integer firstResult, Integer maxResults, Long lastId) {
+        TypedQuery<Serializable> response = translator.translateQuery(dynamicEntityDao, TestEntity.class.getName(), 
+                new ArrayList<FilterMapping>(), firstResult, maxResults, lastId);
+        assertSame(query, response);
+    }
+
+    protected void expectIdMetadata(Class<?> idClass) {
+        Map<String, Object> idMetadata = new HashMap<String, Object>();
+        idMetadata.put("name", "id");
+        idMetadata.put("type", idType);
+        EasyMock.expect(dynamicEntityDao.getIdMetadata(TestEntity.class)).andReturn(idMetadata);
+        EasyMock.expect(idType.getReturnedClass()).andReturn(idClass).anyTimes();
+    }
+
+    protected void replayAll() {
+        EasyMock.replay(dynamicEntityDao, entityManager, criteriaBuilder, criteria, root, idPath, idType, query);
+    }
+
+    protected void verifyAll() {
+        EasyMock.verify(dynamicEntityDao, entityManager, criteriaBuilder, query);
+    }
+
+    public static class TestEntity implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+}
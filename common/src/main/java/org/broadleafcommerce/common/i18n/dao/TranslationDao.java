@@ -20,6 +20,7 @@ package org.broadleafcommerce.common.i18n.dao;
 import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
 import org.broadleafcommerce.common.i18n.domain.Translation;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -90,4 +91,26 @@ public interface TranslationDao {
      */
     public Translation readTranslation(TranslatedEntity entity, String entityId, String fieldName, String localeCode);
 
+    /**
+     * Reads the translations of every field of the given entities for any of the given locale codes in a single query
+     * 
+     * @param entity
+     * @param entityIds
+     * @param localeCodes
+     * @return the list of translations
+     */
+    public List<Translation> readTranslations(TranslatedEntity entity, Collection<String> entityIds, 
+            Collection<String> localeCodes);
+
+    /**
+     * Reads the values of every translation for the given locale code, up to maxResults translations, without loading
+     * the translations themselves. Each row holds the entity type (friendly type), entity id, field name and translated
+     * value, in that order.
+     * 
+     * @param localeCode
+     * @param maxResults
+     * @return a row for every translation
+     */
+    public List<Object[]> readAllTranslationValues(String localeCode, int maxResults);
+
 }
\ No newline at end of file
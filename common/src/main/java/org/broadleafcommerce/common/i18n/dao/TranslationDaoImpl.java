@@ -26,6 +26,7 @@ import org.hibernate.ejb.HibernateEntityManager;
 import org.hibernate.ejb.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -117,6 +118,38 @@ public class TranslationDaoImpl implements TranslationDao {
         }
     }
 
+    @Override
+    public List<Translation> readTranslations(TranslatedEntity entity, Collection<String> entityIds, 
+            Collection<String> localeCodes) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Translation> criteria = builder.createQuery(Translation.class);
+        Root<TranslationImpl> translation = criteria.from(TranslationImpl.class);
+
+        criteria.select(translation);
+        criteria.where(builder.equal(translation.get("entityType"), entity.getFriendlyType()),
+            translation.get("entityId").in(entityIds),
+            translation.get("localeCode").in(localeCodes)
+        );
+
+        TypedQuery<Translation> query = em.createQuery(criteria);
+        return query.getResultList();
+    }
+
+    @Override
+    public List<Object[]> readAllTranslationValues(String localeCode, int maxResults) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<TranslationImpl> translation = criteria.from(TranslationImpl.class);
+
+        criteria.multiselect(translation.get("entityType"), translation.get("entityId"), translation.get("fieldName"), 
+                translation.get("translatedValue"));
+        criteria.where(builder.equal(translation.get("localeCode"), localeCode));
+
+        TypedQuery<Object[]> query = em.createQuery(criteria);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
     public DynamicDaoHelper getDynamicDaoHelper() {
         return dynamicDaoHelper;
     }
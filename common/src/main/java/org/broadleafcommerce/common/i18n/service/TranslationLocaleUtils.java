@@ -0,0 +1,76 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.common.i18n.service;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Convenience methods for the locale fallback used when looking up translations. A translation in the exact locale
+ * (en_GB) wins over one in its language (en), and a blank translation is treated as missing.
+ */
+public class TranslationLocaleUtils {
+
+    /**
+     * @param locale
+     * @return the locale codes to look for translations in, most specific first
+     */
+    public static List<String> getLookupLocaleCodes(Locale locale) {
+        String localeCode = locale.getLanguage();
+        if (StringUtils.isNotBlank(locale.getCountry())) {
+            localeCode += "_" + locale.getCountry();
+        }
+        return getLookupLocaleCodes(localeCode);
+    }
+
+    /**
+     * @param localeCode a locale code such as en_GB or en
+     * @return the locale codes to look for translations in, most specific first
+     */
+    public static List<String> getLookupLocaleCodes(String localeCode) {
+        List<String> localeCodes = new ArrayList<String>(2);
+        localeCodes.add(localeCode);
+        String languageCode = StringUtils.substringBefore(localeCode, "_");
+        if (!languageCode.equals(localeCode)) {
+            localeCodes.add(languageCode);
+        }
+        return localeCodes;
+    }
+
+    /**
+     * @param translationsByLocaleCode the translated values of a single field, keyed by locale code
+     * @param localeCode
+     * @return the translated value for the locale code, or null if there is none
+     */
+    public static String findTranslatedValue(Map<String, String> translationsByLocaleCode, String localeCode) {
+        if (translationsByLocaleCode == null) {
+            return null;
+        }
+        for (String lookupCode : getLookupLocaleCodes(localeCode)) {
+            String translatedValue = translationsByLocaleCode.get(lookupCode);
+            if (StringUtils.isNotBlank(translatedValue)) {
+                return translatedValue;
+            }
+        }
+        return null;
+    }
+
+}
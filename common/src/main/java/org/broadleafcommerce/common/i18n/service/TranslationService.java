@@ -20,6 +20,7 @@ package org.broadleafcommerce.common.i18n.service;
 import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
 import org.broadleafcommerce.common.i18n.domain.Translation;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 
@@ -103,5 +104,15 @@ public interface TranslationService {
      */
     public String getTranslatedValue(Object entity, String property, Locale locale);
 
+    /**
+     * Loads the translations of every field of the given entities for the given locale, with one query per entity 
+     * type, so that later calls to {@link #getTranslatedValue(Object, String, Locale)} for these entities do not need
+     * to go to the database. Entities that are not translatable are ignored.
+     * 
+     * @param entities
+     * @param locale
+     */
+    public void preloadTranslations(Collection<?> entities, Locale locale);
+
 
 }
\ No newline at end of file
@@ -26,35 +26,84 @@ import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.i18n.dao.TranslationDao;
 import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
 import org.broadleafcommerce.common.i18n.domain.Translation;
-import org.broadleafcommerce.common.i18n.domain.TranslationImpl;
 import org.hibernate.type.LongType;
 import org.hibernate.type.StringType;
 import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * Translated values are looked up, in order, in a per-locale {@link TranslationSnapshot} holding every translation of 
+ * the locale, and in the blTranslationElements cache, which holds every translated field of a single entity for a 
+ * single locale. Snapshots are only kept for locales with at most i18n.translation.snapshot.maxSize translations and 
+ * are rebuilt every i18n.translation.snapshot.refreshInterval milliseconds, or after a translation of their locale is 
+ * saved on this node. Snapshots are built on a background thread from the translation values alone, so no 
+ * {@link Translation} entities are loaded for them.
+ */
 @Service("blTranslationService")
 public class TranslationServiceImpl implements TranslationService {
     protected static final Log LOG = LogFactory.getLog(TranslationServiceImpl.class);
+
+    protected static final int PRELOAD_BATCH_SIZE = 500;
     
     @Resource(name = "blTranslationDao")
     protected TranslationDao dao;
+
+    @Value("${i18n.translation.snapshot.enabled}")
+    protected boolean snapshotEnabled = true;
+
+    @Value("${i18n.translation.snapshot.maxSize}")
+    protected int snapshotMaxSize = 50000;
+
+    @Value("${i18n.translation.snapshot.refreshInterval}")
+    protected long snapshotRefreshInterval = 300000;
     
     protected Cache cache;
+
+    protected final ConcurrentMap<Class<?>, TranslatedEntity> entityTypeCache = new ConcurrentHashMap<Class<?>, TranslatedEntity>();
+    protected final ConcurrentMap<Class<?>, Method> idReadMethodCache = new ConcurrentHashMap<Class<?>, Method>();
+    protected final ConcurrentMap<String, TranslationSnapshot> snapshots = new ConcurrentHashMap<String, TranslationSnapshot>();
+    protected final ConcurrentMap<String, Boolean> snapshotsLoading = new ConcurrentHashMap<String, Boolean>();
+    protected final AtomicLong snapshotEvictions = new AtomicLong();
+    protected volatile ExecutorService snapshotExecutor;
     
     @Override
     @Transactional("blTransactionManager")
     public Translation save(Translation translation) {
-        return dao.save(translation);
+        Translation saved = dao.save(translation);
+        invalidateTranslation(saved.getEntityType(), saved.getEntityId(), saved.getLocaleCode());
+        return saved;
     }
-    
+
     @Override
     @Transactional("blTransactionManager")
     public Translation save(String entityType, String entityId, String fieldName, String localeCode, 
@@ -85,6 +134,7 @@ public class TranslationServiceImpl implements TranslationService {
         if (t2 != null && t != t2) {
             dao.delete(t2);
         }
+        invalidateTranslation(t.getEntityType(), t.getEntityId(), t.getLocaleCode());
         
         t.setLocaleCode(localeCode);
         t.setTranslatedValue(translatedValue);
@@ -96,6 +146,7 @@ public class TranslationServiceImpl implements TranslationService {
     public void deleteTranslationById(Long translationId) {
         Translation t = dao.readTranslationById(translationId);
         dao.delete(t);
+        invalidateTranslation(t.getEntityType(), t.getEntityId(), t.getLocaleCode());
     }
     
     @Override
@@ -115,62 +166,260 @@ public class TranslationServiceImpl implements TranslationService {
         TranslatedEntity entityType = getEntityType(entity);
         String entityId = getEntityId(entity, entityType);
         
-        String localeCode = locale.getLanguage();
-        String localeCountryCode = localeCode;
-        if (StringUtils.isNotBlank(locale.getCountry())) {
-            localeCountryCode += "_" + locale.getCountry();
+        // Try the country language combo (en_GB) first and then just the language (en)
+        for (String localeCode : TranslationLocaleUtils.getLookupLocaleCodes(locale)) {
+            String translatedValue = lookupTranslatedValue(entityType, entityId, property, localeCode);
+            
+            // If we have a match on a translation, use that instead of what we found on the entity.
+            if (StringUtils.isNotBlank(translatedValue)) {
+                return translatedValue;
+            }
         }
-
-        Translation translation;
         
-        // First, we'll try to look up a country language combo (en_GB), utilizing the cache
-        String countryCacheKey = getCacheKey(entityType, entityId, property, localeCountryCode);
-        Element countryValue = getCache().get(countryCacheKey);
-        if (countryValue != null) {
-            translation = (Translation) countryValue.getObjectValue();
-        } else {
-            translation = getTranslation(entityType, entityId, property, localeCountryCode);
-            if (translation == null) {
-                translation = new TranslationImpl();
+        return null;
+    }
+
+    @Override
+    public void preloadTranslations(Collection<?> entities, Locale locale) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        Set<String> localeCodes = new LinkedHashSet<String>();
+        for (String localeCode : TranslationLocaleUtils.getLookupLocaleCodes(locale)) {
+            addIfNotInSnapshot(localeCodes, localeCode);
+        }
+        if (localeCodes.isEmpty()) {
+            return;
+        }
+
+        Map<TranslatedEntity, Set<String>> idsByType = new LinkedHashMap<TranslatedEntity, Set<String>>();
+        for (Object entity : entities) {
+            if (entity == null) {
+                continue;
+            }
+            TranslatedEntity entityType = findEntityType(entity.getClass());
+            if (entityType == null) {
+                continue;
+            }
+            String entityId = getEntityId(entity, entityType);
+            for (String localeCode : localeCodes) {
+                if (getCache().get(getCacheKey(entityType, entityId, localeCode)) == null) {
+                    Set<String> ids = idsByType.get(entityType);
+                    if (ids == null) {
+                        ids = new LinkedHashSet<String>();
+                        idsByType.put(entityType, ids);
+                    }
+                    ids.add(entityId);
+                    break;
+                }
             }
-            getCache().put(new Element(countryCacheKey, translation));
         }
-        
-        // If we don't find one, let's try just the language (en), again utilizing the cache
-        if (translation.getTranslatedValue()==null) {
-            String nonCountryCacheKey = getCacheKey(entityType, entityId, property, localeCode);
-            Element nonCountryValue = getCache().get(nonCountryCacheKey);
-            if (nonCountryValue != null) {
-                translation = (Translation) nonCountryValue.getObjectValue();
-            } else {
-                translation = getTranslation(entityType, entityId, property, localeCode);
-                if (translation == null) {
-                    translation = new TranslationImpl();
+
+        for (Entry<TranslatedEntity, Set<String>> entry : idsByType.entrySet()) {
+            List<String> ids = new ArrayList<String>(entry.getValue());
+            for (int i = 0; i < ids.size(); i += PRELOAD_BATCH_SIZE) {
+                List<String> batch = ids.subList(i, Math.min(i + PRELOAD_BATCH_SIZE, ids.size()));
+                cacheEntityTranslations(entry.getKey(), batch, localeCodes, 
+                        dao.readTranslations(entry.getKey(), batch, localeCodes));
+            }
+        }
+    }
+
+    protected void addIfNotInSnapshot(Set<String> localeCodes, String localeCode) {
+        TranslationSnapshot snapshot = getSnapshot(localeCode);
+        if (snapshot == null || !snapshot.isComplete()) {
+            localeCodes.add(localeCode);
+        }
+    }
+
+    protected String lookupTranslatedValue(TranslatedEntity entityType, String entityId, String property, String localeCode) {
+        TranslationSnapshot snapshot = getSnapshot(localeCode);
+        if (snapshot != null && snapshot.isComplete()) {
+            return snapshot.getTranslatedValue(entityType.getFriendlyType(), entityId, property);
+        }
+        return getEntityTranslations(entityType, entityId, localeCode).get(property);
+    }
+
+    /**
+     * @return every translated field of the entity for the locale code, from the cache if possible
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, String> getEntityTranslations(TranslatedEntity entityType, String entityId, String localeCode) {
+        Element element = getCache().get(getCacheKey(entityType, entityId, localeCode));
+        if (element != null) {
+            return (Map<String, String>) element.getObjectValue();
+        }
+        List<String> ids = Collections.singletonList(entityId);
+        List<String> localeCodes = Collections.singletonList(localeCode);
+        return cacheEntityTranslations(entityType, ids, localeCodes, dao.readTranslations(entityType, ids, localeCodes))
+                .get(getCacheKey(entityType, entityId, localeCode));
+    }
+
+    /**
+     * Caches the translated fields of each of the entities for each of the locale codes, including an empty map for 
+     * entities without translations so that they are not looked up again
+     * 
+     * @return the cached maps by cache key
+     */
+    protected Map<String, Map<String, String>> cacheEntityTranslations(TranslatedEntity entityType, Collection<String> entityIds, 
+            Collection<String> localeCodes, List<Translation> translations) {
+        Map<String, Map<String, String>> fieldsByKey = new HashMap<String, Map<String, String>>();
+        for (String entityId : entityIds) {
+            for (String localeCode : localeCodes) {
+                fieldsByKey.put(getCacheKey(entityType, entityId, localeCode), new HashMap<String, String>(4));
+            }
+        }
+        for (Translation translation : translations) {
+            Map<String, String> fields = fieldsByKey.get(getCacheKey(entityType, translation.getEntityId(), translation.getLocaleCode()));
+            if (fields != null && StringUtils.isNotBlank(translation.getTranslatedValue())) {
+                fields.put(translation.getFieldName(), translation.getTranslatedValue());
+            }
+        }
+        for (Entry<String, Map<String, String>> entry : fieldsByKey.entrySet()) {
+            getCache().put(new Element(entry.getKey(), entry.getValue()));
+        }
+        return fieldsByKey;
+    }
+
+    /**
+     * Returns the snapshot for the locale code. A snapshot that is missing or older than the refresh interval is 
+     * rebuilt on the snapshot executor, so that its query never runs on, or loads entities into, a request thread. 
+     * Only one rebuild of a given snapshot is scheduled at a time - until it completes, the previous snapshot is 
+     * returned, or null if there is none yet.
+     * 
+     * @param localeCode
+     * @return the snapshot, or null if snapshots are disabled or not yet available
+     */
+    protected TranslationSnapshot getSnapshot(String localeCode) {
+        if (!snapshotEnabled) {
+            return null;
+        }
+        TranslationSnapshot snapshot = snapshots.get(localeCode);
+        if (snapshot != null && System.currentTimeMillis() - snapshot.getCreatedTime() < snapshotRefreshInterval) {
+            return snapshot;
+        }
+        scheduleSnapshotBuild(localeCode);
+        return snapshots.get(localeCode);
+    }
+
+    protected void scheduleSnapshotBuild(final String localeCode) {
+        if (snapshotsLoading.putIfAbsent(localeCode, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            getSnapshotExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        buildSnapshot(localeCode);
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to build the translation snapshot for " + localeCode, e);
+                    } finally {
+                        snapshotsLoading.remove(localeCode);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor has been shut down - translations are looked up per entity instead
+            snapshotsLoading.remove(localeCode);
+        }
+    }
+
+    /**
+     * Reads the translation values of the locale code and stores the resulting snapshot. The snapshot is dropped 
+     * again if a translation was evicted while it was being built, since that translation may be missing from it.
+     * 
+     * @param localeCode
+     */
+    protected void buildSnapshot(String localeCode) {
+        long evictions = snapshotEvictions.get();
+        List<Object[]> rows = dao.readAllTranslationValues(localeCode, snapshotMaxSize + 1);
+        TranslationSnapshot snapshot;
+        if (rows.size() > snapshotMaxSize) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("More than " + snapshotMaxSize + " translations exist for " + localeCode + 
+                        ", translations will be looked up per entity instead");
+            }
+            snapshot = TranslationSnapshot.incomplete(localeCode);
+        } else {
+            snapshot = TranslationSnapshot.build(localeCode, rows);
+        }
+        snapshots.put(localeCode, snapshot);
+        if (snapshotEvictions.get() != evictions) {
+            snapshots.remove(localeCode, snapshot);
+        }
+    }
+
+    protected Executor getSnapshotExecutor() {
+        if (snapshotExecutor == null) {
+            synchronized (this) {
+                if (snapshotExecutor == null) {
+                    snapshotExecutor = Executors.newSingleThreadExecutor(new SnapshotThreadFactory());
                 }
-                getCache().put(new Element(nonCountryCacheKey, translation));
             }
         }
-        
-        // If we have a match on a translation, use that instead of what we found on the entity.
-        if (StringUtils.isNotBlank(translation.getTranslatedValue())) {
-            return translation.getTranslatedValue();
+        return snapshotExecutor;
+    }
+
+    @PreDestroy
+    public void shutdownSnapshotExecutor() {
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdownNow();
         }
-        
-        return null;
+    }
+
+    /**
+     * Drops the cached translations of the entity and the snapshot of the locale once the current transaction commits
+     */
+    protected void invalidateTranslation(final TranslatedEntity entityType, final String entityId, final String localeCode) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictTranslation(entityType, entityId, localeCode);
+                }
+            });
+        } else {
+            evictTranslation(entityType, entityId, localeCode);
+        }
+    }
+
+    protected void evictTranslation(TranslatedEntity entityType, String entityId, String localeCode) {
+        if (entityType != null) {
+            getCache().remove(getCacheKey(entityType, entityId, localeCode));
+        }
+        snapshotEvictions.incrementAndGet();
+        snapshots.remove(localeCode);
     }
     
     protected TranslatedEntity getEntityType(Class<?> entityClass) {
+        TranslatedEntity entityType = findEntityType(entityClass);
+        if (entityType == null) {
+            throw new IllegalArgumentException(entityClass.getName() + " is not a known translatable class");
+        }
+        return entityType;
+    }
+
+    /**
+     * @return the translated entity type of the class, or null if it is not translatable
+     */
+    protected TranslatedEntity findEntityType(Class<?> entityClass) {
+        TranslatedEntity entityType = entityTypeCache.get(entityClass);
+        if (entityType != null) {
+            return entityType;
+        }
         for (Entry<String, TranslatedEntity> entry : TranslatedEntity.getTypes().entrySet()) {
             try {
                 Class<?> clazz = Class.forName(entry.getKey());
                 if (clazz.isAssignableFrom(entityClass)) {
+                    entityTypeCache.put(entityClass, entry.getValue());
                     return entry.getValue();
                 }
             } catch (ClassNotFoundException e) {
                 throw new IllegalArgumentException("TranslatedEntity type was not set to a known class", e);
             }
         }
-        throw new IllegalArgumentException(entityClass.getName() + " is not a known translatable class");
+        return null;
     }
     
     protected TranslatedEntity getEntityType(Object entity) {
@@ -187,6 +436,29 @@ public class TranslationServiceImpl implements TranslationService {
     }
     
     protected String getEntityId(Object entity, TranslatedEntity entityType) {
+        Method idReadMethod = idReadMethodCache.get(entity.getClass());
+        if (idReadMethod == null) {
+            idReadMethod = resolveIdReadMethod(entity, entityType);
+            idReadMethodCache.put(entity.getClass(), idReadMethod);
+        }
+
+        Object idValue = null;
+        try {
+            idValue = idReadMethod.invoke(entity);
+        } catch (Exception e) {
+            throw new RuntimeException("Error reading id property", e);
+        }
+
+        if (idValue instanceof String) {
+            return (String) idValue;
+        }
+        return String.valueOf(idValue);
+    }
+
+    /**
+     * Finds the getter of the id property of the entity type's persistent class on the class of the given entity
+     */
+    protected Method resolveIdReadMethod(Object entity, TranslatedEntity entityType) {
         Map<String, Object> idMetadata = dao.getIdPropertyMetadata(entityType);
         String idProperty = (String) idMetadata.get("name");
         Type idType = (Type) idMetadata.get("type");
@@ -195,25 +467,23 @@ public class TranslationServiceImpl implements TranslationService {
             throw new UnsupportedOperationException("Only ID types of String and Long are currently supported");
         }
         
-        Object idValue = null;
         try {
-            idValue = PropertyUtils.getProperty(entity, idProperty);
+            PropertyDescriptor descriptor = PropertyUtils.getPropertyDescriptor(entity, idProperty);
+            Method readMethod = descriptor == null ? null : descriptor.getReadMethod();
+            if (readMethod == null) {
+                throw new IllegalArgumentException(String.format("Could not retrieve value for id property. Object: [%s], " +
+                        "ID Property: [%s], ID Type: [%s]", entity, idProperty, idType));
+            }
+            return readMethod;
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error reading id property", e);
         }
-        
-        if (idType instanceof StringType) {
-            return (String) idValue;
-        } else if (idType instanceof LongType) {
-            return String.valueOf(idValue);
-        }
-        
-        throw new IllegalArgumentException(String.format("Could not retrieve value for id property. Object: [%s], " +
-        		"ID Property: [%s], ID Type: [%s]", entity, idProperty, idType));
     }
     
-    protected String getCacheKey(TranslatedEntity entityType, String entityId, String property, String localeCode) {
-        return StringUtils.join(new String[] { entityType.getFriendlyType(), entityId, property, localeCode }, "|");
+    protected String getCacheKey(TranslatedEntity entityType, String entityId, String localeCode) {
+        return StringUtils.join(new String[] { entityType.getFriendlyType(), entityId, localeCode }, "|");
     }
     
     protected Cache getCache() {
@@ -223,4 +493,17 @@ public class TranslationServiceImpl implements TranslationService {
         return cache;
     }
 
-}
\ No newline at end of file
+    protected static class SnapshotThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "translation-snapshot-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
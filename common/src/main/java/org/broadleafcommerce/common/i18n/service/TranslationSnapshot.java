@@ -0,0 +1,115 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.common.i18n.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of every translation for a single locale code, organized as entity type (friendly type) to 
+ * entity id to field name to translated value. A snapshot is only complete if the locale did not have more 
+ * translations than the snapshot was allowed to hold - an incomplete snapshot holds no values and callers are 
+ * expected to look translations up some other way.
+ * 
+ * @see TranslationServiceImpl
+ */
+public class TranslationSnapshot {
+
+    protected final String localeCode;
+    protected final boolean complete;
+    protected final long createdTime;
+    protected final Map<String, Map<String, Map<String, String>>> values;
+
+    protected TranslationSnapshot(String localeCode, boolean complete, Map<String, Map<String, Map<String, String>>> values) {
+        this.localeCode = localeCode;
+        this.complete = complete;
+        this.createdTime = System.currentTimeMillis();
+        this.values = values;
+    }
+
+    /**
+     * Builds the snapshot from translation rows, all of which must be for the given locale code. Each row holds the 
+     * entity type (friendly type), entity id, field name and translated value, in that order. Blank translated values
+     * are left out.
+     * 
+     * @param localeCode
+     * @param rows
+     * @return the snapshot
+     * @see org.broadleafcommerce.common.i18n.dao.TranslationDao#readAllTranslationValues(String, int)
+     */
+    public static TranslationSnapshot build(String localeCode, List<Object[]> rows) {
+        Map<String, Map<String, Map<String, String>>> values = new HashMap<String, Map<String, Map<String, String>>>();
+        for (Object[] row : rows) {
+            String translatedValue = (String) row[3];
+            if (translatedValue == null || translatedValue.trim().length() == 0) {
+                continue;
+            }
+            String type = (String) row[0];
+            Map<String, Map<String, String>> ids = values.get(type);
+            if (ids == null) {
+                ids = new HashMap<String, Map<String, String>>();
+                values.put(type, ids);
+            }
+            String entityId = (String) row[1];
+            Map<String, String> fields = ids.get(entityId);
+            if (fields == null) {
+                fields = new HashMap<String, String>(4);
+                ids.put(entityId, fields);
+            }
+            fields.put((String) row[2], translatedValue);
+        }
+        return new TranslationSnapshot(localeCode, true, values);
+    }
+
+    /**
+     * @param localeCode
+     * @return a snapshot recording that the locale has too many translations to hold
+     */
+    public static TranslationSnapshot incomplete(String localeCode) {
+        return new TranslationSnapshot(localeCode, false, Collections.<String, Map<String, Map<String, String>>>emptyMap());
+    }
+
+    /**
+     * @param friendlyType
+     * @param entityId
+     * @param fieldName
+     * @return the translated value, or null if there is none
+     */
+    public String getTranslatedValue(String friendlyType, String entityId, String fieldName) {
+        Map<String, Map<String, String>> ids = values.get(friendlyType);
+        if (ids == null) {
+            return null;
+        }
+        Map<String, String> fields = ids.get(entityId);
+        return fields == null ? null : fields.get(fieldName);
+    }
+
+    public String getLocaleCode() {
+        return localeCode;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+}
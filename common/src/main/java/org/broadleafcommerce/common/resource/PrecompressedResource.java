@@ -0,0 +1,108 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.common.resource;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link GeneratedResource} whose content is fixed at construction time and that additionally holds a gzip compressed
+ * copy of that content along with a hash of it. This allows the resource to be served directly from memory with an
+ * accurate Content-Length and ETag, and without compressing it again on every request.
+ * 
+ * The compressed copy is only kept if it is actually smaller than the original content.
+ */
+public class PrecompressedResource extends GeneratedResource {
+
+    private static final long serialVersionUID = -3270958318390327581L;
+
+    protected final byte[] compressedSource;
+    protected final String contentHash;
+
+    /**
+     * <b>Note: This constructor should not be explicitly used</b> 
+     * 
+     * @see GeneratedResource#GeneratedResource()
+     */
+    public PrecompressedResource() {
+        this(new byte[]{}, null);
+    }
+
+    public PrecompressedResource(byte[] source, String description) {
+        super(source, description);
+        this.compressedSource = compress(source);
+        this.contentHash = DigestUtils.md5DigestAsHex(source);
+        setHashRepresentation(contentHash);
+    }
+
+    protected byte[] compress(byte[] source) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(source.length / 3 + 32);
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(baos);
+            gzip.write(source);
+            gzip.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] compressed = baos.toByteArray();
+        return compressed.length < source.length ? compressed : null;
+    }
+
+    /**
+     * @return whether a gzip compressed copy of this resource is available
+     */
+    public boolean isCompressible() {
+        return compressedSource != null;
+    }
+
+    /**
+     * @param compressed whether the length of the gzip compressed copy should be returned
+     * @return the length in bytes of the content
+     */
+    public int getContentLength(boolean compressed) {
+        return compressed ? compressedSource.length : source.length;
+    }
+
+    /**
+     * @param compressed whether the ETag of the gzip compressed copy should be returned
+     * @return a quoted ETag value derived from the hash of the content
+     */
+    public String getETag(boolean compressed) {
+        return "\"" + contentHash + (compressed ? "-gzip" : "") + "\"";
+    }
+
+    /**
+     * Writes the content of this resource to the given stream
+     * 
+     * @param out
+     * @param compressed whether the gzip compressed copy should be written
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out, boolean compressed) throws IOException {
+        out.write(compressed ? compressedSource : source);
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return source.length;
+    }
+
+}
@@ -20,22 +20,18 @@ import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.resource.GeneratedResource;
+import org.broadleafcommerce.common.resource.PrecompressedResource;
 import org.broadleafcommerce.common.web.resource.AbstractGeneratedResourceHandler;
 import org.broadleafcommerce.common.web.resource.BroadleafResourceHttpRequestHandler;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StreamUtils;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -44,6 +40,18 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
 
 /**
  * @see ResourceBundlingService
@@ -52,11 +60,14 @@ import java.util.Map.Entry;
 @Service("blResourceBundlingService")
 public class ResourceBundlingServiceImpl implements ResourceBundlingService {
     protected static final Log LOG = LogFactory.getLog(ResourceBundlingServiceImpl.class);
-    protected static final String DEFAULT_STORAGE_DIRECTORY = System.getProperty("java.io.tmpdir");
     
     // Map of known versioned bundle names ==> the resources that are part of that bundle
     // ex: "global12345.js" ==> [Resource("/js/BLC.js"), Resource("/js/blc-admin.js")]
-    protected Map<String, Collection<Resource>> bundles = new HashMap<String, Collection<Resource>>();
+    protected Map<String, Collection<Resource>> bundles = new ConcurrentHashMap<String, Collection<Resource>>();
+    
+    // Map of known versioned bundle names ==> the generation of that bundle's content, which is held in memory
+    // once complete. Concurrent requests for a bundle that is still being generated wait for the same generation.
+    protected ConcurrentMap<String, FutureTask<Resource>> generatedBundles = new ConcurrentHashMap<String, FutureTask<Resource>>();
     
     // Map of known bundle names ==> bundle version
     // ex: "global.js" ==> "global12345.js"
@@ -67,54 +78,98 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
     // ex: "global.js" ==> ["classpath:/file1.js", "/js/file2.js"]
     protected Map<String, List<String>> additionalBundleFiles = new HashMap<String, List<String>>();
     
-    @Value("${asset.server.file.system.path}")
-    protected String assetFileSystemPath;
+    @Value("${bundle.generation.background}")
+    protected boolean generateInBackground = true;
     
     @javax.annotation.Resource(name = "blResourceMinificationService")
     protected ResourceMinificationService minifyService;
     
+    protected volatile ExecutorService generationExecutor;
+    
     @Override
     public Resource getBundle(String versionedBundleName) {
-        // If we can find this bundle on the file system, we've already generated it
-        // and we don't need to do so again.
-        Resource r = readBundle(versionedBundleName);
-        if (r != null && r.exists()) {
+        // Bundles are generated only once, either in the background when they are registered or by the first
+        // request for them, and are then served from memory
+        FutureTask<Resource> generation = getBundleGeneration(versionedBundleName);
+        generation.run();
+        try {
+            Resource r = generation.get();
+            if (r == null) {
+                generatedBundles.remove(versionedBundleName, generation);
+            }
             return r;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            // Allow a later request to try again
+            generatedBundles.remove(versionedBundleName, generation);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
-        
-        // Otherwise, we'll create the bundle, write it to the file system, and return
-        r = createBundle(versionedBundleName);
-        saveBundle(r);
-        return r;
     }
     
-    protected Resource readBundle(String versionedBundleName) {
-        return new FileSystemResource(getFilePath(versionedBundleName));
+    protected FutureTask<Resource> getBundleGeneration(final String versionedBundleName) {
+        FutureTask<Resource> generation = generatedBundles.get(versionedBundleName);
+        if (generation == null) {
+            FutureTask<Resource> newGeneration = new FutureTask<Resource>(new Callable<Resource>() {
+                @Override
+                public Resource call() throws Exception {
+                    return createBundle(versionedBundleName);
+                }
+            });
+            generation = generatedBundles.putIfAbsent(versionedBundleName, newGeneration);
+            if (generation == null) {
+                generation = newGeneration;
+            }
+        }
+        return generation;
+    }
+    
+    protected ExecutorService getGenerationExecutor() {
+        if (generationExecutor == null) {
+            synchronized (this) {
+                if (generationExecutor == null) {
+                    generationExecutor = Executors.newSingleThreadExecutor(new BundleGenerationThreadFactory());
+                }
+            }
+        }
+        return generationExecutor;
     }
     
-    protected String getFilePath(String name) {
-        String base = StringUtils.isBlank(assetFileSystemPath) ? DEFAULT_STORAGE_DIRECTORY : assetFileSystemPath;
-        base = StringUtils.removeEnd(base, "/");
-        return base + "/bundles/" + name;
+    @PreDestroy
+    public void shutdownGenerationExecutor() {
+        if (generationExecutor != null) {
+            generationExecutor.shutdownNow();
+        }
     }
     
     protected Resource createBundle(String versionedBundleName) {
+        Collection<Resource> resources = bundles.get(versionedBundleName);
+        if (resources == null) {
+            return null;
+        }
+        
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         byte[] bytes = null;
         
         // Join all of the resources for this bundle together into a byte[]
         try {
-            for (Resource r : bundles.get(versionedBundleName)) {
+            for (Resource r : resources) {
                 InputStream is = null;
                 
                 try {
                     is = r.getInputStream();
-                    StreamUtils.copy(r.getInputStream(), baos);
+                    StreamUtils.copy(is, baos);
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 } finally {
                     try {
-                        is.close();
+                        if (is != null) {
+                            is.close();
+                        }
                     } catch (IOException e2) {
                         throw new RuntimeException(e2);
                     }
@@ -142,27 +197,12 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         // Minify the resource
         byte[] minifiedBytes = minifyService.minify(versionedBundleName, bytes);
         
-        // Create our GenerateResource that holds our combined and (potentially) minified bundle
-        GeneratedResource r = new GeneratedResource(minifiedBytes, versionedBundleName);
+        // Create our GenerateResource that holds our combined and (potentially) minified bundle, along with
+        // its compressed form and content hash
+        GeneratedResource r = new PrecompressedResource(minifiedBytes, versionedBundleName);
         return r;
     }
     
-    protected void saveBundle(Resource resource) {
-        File file = new File(getFilePath(resource.getDescription()));
-        if (!file.getParentFile().exists()) {
-            if (!file.getParentFile().mkdirs()) {
-                throw new RuntimeException("Unable to create middle directories for file: " + file.getAbsolutePath());
-            }
-        }
-        
-        try {
-            BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-            StreamUtils.copy(resource.getInputStream(), out);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
-    
     @Override
     public String getVersionedBundleName(String unversionedBundleName) {
         Element e = getBundleVersionsCache().get(unversionedBundleName);
@@ -220,9 +260,27 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         String version = getBundleVersion(foundResources);
         String versionedName = getBundleName(bundleName, version);
         
+        // The content of a previous version of this bundle is no longer referenced by new pages. It is dropped from 
+        // memory and would only be generated again if it were still requested.
+        String previousVersionedName = getVersionedBundleName(bundleName);
+        if (previousVersionedName != null && !previousVersionedName.equals(versionedName)) {
+            generatedBundles.remove(previousVersionedName);
+        }
+        
         bundles.put(versionedName, foundResources.values());
         getBundleVersionsCache().put(new Element(bundleName, versionedName));
         
+        if (generateInBackground) {
+            FutureTask<Resource> generation = getBundleGeneration(versionedName);
+            if (!generation.isDone()) {
+                try {
+                    getGenerationExecutor().execute(generation);
+                } catch (RejectedExecutionException e) {
+                    LOG.debug("Unable to generate bundle " + versionedName + " in the background", e);
+                }
+            }
+        }
+        
         return versionedName;
     }
     
@@ -269,5 +327,18 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         }
         return bundleVersionsCache;
     }
+    
+    protected static class BundleGenerationThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "resource-bundle-generation-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
 
 }
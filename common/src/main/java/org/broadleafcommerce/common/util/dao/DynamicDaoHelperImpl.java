@@ -16,7 +16,6 @@
 
 package org.broadleafcommerce.common.util.dao;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.lang3.ArrayUtils;
 import org.broadleafcommerce.common.presentation.AdminPresentationClass;
 import org.hibernate.SessionFactory;
@@ -31,64 +30,63 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class DynamicDaoHelperImpl implements DynamicDaoHelper {
     
+    /**
+     * Retained for code that coordinates with the metadata caches. Cache reads and writes no longer
+     * synchronize on this object; the caches themselves are concurrent.
+     */
     public static final Object LOCK_OBJECT = new Object();
-    public static final Map<Class<?>, Class<?>[]> POLYMORPHIC_ENTITY_CACHE = new LRUMap(100, 1000);
-    public static final Map<Class<?>, Class<?>[]> POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS = new LRUMap(100, 1000);
+    public static final Map<Class<?>, Class<?>[]> POLYMORPHIC_ENTITY_CACHE = new ConcurrentHashMap<Class<?>, Class<?>[]>();
+    public static final Map<Class<?>, Class<?>[]> POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS = new ConcurrentHashMap<Class<?>, Class<?>[]>();
     
     @Override
     public Class<?>[] getAllPolymorphicEntitiesFromCeiling(Class<?> ceilingClass, SessionFactory sessionFactory,
             boolean includeUnqualifiedPolymorphicEntities, boolean useCache) {
-        Class<?>[] cache = null;
-        synchronized(LOCK_OBJECT) {
-            if (useCache) {
-                if (includeUnqualifiedPolymorphicEntities) {
-                    cache = POLYMORPHIC_ENTITY_CACHE.get(ceilingClass);
-                } else {
-                    cache = POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS.get(ceilingClass);
-                }
+        Map<Class<?>, Class<?>[]> polymorphicCache = includeUnqualifiedPolymorphicEntities ? POLYMORPHIC_ENTITY_CACHE
+                : POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS;
+        if (useCache) {
+            Class<?>[] cache = polymorphicCache.get(ceilingClass);
+            if (cache != null) {
+                return cache;
             }
-            if (cache == null) {
-                List<Class<?>> entities = new ArrayList<Class<?>>();
-                for (Object item : sessionFactory.getAllClassMetadata().values()) {
-                    ClassMetadata metadata = (ClassMetadata) item;
-                    Class<?> mappedClass = metadata.getMappedClass();
-                    if (mappedClass != null && ceilingClass.isAssignableFrom(mappedClass)) {
-                        entities.add(mappedClass);
-                    }
-                }
-                Class<?>[] sortedEntities = sortEntities(ceilingClass, entities);
+        }
 
-                List<Class<?>> filteredSortedEntities = new ArrayList<Class<?>>();
+        List<Class<?>> entities = new ArrayList<Class<?>>();
+        for (Object item : sessionFactory.getAllClassMetadata().values()) {
+            ClassMetadata metadata = (ClassMetadata) item;
+            Class<?> mappedClass = metadata.getMappedClass();
+            if (mappedClass != null && ceilingClass.isAssignableFrom(mappedClass)) {
+                entities.add(mappedClass);
+            }
+        }
+        Class<?>[] sortedEntities = sortEntities(ceilingClass, entities);
 
-                for (int i = 0; i < sortedEntities.length; i++) {
-                    Class<?> item = sortedEntities[i];
-                    if (includeUnqualifiedPolymorphicEntities) {
-                        filteredSortedEntities.add(sortedEntities[i]);
-                    } else {
-                        if (isExcludeClassFromPolymorphism(item)) {
-                            continue;
-                        } else {
-                            filteredSortedEntities.add(sortedEntities[i]);
-                        }
-                    }
-                }
+        List<Class<?>> filteredSortedEntities = new ArrayList<Class<?>>();
 
-                Class<?>[] filteredEntities = new Class<?>[filteredSortedEntities.size()];
-                filteredEntities = filteredSortedEntities.toArray(filteredEntities);
-                cache = filteredEntities;
-                if (includeUnqualifiedPolymorphicEntities) {
-                    POLYMORPHIC_ENTITY_CACHE.put(ceilingClass, filteredEntities);
+        for (int i = 0; i < sortedEntities.length; i++) {
+            Class<?> item = sortedEntities[i];
+            if (includeUnqualifiedPolymorphicEntities) {
+                filteredSortedEntities.add(sortedEntities[i]);
+            } else {
+                if (isExcludeClassFromPolymorphism(item)) {
+                    continue;
                 } else {
-                    POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS.put(ceilingClass, filteredEntities);
+                    filteredSortedEntities.add(sortedEntities[i]);
                 }
             }
         }
 
-        return cache;
+        Class<?>[] filteredEntities = new Class<?>[filteredSortedEntities.size()];
+        filteredEntities = filteredSortedEntities.toArray(filteredEntities);
+        // The result is deterministic for a given session factory, so a concurrent caller that computed the same
+        // hierarchy first simply wins
+        polymorphicCache.put(ceilingClass, filteredEntities);
+
+        return filteredEntities;
     }
     
     @Override
@@ -16,18 +16,25 @@
 
 package org.broadleafcommerce.common.web.resource;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.resource.PrecompressedResource;
 import org.broadleafcommerce.common.resource.service.ResourceBundlingService;
 import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
 
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 
 public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHandler {
@@ -36,9 +43,67 @@ public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHand
     // XML Configured generated resource handlers
     protected List<AbstractGeneratedResourceHandler> handlers;
     
+    // The locations configured on the parent ResourceHttpRequestHandler
+    protected List<Resource> locations = Collections.emptyList();
+    
     @javax.annotation.Resource(name = "blResourceBundlingService")
     protected ResourceBundlingService bundlingService;
     
+    /**
+     * Serves registered bundles directly from their in memory, precompressed form. The gzip compressed copy is sent to
+     * clients that accept it, and each form is served with its own content hash based ETag so that unchanged bundles
+     * are answered with a 304. All other requests are handled by the normal ResourceHttpRequestHandler.
+     */
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!isBundleRequest(request)) {
+            super.handleRequest(request, response);
+            return;
+        }
+        
+        checkAndPrepare(request, response, true);
+        Resource bundle = getResource(request);
+        if (!(bundle instanceof PrecompressedResource)) {
+            if (bundle == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            } else {
+                super.handleRequest(request, response);
+            }
+            return;
+        }
+        
+        PrecompressedResource resource = (PrecompressedResource) bundle;
+        boolean compressed = resource.isCompressible() && acceptsGzip(request);
+        response.setHeader("Vary", "Accept-Encoding");
+        if (new ServletWebRequest(request, response).checkNotModified(resource.getETag(compressed))) {
+            return;
+        }
+        
+        MediaType mediaType = getMediaType(resource);
+        if (mediaType != null) {
+            response.setContentType(mediaType.toString());
+        }
+        if (compressed) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(resource.getContentLength(compressed));
+        resource.writeTo(response.getOutputStream(), compressed);
+    }
+    
+    protected boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<?> acceptEncodings = request.getHeaders("Accept-Encoding");
+        while (acceptEncodings != null && acceptEncodings.hasMoreElements()) {
+            String acceptEncoding = (String) acceptEncodings.nextElement();
+            for (String encoding : acceptEncoding.split(",")) {
+                String[] parts = encoding.trim().split(";");
+                if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                    return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+    
     /**
      * Checks to see if the requested path corresponds to a registered bundle. If so, returns the generated bundle.
      * Otherwise, checks to see if any of the configured GeneratedResourceHandlers can handle the given request.
@@ -68,17 +133,19 @@ public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHand
     }
         
     /**
-     * @return a clone of the locations list that is in {@link ResourceHttpRequestHandler}. Note that we must use
-     * reflection to access this field as it is marked private.
+     * Keeps our own copy of the locations, as the list in {@link ResourceHttpRequestHandler} is private.
+     */
+    @Override
+    public void setLocations(List<Resource> locations) {
+        super.setLocations(locations);
+        this.locations = Collections.unmodifiableList(new ArrayList<Resource>(locations));
+    }
+    
+    /**
+     * @return an unmodifiable view of the locations list that is in {@link ResourceHttpRequestHandler}
      */
-    @SuppressWarnings("unchecked")
     public List<Resource> getLocations() {
-        try {
-            List<Resource> locations = (List<Resource>) FieldUtils.readField(this, "locations", true);
-            return new ArrayList<Resource>(locations);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+        return locations;
     }
     
     /* *********** */
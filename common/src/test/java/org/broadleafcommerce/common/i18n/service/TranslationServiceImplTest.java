@@ -0,0 +1,165 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.common.i18n.service;
+
+import org.broadleafcommerce.common.i18n.dao.TranslationDao;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+public class TranslationServiceImplTest extends TestCase {
+
+    protected TranslationServiceImpl service;
+    protected TranslationDao dao;
+    protected List<Runnable> pendingBuilds;
+
+    @Override
+    protected void setUp() throws Exception {
+        pendingBuilds = new ArrayList<Runnable>();
+        dao = EasyMock.createMock(TranslationDao.class);
+        service = new TranslationServiceImpl() {
+            @Override
+            protected Executor getSnapshotExecutor() {
+                return new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        pendingBuilds.add(command);
+                    }
+                };
+            }
+        };
+        service.dao = dao;
+        service.snapshotMaxSize = 10;
+    }
+
+    public void testSnapshotLookup() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa"));
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "description", " "));
+        rows.add(buildRow(TranslatedEntity.CATEGORY, "1", "name", "Salsas"));
+        EasyMock.expect(dao.readAllTranslationValues("es", 11)).andReturn(rows);
+        EasyMock.replay(dao);
+
+        // The snapshot is built off the calling thread, and only once
+        assertNull(service.getSnapshot("es"));
+        assertNull(service.getSnapshot("es"));
+        assertEquals(1, pendingBuilds.size());
+        runPendingBuilds();
+
+        TranslationSnapshot snapshot = service.getSnapshot("es");
+        assertTrue(snapshot.isComplete());
+        assertEquals("Salsa", service.lookupTranslatedValue(TranslatedEntity.PRODUCT, "1", "name", "es"));
+        assertEquals("Salsas", service.lookupTranslatedValue(TranslatedEntity.CATEGORY, "1", "name", "es"));
+        assertNull(service.lookupTranslatedValue(TranslatedEntity.PRODUCT, "1", "description", "es"));
+        assertNull(service.lookupTranslatedValue(TranslatedEntity.PRODUCT, "2", "name", "es"));
+        assertTrue(pendingBuilds.isEmpty());
+        EasyMock.verify(dao);
+    }
+
+    public void testIncompleteSnapshot() throws Exception {
+        service.snapshotMaxSize = 1;
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa"));
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "2", "name", "Salsa Picante"));
+        EasyMock.expect(dao.readAllTranslationValues("es", 2)).andReturn(rows);
+        EasyMock.replay(dao);
+
+        service.getSnapshot("es");
+        runPendingBuilds();
+
+        assertFalse(service.getSnapshot("es").isComplete());
+        EasyMock.verify(dao);
+    }
+
+    public void testInvalidation() throws Exception {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa"));
+        List<Object[]> updatedRows = new ArrayList<Object[]>();
+        updatedRows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa Picante"));
+        EasyMock.expect(dao.readAllTranslationValues("es", 11)).andReturn(rows);
+        EasyMock.expect(dao.readAllTranslationValues("es", 11)).andReturn(updatedRows);
+        EasyMock.replay(dao);
+
+        service.getSnapshot("es");
+        runPendingBuilds();
+        assertEquals("Salsa", service.getSnapshot("es").getTranslatedValue("Product", "1", "name"));
+
+        service.invalidateTranslation(null, "1", "es");
+        assertNull(service.getSnapshot("es"));
+        runPendingBuilds();
+        assertEquals("Salsa Picante", service.getSnapshot("es").getTranslatedValue("Product", "1", "name"));
+        EasyMock.verify(dao);
+    }
+
+    public void testInvalidationDuringBuild() throws Exception {
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa"));
+        EasyMock.expect(dao.readAllTranslationValues("es", 11)).andAnswer(new IAnswer<List<Object[]>>() {
+            @Override
+            public List<Object[]> answer() throws Throwable {
+                // A translation saved while the snapshot is read may be missing from it
+                service.invalidateTranslation(null, "1", "es");
+                return rows;
+            }
+        });
+        EasyMock.replay(dao);
+
+        service.getSnapshot("es");
+        runPendingBuilds();
+
+        assertNull(service.snapshots.get("es"));
+        assertTrue(service.snapshotsLoading.isEmpty());
+        EasyMock.verify(dao);
+    }
+
+    public void testStaleSnapshotServedWhileRebuilding() throws Exception {
+        service.snapshotRefreshInterval = 0;
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(buildRow(TranslatedEntity.PRODUCT, "1", "name", "Salsa"));
+        EasyMock.expect(dao.readAllTranslationValues("es", 11)).andReturn(rows).times(2);
+        EasyMock.replay(dao);
+
+        service.getSnapshot("es");
+        runPendingBuilds();
+        TranslationSnapshot snapshot = service.snapshots.get("es");
+
+        assertSame(snapshot, service.getSnapshot("es"));
+        assertEquals(1, pendingBuilds.size());
+        runPendingBuilds();
+        assertNotSame(snapshot, service.snapshots.get("es"));
+        EasyMock.verify(dao);
+    }
+
+    protected void runPendingBuilds() {
+        List<Runnable> builds = new ArrayList<Runnable>(pendingBuilds);
+        pendingBuilds.clear();
+        for (Runnable build : builds) {
+            build.run();
+        }
+    }
+
+    protected Object[] buildRow(TranslatedEntity entityType, String entityId, String fieldName, String translatedValue) {
+        return new Object[] { entityType.getFriendlyType(), entityId, fieldName, translatedValue };
+    }
+
+}
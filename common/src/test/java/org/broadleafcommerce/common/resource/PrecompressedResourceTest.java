@@ -0,0 +1,82 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.common.resource;
+
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+public class PrecompressedResourceTest extends TestCase {
+
+    public void testCompressedCopyKeptWhenSmaller() throws Exception {
+        byte[] source = buildRepetitiveContent();
+        PrecompressedResource resource = new PrecompressedResource(source, "global1.js");
+
+        assertTrue(resource.isCompressible());
+        assertEquals(source.length, resource.getContentLength(false));
+        assertEquals(source.length, resource.contentLength());
+        assertTrue(resource.getContentLength(true) < source.length);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        resource.writeTo(compressed, true);
+        assertEquals(resource.getContentLength(true), compressed.size());
+        byte[] uncompressed = StreamUtils.copyToByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray())));
+        assertTrue(Arrays.equals(source, uncompressed));
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        resource.writeTo(plain, false);
+        assertTrue(Arrays.equals(source, plain.toByteArray()));
+    }
+
+    public void testCompressedCopyDroppedWhenNotSmaller() throws Exception {
+        byte[] source = "a".getBytes("UTF-8");
+        PrecompressedResource resource = new PrecompressedResource(source, "tiny.js");
+
+        assertFalse(resource.isCompressible());
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        resource.writeTo(plain, false);
+        assertTrue(Arrays.equals(source, plain.toByteArray()));
+    }
+
+    public void testETagsFollowContent() throws Exception {
+        byte[] source = buildRepetitiveContent();
+        PrecompressedResource resource = new PrecompressedResource(source, "global1.js");
+        String hash = DigestUtils.md5DigestAsHex(source);
+
+        assertEquals("\"" + hash + "\"", resource.getETag(false));
+        assertEquals("\"" + hash + "-gzip\"", resource.getETag(true));
+        assertEquals(hash, resource.getHashRepresentation());
+        assertEquals(resource.getETag(false), new PrecompressedResource(source.clone(), "global2.js").getETag(false));
+        assertFalse(resource.getETag(false).equals(new PrecompressedResource("b".getBytes("UTF-8"), "b.js").getETag(false)));
+    }
+
+    protected byte[] buildRepetitiveContent() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("var value").append(i % 10).append(" = 'repeated content';\n");
+        }
+        return sb.toString().getBytes("UTF-8");
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.common.resource.service;
+
+import org.broadleafcommerce.common.resource.PrecompressedResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ResourceBundlingServiceImplTest extends TestCase {
+
+    protected ResourceBundlingServiceImpl bundlingService;
+    protected AtomicInteger minifyCalls;
+    protected volatile RuntimeException minifyFailure;
+
+    @Override
+    protected void setUp() throws Exception {
+        minifyCalls = new AtomicInteger();
+        minifyFailure = null;
+        bundlingService = new ResourceBundlingServiceImpl();
+        bundlingService.generateInBackground = false;
+        bundlingService.minifyService = new ResourceMinificationService() {
+            @Override
+            public byte[] minify(String filename, byte[] bytes) {
+                minifyCalls.incrementAndGet();
+                if (minifyFailure != null) {
+                    RuntimeException e = minifyFailure;
+                    minifyFailure = null;
+                    throw e;
+                }
+                return bytes;
+            }
+        };
+    }
+
+    public void testBundleJoinsResources() throws Exception {
+        bundlingService.bundles.put("global1.js", Arrays.<Resource>asList(buildResource("var a = 1"), buildResource("var b = 2")));
+        bundlingService.bundles.put("global1.css", Arrays.<Resource>asList(buildResource("a {}"), buildResource("b {}")));
+
+        assertEquals("var a = 1;\r\nvar b = 2;\r\n", read(bundlingService.getBundle("global1.js")));
+        assertEquals("a {}\r\nb {}\r\n", read(bundlingService.getBundle("global1.css")));
+    }
+
+    public void testBundleGeneratedOnceForConcurrentRequests() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        Resource slowResource = new ByteArrayResource("var a = 1".getBytes("UTF-8")) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                reads.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getInputStream();
+            }
+        };
+        bundlingService.bundles.put("global1.js", Collections.singletonList(slowResource));
+
+        int threadCount = 4;
+        final CountDownLatch started = new CountDownLatch(threadCount);
+        final List<Resource> results = Collections.synchronizedList(new ArrayList<Resource>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    results.add(bundlingService.getBundle("global1.js"));
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        started.await(5, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(threadCount, results.size());
+        for (Resource result : results) {
+            assertSame(results.get(0), result);
+        }
+        assertTrue(results.get(0) instanceof PrecompressedResource);
+        assertEquals(1, reads.get());
+        assertEquals(1, minifyCalls.get());
+
+        // Later requests are served from memory
+        assertSame(results.get(0), bundlingService.getBundle("global1.js"));
+        assertEquals(1, minifyCalls.get());
+    }
+
+    public void testFailedGenerationRetried() throws Exception {
+        bundlingService.bundles.put("global1.js", Collections.singletonList(buildResource("var a = 1")));
+        minifyFailure = new IllegalStateException("minification failed");
+
+        try {
+            bundlingService.getBundle("global1.js");
+            fail("Expected the generation failure to be rethrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(bundlingService.generatedBundles.containsKey("global1.js"));
+
+        assertNotNull(bundlingService.getBundle("global1.js"));
+        assertEquals(2, minifyCalls.get());
+    }
+
+    public void testUnknownBundle() {
+        assertNull(bundlingService.getBundle("missing1.js"));
+        assertFalse(bundlingService.generatedBundles.containsKey("missing1.js"));
+        assertEquals(0, minifyCalls.get());
+    }
+
+    protected Resource buildResource(String content) throws Exception {
+        return new ByteArrayResource(content.getBytes("UTF-8"));
+    }
+
+    protected String read(Resource resource) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((PrecompressedResource) resource).writeTo(out, false);
+        return out.toString("UTF-8");
+    }
+
+}
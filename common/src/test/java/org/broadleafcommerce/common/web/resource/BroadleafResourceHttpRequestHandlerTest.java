@@ -0,0 +1,197 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.common.web.resource;
+
+import org.broadleafcommerce.common.resource.PrecompressedResource;
+import org.broadleafcommerce.common.resource.service.ResourceBundlingService;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class BroadleafResourceHttpRequestHandlerTest extends TestCase {
+
+    protected static final String BUNDLE = "global1.js";
+
+    protected BroadleafResourceHttpRequestHandler handler;
+    protected ResourceBundlingService bundlingService;
+    protected PrecompressedResource bundle;
+
+    protected Map<String, String> headers;
+    protected int status;
+    protected int contentLength;
+    protected ByteArrayOutputStream body;
+
+    @Override
+    protected void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("var value").append(i % 10).append(" = 'repeated content';\n");
+        }
+        bundle = new PrecompressedResource(sb.toString().getBytes("UTF-8"), BUNDLE);
+
+        bundlingService = EasyMock.createNiceMock(ResourceBundlingService.class);
+        EasyMock.expect(bundlingService.hasBundle(BUNDLE)).andReturn(true).anyTimes();
+        EasyMock.expect(bundlingService.getBundle(BUNDLE)).andReturn(bundle).anyTimes();
+        EasyMock.expect(bundlingService.hasBundle("missing1.js")).andReturn(true).anyTimes();
+        EasyMock.replay(bundlingService);
+
+        handler = new BroadleafResourceHttpRequestHandler() {
+            @Override
+            protected MediaType getMediaType(Resource resource) {
+                return MediaType.valueOf("text/javascript");
+            }
+        };
+        handler.bundlingService = bundlingService;
+
+        headers = new HashMap<String, String>();
+        status = HttpServletResponse.SC_OK;
+        contentLength = -1;
+        body = new ByteArrayOutputStream();
+    }
+
+    public void testCompressedBundleServedToGzipClients() throws Exception {
+        handler.handleRequest(buildRequest(BUNDLE, "gzip, deflate", null), buildResponse());
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals("gzip", headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", headers.get("Vary"));
+        assertEquals(bundle.getETag(true), headers.get("ETag"));
+        assertEquals(bundle.getContentLength(true), contentLength);
+        assertEquals(bundle.getContentLength(true), body.size());
+    }
+
+    public void testPlainBundleServedToOtherClients() throws Exception {
+        handler.handleRequest(buildRequest(BUNDLE, "gzip;q=0", null), buildResponse());
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertNull(headers.get("Content-Encoding"));
+        assertEquals(bundle.getETag(false), headers.get("ETag"));
+        assertEquals(bundle.getContentLength(false), contentLength);
+        assertEquals(bundle.getContentLength(false), body.size());
+    }
+
+    public void testMatchingETagAnsweredWithNotModified() throws Exception {
+        handler.handleRequest(buildRequest(BUNDLE, "gzip", bundle.getETag(true)), buildResponse());
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, status);
+        assertEquals(-1, contentLength);
+        assertEquals(0, body.size());
+    }
+
+    public void testETagOfOtherFormServesContent() throws Exception {
+        // A client that stopped accepting gzip must not be told its plain copy is still the gzip one
+        handler.handleRequest(buildRequest(BUNDLE, null, bundle.getETag(true)), buildResponse());
+
+        assertEquals(HttpServletResponse.SC_OK, status);
+        assertEquals(bundle.getETag(false), headers.get("ETag"));
+        assertEquals(bundle.getContentLength(false), body.size());
+    }
+
+    public void testMissingBundleAnsweredWithNotFound() throws Exception {
+        handler.handleRequest(buildRequest("missing1.js", "gzip", null), buildResponse());
+
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, status);
+        assertEquals(0, body.size());
+    }
+
+    public void testAcceptsGzip() {
+        assertTrue(handler.acceptsGzip(buildRequest(BUNDLE, "gzip", null)));
+        assertTrue(handler.acceptsGzip(buildRequest(BUNDLE, "deflate, GZIP;q=0.5", null)));
+        assertFalse(handler.acceptsGzip(buildRequest(BUNDLE, "gzip; q=0.0", null)));
+        assertFalse(handler.acceptsGzip(buildRequest(BUNDLE, "deflate", null)));
+        assertFalse(handler.acceptsGzip(buildRequest(BUNDLE, null, null)));
+    }
+
+    protected HttpServletRequest buildRequest(String path, String acceptEncoding, String ifNoneMatch) {
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        EasyMock.expect(request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE)).andReturn(path).anyTimes();
+        EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
+        EasyMock.expect(request.getHeaders("Accept-Encoding")).andReturn(acceptEncoding == null 
+                ? Collections.enumeration(Collections.<String>emptyList()) 
+                : Collections.enumeration(Arrays.asList(acceptEncoding))).anyTimes();
+        EasyMock.expect(request.getHeader("If-None-Match")).andReturn(ifNoneMatch).anyTimes();
+        EasyMock.replay(request);
+        return request;
+    }
+
+    protected HttpServletResponse buildResponse() throws IOException {
+        HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+        response.setHeader(EasyMock.isA(String.class), EasyMock.isA(String.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                headers.put((String) EasyMock.getCurrentArguments()[0], (String) EasyMock.getCurrentArguments()[1]);
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.expect(response.containsHeader(EasyMock.isA(String.class))).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() throws Throwable {
+                return headers.containsKey(EasyMock.getCurrentArguments()[0]);
+            }
+        }).anyTimes();
+        response.setStatus(EasyMock.anyInt());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                status = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            }
+        }).anyTimes();
+        response.sendError(EasyMock.anyInt());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                status = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            }
+        }).anyTimes();
+        response.setContentLength(EasyMock.anyInt());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                contentLength = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+        }).anyTimes();
+        EasyMock.replay(response);
+        return response;
+    }
+
+}
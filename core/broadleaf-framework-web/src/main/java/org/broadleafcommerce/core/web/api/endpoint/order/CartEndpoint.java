@@ -30,13 +30,16 @@ import org.broadleafcommerce.core.order.service.exception.UpdateCartException;
 import org.broadleafcommerce.core.pricing.service.exception.PricingException;
 import org.broadleafcommerce.core.web.api.endpoint.BaseEndpoint;
 import org.broadleafcommerce.core.web.api.endpoint.catalog.CatalogEndpoint;
+import org.broadleafcommerce.core.web.api.wrapper.OrderItemRequestDTOWrapper;
 import org.broadleafcommerce.core.web.api.wrapper.OrderWrapper;
 import org.broadleafcommerce.core.web.order.CartState;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.broadleafcommerce.profile.core.service.CustomerService;
 import org.broadleafcommerce.profile.web.core.CustomerState;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Resource;
@@ -266,6 +269,54 @@ public abstract class CartEndpoint extends BaseEndpoint {
                 .type(MediaType.TEXT_PLAIN).entity("Cart could not be found").build());
     }
 
+    /**
+     * Applies several item requests to the cart at once and prices the cart a single time afterwards. Requests without 
+     * an orderItemId add an item, requests with an orderItemId update the quantity of that item, and a quantity of 0 
+     * removes it. If any request fails, none of them are applied.
+     * 
+     * @param request
+     * @param wrappers
+     * @param priceOrder
+     * @return OrderWrapper
+     */
+    public OrderWrapper updateItems(HttpServletRequest request,
+            List<OrderItemRequestDTOWrapper> wrappers,
+            boolean priceOrder) {
+
+        Order cart = CartState.getCart();
+
+        if (cart != null) {
+            try {
+                List<OrderItemRequestDTO> orderItemRequestDTOs = new ArrayList<OrderItemRequestDTO>();
+                if (wrappers != null) {
+                    for (OrderItemRequestDTOWrapper wrapper : wrappers) {
+                        orderItemRequestDTOs.add(wrapper.unwrap(request, context));
+                    }
+                }
+
+                Order order = orderService.updateItems(cart.getId(), orderItemRequestDTOs, priceOrder);
+
+                OrderWrapper wrapper = (OrderWrapper) context.getBean(OrderWrapper.class.getName());
+                wrapper.wrapDetails(order, request);
+
+                return wrapper;
+            } catch (UpdateCartException e) {
+                if (e.getCause() instanceof ItemNotFoundException) {
+                    throw new WebApplicationException(e, Response.status(Response.Status.NOT_FOUND)
+                            .type(MediaType.TEXT_PLAIN).entity(e.getCause().getMessage()).build());
+                } else if (e.getCause() instanceof IllegalArgumentException) {
+                    throw new WebApplicationException(e, Response.status(Response.Status.BAD_REQUEST)
+                            .type(MediaType.TEXT_PLAIN).entity(e.getCause().getMessage()).build());
+                } else {
+                    throw new WebApplicationException(e, Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .type(MediaType.TEXT_PLAIN).entity("An error occured updating the items in the cart.").build());
+                }
+            }
+        }
+        throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND)
+                .type(MediaType.TEXT_PLAIN).entity("Cart could not be found").build());
+    }
+
     public OrderWrapper addOfferCode(HttpServletRequest request,
             String promoCode,
             boolean priceOrder) {
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.web.api.wrapper;
+
+import org.broadleafcommerce.core.order.service.call.OrderItemRequestDTO;
+import org.springframework.context.ApplicationContext;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * This is a JAXB wrapper around OrderItemRequestDTO, used to submit several cart item requests at once.
+ * Leave the orderItemId empty to add an item, or specify it to update the quantity of an item already in the cart.
+ * Product options are passed as item attributes.
+ */
+@XmlRootElement(name = "orderItemRequest")
+@XmlAccessorType(value = XmlAccessType.FIELD)
+public class OrderItemRequestDTOWrapper extends BaseWrapper implements APIUnwrapper<OrderItemRequestDTO> {
+
+    @XmlElement
+    protected Long orderItemId;
+
+    @XmlElement
+    protected Long productId;
+
+    @XmlElement
+    protected Long skuId;
+
+    @XmlElement
+    protected Long categoryId;
+
+    @XmlElement
+    protected Integer quantity;
+
+    @XmlElement(name = "itemAttribute")
+    @XmlElementWrapper(name = "itemAttributes")
+    protected List<MapElementWrapper> itemAttributes;
+
+    @Override
+    public OrderItemRequestDTO unwrap(HttpServletRequest request, ApplicationContext context) {
+        OrderItemRequestDTO orderItemRequestDTO = new OrderItemRequestDTO();
+        orderItemRequestDTO.setOrderItemId(this.orderItemId);
+        orderItemRequestDTO.setProductId(this.productId);
+        orderItemRequestDTO.setSkuId(this.skuId);
+        orderItemRequestDTO.setCategoryId(this.categoryId);
+        orderItemRequestDTO.setQuantity(this.quantity);
+
+        if (this.itemAttributes != null) {
+            for (MapElementWrapper itemAttribute : this.itemAttributes) {
+                orderItemRequestDTO.getItemAttributes().put(itemAttribute.getKey(), itemAttribute.getValue());
+            }
+        }
+
+        return orderItemRequestDTO;
+    }
+}
@@ -16,10 +16,14 @@
 
 package org.broadleafcommerce.core.web.catalog;
 
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.CategoryURLRouteContributor;
+
+import java.util.List;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +46,9 @@ public class CategoryHandlerMapping extends BLCAbstractHandlerMapping {
     
     @Resource(name = "blCatalogService")
     private CatalogService catalogService;
+
+    @Resource(name = "blURLRoutingService")
+    private URLRoutingService urlRoutingService;
     
     public static final String CURRENT_CATEGORY_ATTRIBUTE_NAME = "category";
 
@@ -50,7 +57,7 @@ public class CategoryHandlerMapping extends BLCAbstractHandlerMapping {
             throws Exception {      
         BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
         if (context != null && context.getRequestURIWithoutContext() != null) {
-            Category category = catalogService.findCategoryByURI(context.getRequestURIWithoutContext());
+            Category category = findCategory(context.getRequestURIWithoutContext());
 
             if (category != null) {
                 context.getRequest().setAttribute(CURRENT_CATEGORY_ATTRIBUTE_NAME, category);
@@ -59,4 +66,23 @@ public class CategoryHandlerMapping extends BLCAbstractHandlerMapping {
         }
         return null;
     }
+
+    /**
+     * Resolves the category through the url routing index when it is available, which avoids a query for 
+     * uris that do not belong to any category.
+     * 
+     * @param uri
+     * @return the category for the uri, or null if there is none
+     */
+    protected Category findCategory(String uri) {
+        List<Long> categoryIds = urlRoutingService.findTargetIds(CategoryURLRouteContributor.CATEGORY_ROUTE_TYPE, uri);
+        if (categoryIds == null) {
+            return catalogService.findCategoryByURI(uri);
+        } else if (categoryIds.isEmpty()) {
+            return null;
+        } else if (categoryIds.size() == 1) {
+            return catalogService.findCategoryById(categoryIds.get(0));
+        }
+        return catalogService.findCategoryByURI(uri);
+    }
 }
\ No newline at end of file
@@ -16,10 +16,14 @@
 
 package org.broadleafcommerce.core.web.catalog;
 
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.ProductURLRouteContributor;
+
+import java.util.List;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
@@ -42,6 +46,9 @@ public class ProductHandlerMapping extends BLCAbstractHandlerMapping {
     
     @Resource(name = "blCatalogService")
     private CatalogService catalogService;
+
+    @Resource(name = "blURLRoutingService")
+    private URLRoutingService urlRoutingService;
     
     public static final String CURRENT_PRODUCT_ATTRIBUTE_NAME = "currentProduct";
 
@@ -49,7 +56,7 @@ public class ProductHandlerMapping extends BLCAbstractHandlerMapping {
     protected Object getHandlerInternal(HttpServletRequest request) throws Exception {
         BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
         if (context != null && context.getRequestURIWithoutContext() != null) {
-            Product product = catalogService.findProductByURI(context.getRequestURIWithoutContext());
+            Product product = findProduct(context.getRequestURIWithoutContext());
             if (product != null) {
                 context.getRequest().setAttribute(CURRENT_PRODUCT_ATTRIBUTE_NAME, product);
                 return controllerName;
@@ -57,4 +64,24 @@ public class ProductHandlerMapping extends BLCAbstractHandlerMapping {
         }
         return null;
     }
+
+    /**
+     * Resolves the product through the url routing index when it is available, which avoids a query for 
+     * uris that do not belong to any product. When several products match, {@link CatalogService#findProductByURI(String)}
+     * decides between them.
+     * 
+     * @param uri
+     * @return the product for the uri, or null if there is none
+     */
+    protected Product findProduct(String uri) {
+        List<Long> productIds = urlRoutingService.findTargetIds(ProductURLRouteContributor.PRODUCT_ROUTE_TYPE, uri);
+        if (productIds == null) {
+            return catalogService.findProductByURI(uri);
+        } else if (productIds.isEmpty()) {
+            return null;
+        } else if (productIds.size() == 1) {
+            return catalogService.findProductById(productIds.get(0));
+        }
+        return catalogService.findProductByURI(uri);
+    }
 }
\ No newline at end of file
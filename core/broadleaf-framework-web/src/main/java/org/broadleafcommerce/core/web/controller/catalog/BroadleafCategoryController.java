@@ -17,8 +17,11 @@
 package org.broadleafcommerce.core.web.controller.catalog;
 
 import org.apache.commons.lang.StringUtils;
+import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.common.web.controller.BroadleafAbstractController;
 import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.search.domain.ProductSearchCriteria;
 import org.broadleafcommerce.core.search.domain.ProductSearchResult;
 import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
@@ -51,6 +54,7 @@ public class BroadleafCategoryController extends BroadleafAbstractController imp
     protected static String defaultCategoryView = "catalog/category";
     protected static String CATEGORY_ATTRIBUTE_NAME = "category";  
     protected static String PRODUCTS_ATTRIBUTE_NAME = "products";  
+    protected static String PRODUCT_SUMMARIES_ATTRIBUTE_NAME = "productSummaries";  
     protected static String FACETS_ATTRIBUTE_NAME = "facets";  
     protected static String PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME = "result";  
     protected static String ACTIVE_FACETS_ATTRIBUTE_NAME = "activeFacets";  
@@ -109,9 +113,11 @@ public class BroadleafCategoryController extends BroadleafAbstractController imp
             }
             
             facetService.setActiveFacetResults(result.getFacets(), request);
+            preloadTranslations(result.getProducts());
             
             model.addObject(CATEGORY_ATTRIBUTE_NAME, category);
             model.addObject(PRODUCTS_ATTRIBUTE_NAME, result.getProducts());
+            model.addObject(PRODUCT_SUMMARIES_ATTRIBUTE_NAME, result.getProductSummaries());
             model.addObject(FACETS_ATTRIBUTE_NAME, result.getFacets());
             model.addObject(PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME, result);
     
@@ -124,6 +130,27 @@ public class BroadleafCategoryController extends BroadleafAbstractController imp
         return model;
     }
 
+    /**
+     * Loads the translations of the products' default skus, which hold the translated product fields, in bulk rather
+     * than one sku at a time while the page renders
+     * 
+     * @param products
+     */
+    protected void preloadTranslations(List<Product> products) {
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
+        if (products == null || !TranslationConsiderationContext.hasTranslation() || brc == null 
+                || brc.getJavaLocale() == null) {
+            return;
+        }
+        List<Object> entities = new ArrayList<Object>(products.size());
+        for (Product product : products) {
+            if (product.getDefaultSku() != null) {
+                entities.add(product.getDefaultSku());
+            }
+        }
+        TranslationConsiderationContext.getTranslationService().preloadTranslations(entities, brc.getJavaLocale());
+    }
+
     public String getDefaultCategoryView() {
         return defaultCategoryView;
     }
@@ -63,6 +63,7 @@ public class BroadleafSearchController extends AbstractCatalogController {
     protected static String searchView = "catalog/search";
     
     protected static String PRODUCTS_ATTRIBUTE_NAME = "products";  
+    protected static String PRODUCT_SUMMARIES_ATTRIBUTE_NAME = "productSummaries";  
     protected static String FACETS_ATTRIBUTE_NAME = "facets";  
     protected static String PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME = "result";  
     protected static String ACTIVE_FACETS_ATTRIBUTE_NAME = "activeFacets";  
@@ -126,6 +127,7 @@ public class BroadleafSearchController extends AbstractCatalogController {
                 facetService.setActiveFacetResults(result.getFacets(), request);
                 
                 model.addAttribute(PRODUCTS_ATTRIBUTE_NAME, result.getProducts());
+                model.addAttribute(PRODUCT_SUMMARIES_ATTRIBUTE_NAME, result.getProductSummaries());
                 model.addAttribute(FACETS_ATTRIBUTE_NAME, result.getFacets());
                 model.addAttribute(PRODUCT_SEARCH_RESULT_ATTRIBUTE_NAME, result);
                 model.addAttribute(ORIGINAL_QUERY_ATTRIBUTE_NAME, query);
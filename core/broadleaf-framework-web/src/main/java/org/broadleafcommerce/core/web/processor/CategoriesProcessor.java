@@ -19,7 +19,6 @@ package org.broadleafcommerce.core.web.processor;
 import org.apache.commons.lang.StringUtils;
 import org.broadleafcommerce.common.web.dialect.AbstractModelVariableModifierProcessor;
 import org.broadleafcommerce.core.catalog.domain.Category;
-import org.broadleafcommerce.core.catalog.domain.CategoryXref;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.springframework.stereotype.Component;
 import org.thymeleaf.Arguments;
@@ -66,18 +65,19 @@ public class CategoriesProcessor extends AbstractModelVariableModifierProcessor
         List<Category> categories = catalogService.findCategoriesByName(parentCategory);
         if (categories != null && categories.size() > 0) {
             // gets child categories in order ONLY if they are in the xref table and active
-            List<CategoryXref> subcategories = categories.get(0).getChildCategoryXrefs();
-            if (subcategories != null && !subcategories.isEmpty()) {
-                if (StringUtils.isNotEmpty(unparsedMaxResults)) {
-                    int maxResults = Integer.parseInt(unparsedMaxResults);
-                    if (subcategories.size() > maxResults) {
-                        subcategories = subcategories.subList(0, maxResults);
-                    }
+            List<Long> subcategoryIds = catalogService.findActiveChildCategoryIds(categories.get(0).getId());
+            if (StringUtils.isNotEmpty(unparsedMaxResults)) {
+                int maxResults = Integer.parseInt(unparsedMaxResults);
+                if (subcategoryIds.size() > maxResults) {
+                    subcategoryIds = subcategoryIds.subList(0, maxResults);
                 }
             }
-            List<Category> results = new ArrayList<Category>(subcategories.size());
-            for (CategoryXref xref : subcategories) {
-                results.add(xref.getSubCategory());
+            List<Category> results = new ArrayList<Category>(subcategoryIds.size());
+            for (Long subcategoryId : subcategoryIds) {
+                Category subcategory = catalogService.findCategoryById(subcategoryId);
+                if (subcategory != null) {
+                    results.add(subcategory);
+                }
             }
             
             addToModel(arguments, resultVar, results);
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.web.api.endpoint.order;
+
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.service.OrderService;
+import org.broadleafcommerce.core.order.service.call.OrderItemRequestDTO;
+import org.broadleafcommerce.core.order.service.exception.ItemNotFoundException;
+import org.broadleafcommerce.core.order.service.exception.UpdateCartException;
+import org.broadleafcommerce.core.web.api.wrapper.OrderItemRequestDTOWrapper;
+import org.broadleafcommerce.core.web.api.wrapper.OrderWrapper;
+import org.broadleafcommerce.core.web.order.security.CartStateRequestProcessor;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.easymock.IExpectationSetters;
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import junit.framework.TestCase;
+
+public class CartEndpointTest extends TestCase {
+
+    protected CartEndpoint endpoint;
+    protected OrderService orderService;
+    protected Order cart;
+    protected OrderWrapper orderWrapper;
+    protected final List<List<OrderItemRequestDTO>> batches = new ArrayList<List<OrderItemRequestDTO>>();
+
+    @Override
+    protected void setUp() throws Exception {
+        cart = new OrderImpl();
+        cart.setId(1L);
+
+        orderWrapper = new OrderWrapper() {
+            @Override
+            public void wrapDetails(Order model, HttpServletRequest request) {
+                this.id = model.getId();
+            }
+        };
+        ApplicationContext context = EasyMock.createMock(ApplicationContext.class);
+        EasyMock.expect(context.getBean(OrderWrapper.class.getName())).andReturn(orderWrapper).anyTimes();
+        EasyMock.replay(context);
+
+        orderService = EasyMock.createMock(OrderService.class);
+
+        endpoint = new CartEndpoint() {};
+        endpoint.orderService = orderService;
+        endpoint.setApplicationContext(context);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    public void testMixedBatchIsPassedToOrderService() throws Exception {
+        setCart(cart);
+        expectUpdateItems().andAnswer(new IAnswer<Order>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Order answer() throws Throwable {
+                batches.add((List<OrderItemRequestDTO>) EasyMock.getCurrentArguments()[1]);
+                return cart;
+            }
+        });
+        EasyMock.replay(orderService);
+
+        List<OrderItemRequestDTOWrapper> wrappers = new ArrayList<OrderItemRequestDTOWrapper>();
+        wrappers.add(createWrapper(null, 10L, 1));
+        wrappers.add(createWrapper(100L, null, 3));
+        wrappers.add(createWrapper(101L, null, 0));
+
+        assertSame(orderWrapper, endpoint.updateItems(null, wrappers, true));
+
+        EasyMock.verify(orderService);
+        assertEquals(1, batches.size());
+        List<OrderItemRequestDTO> batch = batches.get(0);
+        assertEquals(3, batch.size());
+        assertNull(batch.get(0).getOrderItemId());
+        assertEquals(Long.valueOf(10L), batch.get(0).getSkuId());
+        assertEquals(Integer.valueOf(1), batch.get(0).getQuantity());
+        assertEquals(Long.valueOf(100L), batch.get(1).getOrderItemId());
+        assertEquals(Integer.valueOf(3), batch.get(1).getQuantity());
+        assertEquals(Long.valueOf(101L), batch.get(2).getOrderItemId());
+        assertEquals(Integer.valueOf(0), batch.get(2).getQuantity());
+    }
+
+    public void testInvalidRequestIsBadRequest() throws Exception {
+        setCart(cart);
+        expectUpdateItems().andThrow(new UpdateCartException("Could not update cart items", 
+                new IllegalArgumentException("Quantity must be greater than zero when adding an item")));
+        EasyMock.replay(orderService);
+
+        assertStatus(Response.Status.BAD_REQUEST, createWrapper(null, 10L, 0));
+    }
+
+    public void testUnknownItemIsNotFound() throws Exception {
+        setCart(cart);
+        expectUpdateItems().andThrow(new UpdateCartException("Could not update cart items", 
+                new ItemNotFoundException("Order Item (200) not found in Order (1)")));
+        EasyMock.replay(orderService);
+
+        assertStatus(Response.Status.NOT_FOUND, createWrapper(200L, null, 1));
+    }
+
+    public void testMissingCartIsNotFound() throws Exception {
+        setCart(null);
+        EasyMock.replay(orderService);
+
+        assertStatus(Response.Status.NOT_FOUND, createWrapper(null, 10L, 1));
+        EasyMock.verify(orderService);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected IExpectationSetters<Order> expectUpdateItems() throws Exception {
+        return EasyMock.expect(orderService.updateItems(EasyMock.eq(cart.getId()), (List<OrderItemRequestDTO>) EasyMock.anyObject(), 
+                EasyMock.eq(true)));
+    }
+
+    protected void assertStatus(Response.Status expected, OrderItemRequestDTOWrapper... wrappers) {
+        List<OrderItemRequestDTOWrapper> batch = new ArrayList<OrderItemRequestDTOWrapper>();
+        for (OrderItemRequestDTOWrapper wrapper : wrappers) {
+            batch.add(wrapper);
+        }
+        try {
+            endpoint.updateItems(null, batch, true);
+            fail("Expected the batch to be rejected");
+        } catch (WebApplicationException e) {
+            assertEquals(expected.getStatusCode(), e.getResponse().getStatus());
+        }
+    }
+
+    protected void setCart(Order cart) {
+        WebRequest webRequest = EasyMock.createMock(WebRequest.class);
+        EasyMock.expect(webRequest.getAttribute(CartStateRequestProcessor.getCartRequestAttributeName(), WebRequest.SCOPE_REQUEST))
+                .andReturn(cart).anyTimes();
+        EasyMock.replay(webRequest);
+
+        BroadleafRequestContext requestContext = new BroadleafRequestContext();
+        requestContext.setWebRequest(webRequest);
+        BroadleafRequestContext.setBroadleafRequestContext(requestContext);
+    }
+
+    protected OrderItemRequestDTOWrapper createWrapper(final Long orderItemId, final Long skuId, final Integer quantity) {
+        return new OrderItemRequestDTOWrapper() {
+            {
+                this.orderItemId = orderItemId;
+                this.skuId = skuId;
+                this.quantity = quantity;
+            }
+        };
+    }
+
+}
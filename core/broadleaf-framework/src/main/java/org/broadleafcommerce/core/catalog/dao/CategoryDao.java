@@ -21,8 +21,11 @@ import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * {@code CategoryDao} provides persistence access to {@code Category} instances.
@@ -191,4 +194,59 @@ public interface CategoryDao {
     @Nonnull
     public Category findCategoryByURI(String uri);
 
+    /**
+     * Reads the ids of the products assigned to every category, without loading the categories or products 
+     * themselves. Within each category, the product ids are in the same order as {@link Category#getAllProductXrefs()}.
+     * 
+     * @return a map of category id to the ordered ids of the products in that category
+     */
+    @Nonnull
+    public Map<Long, List<Long>> readAllProductIdsByCategory();
+
+    /**
+     * Reads the url of every category that has one, without loading the categories themselves
+     * 
+     * @return a map of category id to the category's url
+     */
+    @Nonnull
+    public Map<Long, String> readAllCategoryUrls();
+
+    /**
+     * Reads the fields of every category that are needed to build the category tree, without loading the categories
+     * themselves. Each row holds the category id, the id of its default parent category (or null), its url key, 
+     * name, active start date, active end date and archived flag, in that order.
+     * 
+     * @return a row for every category
+     */
+    @Nonnull
+    public List<Object[]> readAllCategoryTreeNodes();
+
+    /**
+     * Reads the ids of the child categories of every category, without loading the categories themselves. Within 
+     * each category, the child ids are in the same order as {@link Category#getAllChildCategoryXrefs()}.
+     * 
+     * @return a map of category id to the ordered ids of its child categories
+     */
+    @Nonnull
+    public Map<Long, List<Long>> readAllChildCategoryIdsByCategory();
+
+    /**
+     * Reads the url of a single category, without loading the category itself
+     * 
+     * @param categoryId
+     * @return the url of the category, or null if the category does not exist or has no url
+     */
+    @Nullable
+    public String readCategoryUrlById(@Nonnull Long categoryId);
+
+    /**
+     * Reads the ids of the direct parents of every category, without loading the categories themselves. The parents
+     * of a category are its default parent category as well as the categories referenced by 
+     * {@link Category#getAllParentCategoryXrefs()}.
+     * 
+     * @return a map of category id to the ids of its direct parent categories
+     */
+    @Nonnull
+    public Map<Long, Set<Long>> readAllParentCategoryIdsByCategory();
+
 }
@@ -24,7 +24,12 @@ import org.broadleafcommerce.core.catalog.domain.Product;
 import org.hibernate.ejb.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -218,4 +223,83 @@ public class CategoryDaoImpl implements CategoryDao {
         }
     }
 
+    @Override
+    public Map<Long, List<Long>> readAllProductIdsByCategory() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_CATEGORY_PRODUCT_IDS", Object[].class);
+
+        Map<Long, List<Long>> productIds = new HashMap<Long, List<Long>>();
+        for (Object[] row : query.getResultList()) {
+            Long categoryId = (Long) row[0];
+            List<Long> categoryProductIds = productIds.get(categoryId);
+            if (categoryProductIds == null) {
+                categoryProductIds = new ArrayList<Long>();
+                productIds.put(categoryId, categoryProductIds);
+            }
+            categoryProductIds.add((Long) row[1]);
+        }
+        return productIds;
+    }
+
+    @Override
+    public Map<Long, String> readAllCategoryUrls() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_CATEGORY_URLS", Object[].class);
+
+        Map<Long, String> urls = new HashMap<Long, String>();
+        for (Object[] row : query.getResultList()) {
+            urls.put((Long) row[0], (String) row[1]);
+        }
+        return urls;
+    }
+
+    @Override
+    public List<Object[]> readAllCategoryTreeNodes() {
+        return em.createNamedQuery("BC_READ_ALL_CATEGORY_TREE_NODES", Object[].class).getResultList();
+    }
+
+    @Override
+    public Map<Long, List<Long>> readAllChildCategoryIdsByCategory() {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_ALL_CATEGORY_CHILD_IDS", Object[].class);
+
+        Map<Long, List<Long>> childIds = new HashMap<Long, List<Long>>();
+        for (Object[] row : query.getResultList()) {
+            Long categoryId = (Long) row[0];
+            List<Long> categoryChildIds = childIds.get(categoryId);
+            if (categoryChildIds == null) {
+                categoryChildIds = new ArrayList<Long>();
+                childIds.put(categoryId, categoryChildIds);
+            }
+            categoryChildIds.add((Long) row[1]);
+        }
+        return childIds;
+    }
+
+    @Override
+    public String readCategoryUrlById(Long categoryId) {
+        TypedQuery<String> query = em.createNamedQuery("BC_READ_CATEGORY_URL_BY_ID", String.class);
+        query.setParameter("categoryId", categoryId);
+
+        List<String> results = query.getResultList();
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    @Override
+    public Map<Long, Set<Long>> readAllParentCategoryIdsByCategory() {
+        Map<Long, Set<Long>> parentIds = new HashMap<Long, Set<Long>>();
+        addParentCategoryIds(parentIds, em.createNamedQuery("BC_READ_ALL_CATEGORY_DEFAULT_PARENT_IDS", Object[].class));
+        addParentCategoryIds(parentIds, em.createNamedQuery("BC_READ_ALL_CATEGORY_XREF_PARENT_IDS", Object[].class));
+        return parentIds;
+    }
+
+    protected void addParentCategoryIds(Map<Long, Set<Long>> parentIds, TypedQuery<Object[]> query) {
+        for (Object[] row : query.getResultList()) {
+            Long categoryId = (Long) row[0];
+            Set<Long> categoryParentIds = parentIds.get(categoryId);
+            if (categoryParentIds == null) {
+                categoryParentIds = new HashSet<Long>();
+                parentIds.put(categoryId, categoryParentIds);
+            }
+            categoryParentIds.add((Long) row[1]);
+        }
+    }
+
 }
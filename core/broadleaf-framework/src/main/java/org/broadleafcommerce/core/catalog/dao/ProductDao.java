@@ -211,6 +211,19 @@ public interface ProductDao {
      */
     public List<Product> readAllActiveProducts(int page, int pageSize, Date currentDate);
 
+    /**
+     * Reads the ids of products that are currently active, ordered by id. Rather than paging with an offset, this
+     * method seeks past the given lastId, which keeps the cost of each page constant regardless of how deep into
+     * the catalog the caller has already read. Callers should pass null for the first page and then the last id of
+     * the previously returned page.
+     * 
+     * @param lastId - the largest id returned by the previous page, or null to start from the beginning
+     * @param pageSize - the maximum number of ids to return
+     * @param currentDate
+     * @return a list of active product ids greater than lastId, in ascending order
+     */
+    public List<Long> readAllActiveProductIds(Long lastId, int pageSize, Date currentDate);
+
     /**
      * Returns the number of products that are currently active.
      * 
@@ -219,6 +232,24 @@ public interface ProductDao {
      */
     public Long readCountAllActiveProducts(Date currentDate);
 
+    /**
+     * Reads the url and url key of every product that has either, without loading the products themselves. Each row
+     * holds the product id, the url and the url key, in that order.
+     * 
+     * @return the id, url and url key of every product with a url or url key
+     */
+    @Nonnull
+    public List<Object[]> readAllProductUrls();
+
+    /**
+     * Reads the url and url key of a single product, in the same form as {@link #readAllProductUrls()}
+     * 
+     * @param productId
+     * @return a list with the id, url and url key of the product, or an empty list if the product does not exist
+     */
+    @Nonnull
+    public List<Object[]> readProductUrlsById(@Nonnull Long productId);
+
     /**
      * Returns the number of milliseconds that the current date/time will be cached for queries before refreshing.
      * This aids in query caching, otherwise every query that utilized current date would be different and caching
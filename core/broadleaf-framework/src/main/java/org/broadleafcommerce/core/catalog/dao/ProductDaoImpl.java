@@ -445,6 +445,18 @@ public class ProductDaoImpl implements ProductDao {
         return results;
     }
 
+    @Override
+    public List<Object[]> readAllProductUrls() {
+        return em.createNamedQuery("BC_READ_ALL_PRODUCT_URLS", Object[].class).getResultList();
+    }
+
+    @Override
+    public List<Object[]> readProductUrlsById(Long productId) {
+        TypedQuery<Object[]> query = em.createNamedQuery("BC_READ_PRODUCT_URLS_BY_ID", Object[].class);
+        query.setParameter("productId", productId);
+        return query.getResultList();
+    }
+
     @Override
     public List<Product> readAllActiveProducts(int page, int pageSize, Date currentDate) {
         CriteriaQuery<Product> criteria = getCriteriaForActiveProducts(currentDate);
@@ -456,6 +468,39 @@ public class ProductDaoImpl implements ProductDao {
         return query.setFirstResult(firstResult).setMaxResults(pageSize).getResultList();
     }
 
+    @Override
+    public List<Long> readAllActiveProductIds(Long lastId, int pageSize, Date currentDate) {
+        // Set up the criteria query that specifies we want to return product ids
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+
+        // The root of our search is Product
+        Root<ProductImpl> product = criteria.from(ProductImpl.class);
+
+        // We need to filter on active date on the sku
+        Join<Product, Sku> sku = product.join("defaultSku");
+
+        criteria.select(product.get("id").as(Long.class));
+
+        // Ensure the product is currently active
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        attachActiveRestriction(currentDate, product, sku, restrictions);
+
+        // Seek past the last id we returned instead of using an offset
+        if (lastId != null) {
+            restrictions.add(builder.greaterThan(product.get("id").as(Long.class), lastId));
+        }
+
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(product.get("id")));
+
+        TypedQuery<Long> query = em.createQuery(criteria);
+        query.setHint(QueryHints.HINT_CACHEABLE, true);
+        query.setHint(QueryHints.HINT_CACHE_REGION, "query.Catalog");
+
+        return query.setMaxResults(pageSize).getResultList();
+    }
+
     @Override
     public List<Product> readAllActiveProducts(Date currentDate) {
         CriteriaQuery<Product> criteria = getCriteriaForActiveProducts(currentDate);
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.core.rating.domain.RatingDetail;
+import org.broadleafcommerce.core.rating.domain.RatingSummary;
+import org.broadleafcommerce.core.rating.service.type.RatingType;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+
+/**
+ * Publishes a {@link CatalogPersistedEvent} for the product affected by a change to a {@link Product}, {@link Sku}, 
+ * {@link CategoryProductXref} or {@link ProductAttribute}, or to the {@link RatingSummary} or a {@link RatingDetail} 
+ * of a product. The product id is resolved while the entity is still attached and the event is only published once the surrounding transaction commits, so listeners never see changes
+ * that were rolled back.
+ *
+ * @see {@link CatalogPersistedEvent}
+ * @see {@link org.broadleafcommerce.core.search.service.solr.SolrIndexQueueService}
+ */
+public class CatalogPersistedEntityListener {
+
+    /**
+     * Invoked on PostPersist, PostUpdate and PostRemove.
+     * 
+     * @param entity the catalog entity that changed
+     */
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void catalogEntityUpdated(final Object entity) {
+        final Long productId = getAffectedProductId(entity);
+        if (productId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+                    if (context != null) {
+                        context.publishEvent(new CatalogPersistedEvent(productId));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param entity
+     * @return the id of the product whose search representation may have changed, or null if there is none
+     */
+    protected Long getAffectedProductId(Object entity) {
+        Product product = null;
+        if (entity instanceof Product) {
+            product = (Product) entity;
+        } else if (entity instanceof Sku) {
+            product = ((Sku) entity).getProduct();
+        } else if (entity instanceof CategoryProductXref) {
+            product = ((CategoryProductXref) entity).getProduct();
+        } else if (entity instanceof ProductAttribute) {
+            product = ((ProductAttribute) entity).getProduct();
+        } else if (entity instanceof RatingDetail) {
+            return getRatedProductId(((RatingDetail) entity).getRatingSummary());
+        } else if (entity instanceof RatingSummary) {
+            return getRatedProductId((RatingSummary) entity);
+        }
+        return product == null ? null : product.getId();
+    }
+
+    /**
+     * @param ratingSummary
+     * @return the id of the rated product, or null if the summary does not rate a product
+     */
+    protected Long getRatedProductId(RatingSummary ratingSummary) {
+        if (ratingSummary == null || !RatingType.PRODUCT.equals(ratingSummary.getRatingType())) {
+            return null;
+        }
+        try {
+            return Long.valueOf(ratingSummary.getItemId());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.springframework.context.ApplicationEvent;
+
+
+/**
+ * An event for whenever a catalog entity that contributes to a product's search representation has been persisted
+ * or removed
+ *
+ * @see {@link CatalogPersistedEntityListener}
+ */
+public class CatalogPersistedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param productId the id of the product that was affected by the change
+     */
+    public CatalogPersistedEvent(Long productId) {
+        super(productId);
+    }
+
+    /**
+     * Gets the id of the product affected by the change
+     * 
+     * @return
+     */
+    public Long getProductId() {
+        return (Long) source;
+    }
+
+}
@@ -60,6 +60,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +72,7 @@ import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -94,6 +96,7 @@ import javax.persistence.Transient;
  * @author Jeff Fischer
  */
 @Entity
+@EntityListeners(value = { CategoryPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name="BLC_CATEGORY")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region="blStandardElements")
@@ -706,25 +709,29 @@ public class CategoryImpl implements Category, Status, AdminMainEntity {
             currentHierarchy = new ArrayList<Category>();
             currentHierarchy.add(this);
         }
-        
+        // Track the visited categories in a set so that each parent check is constant time
+        addParentCategories(this, currentHierarchy, new HashSet<Category>(currentHierarchy));
+        return currentHierarchy;
+    }
+
+    protected static void addParentCategories(Category category, List<Category> currentHierarchy, Set<Category> visited) {
         List<Category> myParentCategories = new ArrayList<Category>();
-        if (defaultParentCategory != null) {
-            myParentCategories.add(defaultParentCategory);
+        if (category.getDefaultParentCategory() != null) {
+            myParentCategories.add(category.getDefaultParentCategory());
         }
-        if (allParentCategoryXrefs != null && allParentCategoryXrefs.size() > 0) {
-            for (CategoryXref parent : allParentCategoryXrefs) {
+        List<CategoryXref> parentXrefs = category.getAllParentCategoryXrefs();
+        if (parentXrefs != null && parentXrefs.size() > 0) {
+            for (CategoryXref parent : parentXrefs) {
                 myParentCategories.add(parent.getCategory());
             }
         }
 
-        for (Category category : myParentCategories) {
-            if (!currentHierarchy.contains(category)) {
-                currentHierarchy.add(category);
-                category.buildFullCategoryHierarchy(currentHierarchy);
+        for (Category parentCategory : myParentCategories) {
+            if (visited.add(parentCategory)) {
+                currentHierarchy.add(parentCategory);
+                addParentCategories(parentCategory, currentHierarchy, visited);
             }
         }
-        
-        return currentHierarchy;
     }
     
     @Override
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+
+/**
+ * Publishes a {@link CategoryPersistedEvent} once the transaction that persisted or removed a {@link Category}, or
+ * one of the {@link CategoryXref}s that place it under another category, commits
+ *
+ * @see {@link CategoryPersistedEvent}
+ */
+public class CategoryPersistedEntityListener {
+
+    /**
+     * Invoked on PostPersist, PostUpdate and PostRemove.
+     * 
+     * @param entity the category or category xref that changed
+     */
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void categoryUpdated(final Object entity) {
+        final Long categoryId = getAffectedCategoryId(entity);
+        if (categoryId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+                    if (context != null) {
+                        context.publishEvent(new CategoryPersistedEvent(categoryId));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @param entity
+     * @return the id of the category whose place in the category tree may have changed, or null if there is none
+     */
+    protected Long getAffectedCategoryId(Object entity) {
+        Category category = null;
+        if (entity instanceof Category) {
+            category = (Category) entity;
+        } else if (entity instanceof CategoryXref) {
+            category = ((CategoryXref) entity).getSubCategory();
+        }
+        return category == null ? null : category.getId();
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.springframework.context.ApplicationEvent;
+
+
+/**
+ * An event for whenever a {@link Category}, or its place in the category tree, has been persisted or removed
+ *
+ * @see {@link CategoryPersistedEntityListener}
+ */
+public class CategoryPersistedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param categoryId the id of the category that changed
+     */
+    public CategoryPersistedEvent(Long categoryId) {
+        super(categoryId);
+    }
+
+    /**
+     * Gets the id of the category that changed
+     * 
+     * @return
+     */
+    public Long getCategoryId() {
+        return (Long) source;
+    }
+
+}
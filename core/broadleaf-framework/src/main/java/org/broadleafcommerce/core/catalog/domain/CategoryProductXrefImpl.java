@@ -28,6 +28,7 @@ import org.hibernate.annotations.PolymorphismType;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.Table;
@@ -49,6 +50,7 @@ import javax.persistence.Table;
  * @author btaylor
  */
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Polymorphism(type = PolymorphismType.EXPLICIT)
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_CATEGORY_PRODUCT_XREF")
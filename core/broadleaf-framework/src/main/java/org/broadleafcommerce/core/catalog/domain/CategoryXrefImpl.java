@@ -27,6 +27,7 @@ import org.hibernate.annotations.PolymorphismType;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.Table;
@@ -39,6 +40,7 @@ import javax.persistence.Table;
  *
  */
 @Entity
+@EntityListeners(value = { CategoryPersistedEntityListener.class })
 @Polymorphism(type = PolymorphismType.EXPLICIT)
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_CATEGORY_XREF")
@@ -27,6 +27,7 @@ import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -39,6 +40,7 @@ import javax.persistence.Table;
  * The Class ProductAttributeImpl.
  */
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name="BLC_PRODUCT_ATTRIBUTE")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region="blStandardElements")
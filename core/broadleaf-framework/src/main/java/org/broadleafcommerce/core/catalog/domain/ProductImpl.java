@@ -62,6 +62,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -95,6 +96,7 @@ import javax.persistence.Transient;
  * @see {@link Product}, {@link SkuImpl}, {@link CategoryImpl}
  */
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @javax.persistence.Table(name="BLC_PRODUCT")
 //multi-column indexes don't appear to get exported correctly when declared at the field level, so declaring here as a workaround
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.money.Money;
+
+import java.io.Serializable;
+
+/**
+ * A compact, read-only view of the data needed to render a product on a listing page, such as search results or a
+ * category page. Summaries are built from the {@link Product} entities by 
+ * {@link org.broadleafcommerce.core.catalog.service.ProductSummaryService}, which caches them so that a page of 
+ * results can be rendered without loading the Product, Sku and Media entities of every product on the page.
+ * 
+ * Prices are those of the default Sku and names are translated for the locale the summary was built for.
+ */
+public class ProductSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected Long productId;
+    protected Long defaultSkuId;
+    protected String name;
+    protected String url;
+    protected Money retailPrice;
+    protected Money salePrice;
+    protected boolean onSale;
+    protected String primaryMediaUrl;
+    protected String primaryMediaAltText;
+    protected Double averageRating;
+    protected Integer numberOfRatings;
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getDefaultSkuId() {
+        return defaultSkuId;
+    }
+
+    public void setDefaultSkuId(Long defaultSkuId) {
+        this.defaultSkuId = defaultSkuId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Money getRetailPrice() {
+        return retailPrice;
+    }
+
+    public void setRetailPrice(Money retailPrice) {
+        this.retailPrice = retailPrice;
+    }
+
+    public Money getSalePrice() {
+        return salePrice;
+    }
+
+    public void setSalePrice(Money salePrice) {
+        this.salePrice = salePrice;
+    }
+
+    public boolean isOnSale() {
+        return onSale;
+    }
+
+    public void setOnSale(boolean onSale) {
+        this.onSale = onSale;
+    }
+
+    /**
+     * @return the sale price if the product is on sale, otherwise the retail price
+     */
+    public Money getPrice() {
+        return onSale ? salePrice : retailPrice;
+    }
+
+    public String getPrimaryMediaUrl() {
+        return primaryMediaUrl;
+    }
+
+    public void setPrimaryMediaUrl(String primaryMediaUrl) {
+        this.primaryMediaUrl = primaryMediaUrl;
+    }
+
+    public String getPrimaryMediaAltText() {
+        return primaryMediaAltText;
+    }
+
+    public void setPrimaryMediaAltText(String primaryMediaAltText) {
+        this.primaryMediaAltText = primaryMediaAltText;
+    }
+
+    /**
+     * @return the average rating of the product, or null if it has not been rated
+     */
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    /**
+     * @return the number of ratings of the product, or null if it has not been rated
+     */
+    public Integer getNumberOfRatings() {
+        return numberOfRatings;
+    }
+
+    public void setNumberOfRatings(Integer numberOfRatings) {
+        this.numberOfRatings = numberOfRatings;
+    }
+
+}
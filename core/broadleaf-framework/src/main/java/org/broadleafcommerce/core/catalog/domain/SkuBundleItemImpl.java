@@ -23,16 +23,13 @@ import org.broadleafcommerce.common.presentation.PopulateToOneFieldsEnum;
 import org.broadleafcommerce.common.presentation.RequiredOverride;
 import org.broadleafcommerce.common.presentation.client.SupportedFieldType;
 import org.broadleafcommerce.common.presentation.client.VisibilityEnum;
-import org.broadleafcommerce.core.catalog.service.dynamic.DefaultDynamicSkuPricingInvocationHandler;
-import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPrices;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPriceView;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Parameter;
-import org.springframework.util.ClassUtils;
 
-import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 
 import javax.persistence.Column;
@@ -44,7 +41,6 @@ import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
-import javax.persistence.Transient;
 
 @Entity
 @Inheritance(strategy = InheritanceType.JOINED)
@@ -92,9 +88,6 @@ public class SkuBundleItemImpl implements SkuBundleItem {
     @AdminPresentationToOneLookup()
     protected Sku sku;
 
-    @Transient
-    protected DynamicSkuPrices dynamicPrices = null;
-
     @Override
     public Long getId() {
         return id;
@@ -119,14 +112,9 @@ public class SkuBundleItemImpl implements SkuBundleItem {
         Money returnPrice = null;
         
         if (SkuPricingConsiderationContext.hasDynamicPricing()) {
-            if (dynamicPrices != null) {
-                returnPrice = dynamicPrices.getSalePrice();
-            } else {
-                DefaultDynamicSkuPricingInvocationHandler handler = new DefaultDynamicSkuPricingInvocationHandler(sku, salePrice);
-                Sku proxy = (Sku) Proxy.newProxyInstance(sku.getClass().getClassLoader(), ClassUtils.getAllInterfacesForClass(sku.getClass()), handler);
-                dynamicPrices = SkuPricingConsiderationContext.getSkuPricingService().getSkuPrices(proxy, SkuPricingConsiderationContext.getSkuPricingConsiderationContext());
-                returnPrice = dynamicPrices.getSalePrice();
-            }
+            Money salePriceOverride = salePrice == null ? null : new Money(salePrice);
+            SkuPriceView priceView = SkuPriceView.forSku(sku).withSalePriceOverride(salePriceOverride);
+            returnPrice = SkuPricingConsiderationContext.getSkuPrices(priceView).getSalePrice();
         } else {
             if (salePrice != null) {
                 returnPrice = new Money(salePrice,Money.defaultCurrency());
@@ -181,6 +169,8 @@ public class SkuBundleItemImpl implements SkuBundleItem {
     
     @Override
     public void clearDynamicPrices() {
-        this.dynamicPrices = null;
+        if (sku != null && sku.getId() != null) {
+            SkuPricingConsiderationContext.clearSkuPrices(sku.getId());
+        }
     }
 }
@@ -39,9 +39,9 @@ import org.broadleafcommerce.common.presentation.client.SupportedFieldType;
 import org.broadleafcommerce.common.presentation.client.VisibilityEnum;
 import org.broadleafcommerce.common.util.DateUtil;
 import org.broadleafcommerce.core.catalog.domain.ProductImpl.Presentation;
-import org.broadleafcommerce.core.catalog.service.dynamic.DefaultDynamicSkuPricingInvocationHandler;
 import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPrices;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuActiveDateConsiderationContext;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPriceView;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
 import org.broadleafcommerce.core.inventory.service.type.InventoryType;
 import org.broadleafcommerce.core.order.domain.FulfillmentOption;
@@ -55,9 +55,7 @@ import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
 import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
-import org.springframework.util.ClassUtils;
 
-import java.lang.reflect.Proxy;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
@@ -71,6 +69,7 @@ import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
@@ -88,7 +87,6 @@ import javax.persistence.MapKeyJoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
-import javax.persistence.Transient;
 
 /**
  * The Class SkuImpl is the default implementation of {@link Sku}. A SKU is a
@@ -115,6 +113,7 @@ import javax.persistence.Transient;
  * @see {@link Sku}
  */
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_SKU")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "blStandardElements")
@@ -225,9 +224,6 @@ public class SkuImpl implements Sku {
     @Embedded
     protected Weight weight = new Weight();
 
-    @Transient
-    protected DynamicSkuPrices dynamicPrices = null;
-
     @Column(name = "IS_MACHINE_SORTABLE")
     @AdminPresentation(friendlyName = "ProductImpl_Is_Product_Machine_Sortable", order = 10000,
         tab = ProductImpl.Presentation.Tab.Name.Shipping, tabOrder = ProductImpl.Presentation.Tab.Order.Shipping,
@@ -403,13 +399,7 @@ public class SkuImpl implements Sku {
 
         if (SkuPricingConsiderationContext.hasDynamicPricing()) {
             // We have dynamic pricing, so we will pull the sale price from there
-            if (dynamicPrices == null) {
-                DefaultDynamicSkuPricingInvocationHandler handler = new DefaultDynamicSkuPricingInvocationHandler(this);
-                Sku proxy = (Sku) Proxy.newProxyInstance(getClass().getClassLoader(), ClassUtils.getAllInterfacesForClass(getClass()), handler);
-
-                dynamicPrices = SkuPricingConsiderationContext.getSkuPricingService().getSkuPrices(proxy, SkuPricingConsiderationContext.getSkuPricingConsiderationContext());
-            }
-            
+            DynamicSkuPrices dynamicPrices = SkuPricingConsiderationContext.getSkuPrices(buildPriceView());
             returnPrice = dynamicPrices.getSalePrice();
             optionValueAdjustments = dynamicPrices.getPriceAdjustment();
         } else if (salePrice != null) {
@@ -446,13 +436,7 @@ public class SkuImpl implements Sku {
 
         if (SkuPricingConsiderationContext.hasDynamicPricing()) {
             // We have dynamic pricing, so we will pull the retail price from there
-            if (dynamicPrices == null) {
-                DefaultDynamicSkuPricingInvocationHandler handler = new DefaultDynamicSkuPricingInvocationHandler(this);
-                Sku proxy = (Sku) Proxy.newProxyInstance(getClass().getClassLoader(), ClassUtils.getAllInterfacesForClass(getClass()), handler);
-
-                dynamicPrices = SkuPricingConsiderationContext.getSkuPricingService().getSkuPrices(proxy, SkuPricingConsiderationContext.getSkuPricingConsiderationContext());
-            }
-            
+            DynamicSkuPrices dynamicPrices = SkuPricingConsiderationContext.getSkuPrices(buildPriceView());
             returnPrice = dynamicPrices.getRetailPrice();
             optionValueAdjustments = dynamicPrices.getPriceAdjustment();
         } else if (retailPrice != null) {
@@ -867,7 +851,20 @@ public class SkuImpl implements Sku {
 
     @Override
     public void clearDynamicPrices() {
-        this.dynamicPrices = null;
+        if (getId() != null) {
+            SkuPricingConsiderationContext.clearSkuPrices(getId());
+        }
+    }
+
+    /**
+     * Builds the view of the prices stored on this sku that is handed to the 
+     * {@link org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService}
+     * 
+     * @return the view
+     */
+    public SkuPriceView buildPriceView() {
+        return new SkuPriceView(this, retailPrice == null ? null : new Money(retailPrice), 
+                salePrice == null ? null : new Money(salePrice));
     }
 
     @Override
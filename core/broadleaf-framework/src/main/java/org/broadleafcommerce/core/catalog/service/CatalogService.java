@@ -29,6 +29,7 @@ import org.broadleafcommerce.core.search.domain.ProductSearchCriteria;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface CatalogService {
 
@@ -155,6 +156,34 @@ public interface CatalogService {
     @Deprecated
     public Map<String, List<Long>> getChildCategoryURLMapByCategoryId(Long categoryId);
 
+    /**
+     * Gets the ids of the given category and all of its ancestors, through both the default parent category and
+     * the parent category xrefs
+     * 
+     * @param categoryId
+     * @return the ids of the category and its ancestors
+     * @see {@link Category#buildFullCategoryHierarchy(List)}
+     */
+    public Set<Long> findCategoryHierarchyIds(Long categoryId);
+
+    /**
+     * Gets the ids of every category below the given category, through both the default parent category and the 
+     * child category xrefs
+     * 
+     * @param categoryId
+     * @return the ids of the descendants of the category
+     */
+    public Set<Long> findDescendantCategoryIds(Long categoryId);
+
+    /**
+     * Gets the ids of the active child categories of the given category, in display order
+     * 
+     * @param categoryId
+     * @return the ids of the active child categories
+     * @see {@link Category#getChildCategoryXrefs()}
+     */
+    public List<Long> findActiveChildCategoryIds(Long categoryId);
+
     public Category createCategory();
     
     public Sku createSku();
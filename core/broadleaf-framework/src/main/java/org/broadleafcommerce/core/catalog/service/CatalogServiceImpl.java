@@ -21,6 +21,7 @@ import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.dao.ProductOptionDao;
 import org.broadleafcommerce.core.catalog.dao.SkuDao;
 import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryXref;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.ProductBundle;
 import org.broadleafcommerce.core.catalog.domain.ProductBundleComparator;
@@ -34,10 +35,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service("blCatalogService")
 public class CatalogServiceImpl implements CatalogService {
@@ -54,6 +60,9 @@ public class CatalogServiceImpl implements CatalogService {
     @Resource(name="blProductOptionDao")
     protected ProductOptionDao productOptionDao;
 
+    @Resource(name="blCategoryTreeService")
+    protected CategoryTreeService categoryTreeService;
+
     @Override
     public Product findProductById(Long productId) {
         return productDao.readProductById(productId);
@@ -232,6 +241,10 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Deprecated
     public Map<String, List<Long>> getChildCategoryURLMapByCategoryId(Long categoryId) {
+        CategoryTreeSnapshot snapshot = getCategoryTreeSnapshot();
+        if (snapshot != null && snapshot.contains(categoryId)) {
+            return snapshot.getChildCategoryURLMap(categoryId);
+        }
         Category category = findCategoryById(categoryId);
         if (category != null) {
             return category.getChildCategoryURLMap();
@@ -239,6 +252,73 @@ public class CatalogServiceImpl implements CatalogService {
         return null;
     }
     
+    @Override
+    public Set<Long> findCategoryHierarchyIds(Long categoryId) {
+        CategoryTreeSnapshot snapshot = getCategoryTreeSnapshot();
+        if (snapshot != null && snapshot.contains(categoryId)) {
+            return snapshot.getFullCategoryHierarchy(categoryId);
+        }
+        Set<Long> hierarchyIds = new LinkedHashSet<Long>();
+        Category category = findCategoryById(categoryId);
+        if (category != null) {
+            for (Category hierarchyCategory : category.buildFullCategoryHierarchy(null)) {
+                hierarchyIds.add(hierarchyCategory.getId());
+            }
+        }
+        return hierarchyIds;
+    }
+
+    @Override
+    public Set<Long> findDescendantCategoryIds(Long categoryId) {
+        CategoryTreeSnapshot snapshot = getCategoryTreeSnapshot();
+        if (snapshot != null && snapshot.contains(categoryId)) {
+            return snapshot.getDescendantCategoryIds(categoryId);
+        }
+        Set<Long> descendantIds = new HashSet<Long>();
+        Category category = findCategoryById(categoryId);
+        if (category == null) {
+            return descendantIds;
+        }
+        LinkedList<Category> toVisit = new LinkedList<Category>();
+        toVisit.add(category);
+        while (!toVisit.isEmpty()) {
+            Category current = toVisit.removeFirst();
+            List<Category> children = new ArrayList<Category>(categoryDao.readAllSubCategories(current));
+            for (CategoryXref xref : current.getAllChildCategoryXrefs()) {
+                children.add(xref.getSubCategory());
+            }
+            for (Category child : children) {
+                if (!child.getId().equals(categoryId) && descendantIds.add(child.getId())) {
+                    toVisit.add(child);
+                }
+            }
+        }
+        return descendantIds;
+    }
+
+    @Override
+    public List<Long> findActiveChildCategoryIds(Long categoryId) {
+        CategoryTreeSnapshot snapshot = getCategoryTreeSnapshot();
+        if (snapshot != null && snapshot.contains(categoryId)) {
+            return snapshot.getActiveChildCategoryIds(categoryId);
+        }
+        List<Long> childIds = new ArrayList<Long>();
+        Category category = findCategoryById(categoryId);
+        if (category != null) {
+            for (CategoryXref xref : category.getChildCategoryXrefs()) {
+                childIds.add(xref.getSubCategory().getId());
+            }
+        }
+        return childIds;
+    }
+
+    /**
+     * @return the current category tree snapshot, or null if there is none and the category entities must be used
+     */
+    protected CategoryTreeSnapshot getCategoryTreeSnapshot() {
+        return categoryTreeService == null ? null : categoryTreeService.getSnapshot();
+    }
+
     @Override
     public Category createCategory() {
         return categoryDao.create();
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+/**
+ * Keeps an immutable {@link CategoryTreeSnapshot} of the category graph in memory, so that ancestor, descendant and 
+ * child lookups do not have to walk category entities and their xrefs.
+ * 
+ * @see {@link CategoryTreeSnapshot}
+ */
+public interface CategoryTreeService {
+
+    /**
+     * Returns the current snapshot, rebuilding it first if it is stale and no other thread is already doing so
+     * 
+     * @return the snapshot, or null if the snapshot is disabled or has not been built, in which case callers should 
+     * fall back to the category entities
+     */
+    public CategoryTreeSnapshot getSnapshot();
+
+    /**
+     * Rebuilds the snapshot from the current categories and replaces the current one
+     */
+    public void rebuildSnapshot();
+
+    /**
+     * Marks the snapshot as stale so that it is rebuilt the next time it is used
+     */
+    public void invalidateSnapshot();
+
+}
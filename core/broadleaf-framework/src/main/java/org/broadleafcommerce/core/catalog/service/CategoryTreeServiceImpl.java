@@ -0,0 +1,141 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.domain.CategoryPersistedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link CategoryTreeService}.
+ * 
+ * The snapshot is rebuilt lazily by the first request that finds it stale, either because a 
+ * {@link CategoryPersistedEvent} was received or because it is older than category.tree.snapshot.refreshInterval 
+ * milliseconds, which picks up changes made on other nodes. Other requests keep using the previous snapshot until 
+ * the new one replaces it.
+ */
+@Service("blCategoryTreeService")
+@ManagedResource(objectName="org.broadleafcommerce:name=CategoryTreeService", description="Category Tree Service", currencyTimeLimit=15)
+public class CategoryTreeServiceImpl implements CategoryTreeService, ApplicationListener<CategoryPersistedEvent> {
+    private static final Log LOG = LogFactory.getLog(CategoryTreeServiceImpl.class);
+
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
+    @Value("${category.tree.snapshot.enabled}")
+    protected boolean enabled = true;
+
+    @Value("${category.tree.snapshot.refreshInterval}")
+    protected long refreshInterval = 300000L;
+
+    protected volatile CategoryTreeSnapshot snapshot;
+    protected volatile boolean stale = true;
+    protected final ReentrantLock rebuildLock = new ReentrantLock();
+
+    protected final AtomicLong rebuildCount = new AtomicLong();
+
+    @Override
+    public void onApplicationEvent(CategoryPersistedEvent event) {
+        invalidateSnapshot();
+    }
+
+    @Override
+    public CategoryTreeSnapshot getSnapshot() {
+        if (!enabled) {
+            return null;
+        }
+        CategoryTreeSnapshot current = snapshot;
+        boolean expired = current == null || SystemTime.asMillis() - current.getBuildTime() > refreshInterval;
+        if ((stale || expired) && rebuildLock.tryLock()) {
+            try {
+                rebuildSnapshot();
+            } catch (RuntimeException e) {
+                LOG.error("Unable to rebuild the category tree snapshot", e);
+            } finally {
+                rebuildLock.unlock();
+            }
+            current = snapshot;
+        }
+        return current;
+    }
+
+    @Override
+    @ManagedOperation(description="Rebuild the category tree snapshot")
+    public void rebuildSnapshot() {
+        // Cleared before reading so that changes made while the snapshot is being built mark it stale again
+        stale = false;
+        TransactionStatus status = TransactionUtils.createTransaction("rebuildCategoryTreeSnapshot",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            long start = System.currentTimeMillis();
+            CategoryTreeSnapshot newSnapshot = CategoryTreeSnapshot.build(categoryDao.readAllCategoryTreeNodes(),
+                    categoryDao.readAllParentCategoryIdsByCategory(), categoryDao.readAllChildCategoryIdsByCategory(),
+                    SystemTime.asMillis());
+            snapshot = newSnapshot;
+            rebuildCount.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Built the category tree snapshot for " + newSnapshot.size() + " categories in " 
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (RuntimeException e) {
+            stale = true;
+            throw e;
+        } finally {
+            // Never roll back - the snapshot may be built inside a caller's transaction that it must not affect
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Mark the category tree snapshot as stale so that it is rebuilt on next use")
+    public void invalidateSnapshot() {
+        stale = true;
+    }
+
+    @ManagedAttribute(description="The number of categories in the current snapshot", currencyTimeLimit=15)
+    public int getCategoryCount() {
+        CategoryTreeSnapshot current = snapshot;
+        return current == null ? 0 : current.size();
+    }
+
+    @ManagedAttribute(description="The number of times the snapshot has been rebuilt", currencyTimeLimit=15)
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+}
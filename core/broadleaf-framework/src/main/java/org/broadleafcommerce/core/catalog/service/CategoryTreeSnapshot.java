@@ -0,0 +1,332 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.util.DateUtil;
+import org.broadleafcommerce.common.util.UrlUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * An immutable, id-based copy of the category graph. A category's parents are its default parent category and the
+ * categories of its parent xrefs, and its children are the sub categories of its child xrefs, the same relationships
+ * that {@link org.broadleafcommerce.core.catalog.domain.Category#buildFullCategoryHierarchy(List)} and
+ * {@link org.broadleafcommerce.core.catalog.domain.Category#getChildCategoryXrefs()} walk. The ancestors, descendants,
+ * depth and generated url of every category are computed once when the snapshot is built, so that they can be looked
+ * up without touching any category entity.
+ * 
+ * Active dates are kept rather than evaluated at build time, so {@link #getActiveChildCategoryIds(Long)} stays correct
+ * as categories become active or expire.
+ * 
+ * @see {@link CategoryTreeService}
+ */
+public class CategoryTreeSnapshot {
+
+    protected final long buildTime;
+    protected final Map<Long, CategoryNode> nodes;
+
+    protected CategoryTreeSnapshot(long buildTime, Map<Long, CategoryNode> nodes) {
+        this.buildTime = buildTime;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Builds a snapshot from the id-only category reads of the {@link org.broadleafcommerce.core.catalog.dao.CategoryDao}
+     * 
+     * @param nodeRows the rows of {@link org.broadleafcommerce.core.catalog.dao.CategoryDao#readAllCategoryTreeNodes()}
+     * @param parentIdsByCategory category id to the ids of all of its direct parents
+     * @param childIdsByCategory category id to the ordered ids of its child categories
+     * @param buildTime
+     * @return the snapshot
+     */
+    public static CategoryTreeSnapshot build(List<Object[]> nodeRows, Map<Long, Set<Long>> parentIdsByCategory,
+            Map<Long, List<Long>> childIdsByCategory, long buildTime) {
+        Map<Long, CategoryNode> nodes = new HashMap<Long, CategoryNode>(nodeRows.size());
+        for (Object[] row : nodeRows) {
+            CategoryNode node = new CategoryNode((Long) row[0], (Long) row[1], effectiveUrlKey((String) row[2], (String) row[3]),
+                    (Date) row[4], (Date) row[5], (Character) row[6]);
+            List<Long> childIds = childIdsByCategory.get(node.id);
+            if (childIds != null) {
+                node.childIds = Collections.unmodifiableList(new ArrayList<Long>(childIds));
+            }
+            nodes.put(node.id, node);
+        }
+
+        Map<Long, Set<Long>> descendants = new HashMap<Long, Set<Long>>();
+        for (CategoryNode node : nodes.values()) {
+            node.hierarchy = Collections.unmodifiableSet(buildHierarchy(node.id, parentIdsByCategory));
+            for (Long ancestorId : node.hierarchy) {
+                if (!ancestorId.equals(node.id)) {
+                    Set<Long> ancestorDescendants = descendants.get(ancestorId);
+                    if (ancestorDescendants == null) {
+                        ancestorDescendants = new HashSet<Long>();
+                        descendants.put(ancestorId, ancestorDescendants);
+                    }
+                    ancestorDescendants.add(node.id);
+                }
+            }
+            node.depth = computeDepth(node, nodes);
+            node.generatedUrl = buildLink(node, nodes);
+        }
+        for (Entry<Long, Set<Long>> entry : descendants.entrySet()) {
+            CategoryNode node = nodes.get(entry.getKey());
+            if (node != null) {
+                node.descendantIds = Collections.unmodifiableSet(entry.getValue());
+            }
+        }
+        return new CategoryTreeSnapshot(buildTime, nodes);
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#getUrlKey()}
+     */
+    protected static String effectiveUrlKey(String urlKey, String name) {
+        if ((urlKey == null || "".equals(urlKey.trim())) && name != null) {
+            return UrlUtil.generateUrlKey(name);
+        }
+        return urlKey;
+    }
+
+    /**
+     * Walks up every parent path of the given category. Each category is only visited once, which also protects 
+     * against cycles in the category graph.
+     */
+    protected static Set<Long> buildHierarchy(Long categoryId, Map<Long, Set<Long>> parentIdsByCategory) {
+        Set<Long> hierarchy = new LinkedHashSet<Long>();
+        List<Long> toVisit = new ArrayList<Long>();
+        toVisit.add(categoryId);
+        while (!toVisit.isEmpty()) {
+            Long current = toVisit.remove(toVisit.size() - 1);
+            if (hierarchy.add(current)) {
+                Set<Long> parentIds = parentIdsByCategory.get(current);
+                if (parentIds != null) {
+                    toVisit.addAll(parentIds);
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * @return the number of default parent categories above the node, stopping at any cycle
+     */
+    protected static int computeDepth(CategoryNode node, Map<Long, CategoryNode> nodes) {
+        Set<Long> visited = new HashSet<Long>();
+        visited.add(node.id);
+        int depth = 0;
+        CategoryNode current = nodes.get(node.defaultParentId);
+        while (current != null && visited.add(current.id)) {
+            depth++;
+            current = nodes.get(current.defaultParentId);
+        }
+        return depth;
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#getGeneratedUrl()}, stopping at any cycle
+     */
+    protected static String buildLink(CategoryNode node, Map<Long, CategoryNode> nodes) {
+        StringBuilder linkBuffer = new StringBuilder(50);
+        linkBuffer.append(node.urlKey);
+        Set<Long> visited = new HashSet<Long>();
+        visited.add(node.id);
+        CategoryNode current = nodes.get(node.defaultParentId);
+        while (current != null && visited.add(current.id)) {
+            if (current.urlKey != null && !"/".equals(current.urlKey)) {
+                linkBuffer.insert(0, current.urlKey + '/');
+            }
+            current = nodes.get(current.defaultParentId);
+        }
+        return linkBuffer.toString();
+    }
+
+    /**
+     * @return the time, in milliseconds, at which the data for this snapshot was read
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * @return the number of categories in the snapshot
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @param categoryId
+     * @return whether the category existed when the snapshot was built
+     */
+    public boolean contains(Long categoryId) {
+        return nodes.containsKey(categoryId);
+    }
+
+    /**
+     * @param categoryId
+     * @return the ids of the given category and all of its ancestors, equivalent to the categories returned by
+     * {@link org.broadleafcommerce.core.catalog.domain.Category#buildFullCategoryHierarchy(List)}
+     */
+    public Set<Long> getFullCategoryHierarchy(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        return node == null ? Collections.singleton(categoryId) : node.hierarchy;
+    }
+
+    /**
+     * @param categoryId
+     * @return the ids of every category below the given category, through any of their parents
+     */
+    public Set<Long> getDescendantCategoryIds(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        return node == null ? Collections.<Long>emptySet() : node.descendantIds;
+    }
+
+    /**
+     * @param ancestorId
+     * @param categoryId
+     * @return whether ancestorId is the given category or one of its ancestors
+     */
+    public boolean isInHierarchy(Long ancestorId, Long categoryId) {
+        return getFullCategoryHierarchy(categoryId).contains(ancestorId);
+    }
+
+    /**
+     * @param categoryId
+     * @return the ids of the child categories of the given category, in display order
+     */
+    public List<Long> getChildCategoryIds(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        return node == null ? Collections.<Long>emptyList() : node.childIds;
+    }
+
+    /**
+     * @param categoryId
+     * @return the ids of the child categories of the given category that are currently active, in display order,
+     * equivalent to the sub categories of {@link org.broadleafcommerce.core.catalog.domain.Category#getChildCategoryXrefs()}
+     */
+    public List<Long> getActiveChildCategoryIds(Long categoryId) {
+        List<Long> activeChildIds = new ArrayList<Long>();
+        for (Long childId : getChildCategoryIds(categoryId)) {
+            CategoryNode child = nodes.get(childId);
+            if (child != null && child.isActive()) {
+                activeChildIds.add(childId);
+            }
+        }
+        return activeChildIds;
+    }
+
+    /**
+     * @param categoryId
+     * @return the number of default parent categories above the given category, or -1 if it is not in the snapshot
+     */
+    public int getDepth(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        return node == null ? -1 : node.depth;
+    }
+
+    /**
+     * @param categoryId
+     * @return the url generated from the url keys of the category and its default parents, or null if the category
+     * is not in the snapshot
+     */
+    public String getGeneratedUrl(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        return node == null ? null : node.generatedUrl;
+    }
+
+    /**
+     * Builds the same map as {@link org.broadleafcommerce.core.catalog.domain.Category#getChildCategoryURLMap()}: 
+     * the url path of the given category and of each of its active descendants, mapped to the ids of the categories 
+     * along that path.
+     * 
+     * @param categoryId
+     * @return the map, or null if the category is not in the snapshot
+     */
+    public Map<String, List<Long>> getChildCategoryURLMap(Long categoryId) {
+        CategoryNode node = nodes.get(categoryId);
+        if (node == null) {
+            return null;
+        }
+        Map<String, List<Long>> urlMap = new HashMap<String, List<Long>>(50);
+        fillInURLMap(urlMap, node, "", new ArrayList<Long>(10));
+        return urlMap;
+    }
+
+    protected void fillInURLMap(Map<String, List<Long>> urlMap, CategoryNode node, String startingPath, List<Long> startingCategoryList) {
+        String currentPath = "";
+        if (!"/".equals(node.urlKey)) {
+            currentPath = startingPath + "/" + node.urlKey;
+        }
+
+        List<Long> newCategoryList = new ArrayList<Long>(startingCategoryList);
+        newCategoryList.add(node.id);
+
+        urlMap.put(currentPath, newCategoryList);
+        for (Long childId : getActiveChildCategoryIds(node.id)) {
+            if (!newCategoryList.contains(childId)) {
+                fillInURLMap(urlMap, nodes.get(childId), currentPath, newCategoryList);
+            }
+        }
+    }
+
+    /**
+     * The data held for a single category. Only assigned while the snapshot is being built.
+     */
+    protected static class CategoryNode {
+
+        protected final Long id;
+        protected final Long defaultParentId;
+        protected final String urlKey;
+        protected final Date activeStartDate;
+        protected final Date activeEndDate;
+        protected final boolean archived;
+        protected List<Long> childIds = Collections.emptyList();
+        protected Set<Long> hierarchy;
+        protected Set<Long> descendantIds = Collections.emptySet();
+        protected int depth;
+        protected String generatedUrl;
+
+        protected CategoryNode(Long id, Long defaultParentId, String urlKey, Date activeStartDate, Date activeEndDate, 
+                Character archived) {
+            this.id = id;
+            this.defaultParentId = defaultParentId;
+            this.urlKey = urlKey;
+            this.activeStartDate = activeStartDate;
+            this.activeEndDate = activeEndDate;
+            this.archived = archived != null && 'Y' == archived;
+        }
+
+        /**
+         * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#isActive()}
+         */
+        protected boolean isActive() {
+            return DateUtil.isActive(activeStartDate, activeEndDate, true) && !archived;
+        }
+
+    }
+
+}
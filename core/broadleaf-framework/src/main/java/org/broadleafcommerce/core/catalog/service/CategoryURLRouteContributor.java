@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.cms.url.service.URLRoute;
+import org.broadleafcommerce.cms.url.service.URLRouteContributor;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.domain.CategoryPersistedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Routes the url of every {@link org.broadleafcommerce.core.catalog.domain.Category} to the category, matching
+ * {@link CatalogService#findCategoryByURI(String)}. The category's routes are refreshed whenever a
+ * {@link CategoryPersistedEvent} is published for it.
+ */
+@Service("blCategoryURLRouteContributor")
+public class CategoryURLRouteContributor implements URLRouteContributor, ApplicationListener<CategoryPersistedEvent> {
+
+    public static final String CATEGORY_ROUTE_TYPE = "CATEGORY";
+
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Resource(name = "blURLRoutingService")
+    protected URLRoutingService urlRoutingService;
+
+    @PostConstruct
+    public void register() {
+        urlRoutingService.registerContributor(this);
+    }
+
+    @Override
+    public void onApplicationEvent(CategoryPersistedEvent event) {
+        urlRoutingService.refreshRoutes(getRouteType(), event.getCategoryId());
+    }
+
+    @Override
+    public String getRouteType() {
+        return CATEGORY_ROUTE_TYPE;
+    }
+
+    @Override
+    public List<URLRoute> readAllRoutes() {
+        List<URLRoute> routes = new ArrayList<URLRoute>();
+        for (Map.Entry<Long, String> entry : categoryDao.readAllCategoryUrls().entrySet()) {
+            routes.add(new URLRoute(getRouteType(), entry.getValue(), entry.getKey()));
+        }
+        return routes;
+    }
+
+    @Override
+    public List<URLRoute> readRoutes(Long targetId) {
+        String url = categoryDao.readCategoryUrlById(targetId);
+        if (url == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(new URLRoute(getRouteType(), url, targetId));
+    }
+
+}
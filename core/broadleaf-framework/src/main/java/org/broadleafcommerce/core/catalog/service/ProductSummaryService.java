@@ -0,0 +1,61 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.domain.ProductSummary;
+
+import java.util.List;
+
+/**
+ * Provides cached {@link ProductSummary} instances so that listing pages, such as search results and category pages,
+ * can be rendered without loading the Product entities of every product on the page.
+ * 
+ * @see {@link ProductSummary}
+ */
+public interface ProductSummaryService {
+
+    /**
+     * Returns the summaries of the given products for the current locale and currency. Summaries that are not cached 
+     * are built from the products, which are read with a single query. Summaries are not cached while dynamic pricing 
+     * is in effect, since their prices then depend on the pricing considerations of the request.
+     * 
+     * @param productIds
+     * @return the summaries in the same order as the given ids, skipping products that no longer exist
+     */
+    public List<ProductSummary> findProductSummaries(List<Long> productIds);
+
+    /**
+     * Returns the summary of the given product for the current locale and currency
+     * 
+     * @param productId
+     * @return the summary, or null if the product does not exist
+     */
+    public ProductSummary findProductSummary(Long productId);
+
+    /**
+     * Removes the cached summaries of the given product for every locale and currency
+     * 
+     * @param productId
+     */
+    public void invalidateProductSummary(Long productId);
+
+    /**
+     * Removes all cached summaries
+     */
+    public void invalidateAllProductSummaries();
+
+}
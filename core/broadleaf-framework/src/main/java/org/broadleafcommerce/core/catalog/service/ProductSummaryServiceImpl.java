@@ -0,0 +1,262 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.service;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEvent;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductSummary;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
+import org.broadleafcommerce.core.rating.domain.RatingSummary;
+import org.broadleafcommerce.core.rating.service.RatingService;
+import org.broadleafcommerce.core.rating.service.type.RatingType;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link ProductSummaryService}.
+ * 
+ * Summaries are kept in the blProductSummaries cache, with one element per product that holds the summaries built 
+ * for each locale and currency. The element of a product is removed whenever a {@link CatalogPersistedEvent} is 
+ * published for it, so the next listing page that shows the product rebuilds its summaries. That covers changes to
+ * the product, its skus, attributes, categories and ratings, but not to its media or translations; those are only 
+ * picked up once the element expires (timeToLiveSeconds of blProductSummaries, 3600 by default).
+ * 
+ * Prices that go through a {@link org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService} depend
+ * on the pricing considerations of the request rather than just its locale and currency, so while
+ * {@link SkuPricingConsiderationContext#hasDynamicPricing()} is true summaries are built for each call and never cached.
+ */
+@Service("blProductSummaryService")
+@ManagedResource(objectName="org.broadleafcommerce:name=ProductSummaryService", description="Product Summary Service", currencyTimeLimit=15)
+public class ProductSummaryServiceImpl implements ProductSummaryService, ApplicationListener<CatalogPersistedEvent> {
+
+    protected static final String CACHE_NAME = "blProductSummaries";
+
+    @Resource(name = "blProductDao")
+    protected ProductDao productDao;
+
+    @Resource(name = "blRatingService")
+    protected RatingService ratingService;
+
+    protected Cache cache;
+
+    @Override
+    public void onApplicationEvent(CatalogPersistedEvent event) {
+        invalidateProductSummary(event.getProductId());
+    }
+
+    @Override
+    public List<ProductSummary> findProductSummaries(List<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return new ArrayList<ProductSummary>();
+        }
+        if (SkuPricingConsiderationContext.hasDynamicPricing()) {
+            return orderSummaries(productIds, buildProductSummaries(productIds));
+        }
+        String variantKey = buildVariantKey();
+
+        Map<Object, Element> elements = getCache().getAll(productIds);
+        Map<Long, ProductSummary> summaries = new HashMap<Long, ProductSummary>(productIds.size());
+        List<Long> missingIds = new ArrayList<Long>();
+        for (Long productId : productIds) {
+            ProductSummary summary = getCachedSummary(elements.get(productId), variantKey);
+            if (summary != null) {
+                summaries.put(productId, summary);
+            } else {
+                missingIds.add(productId);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (ProductSummary summary : buildProductSummaries(missingIds)) {
+                cacheSummary(summary, variantKey);
+                summaries.put(summary.getProductId(), summary);
+            }
+        }
+        return orderSummaries(productIds, summaries);
+    }
+
+    protected List<ProductSummary> orderSummaries(List<Long> productIds, List<ProductSummary> summaries) {
+        Map<Long, ProductSummary> summariesById = new HashMap<Long, ProductSummary>(summaries.size());
+        for (ProductSummary summary : summaries) {
+            summariesById.put(summary.getProductId(), summary);
+        }
+        return orderSummaries(productIds, summariesById);
+    }
+
+    /**
+     * @return the summaries of the given products in the order of the ids, skipping products without a summary
+     */
+    protected List<ProductSummary> orderSummaries(List<Long> productIds, Map<Long, ProductSummary> summaries) {
+        List<ProductSummary> results = new ArrayList<ProductSummary>(productIds.size());
+        for (Long productId : productIds) {
+            ProductSummary summary = summaries.get(productId);
+            if (summary != null) {
+                results.add(summary);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public ProductSummary findProductSummary(Long productId) {
+        List<ProductSummary> summaries = findProductSummaries(Collections.singletonList(productId));
+        return summaries.isEmpty() ? null : summaries.get(0);
+    }
+
+    @Override
+    @ManagedOperation(description="Remove the cached summaries of a product")
+    public void invalidateProductSummary(Long productId) {
+        getCache().remove(productId);
+    }
+
+    @Override
+    @ManagedOperation(description="Remove all cached product summaries")
+    public void invalidateAllProductSummaries() {
+        getCache().removeAll();
+    }
+
+    @ManagedAttribute(description="The number of products with cached summaries", currencyTimeLimit=15)
+    public int getCachedProductCount() {
+        return getCache().getSize();
+    }
+
+    /**
+     * Reads the given products with a single query and builds their summaries. Ratings are read in bulk as well.
+     * 
+     * @param productIds
+     * @return the summaries of the products that exist, in no particular order
+     */
+    protected List<ProductSummary> buildProductSummaries(List<Long> productIds) {
+        List<ProductSummary> summaries = new ArrayList<ProductSummary>();
+        List<Product> products = productDao.readProductsByIds(productIds);
+        if (products == null) {
+            return summaries;
+        }
+
+        List<String> itemIds = new ArrayList<String>(products.size());
+        for (Product product : products) {
+            itemIds.add(String.valueOf(product.getId()));
+        }
+        Map<String, RatingSummary> ratings = ratingService.readRatingSummaries(itemIds, RatingType.PRODUCT);
+
+        for (Product product : products) {
+            summaries.add(buildProductSummary(product, ratings.get(String.valueOf(product.getId()))));
+        }
+        return summaries;
+    }
+
+    /**
+     * Builds the summary of the given product for the current locale and currency
+     * 
+     * @param product
+     * @param rating the rating summary of the product, or null if it has not been rated
+     * @return the summary
+     */
+    protected ProductSummary buildProductSummary(Product product, RatingSummary rating) {
+        ProductSummary summary = new ProductSummary();
+        summary.setProductId(product.getId());
+        summary.setName(product.getName());
+        summary.setUrl(product.getUrl());
+
+        Sku defaultSku = product.getDefaultSku();
+        if (defaultSku != null) {
+            summary.setDefaultSkuId(defaultSku.getId());
+            summary.setRetailPrice(defaultSku.getRetailPrice());
+            summary.setSalePrice(defaultSku.getSalePrice());
+            summary.setOnSale(defaultSku.isOnSale());
+        }
+
+        Media primaryMedia = product.getMedia().get("primary");
+        if (primaryMedia != null) {
+            summary.setPrimaryMediaUrl(primaryMedia.getUrl());
+            summary.setPrimaryMediaAltText(primaryMedia.getAltText());
+        }
+
+        if (rating != null) {
+            summary.setAverageRating(rating.getAverageRating());
+            summary.setNumberOfRatings(rating.getNumberOfRatings());
+        }
+        return summary;
+    }
+
+    /**
+     * Summaries contain translated names and prices, so they are cached separately for each locale and currency
+     * 
+     * @return the key of the current locale and currency within a product's cache element
+     */
+    protected String buildVariantKey() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        String localeCode = null;
+        String currencyCode = null;
+        if (context != null) {
+            if (context.getLocale() != null) {
+                localeCode = context.getLocale().getLocaleCode();
+            }
+            if (context.getBroadleafCurrency() != null) {
+                currencyCode = context.getBroadleafCurrency().getCurrencyCode();
+            }
+        }
+        return localeCode + "|" + currencyCode;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected ProductSummary getCachedSummary(Element element, String variantKey) {
+        if (element == null) {
+            return null;
+        }
+        return ((Map<String, ProductSummary>) element.getObjectValue()).get(variantKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void cacheSummary(ProductSummary summary, String variantKey) {
+        ConcurrentMap<String, ProductSummary> variants = new ConcurrentHashMap<String, ProductSummary>();
+        Element existing = getCache().putIfAbsent(new Element(summary.getProductId(), variants));
+        if (existing != null) {
+            variants = (ConcurrentMap<String, ProductSummary>) existing.getObjectValue();
+        }
+        variants.put(variantKey, summary);
+    }
+
+    protected Cache getCache() {
+        if (cache == null) {
+            cache = CacheManager.getInstance().getCache(CACHE_NAME);
+        }
+        return cache;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.cms.url.service.URLRoute;
+import org.broadleafcommerce.cms.url.service.URLRouteContributor;
+import org.broadleafcommerce.cms.url.service.URLRoutingService;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Routes products the same way as {@link CatalogService#findProductByURI(String)}: by their full url, and by their
+ * url key against the last segment of the request uri. The product's routes are refreshed whenever a 
+ * {@link CatalogPersistedEvent} is published for it.
+ */
+@Service("blProductURLRouteContributor")
+public class ProductURLRouteContributor implements URLRouteContributor, ApplicationListener<CatalogPersistedEvent> {
+
+    public static final String PRODUCT_ROUTE_TYPE = "PRODUCT";
+
+    @Resource(name = "blProductDao")
+    protected ProductDao productDao;
+
+    @Resource(name = "blURLRoutingService")
+    protected URLRoutingService urlRoutingService;
+
+    @PostConstruct
+    public void register() {
+        urlRoutingService.registerContributor(this);
+    }
+
+    @Override
+    public void onApplicationEvent(CatalogPersistedEvent event) {
+        urlRoutingService.refreshRoutes(getRouteType(), event.getProductId());
+    }
+
+    @Override
+    public String getRouteType() {
+        return PRODUCT_ROUTE_TYPE;
+    }
+
+    @Override
+    public List<URLRoute> readAllRoutes() {
+        return buildRoutes(productDao.readAllProductUrls());
+    }
+
+    @Override
+    public List<URLRoute> readRoutes(Long targetId) {
+        return buildRoutes(productDao.readProductUrlsById(targetId));
+    }
+
+    /**
+     * @param rows the product id, url and url key rows read by the {@link ProductDao}
+     * @return the routes for the given rows
+     */
+    protected List<URLRoute> buildRoutes(List<Object[]> rows) {
+        List<URLRoute> routes = new ArrayList<URLRoute>();
+        for (Object[] row : rows) {
+            Long productId = (Long) row[0];
+            String url = (String) row[1];
+            String urlKey = (String) row[2];
+            if (url != null) {
+                routes.add(new URLRoute(getRouteType(), url, productId));
+            }
+            if (urlKey != null) {
+                routes.add(new URLRoute(getRouteType(), urlKey, productId, true));
+            }
+        }
+        return routes;
+    }
+
+}
@@ -47,6 +47,17 @@ public class DefaultDynamicSkuPricingInvocationHandler implements InvocationHand
         }
     }
 
+    /**
+     * Takes the stored prices from the view, so that no reflection is needed to read them from the sku.
+     *
+     * @param skuPriceView
+     */
+    public DefaultDynamicSkuPricingInvocationHandler(SkuPriceView skuPriceView) {
+        this.delegate = skuPriceView.getSku();
+        this.retailPrice = skuPriceView.getRetailPrice();
+        this.salePrice = skuPriceView.getSalePrice();
+    }
+
     /**
      * This is used with SkuBundleItem to allow the bundle override price.
      *
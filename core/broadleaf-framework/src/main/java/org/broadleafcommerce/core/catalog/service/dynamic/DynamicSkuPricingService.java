@@ -43,6 +43,10 @@ public interface DynamicSkuPricingService {
      * While this method should return a {@link DynamicSkuPrices} (and not just null) the members of the result can all
      * be null; they do not have to be set
      * 
+     * When called from {@link Sku#getRetailPrice()} or {@link Sku#getSalePrice()}, the sku is a proxy whose price
+     * getters return the prices stored on the sku, and the result is cached by {@link SkuPricingConsiderationContext}
+     * for the rest of the request, so it must only depend on the sku and the considerations.
+     * 
      * @param sku
      * @param skuPricingConsiderations
      * @return
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+
+import java.io.Serializable;
+
+/**
+ * The prices stored on a {@link Sku}, as seen by a {@link DynamicSkuPricingService}. Calling 
+ * {@link Sku#getRetailPrice()} or {@link Sku#getSalePrice()} from a pricing service would recurse back into dynamic
+ * pricing, so the stored prices are read once into this view and returned by the proxy that the pricing service is
+ * given in place of the {@link Sku}.
+ * 
+ * @see {@link SkuPricingConsiderationContext#getSkuPrices(SkuPriceView)}
+ * @see {@link DefaultDynamicSkuPricingInvocationHandler#DefaultDynamicSkuPricingInvocationHandler(SkuPriceView)}
+ */
+public class SkuPriceView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected Sku sku;
+    protected Money retailPrice;
+    protected Money salePrice;
+    protected boolean salePriceOverridden = false;
+
+    public SkuPriceView(Sku sku, Money retailPrice, Money salePrice) {
+        this.sku = sku;
+        this.retailPrice = retailPrice;
+        this.salePrice = salePrice;
+    }
+
+    /**
+     * Builds the view for any {@link Sku}. Skus that do not extend {@link SkuImpl} have no stored prices that can be
+     * read without going through dynamic pricing, so their view has none.
+     * 
+     * @param sku
+     * @return the view
+     */
+    public static SkuPriceView forSku(Sku sku) {
+        if (sku instanceof SkuImpl) {
+            return ((SkuImpl) sku).buildPriceView();
+        }
+        return new SkuPriceView(sku, null, null);
+    }
+
+    /**
+     * This is used with SkuBundleItem to allow the bundle override price.
+     * 
+     * @param salePriceOverride
+     * @return a copy of this view with the given sale price, or this view if the override is null
+     */
+    public SkuPriceView withSalePriceOverride(Money salePriceOverride) {
+        if (salePriceOverride == null) {
+            return this;
+        }
+        SkuPriceView view = new SkuPriceView(sku, retailPrice, salePriceOverride);
+        view.salePriceOverridden = true;
+        return view;
+    }
+
+    /**
+     * @return the sku being priced, whose price getters must not be called by a pricing service
+     */
+    public Sku getSku() {
+        return sku;
+    }
+
+    public Long getSkuId() {
+        return sku == null ? null : sku.getId();
+    }
+
+    /**
+     * @return the retail price stored on the sku, without any dynamic pricing or default sku fallback
+     */
+    public Money getRetailPrice() {
+        return retailPrice;
+    }
+
+    /**
+     * @return the sale price stored on the sku, or the bundle override, without any dynamic pricing or default sku 
+     * fallback
+     */
+    public Money getSalePrice() {
+        return salePrice;
+    }
+
+    public boolean isSalePriceOverridden() {
+        return salePriceOverridden;
+    }
+
+    public Money getProductOptionValueAdjustments() {
+        return sku == null ? null : sku.getProductOptionValueAdjustments();
+    }
+
+}
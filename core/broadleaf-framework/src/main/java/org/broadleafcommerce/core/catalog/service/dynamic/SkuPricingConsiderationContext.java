@@ -17,15 +17,25 @@
 package org.broadleafcommerce.core.catalog.service.dynamic;
 
 import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.springframework.util.ClassUtils;
 
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * Convenient place to store the pricing considerations context and the pricing service on thread local. This class is
  * usually filled out by a {@link org.broadleafcommerce.core.web.catalog.DynamicSkuPricingFilter}. The default
  * implementation of this is {@link org.broadleafcommerce.core.web.catalog.DefaultDynamicSkuPricingFilter}.
  * 
+ * The prices returned by the pricing service for each sku are cached here, so a sku is priced at most once for a
+ * given set of considerations. Setting either the considerations or the pricing service discards the cache.
+ * 
  * @author jfischer
  * @see {@link SkuImpl#getRetailPrice}
  * @see {@link SkuImpl#getSalePrice}
@@ -40,7 +50,9 @@ public class SkuPricingConsiderationContext {
     }
     
     public static void setSkuPricingConsiderationContext(HashMap skuPricingConsiderations) {
-        SkuPricingConsiderationContext.skuPricingConsiderationContext.get().considerations = skuPricingConsiderations;
+        SkuPricingConsiderationContext context = SkuPricingConsiderationContext.skuPricingConsiderationContext.get();
+        context.considerations = skuPricingConsiderations;
+        context.priceCache.clear();
     }
 
     public static DynamicSkuPricingService getSkuPricingService() {
@@ -48,7 +60,49 @@ public class SkuPricingConsiderationContext {
     }
     
     public static void setSkuPricingService(DynamicSkuPricingService skuPricingService) {
-        SkuPricingConsiderationContext.skuPricingConsiderationContext.get().pricingService = skuPricingService;
+        SkuPricingConsiderationContext context = SkuPricingConsiderationContext.skuPricingConsiderationContext.get();
+        context.pricingService = skuPricingService;
+        context.priceCache.clear();
+    }
+
+    /**
+     * Returns the dynamic prices for the sku, asking the pricing service only if they have not been looked up yet for
+     * the current considerations. Views of skus that have not been persisted are never cached.
+     * 
+     * The pricing service is handed a proxy of the sku whose price getters return the prices in the view, so that
+     * {@link DynamicSkuPricingService#getSkuPrices(Sku, HashMap)} remains the only method a custom service overrides.
+     * 
+     * @param skuPriceView
+     * @return the prices from the current pricing service
+     */
+    public static DynamicSkuPrices getSkuPrices(SkuPriceView skuPriceView) {
+        SkuPricingConsiderationContext context = SkuPricingConsiderationContext.skuPricingConsiderationContext.get();
+        SkuPriceKey key = skuPriceView.getSkuId() == null ? null : new SkuPriceKey(skuPriceView);
+        DynamicSkuPrices prices = key == null ? null : context.priceCache.get(key);
+        if (prices == null) {
+            Sku sku = skuPriceView.getSku();
+            DefaultDynamicSkuPricingInvocationHandler handler = new DefaultDynamicSkuPricingInvocationHandler(skuPriceView);
+            Sku proxy = (Sku) Proxy.newProxyInstance(sku.getClass().getClassLoader(), ClassUtils.getAllInterfacesForClass(sku.getClass()), handler);
+            prices = context.pricingService.getSkuPrices(proxy, context.considerations);
+            if (key != null) {
+                context.priceCache.put(key, prices);
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Discards the cached prices for the given sku, including any bundle override prices
+     * 
+     * @param skuId
+     */
+    public static void clearSkuPrices(Long skuId) {
+        Iterator<SkuPriceKey> itr = SkuPricingConsiderationContext.skuPricingConsiderationContext.get().priceCache.keySet().iterator();
+        while (itr.hasNext()) {
+            if (itr.next().skuId.equals(skuId)) {
+                itr.remove();
+            }
+        }
     }
     
     public static boolean hasDynamicPricing() {
@@ -61,4 +115,52 @@ public class SkuPricingConsiderationContext {
 
     protected DynamicSkuPricingService pricingService;
     protected HashMap considerations;
+    protected Map<SkuPriceKey, DynamicSkuPrices> priceCache = new HashMap<SkuPriceKey, DynamicSkuPrices>();
+
+    /**
+     * Identifies a cached price - the sku and, for bundle items, the overridden sale price. The override is compared by
+     * value, so 5.0 and 5.00 identify the same price.
+     */
+    protected static class SkuPriceKey {
+
+        protected final Long skuId;
+        protected final BigDecimal salePriceOverride;
+
+        public SkuPriceKey(SkuPriceView skuPriceView) {
+            skuId = skuPriceView.getSkuId();
+            Money salePrice = skuPriceView.getSalePrice();
+            salePriceOverride = skuPriceView.isSalePriceOverridden() && salePrice != null ? normalize(salePrice.getAmount()) : null;
+        }
+
+        /**
+         * @param amount
+         * @return the amount without trailing zeros, so that its equals and hashCode ignore the scale
+         */
+        protected static BigDecimal normalize(BigDecimal amount) {
+            if (amount == null) {
+                return null;
+            }
+            // stripTrailingZeros() leaves the scale of zero values untouched before Java 8
+            return amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * skuId.hashCode() + (salePriceOverride == null ? 0 : salePriceOverride.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SkuPriceKey)) {
+                return false;
+            }
+            SkuPriceKey other = (SkuPriceKey) obj;
+            return skuId.equals(other.skuId) && (salePriceOverride == null ? other.salePriceOverride == null 
+                    : salePriceOverride.equals(other.salePriceOverride));
+        }
+
+    }
 }
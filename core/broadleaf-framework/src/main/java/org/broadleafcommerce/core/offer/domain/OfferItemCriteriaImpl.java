@@ -27,6 +27,7 @@ import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -40,6 +41,7 @@ import javax.persistence.Table;
  *
  */
 @Entity
+@EntityListeners(value = { OfferPersistedEntityListener.class })
 @Table(name = "BLC_OFFER_ITEM_CRITERIA")
 @Inheritance(strategy=InheritanceType.JOINED)
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region="blStandardElements")
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+
+/**
+ * Publishes an {@link OfferPersistedEvent} whenever an {@link Offer} or {@link OfferItemCriteria} changes. The event
+ * is only published once the surrounding transaction commits, so listeners never see changes that were rolled back.
+ *
+ * @see {@link OfferPersistedEvent}
+ * @see {@link org.broadleafcommerce.core.offer.service.OfferCandidateIndexService}
+ */
+public class OfferPersistedEntityListener {
+
+    /**
+     * Invoked on PostPersist, PostUpdate and PostRemove.
+     * 
+     * @param entity the offer entity that changed
+     */
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void offerEntityUpdated(final Object entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    ApplicationContext context = ApplicationContextHolder.getApplicationContext();
+                    if (context != null) {
+                        context.publishEvent(new OfferPersistedEvent(entity));
+                    }
+                }
+            });
+        }
+    }
+
+}
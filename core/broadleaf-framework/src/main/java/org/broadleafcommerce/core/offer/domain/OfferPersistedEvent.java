@@ -0,0 +1,39 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.domain;
+
+import org.springframework.context.ApplicationEvent;
+
+
+/**
+ * An event for whenever an {@link Offer} or one of its {@link OfferItemCriteria} has been persisted or removed
+ *
+ * @see {@link OfferPersistedEntityListener}
+ */
+public class OfferPersistedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param entity the offer entity that changed
+     */
+    public OfferPersistedEvent(Object entity) {
+        super(entity);
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.order.domain.Order;
+
+import java.util.List;
+
+/**
+ * Keeps an in-memory index of the automatic delivery offers, partitioned by the sku, product and category ids that
+ * their {@link OfferItemCriteria} require. This lets pricing skip the offers that could not possibly match any item
+ * in an order before any of their rules are evaluated.
+ * 
+ * @see {@link OfferService#buildOfferListForOrder(Order)}
+ */
+public interface OfferCandidateIndexService {
+
+    /**
+     * Removes the offers that the index knows cannot apply to the given order. Offers that are not in the index,
+     * and offers whose item criteria could not be indexed, are always retained.
+     * 
+     * @param offers the offers to filter
+     * @param order the order being priced
+     * @return the offers that may apply to the order, in their original order
+     */
+    public List<Offer> filterCandidateOffers(List<Offer> offers, Order order);
+
+    /**
+     * Rebuilds the index from the current automatic delivery offers
+     */
+    public void rebuildIndex();
+
+    /**
+     * Marks the index as stale so that it is rebuilt the next time it is used
+     */
+    public void invalidateIndex();
+
+}
@@ -0,0 +1,637 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferPersistedEvent;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link OfferCandidateIndexService}.
+ * 
+ * The match rule of each {@link OfferItemCriteria} is inspected for conditions on the sku, product or category id
+ * of the order item, in the forms that the admin rule builder generates (for example 
+ * <code>discreteOrderItem.?sku.?id==5</code> or <code>([5,6] contains discreteOrderItem.?category.?id.intValue())</code>).
+ * Such a condition is only used when it is one of the top level conjuncts of the rule, since only then must it hold for
+ * the rule to match. Since every qualifying criteria (and, for order item offers, every target criteria) has to be met 
+ * by some item in the order, an offer can be dropped whenever one of these conditions is not met by any item. Rules 
+ * that do not contain such a condition leave their offer unrestricted, so it is always evaluated as before.
+ * 
+ * The index is rebuilt lazily once a request finds it stale, either because an {@link OfferPersistedEvent} was 
+ * received or because it is older than offer.candidate.index.refreshInterval milliseconds. The rebuild runs on a 
+ * single background thread, so pricing requests never wait for it: they keep using the previous index until the new 
+ * one is swapped in, and evaluate every offer until the first index has been built.
+ */
+@Service("blOfferCandidateIndexService")
+@ManagedResource(objectName="org.broadleafcommerce:name=OfferCandidateIndexService", description="Offer Candidate Index Service", currencyTimeLimit=15)
+public class OfferCandidateIndexServiceImpl implements OfferCandidateIndexService, ApplicationListener<OfferPersistedEvent> {
+    private static final Log LOG = LogFactory.getLog(OfferCandidateIndexServiceImpl.class);
+
+    protected static final String ITEM_ID_FIELD = "(?:orderItem|discreteOrderItem)\\.\\??(sku|product|category)\\.\\??id(?:\\.intValue\\(\\)|\\.longValue\\(\\))?";
+    protected static final Pattern FIELD_EQUALS_PATTERN = Pattern.compile("^" + ITEM_ID_FIELD + "==(\\d+)$");
+    protected static final Pattern EQUALS_FIELD_PATTERN = Pattern.compile("^(\\d+)==" + ITEM_ID_FIELD + "$");
+    protected static final Pattern CONTAINS_FIELD_PATTERN = Pattern.compile("^\\[(\\d+(?:,\\d+)*)\\]contains" + ITEM_ID_FIELD + "$");
+    protected static final long ONE_DAY = 24L * 60L * 60L * 1000L;
+
+    /**
+     * The order item ids that an offer's item criteria can be keyed on
+     */
+    protected static enum ItemKeyType {
+        SKU, PRODUCT, CATEGORY;
+
+        protected static ItemKeyType fromFieldName(String fieldName) {
+            return valueOf(fieldName.toUpperCase());
+        }
+    }
+
+    @Resource(name = "blOfferDao")
+    protected OfferDao offerDao;
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
+    @Value("${offer.candidate.index.enabled}")
+    protected boolean enabled = true;
+
+    @Value("${offer.candidate.index.refreshInterval}")
+    protected long refreshInterval = 300000L;
+
+    protected volatile OfferIndex index;
+    protected volatile boolean stale = true;
+    protected final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    protected volatile ExecutorService rebuildExecutor;
+
+    protected final AtomicLong offersConsidered = new AtomicLong();
+    protected final AtomicLong offersFiltered = new AtomicLong();
+    protected final AtomicLong rebuildCount = new AtomicLong();
+
+    @Override
+    public void onApplicationEvent(OfferPersistedEvent event) {
+        invalidateIndex();
+    }
+
+    @Override
+    public List<Offer> filterCandidateOffers(List<Offer> offers, Order order) {
+        if (!enabled || offers == null || offers.isEmpty() || order == null) {
+            return offers;
+        }
+        OfferIndex current = getCurrentIndex();
+        if (current == null) {
+            return offers;
+        }
+
+        Map<ItemKeyType, Set<Long>> orderKeys = getOrderItemKeys(order);
+        Set<Long> candidateOfferIds = current.findCandidateOfferIds(orderKeys);
+        long now = SystemTime.asMillis();
+        List<Offer> response = new ArrayList<Offer>(offers.size());
+        for (Offer offer : offers) {
+            IndexedOffer indexedOffer = offer.getId() == null ? null : current.offers.get(offer.getId());
+            if (indexedOffer == null) {
+                // The offer was created after the index was built - keep it and pick it up on the next rebuild
+                if (offer.getId() != null) {
+                    stale = true;
+                }
+                response.add(offer);
+            } else if (candidateOfferIds.contains(offer.getId()) && indexedOffer.isLive(now)) {
+                response.add(offer);
+            }
+        }
+
+        offersConsidered.addAndGet(offers.size());
+        offersFiltered.addAndGet(offers.size() - response.size());
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Offer candidate index reduced " + offers.size() + " automatic offers to " + response.size() 
+                    + " for order " + order.getId());
+        }
+        return response;
+    }
+
+    /**
+     * Returns the index, scheduling a rebuild in the background if it is stale. The current index is returned without
+     * waiting for that rebuild.
+     * 
+     * @return the current index, or null if no index has been built yet
+     */
+    protected OfferIndex getCurrentIndex() {
+        OfferIndex current = index;
+        boolean expired = current == null || SystemTime.asMillis() - current.buildTime > refreshInterval;
+        if (stale || expired) {
+            scheduleRebuild();
+        }
+        return current;
+    }
+
+    /**
+     * Rebuilds the index on the rebuild executor, unless a rebuild is already scheduled or running
+     */
+    protected void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            getRebuildExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rebuildIndex();
+                    } catch (RuntimeException e) {
+                        LOG.error("Unable to rebuild the offer candidate index", e);
+                    } finally {
+                        rebuildScheduled.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor has been shut down - the current index, if any, keeps being used
+            rebuildScheduled.set(false);
+        }
+    }
+
+    protected Executor getRebuildExecutor() {
+        if (rebuildExecutor == null) {
+            synchronized (this) {
+                if (rebuildExecutor == null) {
+                    rebuildExecutor = Executors.newSingleThreadExecutor(new RebuildThreadFactory());
+                }
+            }
+        }
+        return rebuildExecutor;
+    }
+
+    @PreDestroy
+    public void shutdownRebuildExecutor() {
+        if (rebuildExecutor != null) {
+            rebuildExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Rebuild the offer candidate index")
+    public void rebuildIndex() {
+        // Cleared before reading so that changes made while the index is being built mark it stale again
+        stale = false;
+        TransactionStatus status = TransactionUtils.createTransaction("rebuildOfferCandidateIndex",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            long start = System.currentTimeMillis();
+            List<Offer> offers = offerDao.readOffersByAutomaticDeliveryType();
+            OfferIndex newIndex = new OfferIndex(SystemTime.asMillis());
+            for (Offer offer : offers) {
+                if (offer.getId() != null) {
+                    newIndex.add(buildIndexedOffer(offer));
+                }
+            }
+            index = newIndex;
+            rebuildCount.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Built the offer candidate index for " + newIndex.offers.size() + " offers ("
+                        + newIndex.unrestrictedOfferIds.size() + " unrestricted) in " 
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        } catch (RuntimeException e) {
+            stale = true;
+            throw e;
+        } finally {
+            // Never roll back - when rebuilt through JMX the index may be read inside a caller's transaction
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Mark the offer candidate index as stale so that it is rebuilt on next use")
+    public void invalidateIndex() {
+        stale = true;
+    }
+
+    /**
+     * Builds the index entry for a single offer. Target criteria are only considered for order item offers, since 
+     * they do not influence whether order and fulfillment group offers apply.
+     * 
+     * @param offer
+     * @return the index entry
+     */
+    protected IndexedOffer buildIndexedOffer(Offer offer) {
+        IndexedOffer indexedOffer = new IndexedOffer(offer.getId(), offer.getType(), offer.getStartDate(), offer.getEndDate());
+        addCriteriaConstraints(offer.getQualifyingItemCriteria(), indexedOffer.constraints);
+        if (OfferType.ORDER_ITEM.equals(offer.getType())) {
+            addCriteriaConstraints(offer.getTargetItemCriteria(), indexedOffer.constraints);
+        }
+        return indexedOffer;
+    }
+
+    protected void addCriteriaConstraints(Collection<OfferItemCriteria> criteria, List<ItemKeyConstraint> constraints) {
+        if (criteria == null) {
+            return;
+        }
+        for (OfferItemCriteria itemCriteria : criteria) {
+            if (itemCriteria.getMatchRule() != null) {
+                constraints.addAll(parseConstraints(itemCriteria.getMatchRule()));
+            }
+        }
+    }
+
+    /**
+     * Extracts the sku, product and category id conditions that must hold for the given match rule to be true. Only
+     * conditions that are top level conjuncts of the rule are returned; anything that cannot be recognized is ignored.
+     * 
+     * @param matchRule
+     * @return the conditions, which is empty if the rule cannot be indexed
+     */
+    protected List<ItemKeyConstraint> parseConstraints(String matchRule) {
+        List<ItemKeyConstraint> constraints = new ArrayList<ItemKeyConstraint>();
+        String rule = unwrapParentheses(matchRule.replaceAll("\\s", ""));
+        if (splitTopLevel(rule, "||").size() > 1) {
+            return constraints;
+        }
+        for (String conjunct : splitTopLevel(rule, "&&")) {
+            ItemKeyConstraint constraint = parseConstraint(unwrapParentheses(conjunct));
+            if (constraint != null) {
+                constraints.add(constraint);
+            }
+        }
+        return constraints;
+    }
+
+    protected ItemKeyConstraint parseConstraint(String expression) {
+        Matcher matcher = FIELD_EQUALS_PATTERN.matcher(expression);
+        if (matcher.matches()) {
+            return new ItemKeyConstraint(ItemKeyType.fromFieldName(matcher.group(1)), 
+                    Collections.singleton(Long.valueOf(matcher.group(2))));
+        }
+        matcher = EQUALS_FIELD_PATTERN.matcher(expression);
+        if (matcher.matches()) {
+            return new ItemKeyConstraint(ItemKeyType.fromFieldName(matcher.group(2)), 
+                    Collections.singleton(Long.valueOf(matcher.group(1))));
+        }
+        matcher = CONTAINS_FIELD_PATTERN.matcher(expression);
+        if (matcher.matches()) {
+            Set<Long> ids = new HashSet<Long>();
+            for (String id : matcher.group(1).split(",")) {
+                ids.add(Long.valueOf(id));
+            }
+            return new ItemKeyConstraint(ItemKeyType.fromFieldName(matcher.group(2)), ids);
+        }
+        return null;
+    }
+
+    /**
+     * Splits the expression on the given operator wherever it appears outside of any parentheses or quotes
+     */
+    protected List<String> splitTopLevel(String expression, String operator) {
+        List<String> parts = new ArrayList<String>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote && expression.charAt(i - 1) != '\\') {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && expression.startsWith(operator, i)) {
+                parts.add(expression.substring(start, i));
+                start = i + operator.length();
+                i = start - 1;
+            }
+        }
+        parts.add(expression.substring(start));
+        return parts;
+    }
+
+    /**
+     * Strips any parentheses that enclose the entire expression
+     */
+    protected String unwrapParentheses(String expression) {
+        String response = expression;
+        while (response.startsWith("(") && findClosingParenthesis(response) == response.length() - 1) {
+            response = response.substring(1, response.length() - 1);
+        }
+        return response;
+    }
+
+    protected int findClosingParenthesis(String expression) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote && expression.charAt(i - 1) != '\\') {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gathers every sku, product and category id that an item criteria rule could see for this order. This 
+     * deliberately over-approximates - bundles contribute both their own ids and those of their items.
+     * 
+     * @param order
+     * @return the ids by type
+     */
+    protected Map<ItemKeyType, Set<Long>> getOrderItemKeys(Order order) {
+        Map<ItemKeyType, Set<Long>> keys = new EnumMap<ItemKeyType, Set<Long>>(ItemKeyType.class);
+        for (ItemKeyType type : ItemKeyType.values()) {
+            keys.put(type, new HashSet<Long>());
+        }
+        for (OrderItem orderItem : order.getOrderItems()) {
+            addOrderItemKeys(orderItem, keys);
+            if (orderItem instanceof BundleOrderItem) {
+                BundleOrderItem bundleOrderItem = (BundleOrderItem) orderItem;
+                addKeys(bundleOrderItem.getSku(), bundleOrderItem.getProduct(), keys);
+                for (DiscreteOrderItem discreteOrderItem : bundleOrderItem.getDiscreteOrderItems()) {
+                    addOrderItemKeys(discreteOrderItem, keys);
+                }
+            }
+        }
+        return keys;
+    }
+
+    protected void addOrderItemKeys(OrderItem orderItem, Map<ItemKeyType, Set<Long>> keys) {
+        Category category = orderItem.getCategory();
+        if (category != null && category.getId() != null) {
+            keys.get(ItemKeyType.CATEGORY).add(category.getId());
+        }
+        if (orderItem instanceof DiscreteOrderItem) {
+            DiscreteOrderItem discreteOrderItem = (DiscreteOrderItem) orderItem;
+            addKeys(discreteOrderItem.getSku(), discreteOrderItem.getProduct(), keys);
+        }
+    }
+
+    protected void addKeys(Sku sku, Product product, Map<ItemKeyType, Set<Long>> keys) {
+        if (sku != null && sku.getId() != null) {
+            keys.get(ItemKeyType.SKU).add(sku.getId());
+        }
+        if (product != null && product.getId() != null) {
+            keys.get(ItemKeyType.PRODUCT).add(product.getId());
+        }
+    }
+
+    @ManagedAttribute(description="The number of offers in the index", currencyTimeLimit=15)
+    public int getIndexedOfferCount() {
+        OfferIndex current = index;
+        return current == null ? 0 : current.offers.size();
+    }
+
+    @ManagedAttribute(description="The number of indexed offers that are evaluated for every order", currencyTimeLimit=15)
+    public int getUnrestrictedOfferCount() {
+        OfferIndex current = index;
+        return current == null ? 0 : current.unrestrictedOfferIds.size();
+    }
+
+    @ManagedAttribute(description="The number of indexed offers by offer type", currencyTimeLimit=15)
+    public Map<String, Integer> getIndexedOfferCountByType() {
+        Map<String, Integer> response = new HashMap<String, Integer>();
+        OfferIndex current = index;
+        if (current != null) {
+            for (IndexedOffer indexedOffer : current.offers.values()) {
+                String type = indexedOffer.type == null ? "NONE" : indexedOffer.type.getType();
+                Integer count = response.get(type);
+                response.put(type, count == null ? 1 : count + 1);
+            }
+        }
+        return response;
+    }
+
+    @ManagedAttribute(description="The number of automatic offers passed through the index since startup", currencyTimeLimit=15)
+    public long getOffersConsidered() {
+        return offersConsidered.get();
+    }
+
+    @ManagedAttribute(description="The number of automatic offers skipped by the index since startup", currencyTimeLimit=15)
+    public long getOffersFiltered() {
+        return offersFiltered.get();
+    }
+
+    @ManagedAttribute(description="The number of times the index has been rebuilt since startup", currencyTimeLimit=15)
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+
+    /**
+     * A single condition on the ids of an order item - at least one item in the order must have one of these ids
+     */
+    protected static class ItemKeyConstraint {
+
+        protected final ItemKeyType type;
+        protected final Set<Long> ids;
+
+        public ItemKeyConstraint(ItemKeyType type, Set<Long> ids) {
+            this.type = type;
+            this.ids = ids;
+        }
+
+        public boolean isMetBy(Map<ItemKeyType, Set<Long>> orderKeys) {
+            Set<Long> keys = orderKeys.get(type);
+            for (Long id : ids) {
+                if (keys.contains(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * The indexed form of an {@link Offer}. An offer without constraints is unrestricted.
+     */
+    protected static class IndexedOffer {
+
+        protected final Long offerId;
+        protected final OfferType type;
+        protected final Date startDate;
+        protected final Date endDate;
+        protected final List<ItemKeyConstraint> constraints = new ArrayList<ItemKeyConstraint>();
+
+        public IndexedOffer(Long offerId, OfferType type, Date startDate, Date endDate) {
+            this.offerId = offerId;
+            this.type = type;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        /**
+         * Uses the same one day tolerance as {@link OfferDao#readOffersByAutomaticDeliveryType()}, leaving the exact,
+         * time zone aware check to the offer processors.
+         */
+        public boolean isLive(long now) {
+            return (startDate == null || startDate.getTime() < now + ONE_DAY) 
+                    && (endDate == null || endDate.getTime() > now - ONE_DAY);
+        }
+
+        public boolean isMetBy(Map<ItemKeyType, Set<Long>> orderKeys) {
+            for (ItemKeyConstraint constraint : constraints) {
+                if (!constraint.isMetBy(orderKeys)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the constraint with the fewest ids, which is used to partition the offer
+         */
+        public ItemKeyConstraint getPartitionConstraint() {
+            ItemKeyConstraint response = null;
+            for (ItemKeyConstraint constraint : constraints) {
+                if (response == null || constraint.ids.size() < response.ids.size()) {
+                    response = constraint;
+                }
+            }
+            return response;
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of the indexed offers, partitioned by the ids that they require
+     */
+    protected static class OfferIndex {
+
+        protected final long buildTime;
+        protected final Map<Long, IndexedOffer> offers = new HashMap<Long, IndexedOffer>();
+        protected final Set<Long> unrestrictedOfferIds = new HashSet<Long>();
+        protected final Map<ItemKeyType, Map<Long, List<IndexedOffer>>> offersByKey = 
+                new EnumMap<ItemKeyType, Map<Long, List<IndexedOffer>>>(ItemKeyType.class);
+
+        public OfferIndex(long buildTime) {
+            this.buildTime = buildTime;
+            for (ItemKeyType type : ItemKeyType.values()) {
+                offersByKey.put(type, new HashMap<Long, List<IndexedOffer>>());
+            }
+        }
+
+        protected void add(IndexedOffer indexedOffer) {
+            offers.put(indexedOffer.offerId, indexedOffer);
+            ItemKeyConstraint partition = indexedOffer.getPartitionConstraint();
+            if (partition == null) {
+                unrestrictedOfferIds.add(indexedOffer.offerId);
+                return;
+            }
+            Map<Long, List<IndexedOffer>> partitions = offersByKey.get(partition.type);
+            for (Long id : partition.ids) {
+                List<IndexedOffer> partitionOffers = partitions.get(id);
+                if (partitionOffers == null) {
+                    partitionOffers = new ArrayList<IndexedOffer>();
+                    partitions.put(id, partitionOffers);
+                }
+                partitionOffers.add(indexedOffer);
+            }
+        }
+
+        /**
+         * @param orderKeys the ids present in the order
+         * @return the ids of the indexed offers that may apply to an order with these ids
+         */
+        public Set<Long> findCandidateOfferIds(Map<ItemKeyType, Set<Long>> orderKeys) {
+            Set<Long> response = new HashSet<Long>(unrestrictedOfferIds);
+            for (Map.Entry<ItemKeyType, Set<Long>> entry : orderKeys.entrySet()) {
+                Map<Long, List<IndexedOffer>> partitions = offersByKey.get(entry.getKey());
+                for (Long id : entry.getValue()) {
+                    List<IndexedOffer> partitionOffers = partitions.get(id);
+                    if (partitionOffers != null) {
+                        for (IndexedOffer indexedOffer : partitionOffers) {
+                            if (!response.contains(indexedOffer.offerId) && indexedOffer.isMetBy(orderKeys)) {
+                                response.add(indexedOffer.offerId);
+                            }
+                        }
+                    }
+                }
+            }
+            return response;
+        }
+
+    }
+
+    protected static class RebuildThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "offer-candidate-index-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.common.MvelExpressionCacheService;
+import org.broadleafcommerce.common.persistence.Status;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferRule;
+import org.broadleafcommerce.core.offer.service.processor.AbstractBaseProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the match rules of every active offer into the {@link MvelExpressionCacheService} once the application 
+ * context has started, so that the first carts priced after a restart do not pay for compilation.
+ */
+@Service("blOfferRuleExpressionPrecompiler")
+public class OfferRuleExpressionPrecompiler implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Log LOG = LogFactory.getLog(OfferRuleExpressionPrecompiler.class);
+
+    @Value("${rule.expression.precompile.enabled}")
+    protected boolean precompileEnabled = true;
+
+    @Resource(name = "blMvelExpressionCacheService")
+    protected MvelExpressionCacheService expressionCacheService;
+
+    @Resource(name = "blOfferDao")
+    protected OfferDao offerDao;
+
+    protected final AtomicBoolean precompiled = new AtomicBoolean(false);
+
+    @Override
+    @Transactional(value = "blTransactionManager", readOnly = true)
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // Child contexts publish their own refresh events to this listener as well
+        if (!precompileEnabled || !precompiled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<String> expressions = new ArrayList<String>();
+            for (Offer offer : offerDao.readAllOffers()) {
+                if (offer instanceof Status && !((Status) offer).isActive()) {
+                    continue;
+                }
+                addOfferExpressions(offer, expressions);
+            }
+            int compiled = expressionCacheService.precompile(expressions, AbstractBaseProcessor.EXPRESSION_IMPORTS);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Precompiled " + compiled + " offer rule expressions");
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to precompile the offer rule expressions", e);
+        }
+    }
+
+    /**
+     * Adds every rule expression that the offer processors may evaluate for the given offer
+     * 
+     * @param offer
+     * @param expressions
+     */
+    protected void addOfferExpressions(Offer offer, List<String> expressions) {
+        expressions.add(offer.getAppliesToOrderRules());
+        expressions.add(offer.getAppliesToCustomerRules());
+        if (offer.getOfferMatchRules() != null) {
+            for (OfferRule rule : offer.getOfferMatchRules().values()) {
+                expressions.add(rule.getMatchRule());
+            }
+        }
+        addCriteriaExpressions(offer.getQualifyingItemCriteria(), expressions);
+        addCriteriaExpressions(offer.getTargetItemCriteria(), expressions);
+    }
+
+    protected void addCriteriaExpressions(Collection<OfferItemCriteria> criteria, List<String> expressions) {
+        if (criteria != null) {
+            for (OfferItemCriteria itemCriteria : criteria) {
+                expressions.add(itemCriteria.getMatchRule());
+            }
+        }
+    }
+
+}
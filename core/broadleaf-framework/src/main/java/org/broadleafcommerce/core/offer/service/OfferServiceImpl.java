@@ -87,6 +87,9 @@ public class OfferServiceImpl implements OfferService {
     @Resource(name = "blOrderService")
     protected OrderService orderService;
 
+    @Resource(name = "blOfferCandidateIndexService")
+    protected OfferCandidateIndexService offerCandidateIndexService;
+
     @Override
     public List<Offer> findAllOffers() {
         return offerDao.readAllOffers();
@@ -153,6 +156,9 @@ public class OfferServiceImpl implements OfferService {
             }
         }
         List<Offer> globalOffers = lookupAutomaticDeliveryOffers();
+        if (offerCandidateIndexService != null) {
+            globalOffers = offerCandidateIndexService.filterCandidateOffers(globalOffers, order);
+        }
         for (Offer globalOffer : globalOffers) {
             if (!offers.contains(globalOffer)) {
                 offers.add(globalOffer);
@@ -16,9 +16,9 @@
 
 package org.broadleafcommerce.core.offer.service.processor;
 
-import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.common.MvelExpressionCacheService;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.money.Money;
@@ -38,12 +38,11 @@ import org.broadleafcommerce.profile.core.domain.Customer;
 import org.hibernate.tool.hbm2x.StringUtils;
 import org.joda.time.LocalDateTime;
 import org.mvel2.MVEL;
-import org.mvel2.ParserContext;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -62,10 +61,25 @@ import javax.annotation.Resource;
 public abstract class AbstractBaseProcessor implements BaseProcessor {
 
     private static final Log LOG = LogFactory.getLog(AbstractBaseProcessor.class);
-    private static final Map EXPRESSION_CACHE = new LRUMap(1000);
+
+    /**
+     * The imports that offer rules are compiled against
+     */
+    public static final Map<String, Class<?>> EXPRESSION_IMPORTS;
+    static {
+        Map<String, Class<?>> imports = new HashMap<String, Class<?>>();
+        imports.put("OfferType", OfferType.class);
+        imports.put("FulfillmentType", FulfillmentType.class);
+        imports.put("MVEL", MVEL.class);
+        imports.put("MvelHelper", MvelHelper.class);
+        EXPRESSION_IMPORTS = Collections.unmodifiableMap(imports);
+    }
     
     @Resource(name = "blOfferTimeZoneProcessor")
     protected OfferTimeZoneProcessor offerTimeZoneProcessor;
+
+    @Resource(name = "blMvelExpressionCacheService")
+    protected MvelExpressionCacheService expressionCacheService;
     
     protected CandidatePromotionItems couldOfferApplyToOrderItems(Offer offer, List<PromotableOrderItem> promotableOrderItems) {
         CandidatePromotionItems candidates = new CandidatePromotionItems();
@@ -224,24 +238,7 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
      */
     public Boolean executeExpression(String expression, Map<String, Object> vars) {
         try {
-            Serializable exp;
-            synchronized (EXPRESSION_CACHE) {
-                exp = (Serializable) EXPRESSION_CACHE.get(expression);
-                if (exp == null) {
-                    ParserContext context = new ParserContext();
-                    context.addImport("OfferType", OfferType.class);
-                    context.addImport("FulfillmentType", FulfillmentType.class);
-                    context.addImport("MVEL", MVEL.class);
-                    context.addImport("MvelHelper", MvelHelper.class);
-                    //            StringBuffer completeExpression = new StringBuffer(functions.toString());
-                    //            completeExpression.append(" ").append(expression);
-                    exp = MVEL.compileExpression(expression, context);
-
-                    EXPRESSION_CACHE.put(expression, exp);
-                }
-            }
-
-            Object test = MVEL.executeExpression(exp, vars);
+            Object test = expressionCacheService.executeExpression(expression, EXPRESSION_IMPORTS, vars);
             
             return (Boolean) test;
         } catch (Exception e) {
@@ -523,4 +520,12 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
         this.offerTimeZoneProcessor = offerTimeZoneProcessor;
     }
 
+    public MvelExpressionCacheService getExpressionCacheService() {
+        return expressionCacheService;
+    }
+
+    public void setExpressionCacheService(MvelExpressionCacheService expressionCacheService) {
+        this.expressionCacheService = expressionCacheService;
+    }
+
 }
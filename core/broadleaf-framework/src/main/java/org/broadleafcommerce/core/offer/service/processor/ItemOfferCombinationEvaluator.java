@@ -0,0 +1,41 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+
+import java.util.List;
+
+/**
+ * Prices a single combination of item offers for an {@link ItemOfferCombinationOptimizer}. Implementations must not
+ * change the order that is being priced.
+ * 
+ * @see {@link ItemOfferProcessorImpl}
+ */
+public interface ItemOfferCombinationEvaluator {
+
+    /**
+     * Applies the given item offers, in the given order, to a copy of the order being priced
+     * 
+     * @param itemOffers the offers to apply
+     * @return the resulting order subtotal, including item adjustments
+     */
+    public Money evaluate(List<PromotableCandidateItemOffer> itemOffers);
+
+}
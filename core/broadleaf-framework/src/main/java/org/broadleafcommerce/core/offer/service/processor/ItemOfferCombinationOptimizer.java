@@ -0,0 +1,44 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+
+import java.util.List;
+
+/**
+ * Chooses which of the qualified item offers should be applied to an order. Replace the 
+ * blItemOfferCombinationOptimizer bean to change how the combinations are searched.
+ * 
+ * @see {@link ItemOfferProcessorImpl#determineBestPermutation(List, org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrder)}
+ */
+public interface ItemOfferCombinationOptimizer {
+
+    /**
+     * Finds the combination of item offers that results in the lowest order subtotal. Every combination returned
+     * must keep the relative order of the offers in itemOffers, since that is the order they are applied in.
+     * 
+     * @param itemOffers the qualified item offers, sorted by priority and potential savings
+     * @param seedCombinations combinations that must always be evaluated, best first
+     * @param evaluator prices a combination without changing the order
+     * @return the best combination found
+     */
+    public List<PromotableCandidateItemOffer> findBestCombination(List<PromotableCandidateItemOffer> itemOffers,
+            List<List<PromotableCandidateItemOffer>> seedCombinations, ItemOfferCombinationEvaluator evaluator);
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default implementation of {@link ItemOfferCombinationOptimizer}.
+ * 
+ * The seed combinations are always evaluated first, so the result is never worse than applying the best seed. After
+ * that, and while the budget of offer.combination.search.maxEvaluations evaluations and offer.combination.search.maxTime 
+ * milliseconds lasts, the following are tried:
+ * <ul>
+ *  <li>each totalitarian or non-combinable offer on its own, since it cannot be combined with anything else</li>
+ *  <li>subsets of the combinable offers, found through a depth first branch and bound search that tries including 
+ *  each offer before excluding it</li>
+ * </ul>
+ * A branch is cut off when the subtotal reached so far, less the potential savings of every offer that has not been 
+ * decided yet, could not beat the best subtotal found. Potential savings are computed for each offer on its own, so 
+ * this bound is a heuristic rather than a guarantee - which is why the search is also budgeted.
+ */
+@Service("blItemOfferCombinationOptimizer")
+@ManagedResource(objectName="org.broadleafcommerce:name=ItemOfferCombinationOptimizer", description="Item Offer Combination Optimizer", currencyTimeLimit=15)
+public class ItemOfferCombinationOptimizerImpl implements ItemOfferCombinationOptimizer {
+    private static final Log LOG = LogFactory.getLog(ItemOfferCombinationOptimizerImpl.class);
+
+    @Value("${offer.combination.search.enabled}")
+    protected boolean searchEnabled = false;
+
+    @Value("${offer.combination.search.maxEvaluations}")
+    protected int maxEvaluations = 64;
+
+    @Value("${offer.combination.search.maxTime}")
+    protected long maxTime = 50L;
+
+    protected final AtomicLong searchCount = new AtomicLong();
+    protected final AtomicLong evaluationCount = new AtomicLong();
+    protected final AtomicLong improvementCount = new AtomicLong();
+    protected final AtomicLong budgetExhaustedCount = new AtomicLong();
+
+    @Override
+    public List<PromotableCandidateItemOffer> findBestCombination(List<PromotableCandidateItemOffer> itemOffers,
+            List<List<PromotableCandidateItemOffer>> seedCombinations, ItemOfferCombinationEvaluator evaluator) {
+        SearchState state = new SearchState(evaluator, System.currentTimeMillis() + maxTime);
+        for (List<PromotableCandidateItemOffer> seed : seedCombinations) {
+            state.evaluate(seed);
+        }
+        if (!searchEnabled || itemOffers.size() < 2) {
+            return state.bestCombination;
+        }
+
+        Money bestSeedSubtotal = state.bestSubtotal;
+        List<PromotableCandidateItemOffer> combinableOffers = new ArrayList<PromotableCandidateItemOffer>();
+        for (PromotableCandidateItemOffer itemOffer : itemOffers) {
+            if (isExclusive(itemOffer)) {
+                if (state.hasBudget()) {
+                    state.evaluate(Collections.singletonList(itemOffer));
+                }
+            } else {
+                combinableOffers.add(itemOffer);
+            }
+        }
+        if (combinableOffers.size() > 1 && state.hasBudget()) {
+            Money[] remainingSavings = calculateRemainingSavings(combinableOffers);
+            Money baseSubtotal = state.evaluator.evaluate(new ArrayList<PromotableCandidateItemOffer>());
+            state.evaluationCount++;
+            search(combinableOffers, 0, new ArrayList<PromotableCandidateItemOffer>(), baseSubtotal, remainingSavings, state);
+        }
+
+        searchCount.incrementAndGet();
+        evaluationCount.addAndGet(state.evaluationCount);
+        if (!state.hasBudget()) {
+            budgetExhaustedCount.incrementAndGet();
+        }
+        if (bestSeedSubtotal != null && state.bestSubtotal.lessThan(bestSeedSubtotal)) {
+            improvementCount.incrementAndGet();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Found an item offer combination with a subtotal of " + state.bestSubtotal + " instead of " 
+                        + bestSeedSubtotal + " after " + state.evaluationCount + " evaluations");
+            }
+        }
+        return state.bestCombination;
+    }
+
+    /**
+     * Tries including and then excluding the offer at the given index, pruning branches that cannot improve on the 
+     * best combination found so far.
+     */
+    protected void search(List<PromotableCandidateItemOffer> offers, int index, List<PromotableCandidateItemOffer> included,
+            Money includedSubtotal, Money[] remainingSavings, SearchState state) {
+        if (index == offers.size() || !state.hasBudget()) {
+            return;
+        }
+        if (remainingSavings[index] != null && state.bestSubtotal != null 
+                && !includedSubtotal.subtract(remainingSavings[index]).lessThan(state.bestSubtotal)) {
+            return;
+        }
+
+        included.add(offers.get(index));
+        Money withOffer = state.evaluate(included);
+        search(offers, index + 1, included, withOffer, remainingSavings, state);
+        included.remove(included.size() - 1);
+
+        search(offers, index + 1, included, includedSubtotal, remainingSavings, state);
+    }
+
+    /**
+     * @return for each index, the total potential savings of the offers from that index on, or null if any of those
+     * offers does not know its potential savings
+     */
+    protected Money[] calculateRemainingSavings(List<PromotableCandidateItemOffer> offers) {
+        Money[] response = new Money[offers.size() + 1];
+        Money total = null;
+        boolean known = true;
+        for (int i = offers.size() - 1; i >= 0; i--) {
+            Money savings = offers.get(i).getPotentialSavings();
+            if (savings == null) {
+                known = false;
+            } else if (known) {
+                total = total == null ? savings : total.add(savings);
+            }
+            response[i] = known ? total : null;
+        }
+        return response;
+    }
+
+    protected boolean isExclusive(PromotableCandidateItemOffer itemOffer) {
+        return Boolean.TRUE.equals(itemOffer.getOffer().isTotalitarianOffer()) 
+                || (!itemOffer.isLegacyOffer() && !itemOffer.getOffer().isCombinableWithOtherOffers());
+    }
+
+    @ManagedAttribute(description="The number of combination searches since startup", currencyTimeLimit=15)
+    public long getSearchCount() {
+        return searchCount.get();
+    }
+
+    @ManagedAttribute(description="The number of combinations evaluated since startup", currencyTimeLimit=15)
+    public long getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    @ManagedAttribute(description="The number of searches that beat the seed combinations", currencyTimeLimit=15)
+    public long getImprovementCount() {
+        return improvementCount.get();
+    }
+
+    @ManagedAttribute(description="The number of searches that ran out of budget", currencyTimeLimit=15)
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * Tracks the best combination and the budget for a single search
+     */
+    protected class SearchState {
+
+        protected final ItemOfferCombinationEvaluator evaluator;
+        protected final long deadline;
+        protected final Map<List<PromotableCandidateItemOffer>, Money> evaluated = new HashMap<List<PromotableCandidateItemOffer>, Money>();
+        protected List<PromotableCandidateItemOffer> bestCombination;
+        protected Money bestSubtotal;
+        protected int evaluationCount = 0;
+
+        public SearchState(ItemOfferCombinationEvaluator evaluator, long deadline) {
+            this.evaluator = evaluator;
+            this.deadline = deadline;
+        }
+
+        public boolean hasBudget() {
+            return evaluationCount < maxEvaluations && System.currentTimeMillis() < deadline;
+        }
+
+        /**
+         * Evaluates the combination, unless it has been evaluated already, and keeps it if it is strictly better 
+         * than the best one so far.
+         * 
+         * @return the subtotal of the combination
+         */
+        public Money evaluate(List<PromotableCandidateItemOffer> combination) {
+            Money subtotal = evaluated.get(combination);
+            if (subtotal == null) {
+                List<PromotableCandidateItemOffer> copy = new ArrayList<PromotableCandidateItemOffer>(combination);
+                subtotal = evaluator.evaluate(copy);
+                evaluationCount++;
+                evaluated.put(copy, subtotal);
+                if (bestSubtotal == null || subtotal.lessThan(bestSubtotal)) {
+                    bestSubtotal = subtotal;
+                    bestCombination = copy;
+                }
+            }
+            return subtotal;
+        }
+
+    }
+
+}
@@ -31,14 +31,19 @@ import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderI
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderItemPriceDetail;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderItemPriceDetailAdjustment;
 import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.OrderItem;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
 
 /**
  * Filter and apply order item offers.
@@ -48,6 +53,9 @@ import java.util.List;
  */
 @Service("blItemOfferProcessor")
 public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements ItemOfferProcessor {
+
+    @Resource(name = "blItemOfferCombinationOptimizer")
+    protected ItemOfferCombinationOptimizer itemOfferCombinationOptimizer;
     
     /* (non-Javadoc)
      * @see org.broadleafcommerce.core.offer.service.processor.ItemOfferProcessor#filterItemLevelOffer(org.broadleafcommerce.core.order.domain.Order, java.util.List, java.util.List, org.broadleafcommerce.core.offer.domain.Offer)
@@ -578,25 +586,34 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
         return listOfOfferLists;
     }
 
-    protected void determineBestPermutation(List<PromotableCandidateItemOffer> itemOffers, PromotableOrder order) {
+    /**
+     * Chooses the item offers to apply through the {@link ItemOfferCombinationOptimizer}, using the lists from
+     * {@link #buildItemOfferPermutations(List)} as its starting point. Each combination is evaluated against a copy of
+     * the order, so the order itself is only touched once the best combination is applied.
+     * 
+     * @param itemOffers
+     * @param order
+     */
+    protected void determineBestPermutation(List<PromotableCandidateItemOffer> itemOffers, final PromotableOrder order) {
         List<List<PromotableCandidateItemOffer>> permutations = buildItemOfferPermutations(itemOffers);
+        ItemOfferCombinationEvaluator evaluator = new ItemOfferCombinationEvaluator() {
+            @Override
+            public Money evaluate(List<PromotableCandidateItemOffer> offers) {
+                return evaluateItemOfferCombination(order, offers);
+            }
+        };
+
         List<PromotableCandidateItemOffer> bestOfferList = null;
-        Money lowestSubtotal = null;
-        if (permutations.size() > 1) {
+        if (itemOfferCombinationOptimizer != null) {
+            bestOfferList = itemOfferCombinationOptimizer.findBestCombination(itemOffers, permutations, evaluator);
+        } else if (permutations.size() > 1) {
+            Money lowestSubtotal = null;
             for (List<PromotableCandidateItemOffer> offerList : permutations) {
-                applyAllItemOffers(offerList, order);
-                chooseSaleOrRetailAdjustments(order);
-                Money testSubtotal = order.calculateSubtotalWithAdjustments();
-
+                Money testSubtotal = evaluator.evaluate(offerList);
                 if (lowestSubtotal == null || testSubtotal.lessThan(lowestSubtotal)) {
                     lowestSubtotal = testSubtotal;
                     bestOfferList = offerList;
                 }
-
-                // clear price details
-                for (PromotableOrderItem item : order.getDiscountableOrderItems()) {
-                    item.resetPriceDetails();
-                }
             }
         } else {
             bestOfferList = permutations.get(0);
@@ -604,6 +621,68 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
         applyAllItemOffers(bestOfferList, order);
     }
 
+    /**
+     * Applies the item offers to a fresh {@link PromotableOrder} for the same order, leaving the given promotable
+     * order and the candidate offers untouched.
+     * 
+     * @param order
+     * @param itemOffers
+     * @return the subtotal with adjustments that the offers would result in
+     */
+    protected Money evaluateItemOfferCombination(PromotableOrder order, List<PromotableCandidateItemOffer> itemOffers) {
+        PromotableOrder orderCopy = promotableItemFactory.createPromotableOrder(order.getOrder(), 
+                order.isIncludeOrderAndItemAdjustments());
+        applyAllItemOffers(copyCandidateItemOffers(itemOffers, orderCopy), orderCopy);
+        chooseSaleOrRetailAdjustments(orderCopy);
+        return orderCopy.calculateSubtotalWithAdjustments();
+    }
+
+    /**
+     * Creates copies of the candidate offers whose qualifiers and targets refer to the items of the given copy
+     * of the order. The copies start out unused.
+     * 
+     * @param itemOffers
+     * @param orderCopy
+     * @return the copied offers, in the same order
+     */
+    protected List<PromotableCandidateItemOffer> copyCandidateItemOffers(List<PromotableCandidateItemOffer> itemOffers,
+            PromotableOrder orderCopy) {
+        Map<OrderItem, PromotableOrderItem> copiedItems = new IdentityHashMap<OrderItem, PromotableOrderItem>();
+        for (PromotableOrderItem item : orderCopy.getDiscountableOrderItems()) {
+            copiedItems.put(item.getOrderItem(), item);
+        }
+        for (PromotableOrderItem item : orderCopy.getAllOrderItems()) {
+            if (!copiedItems.containsKey(item.getOrderItem())) {
+                copiedItems.put(item.getOrderItem(), item);
+            }
+        }
+
+        List<PromotableCandidateItemOffer> response = new ArrayList<PromotableCandidateItemOffer>(itemOffers.size());
+        for (PromotableCandidateItemOffer itemOffer : itemOffers) {
+            PromotableCandidateItemOffer copy = 
+                    promotableItemFactory.createPromotableCandidateItemOffer(orderCopy, itemOffer.getOffer());
+            copy.setPotentialSavings(itemOffer.getPotentialSavings());
+            for (Map.Entry<OfferItemCriteria, List<PromotableOrderItem>> entry : itemOffer.getCandidateQualifiersMap().entrySet()) {
+                copy.getCandidateQualifiersMap().put(entry.getKey(), copyOrderItems(entry.getValue(), copiedItems));
+            }
+            copy.getCandidateTargets().addAll(copyOrderItems(itemOffer.getCandidateTargets(), copiedItems));
+            response.add(copy);
+        }
+        return response;
+    }
+
+    protected List<PromotableOrderItem> copyOrderItems(List<PromotableOrderItem> items, 
+            Map<OrderItem, PromotableOrderItem> copiedItems) {
+        List<PromotableOrderItem> response = new ArrayList<PromotableOrderItem>(items.size());
+        for (PromotableOrderItem item : items) {
+            PromotableOrderItem copy = copiedItems.get(item.getOrderItem());
+            if (copy != null) {
+                response.add(copy);
+            }
+        }
+        return response;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void applyAndCompareOrderAndItemOffers(PromotableOrder order,
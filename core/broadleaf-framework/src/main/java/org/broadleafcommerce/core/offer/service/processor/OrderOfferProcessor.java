@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.offer.service.processor;
 
+import org.broadleafcommerce.cms.common.MvelExpressionCacheService;
 import org.broadleafcommerce.core.offer.dao.OfferDao;
 import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateOrderOffer;
@@ -82,4 +83,9 @@ public interface OrderOfferProcessor extends BaseProcessor {
      * Set the orderItemDao (primarily for unit testing)
      */
     public void setOrderItemDao(OrderItemDao orderItemDao);
+
+    /**
+     * Set the expressionCacheService (primarily for unit testing)
+     */
+    public void setExpressionCacheService(MvelExpressionCacheService expressionCacheService);
 }
\ No newline at end of file
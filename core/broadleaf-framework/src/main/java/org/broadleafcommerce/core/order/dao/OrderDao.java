@@ -26,6 +26,17 @@ public interface OrderDao {
 
     Order readOrderById(Long orderId);
 
+    /**
+     * Reads the order, optionally re-reading its state and cascaded collections from the database so that changes
+     * committed by another transaction since the order was loaded into the current persistence context are seen.
+     * Refreshing discards any unsaved changes to the order and requires an active transaction.
+     * 
+     * @param orderId
+     * @param refresh whether to refresh an order that is already managed
+     * @return the order, or null if it does not exist
+     */
+    Order readOrderById(Long orderId, boolean refresh);
+
     List<Order> readOrdersForCustomer(Customer customer, OrderStatus orderStatus);
 
     List<Order> readOrdersForCustomer(Long id);
@@ -36,6 +47,15 @@ public interface OrderDao {
 
     Order save(Order order);
 
+    /**
+     * Whether the given order instance is managed by the current persistence context, meaning changes made to it
+     * will be flushed without the order having to be merged again.
+     * 
+     * @param order
+     * @return true if the order is managed
+     */
+    boolean isManaged(Order order);
+
     void delete(Order order);
 
     Order submitOrder(Order cartOrder);
@@ -54,6 +54,15 @@ public class OrderDaoImpl implements OrderDao {
         return em.find(OrderImpl.class, orderId);
     }
 
+    @Override
+    public Order readOrderById(final Long orderId, boolean refresh) {
+        Order order = readOrderById(orderId);
+        if (refresh && order != null) {
+            em.refresh(order);
+        }
+        return order;
+    }
+
     @Override
     public Order save(final Order order) {
         Order response = em.merge(order);
@@ -61,6 +70,11 @@ public class OrderDaoImpl implements OrderDao {
         return response;
     }
 
+    @Override
+    public boolean isManaged(Order order) {
+        return order.getId() != null && em.contains(order);
+    }
+
     @Override
     public void delete(Order salesOrder) {
         if (!em.contains(salesOrder)) {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.order.service;
+
+/**
+ * Serializes the operations that modify a cart, such as adding, updating and removing items and pricing, so that 
+ * concurrent requests for the same order wait for each other instead of colliding in the database.
+ * 
+ * The default implementation only coordinates the operations of a single JVM. Clustered installations can replace
+ * the blCartOperationCoordinator bean with an implementation backed by a distributed lock.
+ * 
+ * @see {@link OrderService}
+ */
+public interface CartOperationCoordinator {
+
+    /**
+     * Locks the given order for the current thread, waiting for any other operation on it to finish. If a transaction
+     * is active, the lock is held until that transaction completes, so that the next operation on the order sees the 
+     * committed changes, and {@link #unlockOrder(Long)} has no effect. Otherwise it is held until 
+     * {@link #unlockOrder(Long)} is called, so every call must be paired with a call to {@link #unlockOrder(Long)} in a 
+     * finally block. Locking an order that the current thread already holds returns immediately.
+     * 
+     * @param orderId
+     * @return true if another operation on the order had to be waited for, in which case any copy of the order read 
+     * before this call may be stale
+     * @throws org.broadleafcommerce.core.order.service.exception.CartOperationLockException if the lock could not be obtained in time, or the thread was interrupted
+     * while waiting for it
+     */
+    public boolean lockOrder(Long orderId);
+
+    /**
+     * Releases a lock obtained by {@link #lockOrder(Long)} outside of a transaction. Has no effect on a lock that is
+     * held until the current transaction completes.
+     * 
+     * @param orderId
+     */
+    public void unlockOrder(Long orderId);
+
+}
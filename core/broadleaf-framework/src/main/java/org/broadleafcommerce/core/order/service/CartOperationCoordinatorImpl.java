@@ -0,0 +1,211 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.order.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.core.order.service.exception.CartOperationLockException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default implementation of {@link CartOperationCoordinator} that serializes the cart operations of this JVM. Each 
+ * order that is being operated on has its own fair lock, so operations on one order are run in the order in which they
+ * arrived and never wait for operations on other orders. A lock is discarded once no thread holds or waits for it.
+ * 
+ * Waiting is bounded by cart.operation.lock.timeout milliseconds, after which the operation fails with a 
+ * {@link CartOperationLockException} rather than run concurrently with the operation it was waiting for. This also 
+ * resolves operations that lock two orders in opposite orders, such as merging carts.
+ */
+@Service("blCartOperationCoordinator")
+@ManagedResource(objectName="org.broadleafcommerce:name=CartOperationCoordinator", description="Cart Operation Coordinator", currencyTimeLimit=15)
+public class CartOperationCoordinatorImpl implements CartOperationCoordinator {
+    private static final Log LOG = LogFactory.getLog(CartOperationCoordinatorImpl.class);
+
+    @Value("${cart.operation.lock.enabled}")
+    protected boolean enabled = true;
+
+    @Value("${cart.operation.lock.timeout}")
+    protected long lockTimeout = 10000L;
+
+    // Guarded by itself
+    protected final Map<Long, OrderLock> locks = new HashMap<Long, OrderLock>();
+
+    protected final AtomicLong lockCount = new AtomicLong();
+    protected final AtomicLong contendedLockCount = new AtomicLong();
+    protected final AtomicLong lockTimeoutCount = new AtomicLong();
+    protected final AtomicLong totalWaitTime = new AtomicLong();
+
+    @Override
+    public boolean lockOrder(final Long orderId) {
+        if (!enabled || orderId == null) {
+            return false;
+        }
+        boolean bindToTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (bindToTransaction) {
+            OrderLock heldLock = getHeldLock(orderId);
+            if (heldLock != null && TransactionSynchronizationManager.hasResource(heldLock)) {
+                // Already held until the current transaction completes
+                return false;
+            }
+        }
+
+        final OrderLock lock = acquireLock(orderId);
+        boolean waited = false;
+        if (!lock.tryLock()) {
+            waited = true;
+            contendedLockCount.incrementAndGet();
+            long start = System.currentTimeMillis();
+            boolean acquired = false;
+            try {
+                acquired = lock.tryLock(lockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                releaseLock(orderId, lock);
+                throw new CartOperationLockException("Interrupted while waiting for another operation on order " 
+                        + orderId, e);
+            } finally {
+                totalWaitTime.addAndGet(System.currentTimeMillis() - start);
+            }
+            if (!acquired) {
+                lockTimeoutCount.incrementAndGet();
+                releaseLock(orderId, lock);
+                String message = "Timed out after " + lockTimeout + "ms waiting for another operation on order " + orderId;
+                LOG.warn(message);
+                throw new CartOperationLockException(message);
+            }
+        }
+        lockCount.incrementAndGet();
+
+        if (bindToTransaction) {
+            TransactionSynchronizationManager.bindResource(lock, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(lock);
+                    lock.unlock();
+                    releaseLock(orderId, lock);
+                }
+            });
+        }
+        return waited;
+    }
+
+    @Override
+    public void unlockOrder(Long orderId) {
+        if (!enabled || orderId == null) {
+            return;
+        }
+        OrderLock lock = getHeldLock(orderId);
+        if (lock != null && !TransactionSynchronizationManager.hasResource(lock)) {
+            lock.unlock();
+            releaseLock(orderId, lock);
+        }
+    }
+
+    /**
+     * @return the lock of the given order, registering the current thread as one of its users so that it is not 
+     * discarded before the thread releases it through {@link #releaseLock(Long, OrderLock)}
+     */
+    protected OrderLock acquireLock(Long orderId) {
+        synchronized (locks) {
+            OrderLock lock = locks.get(orderId);
+            if (lock == null) {
+                lock = new OrderLock();
+                locks.put(orderId, lock);
+            }
+            lock.users++;
+            return lock;
+        }
+    }
+
+    protected void releaseLock(Long orderId, OrderLock lock) {
+        synchronized (locks) {
+            lock.users--;
+            if (lock.users <= 0 && locks.get(orderId) == lock) {
+                locks.remove(orderId);
+            }
+        }
+    }
+
+    /**
+     * @return the lock of the given order if the current thread holds it, or null
+     */
+    protected OrderLock getHeldLock(Long orderId) {
+        OrderLock lock;
+        synchronized (locks) {
+            lock = locks.get(orderId);
+        }
+        return lock != null && lock.isHeldByCurrentThread() ? lock : null;
+    }
+
+    @ManagedAttribute(description="The number of orders whose lock is held or waited for", currencyTimeLimit=15)
+    public int getActiveLockCount() {
+        synchronized (locks) {
+            return locks.size();
+        }
+    }
+
+    @ManagedAttribute(description="The number of cart operation locks obtained", currencyTimeLimit=15)
+    public long getLockCount() {
+        return lockCount.get();
+    }
+
+    @ManagedAttribute(description="The number of cart operations that waited for another operation on the same order", currencyTimeLimit=15)
+    public long getContendedLockCount() {
+        return contendedLockCount.get();
+    }
+
+    @ManagedAttribute(description="The number of cart operations that failed because they timed out waiting for the lock", currencyTimeLimit=15)
+    public long getLockTimeoutCount() {
+        return lockTimeoutCount.get();
+    }
+
+    @ManagedAttribute(description="The total time, in milliseconds, that cart operations spent waiting for a lock", currencyTimeLimit=15)
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    /**
+     * A fair lock that counts the threads holding or waiting for it. Each successful or attempted {@link #lockOrder(Long)}
+     * counts as one use, so that reentrant holds are released one at a time.
+     */
+    protected static class OrderLock extends ReentrantLock {
+
+        private static final long serialVersionUID = 1L;
+
+        // Guarded by the locks map
+        protected int users;
+
+        protected OrderLock() {
+            super(true);
+        }
+
+    }
+
+}
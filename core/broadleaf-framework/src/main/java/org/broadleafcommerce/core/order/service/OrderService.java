@@ -366,6 +366,25 @@ public interface OrderService {
      * @throws RemoveFromCartException 
      */
     public Order removeItem(Long orderId, Long orderItemId, boolean priceOrder) throws RemoveFromCartException;
+
+    /**
+     * Applies several item requests to the given Order as a single cart operation. Requests without an orderItemId
+     * are added to the order as in {@link #addItem(Long, OrderItemRequestDTO, boolean)}, requests with an orderItemId
+     * update the quantity of that item as in {@link #updateItemQuantity(Long, OrderItemRequestDTO, boolean)}, and a
+     * quantity of 0 removes the item. Requests that add an item must have a positive quantity.
+     * 
+     * All requests are checked before any of them are applied, and the order is priced and saved only once, after the
+     * last request has been applied. If any request fails, none of the changes are kept. This is the preferred way to
+     * apply bulk changes such as quick order forms or uploaded item lists.
+     * 
+     * @see OrderItemRequestDTO
+     * @param orderId
+     * @param orderItemRequestDTOs
+     * @param priceOrder
+     * @return the updated order
+     * @throws UpdateCartException
+     */
+    public Order updateItems(Long orderId, List<OrderItemRequestDTO> orderItemRequestDTOs, boolean priceOrder) throws UpdateCartException;
     
     /**
      * @see #setMoveNamedOrderItems(boolean)
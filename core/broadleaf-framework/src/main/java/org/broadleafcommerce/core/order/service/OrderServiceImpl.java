@@ -37,6 +37,7 @@ import org.broadleafcommerce.core.order.domain.OrderItemAttribute;
 import org.broadleafcommerce.core.order.service.call.GiftWrapOrderItemRequest;
 import org.broadleafcommerce.core.order.service.call.OrderItemRequestDTO;
 import org.broadleafcommerce.core.order.service.exception.AddToCartException;
+import org.broadleafcommerce.core.order.service.exception.ItemNotFoundException;
 import org.broadleafcommerce.core.order.service.exception.RemoveFromCartException;
 import org.broadleafcommerce.core.order.service.exception.UpdateCartException;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
@@ -63,8 +64,11 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -111,6 +115,9 @@ public class OrderServiceImpl implements OrderService {
     
     @Resource(name = "blOrderServiceExtensionManager")
     protected OrderServiceExtensionManager extensionManager;
+
+    @Resource(name = "blCartOperationCoordinator")
+    protected CartOperationCoordinator cartOperationCoordinator;
     
     /* Workflows */
     @Resource(name = "blAddItemWorkflow")
@@ -138,6 +145,12 @@ public class OrderServiceImpl implements OrderService {
     @Value("${automatically.merge.like.items}")
     protected boolean automaticallyMergeLikeItems;
 
+    @Value("${cart.operation.unit.of.work.enabled}")
+    protected boolean cartUnitOfWorkEnabled = true;
+
+    /* The cart units of work open on the current thread, keyed by order id */
+    protected final ThreadLocal<Map<Long, CartUnitOfWork>> cartUnitsOfWork = new ThreadLocal<Map<Long, CartUnitOfWork>>();
+
     @Override
     @Transactional("blTransactionManager")
     public Order createNewCartForCustomer(Customer customer) {
@@ -220,6 +233,27 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public Order save(Order order, Boolean priceOrder) throws PricingException {
+        Long orderId = order.getId();
+        CartUnitOfWork unitOfWork = getCartUnitOfWork(orderId);
+        if (unitOfWork != null) {
+            //defer pricing and the final save of an order that is already managed to the end of the cart operation
+            unitOfWork.priceOrder |= priceOrder;
+            if (orderDao.isManaged(order)) {
+                unitOfWork.saveOrder = true;
+                return order;
+            }
+            return persist(order);
+        }
+
+        cartOperationCoordinator.lockOrder(orderId);
+        try {
+            return saveInternal(order, priceOrder);
+        } finally {
+            cartOperationCoordinator.unlockOrder(orderId);
+        }
+    }
+
+    protected Order saveInternal(Order order, Boolean priceOrder) throws PricingException {
         //persist the order first
         TransactionStatus status = TransactionUtils.createTransaction("saveOrder",
                     TransactionDefinition.PROPAGATION_REQUIRED, transactionManager);
@@ -231,7 +265,8 @@ public class OrderServiceImpl implements OrderService {
             throw ex;
         }
 
-        //make any pricing changes - possibly retrying with the persisted state if there's a lock failure
+        //make any pricing changes - possibly retrying with the persisted state if there's a lock failure. Operations
+        //in this JVM are serialized by the CartOperationCoordinator, so this only happens when another node prices the order
         if (priceOrder) {
             int retryCount = 0;
             boolean isValid = false;
@@ -305,6 +340,98 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.save(order);
     }
 
+    /**
+     * Opens a unit of work for the given order on the current thread, unless one is already open. While it is open, 
+     * {@link #save(Order, Boolean)} does not price the order and does not re-merge an order that is already managed, 
+     * but only records what was requested. {@link #completeCartUnitOfWork(Order)} then prices and saves the order once
+     * for the whole cart operation, including any nested operations.
+     * 
+     * @param orderId
+     * @return true if a new unit of work was opened, in which case the caller must complete or end it
+     */
+    protected boolean beginCartUnitOfWork(Long orderId) {
+        if (!cartUnitOfWorkEnabled || orderId == null) {
+            return false;
+        }
+        Map<Long, CartUnitOfWork> unitsOfWork = cartUnitsOfWork.get();
+        if (unitsOfWork == null) {
+            unitsOfWork = new HashMap<Long, CartUnitOfWork>();
+            cartUnitsOfWork.set(unitsOfWork);
+        }
+        if (unitsOfWork.containsKey(orderId)) {
+            return false;
+        }
+        unitsOfWork.put(orderId, new CartUnitOfWork());
+        return true;
+    }
+
+    /**
+     * Ends the unit of work for the given order and performs the pricing and save that were deferred during it.
+     * 
+     * @param order
+     * @return the priced and saved order
+     * @throws PricingException
+     */
+    protected Order completeCartUnitOfWork(Order order) throws PricingException {
+        CartUnitOfWork unitOfWork = endCartUnitOfWork(order.getId());
+        if (unitOfWork != null && (unitOfWork.priceOrder || unitOfWork.saveOrder)) {
+            order = save(order, unitOfWork.priceOrder);
+        }
+        return order;
+    }
+
+    /**
+     * Ends the unit of work for the given order, discarding anything that was deferred during it.
+     * 
+     * @param orderId
+     * @return the unit of work that was ended, or null if none was open
+     */
+    protected CartUnitOfWork endCartUnitOfWork(Long orderId) {
+        Map<Long, CartUnitOfWork> unitsOfWork = cartUnitsOfWork.get();
+        if (unitsOfWork == null) {
+            return null;
+        }
+        CartUnitOfWork unitOfWork = unitsOfWork.remove(orderId);
+        if (unitsOfWork.isEmpty()) {
+            cartUnitsOfWork.remove();
+        }
+        return unitOfWork;
+    }
+
+    protected CartUnitOfWork getCartUnitOfWork(Long orderId) {
+        Map<Long, CartUnitOfWork> unitsOfWork = cartUnitsOfWork.get();
+        return unitsOfWork == null || orderId == null ? null : unitsOfWork.get(orderId);
+    }
+
+    /**
+     * Serializes the current cart operation with any other operation on the same order. If another operation had to 
+     * be waited for, the order is refreshed so that the changes it committed are not overwritten. Every call must be 
+     * paired with a call to {@link #unlockOrder(Long)} in a finally block.
+     * 
+     * @param orderId
+     * @throws org.broadleafcommerce.core.order.service.exception.CartOperationLockException if the order could not be 
+     * locked in time
+     */
+    protected void lockOrder(Long orderId) {
+        if (cartOperationCoordinator.lockOrder(orderId)) {
+            try {
+                orderDao.readOrderById(orderId, true);
+            } catch (RuntimeException e) {
+                cartOperationCoordinator.unlockOrder(orderId);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Releases the lock obtained by {@link #lockOrder(Long)}, unless it is held until the current transaction completes
+     * 
+     * @param orderId
+     */
+    protected void unlockOrder(Long orderId) {
+        cartOperationCoordinator.unlockOrder(orderId);
+    }
+
     @Override
     @Transactional("blTransactionManager")
     public void cancelOrder(Order order) {
@@ -393,21 +520,34 @@ public class OrderServiceImpl implements OrderService {
         if (cartOrder == null) {
             cartOrder = createNewCartForCustomer(namedOrder.getCustomer());
         }
-        List<OrderItem> items = new ArrayList<OrderItem>(namedOrder.getOrderItems());
-        for (OrderItem item : items) {
-            if (moveNamedOrderItems) {
-                removeItem(namedOrder.getId(), item.getId(), false);
+        Long cartOrderId = cartOrder.getId();
+        boolean unitOfWork = beginCartUnitOfWork(cartOrderId);
+        try {
+            List<OrderItem> items = new ArrayList<OrderItem>(namedOrder.getOrderItems());
+            for (OrderItem item : items) {
+                if (moveNamedOrderItems) {
+                    removeItem(namedOrder.getId(), item.getId(), false);
+                }
+                
+                OrderItemRequestDTO orderItemRequest = orderItemService.buildOrderItemRequestDTOFromOrderItem(item);
+                cartOrder = addItem(cartOrderId, orderItemRequest, priceOrder);
             }
             
-            OrderItemRequestDTO orderItemRequest = orderItemService.buildOrderItemRequestDTOFromOrderItem(item);
-            cartOrder = addItem(cartOrder.getId(), orderItemRequest, priceOrder);
-        }
-        
-        if (deleteEmptyNamedOrders) {
-            cancelOrder(namedOrder);
+            if (deleteEmptyNamedOrders) {
+                cancelOrder(namedOrder);
+            }
+            
+            if (unitOfWork) {
+                cartOrder = completeCartUnitOfWork(cartOrder);
+            }
+            return cartOrder;
+        } catch (PricingException e) {
+            throw new AddToCartException("Could not add to cart", e);
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(cartOrderId);
+            }
         }
-        
-        return cartOrder;
     }
     
     @Override
@@ -487,6 +627,25 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional(value = "blTransactionManager", rollbackFor = { AddToCartException.class })
     public Order addItemWithPriceOverrides(Long orderId, OrderItemRequestDTO orderItemRequestDTO, boolean priceOrder) throws AddToCartException {
+        lockOrder(orderId);
+        boolean unitOfWork = beginCartUnitOfWork(orderId);
+        try {
+            Order order = addItemInternal(orderId, orderItemRequestDTO, priceOrder);
+            if (unitOfWork) {
+                order = completeCartUnitOfWork(order);
+            }
+            return order;
+        } catch (PricingException e) {
+            throw new AddToCartException("Could not add to cart", e);
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(orderId);
+            }
+            unlockOrder(orderId);
+        }
+    }
+
+    protected Order addItemInternal(Long orderId, OrderItemRequestDTO orderItemRequestDTO, boolean priceOrder) throws AddToCartException {
         Order order = findOrderById(orderId);
         if (automaticallyMergeLikeItems) {
             OrderItem item = findMatchingItem(order, orderItemRequestDTO);
@@ -519,26 +678,139 @@ public class OrderServiceImpl implements OrderService {
             return removeItem(orderId, orderItemRequestDTO.getOrderItemId(), priceOrder);
         }
         
+        lockOrder(orderId);
+        boolean unitOfWork = beginCartUnitOfWork(orderId);
         try {
             CartOperationRequest cartOpRequest = new CartOperationRequest(findOrderById(orderId), orderItemRequestDTO, priceOrder);
             CartOperationContext context = (CartOperationContext) updateItemWorkflow.doActivities(cartOpRequest);
-            return context.getSeedData().getOrder();
+            Order order = context.getSeedData().getOrder();
+            if (unitOfWork) {
+                order = completeCartUnitOfWork(order);
+            }
+            return order;
         } catch (WorkflowException e) {
             throw new UpdateCartException("Could not update cart quantity", getCartOperationExceptionRootCause(e));
+        } catch (PricingException e) {
+            throw new UpdateCartException("Could not update cart quantity", e);
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(orderId);
+            }
+            unlockOrder(orderId);
         }
     }
 
     @Override
     @Transactional(value = "blTransactionManager", rollbackFor = {RemoveFromCartException.class})
     public Order removeItem(Long orderId, Long orderItemId, boolean priceOrder) throws RemoveFromCartException {
+        lockOrder(orderId);
+        boolean unitOfWork = beginCartUnitOfWork(orderId);
         try {
             OrderItemRequestDTO orderItemRequestDTO = new OrderItemRequestDTO();
             orderItemRequestDTO.setOrderItemId(orderItemId);
             CartOperationRequest cartOpRequest = new CartOperationRequest(findOrderById(orderId), orderItemRequestDTO, priceOrder);
             CartOperationContext context = (CartOperationContext) removeItemWorkflow.doActivities(cartOpRequest);
-            return context.getSeedData().getOrder();
+            Order order = context.getSeedData().getOrder();
+            if (unitOfWork) {
+                order = completeCartUnitOfWork(order);
+            }
+            return order;
         } catch (WorkflowException e) {
             throw new RemoveFromCartException("Could not remove from cart", getCartOperationExceptionRootCause(e));
+        } catch (PricingException e) {
+            throw new RemoveFromCartException("Could not remove from cart", e);
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(orderId);
+            }
+            unlockOrder(orderId);
+        }
+    }
+
+    @Override
+    @Transactional(value = "blTransactionManager", rollbackFor = { UpdateCartException.class })
+    public Order updateItems(Long orderId, List<OrderItemRequestDTO> orderItemRequestDTOs, boolean priceOrder) throws UpdateCartException {
+        lockOrder(orderId);
+        boolean unitOfWork = false;
+        try {
+            Order order = findOrderById(orderId);
+            validateItemRequests(order, orderItemRequestDTOs);
+
+            unitOfWork = beginCartUnitOfWork(orderId);
+            for (OrderItemRequestDTO orderItemRequestDTO : orderItemRequestDTOs) {
+                order = applyItemRequest(orderId, orderItemRequestDTO, priceOrder);
+            }
+            if (unitOfWork) {
+                order = completeCartUnitOfWork(order);
+            }
+            return order;
+        } catch (PricingException e) {
+            throw new UpdateCartException("Could not update cart items", e);
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(orderId);
+            }
+            unlockOrder(orderId);
+        }
+    }
+
+    /**
+     * Checks the requests passed to {@link #updateItems(Long, List, boolean)} that can be checked without running the
+     * cart workflows, so that an invalid request is reported before any of the others have been applied.
+     * 
+     * @param order
+     * @param orderItemRequestDTOs
+     * @throws UpdateCartException
+     */
+    protected void validateItemRequests(Order order, List<OrderItemRequestDTO> orderItemRequestDTOs) throws UpdateCartException {
+        if (order == null) {
+            throw new UpdateCartException("Could not update cart items", 
+                    new IllegalArgumentException("Order is required when updating cart items"));
+        }
+        if (orderItemRequestDTOs == null) {
+            throw new UpdateCartException("Could not update cart items", 
+                    new IllegalArgumentException("Item requests are required when updating cart items"));
+        }
+
+        Set<Long> orderItemIds = new HashSet<Long>();
+        for (OrderItem orderItem : order.getOrderItems()) {
+            orderItemIds.add(orderItem.getId());
+        }
+        for (OrderItemRequestDTO orderItemRequestDTO : orderItemRequestDTOs) {
+            Integer quantity = orderItemRequestDTO.getQuantity();
+            if (quantity != null && quantity < 0) {
+                throw new UpdateCartException("Could not update cart items", 
+                        new IllegalArgumentException("Quantity cannot be negative"));
+            }
+            Long orderItemId = orderItemRequestDTO.getOrderItemId();
+            if (orderItemId == null && (quantity == null || quantity == 0)) {
+                // addItem would silently skip such a request, which is never what a batch meant to do
+                throw new UpdateCartException("Could not update cart items", 
+                        new IllegalArgumentException("Quantity must be greater than zero when adding an item"));
+            }
+            if (orderItemId != null) {
+                if (quantity == null) {
+                    throw new UpdateCartException("Could not update cart items", 
+                            new IllegalArgumentException("Quantity must be specified when updating order item (" + orderItemId + ")"));
+                }
+                if (!orderItemIds.contains(orderItemId)) {
+                    throw new UpdateCartException("Could not update cart items", 
+                            new ItemNotFoundException("Order Item (" + orderItemId + ") not found in Order (" + order.getId() + ")"));
+                }
+            }
+        }
+    }
+
+    protected Order applyItemRequest(Long orderId, OrderItemRequestDTO orderItemRequestDTO, boolean priceOrder) throws UpdateCartException {
+        try {
+            if (orderItemRequestDTO.getOrderItemId() == null) {
+                return addItem(orderId, orderItemRequestDTO, priceOrder);
+            }
+            return updateItemQuantity(orderId, orderItemRequestDTO, priceOrder);
+        } catch (AddToCartException e) {
+            throw new UpdateCartException("Could not add to cart", e.getCause());
+        } catch (RemoveFromCartException e) {
+            throw new UpdateCartException("Could not remove from cart", e.getCause());
         }
     }
 
@@ -546,16 +818,24 @@ public class OrderServiceImpl implements OrderService {
     @Transactional(value = "blTransactionManager", rollbackFor = { RemoveFromCartException.class })
     public Order removeInactiveItems(Long orderId, boolean priceOrder) throws RemoveFromCartException {
         Order order = findOrderById(orderId);
+        boolean unitOfWork = beginCartUnitOfWork(orderId);
         try {
 
             for (OrderItem currentItem : new ArrayList<OrderItem>(order.getOrderItems())) {
                 if (!currentItem.isSkuActive()) {
-                    removeItem(orderId, currentItem.getId(), priceOrder);
+                    order = removeItem(orderId, currentItem.getId(), priceOrder);
                 }
             }
 
+            if (unitOfWork) {
+                completeCartUnitOfWork(order);
+            }
         } catch (Exception e) {
             throw new RemoveFromCartException("Could not remove from cart", e.getCause());
+        } finally {
+            if (unitOfWork) {
+                endCartUnitOfWork(orderId);
+            }
         }
         return findOrderById(orderId);
     }
@@ -724,4 +1004,15 @@ public class OrderServiceImpl implements OrderService {
         }
         return null;
     }
+
+    /**
+     * Records the pricing and save requested for an order while a cart operation on it is in progress
+     */
+    protected static class CartUnitOfWork {
+
+        protected boolean priceOrder;
+        protected boolean saveOrder;
+
+    }
+
 }
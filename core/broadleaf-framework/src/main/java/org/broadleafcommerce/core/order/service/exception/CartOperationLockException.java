@@ -0,0 +1,37 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.order.service.exception;
+
+/**
+ * Thrown when a cart operation could not obtain the lock of its order in time, so that it is not run concurrently
+ * with another operation on the same order.
+ * 
+ * @see {@link org.broadleafcommerce.core.order.service.CartOperationCoordinator}
+ */
+public class CartOperationLockException extends OrderServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CartOperationLockException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public CartOperationLockException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.pricing.service;
+
+import org.broadleafcommerce.core.catalog.domain.SkuFee;
+import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.Order;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates the MVEL expressions of {@link SkuFee}s. Expressions are compiled once into the shared 
+ * {@link org.broadleafcommerce.cms.common.MvelExpressionCacheService} and only their compiled form is executed.
+ * 
+ * A fee whose expression is null or empty always applies. Expressions are expected to return a Boolean; any other
+ * result is treated as the fee not applying.
+ */
+public interface SkuFeeRuleEvaluator {
+
+    /**
+     * @param fee
+     * @param fulfillmentGroup
+     * @return whether or not the fee applies to the given fulfillment group
+     */
+    public boolean appliesToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup);
+
+    /**
+     * Determines, in a single pass over the order, which {@link SkuFeeType#FULFILLMENT} fees of the skus in each
+     * fulfillment group apply to that group. A fee is listed once for every item of the group that carries it, while
+     * each distinct expression is evaluated at most once per fulfillment group.
+     * 
+     * @param order
+     * @return the applicable fees of every fulfillment group that has at least one, keyed by fulfillment group instance
+     */
+    public Map<FulfillmentGroup, List<SkuFee>> evaluateFulfillmentFees(Order order);
+
+    /**
+     * Same as {@link #evaluateFulfillmentFees(Order)}, except that whether a fee applies is decided by the given 
+     * condition. The condition is asked at most once per fee and fulfillment group.
+     * 
+     * @param order
+     * @param condition
+     * @return the applicable fees of every fulfillment group that has at least one, keyed by fulfillment group instance
+     */
+    public Map<FulfillmentGroup, List<SkuFee>> evaluateFulfillmentFees(Order order, SkuFeeCondition condition);
+
+    /**
+     * Decides whether a {@link SkuFee} applies to a {@link FulfillmentGroup}
+     */
+    public static interface SkuFeeCondition {
+
+        public boolean appliesToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup);
+
+    }
+
+}
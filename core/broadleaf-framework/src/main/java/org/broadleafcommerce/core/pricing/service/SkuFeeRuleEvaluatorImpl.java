@@ -0,0 +1,251 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.pricing.service;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.cms.common.MvelExpressionCacheService;
+import org.broadleafcommerce.core.catalog.domain.SkuFee;
+import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.mvel2.MVEL;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+@Service("blSkuFeeRuleEvaluator")
+@ManagedResource(objectName="org.broadleafcommerce:name=SkuFeeRuleEvaluator", description="Sku Fee Rule Evaluator", currencyTimeLimit=15)
+public class SkuFeeRuleEvaluatorImpl implements SkuFeeRuleEvaluator {
+
+    private static final Log LOG = LogFactory.getLog(SkuFeeRuleEvaluatorImpl.class);
+
+    @Resource(name = "blMvelExpressionCacheService")
+    protected MvelExpressionCacheService expressionCacheService;
+
+    protected final ConcurrentMap<String, RuleStatistics> ruleStatistics = new ConcurrentHashMap<String, RuleStatistics>();
+
+    @Override
+    public boolean appliesToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup) {
+        String expression = fee.getExpression();
+        if (StringUtils.isEmpty(expression)) {
+            return true;
+        }
+        return evaluate(expression, expressionCacheService.getCompiledExpression(expression, 
+                expressionCacheService.getDefaultImports()), fulfillmentGroup);
+    }
+
+    @Override
+    public Map<FulfillmentGroup, List<SkuFee>> evaluateFulfillmentFees(Order order) {
+        // Compiled expressions are looked up once for the whole order and each expression is evaluated at most once
+        // per fulfillment group
+        final Map<String, Serializable> compiledExpressions = new HashMap<String, Serializable>();
+        final Map<FulfillmentGroup, Map<String, Boolean>> outcomes = new IdentityHashMap<FulfillmentGroup, Map<String, Boolean>>();
+        return evaluateFulfillmentFees(order, new SkuFeeCondition() {
+            @Override
+            public boolean appliesToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup) {
+                String expression = fee.getExpression();
+                if (StringUtils.isEmpty(expression)) {
+                    return true;
+                }
+                Map<String, Boolean> groupOutcomes = outcomes.get(fulfillmentGroup);
+                if (groupOutcomes == null) {
+                    groupOutcomes = new HashMap<String, Boolean>();
+                    outcomes.put(fulfillmentGroup, groupOutcomes);
+                }
+                Boolean outcome = groupOutcomes.get(expression);
+                if (outcome == null) {
+                    Serializable compiled = compiledExpressions.get(expression);
+                    if (compiled == null) {
+                        compiled = expressionCacheService.getCompiledExpression(expression, 
+                                expressionCacheService.getDefaultImports());
+                        compiledExpressions.put(expression, compiled);
+                    }
+                    outcome = evaluate(expression, compiled, fulfillmentGroup);
+                    groupOutcomes.put(expression, outcome);
+                }
+                return outcome;
+            }
+        });
+    }
+
+    @Override
+    public Map<FulfillmentGroup, List<SkuFee>> evaluateFulfillmentFees(Order order, SkuFeeCondition condition) {
+        // Fulfillment groups and fees are keyed by instance since their equals and hashCode depend on mutable state
+        Map<FulfillmentGroup, List<SkuFee>> applicableFees = new IdentityHashMap<FulfillmentGroup, List<SkuFee>>();
+
+        for (FulfillmentGroup fulfillmentGroup : order.getFulfillmentGroups()) {
+            Map<SkuFee, Boolean> outcomes = new IdentityHashMap<SkuFee, Boolean>();
+            List<SkuFee> groupFees = new ArrayList<SkuFee>();
+
+            for (FulfillmentGroupItem item : fulfillmentGroup.getFulfillmentGroupItems()) {
+                for (SkuFee fee : getFees(item)) {
+                    if (!SkuFeeType.FULFILLMENT.equals(fee.getFeeType())) {
+                        continue;
+                    }
+
+                    Boolean applies = outcomes.get(fee);
+                    if (applies == null) {
+                        applies = condition.appliesToFulfillmentGroup(fee, fulfillmentGroup);
+                        outcomes.put(fee, applies);
+                    }
+                    if (applies) {
+                        groupFees.add(fee);
+                    }
+                }
+            }
+
+            if (!groupFees.isEmpty()) {
+                applicableFees.put(fulfillmentGroup, groupFees);
+            }
+        }
+
+        return applicableFees;
+    }
+
+    protected List<SkuFee> getFees(FulfillmentGroupItem item) {
+        List<SkuFee> fees = null;
+        if (item.getOrderItem() instanceof BundleOrderItem) {
+            fees = ((BundleOrderItem) item.getOrderItem()).getSku().getFees();
+        } else if (item.getOrderItem() instanceof DiscreteOrderItem) {
+            fees = ((DiscreteOrderItem) item.getOrderItem()).getSku().getFees();
+        }
+        return fees == null ? new ArrayList<SkuFee>() : fees;
+    }
+
+    /**
+     * Executes the compiled expression for the fulfillment group and records how long it took
+     * 
+     * @param expression
+     * @param compiled
+     * @param fulfillmentGroup
+     * @return whether or not the expression returned true
+     */
+    protected boolean evaluate(String expression, Serializable compiled, FulfillmentGroup fulfillmentGroup) {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("fulfillmentGroup", fulfillmentGroup);
+
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = MVEL.executeExpression(compiled, vars);
+        } finally {
+            getRuleStatistics(expression).record(System.nanoTime() - start);
+        }
+
+        if (result instanceof Boolean) {
+            return (Boolean) result;
+        }
+        if (LOG.isWarnEnabled()) {
+            LOG.warn("The sku fee expression [" + expression + "] returned [" + result + "] instead of a Boolean; "
+                    + "the fee will not be applied");
+        }
+        return false;
+    }
+
+    protected RuleStatistics getRuleStatistics(String expression) {
+        RuleStatistics statistics = ruleStatistics.get(expression);
+        if (statistics == null) {
+            RuleStatistics newStatistics = new RuleStatistics();
+            statistics = ruleStatistics.putIfAbsent(expression, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    @ManagedAttribute(description="The number of sku fee rule evaluations")
+    public long getEvaluationCount() {
+        long count = 0;
+        for (RuleStatistics statistics : ruleStatistics.values()) {
+            count += statistics.evaluations.get();
+        }
+        return count;
+    }
+
+    @ManagedAttribute(description="The total time in milliseconds spent evaluating sku fee rules")
+    public long getTotalEvaluationTime() {
+        long nanos = 0;
+        for (RuleStatistics statistics : ruleStatistics.values()) {
+            nanos += statistics.totalNanos.get();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @ManagedAttribute(description="The evaluation count, average and maximum time in milliseconds of every sku fee rule")
+    public Map<String, String> getRuleEvaluationStatistics() {
+        Map<String, String> result = new TreeMap<String, String>();
+        for (Map.Entry<String, RuleStatistics> entry : ruleStatistics.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toString());
+        }
+        return result;
+    }
+
+    @ManagedOperation(description="Clears the sku fee rule evaluation statistics")
+    public void resetStatistics() {
+        ruleStatistics.clear();
+    }
+
+    /**
+     * Evaluation count and timings for a single rule expression
+     */
+    protected static class RuleStatistics {
+
+        protected final AtomicLong evaluations = new AtomicLong();
+        protected final AtomicLong totalNanos = new AtomicLong();
+        protected final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos) {
+            evaluations.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String toString() {
+            long count = evaluations.get();
+            double average = count == 0 ? 0 : (double) totalNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+            double max = (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+            return String.format("count=%d, average=%.3fms, max=%.3fms", count, average, max);
+        }
+    }
+
+}
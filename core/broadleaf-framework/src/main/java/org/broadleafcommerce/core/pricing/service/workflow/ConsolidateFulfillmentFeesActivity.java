@@ -16,70 +16,58 @@
 
 package org.broadleafcommerce.core.pricing.service.workflow;
 
-import org.apache.commons.collections.map.LRUMap;
-import org.apache.commons.lang.StringUtils;
-import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
-import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
-import org.broadleafcommerce.core.order.domain.BundleOrderItem;
-import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroupFee;
-import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.service.FulfillmentGroupService;
+import org.broadleafcommerce.core.pricing.service.SkuFeeRuleEvaluator;
+import org.broadleafcommerce.core.pricing.service.SkuFeeRuleEvaluator.SkuFeeCondition;
 import org.broadleafcommerce.core.workflow.BaseActivity;
-import org.mvel2.MVEL;
-import org.mvel2.ParserContext;
 
-import java.io.Serializable;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Resource;
 
 /**
+ * Adds a {@link FulfillmentGroupFee} to each fulfillment group for every applicable fulfillment {@link SkuFee} of the
+ * skus in that group. The fees are gathered by the {@link SkuFeeRuleEvaluator} in a single pass over the order, which
+ * asks {@link #shouldApplyFeeToFulfillmentGroup(SkuFee, FulfillmentGroup)} whether each fee applies.
  * 
  * @author Phillip Verheyden
  */
 public class ConsolidateFulfillmentFeesActivity extends BaseActivity<PricingContext> {
     
-    @SuppressWarnings("unchecked")
-    protected static final Map EXPRESSION_CACHE = Collections.synchronizedMap(new LRUMap(1000));
-    
     @Resource(name = "blFulfillmentGroupService")
     protected FulfillmentGroupService fulfillmentGroupService;
 
+    @Resource(name = "blSkuFeeRuleEvaluator")
+    protected SkuFeeRuleEvaluator skuFeeRuleEvaluator;
+
     @Override
     public PricingContext execute(PricingContext context) throws Exception {
         Order order = context.getSeedData();
+        Map<FulfillmentGroup, List<SkuFee>> applicableFees = skuFeeRuleEvaluator.evaluateFulfillmentFees(order,
+                new SkuFeeCondition() {
+                    @Override
+                    public boolean appliesToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup) {
+                        return shouldApplyFeeToFulfillmentGroup(fee, fulfillmentGroup);
+                    }
+                });
         
         for (FulfillmentGroup fulfillmentGroup : order.getFulfillmentGroups()) {
             //create and associate all the Fulfillment Fees
-            for (FulfillmentGroupItem item : fulfillmentGroup.getFulfillmentGroupItems()) {
-                List<SkuFee> fees = null;
-                if (item.getOrderItem() instanceof BundleOrderItem) {
-                    fees = ((BundleOrderItem)item.getOrderItem()).getSku().getFees();
-                } else if (item.getOrderItem() instanceof DiscreteOrderItem) {
-                    fees = ((DiscreteOrderItem)item.getOrderItem()).getSku().getFees();
-                }
-                
-                if (fees != null) {
-                    for (SkuFee fee : fees) {
-                        if (SkuFeeType.FULFILLMENT.equals(fee.getFeeType())) {
-                            if (shouldApplyFeeToFulfillmentGroup(fee, fulfillmentGroup)) {
-                                FulfillmentGroupFee fulfillmentFee = fulfillmentGroupService.createFulfillmentGroupFee();
-                                fulfillmentFee.setName(fee.getName());
-                                fulfillmentFee.setTaxable(fee.getTaxable());
-                                fulfillmentFee.setAmount(fee.getAmount());
-                                fulfillmentFee.setFulfillmentGroup(fulfillmentGroup);
-                                
-                                fulfillmentGroup.addFulfillmentGroupFee(fulfillmentFee);
-                            }
-                        }
-                    }
+            List<SkuFee> fees = applicableFees.get(fulfillmentGroup);
+            if (fees != null) {
+                for (SkuFee fee : fees) {
+                    FulfillmentGroupFee fulfillmentFee = fulfillmentGroupService.createFulfillmentGroupFee();
+                    fulfillmentFee.setName(fee.getName());
+                    fulfillmentFee.setTaxable(fee.getTaxable());
+                    fulfillmentFee.setAmount(fee.getAmount());
+                    fulfillmentFee.setFulfillmentGroup(fulfillmentGroup);
+                    
+                    fulfillmentGroup.addFulfillmentGroupFee(fulfillmentFee);
                 }
             }
             
@@ -93,32 +81,15 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<PricingCont
     }
 
     /**
-     * If the SkuFee expression is null or empty, this method will always return true
+     * Called once per fee and fulfillment group to decide whether the fee applies. If the SkuFee expression is null 
+     * or empty, this method will always return true
      * 
      * @param fee
      * @param fulfillmentGroup
      * @return
      */
     protected boolean shouldApplyFeeToFulfillmentGroup(SkuFee fee, FulfillmentGroup fulfillmentGroup) {
-        boolean appliesToFulfillmentGroup = true;
-        String feeExpression = fee.getExpression();
-        
-        if (!StringUtils.isEmpty(feeExpression)) {
-            Serializable exp = (Serializable) EXPRESSION_CACHE.get(feeExpression);
-            if (exp == null) {
-                ParserContext mvelContext = new ParserContext();
-                mvelContext.addImport("MVEL", MVEL.class);
-                mvelContext.addImport("MvelHelper", MvelHelper.class);
-                exp = MVEL.compileExpression(feeExpression, mvelContext);
-            
-                EXPRESSION_CACHE.put(feeExpression, exp);
-            }
-            HashMap<String, Object> vars = new HashMap<String, Object>();
-            vars.put("fulfillmentGroup", fulfillmentGroup);
-            return (Boolean)MVEL.executeExpression(feeExpression, vars);
-        }
-        
-        return appliesToFulfillmentGroup;
+        return skuFeeRuleEvaluator.appliesToFulfillmentGroup(fee, fulfillmentGroup);
     }
 
 }
@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.rating.domain;
 
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEntityListener;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.broadleafcommerce.profile.core.domain.CustomerImpl;
 import org.hibernate.annotations.GenericGenerator;
@@ -26,6 +27,7 @@ import java.util.Date;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -35,6 +37,7 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_RATING_DETAIL")
 public class RatingDetailImpl implements RatingDetail {
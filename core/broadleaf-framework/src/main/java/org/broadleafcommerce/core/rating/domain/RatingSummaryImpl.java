@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.rating.domain;
 
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEntityListener;
 import org.broadleafcommerce.core.rating.service.type.RatingType;
 import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Index;
@@ -27,6 +28,7 @@ import java.util.List;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -35,6 +37,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.Table;
 
 @Entity
+@EntityListeners(value = { CatalogPersistedEntityListener.class })
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_RATING_SUMMARY")
 public class RatingSummaryImpl implements RatingSummary {
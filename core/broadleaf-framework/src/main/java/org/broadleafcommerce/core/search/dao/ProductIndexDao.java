@@ -0,0 +1,51 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.dao;
+
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
+
+import java.util.List;
+
+/**
+ * Reads the data needed to index products through projections rather than by loading Product entities
+ */
+public interface ProductIndexDao {
+
+    /**
+     * Determines which of the given fields cannot be read by {@link #readProductIndexRows(List, List, List)}. A field 
+     * can be read if its property is a path of persistent, non-collection attributes starting at Product, or if it
+     * references a product attribute. Translatable fields must additionally be owned by the product or its default sku.
+     * 
+     * @param fields
+     * @return the fields that cannot be read, or an empty list if all of them can
+     */
+    public List<Field> findUnsupportedFields(List<Field> fields);
+
+    /**
+     * Reads the index rows for the given products, including the values of the given fields in every given locale
+     * and the ids of the categories that explicitly contain each product. Products that do not exist are skipped.
+     * 
+     * @param productIds
+     * @param fields
+     * @param locales
+     * @return the rows, in the same order as the given product ids
+     */
+    public List<ProductIndexRow> readProductIndexRows(List<Long> productIds, List<Field> fields, List<Locale> locales);
+
+}
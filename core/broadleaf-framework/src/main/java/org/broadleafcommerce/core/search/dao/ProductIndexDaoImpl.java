@@ -0,0 +1,422 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.dao;
+
+import org.apache.commons.lang3.StringUtils;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.broadleafcommerce.common.i18n.domain.TranslationImpl;
+import org.broadleafcommerce.common.i18n.service.TranslationLocaleUtils;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.persistence.EntityConfiguration;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttributeImpl;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
+import javax.persistence.metamodel.Type.PersistenceType;
+
+/**
+ * Default implementation of {@link ProductIndexDao}. For a batch of products, this issues one query for all of the
+ * simple property values, one for product attributes, one for category membership and one per translated entity
+ * type, regardless of the size of the batch.
+ *
+ * Values are read from the persistent attributes directly, so getters that compute their value (for example
+ * {@link Product#getUrl()}, which falls back to a generated url) are not projectable. These are listed in
+ * {@link #derivedProperties}. Dynamic sku pricing is not applied either; callers should use the entity based path
+ * when dynamic pricing is in effect.
+ */
+@Repository("blProductIndexDao")
+public class ProductIndexDaoImpl implements ProductIndexDao {
+
+    protected static final String ATTR_MAP = "productAttributes";
+    protected static final String DEFAULT_SKU = "defaultSku";
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Resource(name = "blEntityConfiguration")
+    protected EntityConfiguration entityConfiguration;
+
+    @Value("${i18n.translation.enabled}")
+    protected boolean translationEnabled = false;
+
+    /**
+     * Product properties whose getters compute a value instead of returning the persistent attribute
+     */
+    protected Set<String> derivedProperties = new HashSet<String>(Arrays.asList("url", "urlKey"));
+
+    @Override
+    public List<Field> findUnsupportedFields(List<Field> fields) {
+        List<Field> unsupported = new ArrayList<Field>();
+        for (Field field : fields) {
+            if (!isSupported(field)) {
+                unsupported.add(field);
+            }
+        }
+        return unsupported;
+    }
+
+    protected boolean isSupported(Field field) {
+        String propertyName = field.getPropertyName();
+        if (isAttributeProperty(propertyName)) {
+            return true;
+        }
+
+        String[] path = StringUtils.split(propertyName, '.');
+        if (derivedProperties.contains(path[0])) {
+            return false;
+        }
+        if (field.getTranslatable() && getTranslatedEntity(path) == null) {
+            return false;
+        }
+
+        ManagedType<?> type = em.getMetamodel().entity(getProductClass());
+        for (int i = 0; i < path.length; i++) {
+            Attribute<?, ?> attribute;
+            try {
+                attribute = type.getAttribute(path[i]);
+            } catch (IllegalArgumentException e) {
+                // Not a persistent attribute, so the value comes from a computed getter
+                return false;
+            }
+            if (attribute.isCollection()) {
+                return false;
+            }
+            SingularAttribute<?, ?> singular = (SingularAttribute<?, ?>) attribute;
+            if (i == path.length - 1) {
+                return singular.getType().getPersistenceType() == PersistenceType.BASIC;
+            }
+            if (!(singular.getType() instanceof ManagedType)) {
+                return false;
+            }
+            type = (ManagedType<?>) singular.getType();
+        }
+        return false;
+    }
+
+    @Override
+    public List<ProductIndexRow> readProductIndexRows(List<Long> productIds, List<Field> fields, List<Locale> locales) {
+        Map<Long, RowValues> rows = new LinkedHashMap<Long, RowValues>();
+        if (productIds == null || productIds.isEmpty()) {
+            return new ArrayList<ProductIndexRow>();
+        }
+
+        Set<String> simpleProperties = new LinkedHashSet<String>();
+        Set<String> attributeNames = new HashSet<String>();
+        for (Field field : fields) {
+            if (isAttributeProperty(field.getPropertyName())) {
+                attributeNames.add(field.getPropertyName().substring(ATTR_MAP.length() + 1));
+            } else {
+                simpleProperties.add(field.getPropertyName());
+            }
+        }
+
+        Map<String, Map<Long, Object>> defaultValues = readSimpleProperties(productIds, simpleProperties, rows);
+        Map<String, Map<Long, Object>> attributeValues = readAttributes(productIds, attributeNames);
+        readParentCategoryIds(productIds, rows);
+
+        for (Field field : fields) {
+            String propertyName = field.getPropertyName();
+            Map<Long, Object> values = isAttributeProperty(propertyName)
+                    ? attributeValues.get(propertyName.substring(ATTR_MAP.length() + 1))
+                    : defaultValues.get(propertyName);
+
+            if (field.getTranslatable() && !isAttributeProperty(propertyName)) {
+                addTranslatedValues(field, rows, values, locales);
+            } else if (field.getTranslatable()) {
+                // Product attributes have no translations, but are still indexed once per locale
+                for (RowValues row : rows.values()) {
+                    for (Locale locale : locales) {
+                        row.addPropertyValue(propertyName, locale.getLocaleCode(), 
+                                values == null ? null : values.get(row.productId));
+                    }
+                }
+            } else {
+                for (RowValues row : rows.values()) {
+                    row.addPropertyValue(propertyName, "", values == null ? null : values.get(row.productId));
+                }
+            }
+        }
+
+        List<ProductIndexRow> indexRows = new ArrayList<ProductIndexRow>(rows.size());
+        for (RowValues row : rows.values()) {
+            indexRows.add(row.toProductIndexRow());
+        }
+        return indexRows;
+    }
+
+    /**
+     * Reads the ids, default sku ids and the values of the given properties for the given products in a single query,
+     * creating a row for every product that was found. Every intermediate entity in a property path is outer joined
+     * so that a missing association yields a null value rather than dropping the product.
+     *
+     * @return a map of property name to product id to value
+     */
+    protected Map<String, Map<Long, Object>> readSimpleProperties(List<Long> productIds, Set<String> properties,
+            Map<Long, RowValues> rows) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<? extends Product> product = criteria.from(getProductClass());
+
+        Map<String, From<?, ?>> joins = new HashMap<String, From<?, ?>>();
+        From<?, ?> defaultSku = getJoin(product, joins, DEFAULT_SKU);
+
+        List<Selection<?>> selections = new ArrayList<Selection<?>>();
+        selections.add(product.get("id"));
+        selections.add(defaultSku.get("id"));
+        List<String> selectedProperties = new ArrayList<String>(properties);
+        for (String property : selectedProperties) {
+            selections.add(getPath(product, joins, property));
+        }
+
+        criteria.multiselect(selections);
+        criteria.where(product.get("id").as(Long.class).in(productIds));
+
+        Map<String, Map<Long, Object>> values = new HashMap<String, Map<Long, Object>>();
+        for (String property : selectedProperties) {
+            values.put(property, new HashMap<Long, Object>());
+        }
+
+        Map<Long, Object[]> results = new HashMap<Long, Object[]>();
+        for (Object[] result : em.createQuery(criteria).getResultList()) {
+            results.put((Long) result[0], result);
+        }
+
+        // Preserve the order of the requested ids
+        for (Long productId : productIds) {
+            Object[] result = results.get(productId);
+            if (result == null || rows.containsKey(productId)) {
+                continue;
+            }
+            rows.put(productId, new RowValues(productId, (Long) result[1]));
+            for (int i = 0; i < selectedProperties.size(); i++) {
+                values.get(selectedProperties.get(i)).put(productId, result[i + 2]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return a map of attribute name to product id to attribute value
+     */
+    protected Map<String, Map<Long, Object>> readAttributes(List<Long> productIds, Set<String> attributeNames) {
+        Map<String, Map<Long, Object>> values = new HashMap<String, Map<Long, Object>>();
+        if (attributeNames.isEmpty()) {
+            return values;
+        }
+
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<ProductAttributeImpl> attribute = criteria.from(ProductAttributeImpl.class);
+        criteria.multiselect(attribute.get("product").get("id"), attribute.get("name"), attribute.get("value"));
+        criteria.where(
+            attribute.get("product").get("id").as(Long.class).in(productIds),
+            attribute.get("name").as(String.class).in(attributeNames)
+        );
+
+        for (Object[] result : em.createQuery(criteria).getResultList()) {
+            Map<Long, Object> attributeValues = values.get(result[1]);
+            if (attributeValues == null) {
+                attributeValues = new HashMap<Long, Object>();
+                values.put((String) result[1], attributeValues);
+            }
+            attributeValues.put((Long) result[0], result[2]);
+        }
+        return values;
+    }
+
+    protected void readParentCategoryIds(List<Long> productIds, Map<Long, RowValues> rows) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<CategoryProductXrefImpl> xref = criteria.from(CategoryProductXrefImpl.class);
+        Path<?> pk = xref.get("categoryProductXref");
+        criteria.multiselect(pk.get("product").get("id"), pk.get("category").get("id"));
+        criteria.where(pk.get("product").get("id").as(Long.class).in(productIds));
+
+        for (Object[] result : em.createQuery(criteria).getResultList()) {
+            RowValues row = rows.get(result[0]);
+            if (row != null) {
+                row.parentCategoryIds.add((Long) result[1]);
+            }
+        }
+    }
+
+    /**
+     * Adds the value of a translatable field for every locale, looking for a translation in the exact locale first,
+     * then in its language and finally falling back to the untranslated value, through the same
+     * {@link TranslationLocaleUtils} used by
+     * {@link org.broadleafcommerce.common.i18n.service.TranslationService#getTranslatedValue(Object, String, java.util.Locale)}.
+     */
+    protected void addTranslatedValues(Field field, Map<Long, RowValues> rows, Map<Long, Object> defaultValues,
+            List<Locale> locales) {
+        String[] path = StringUtils.split(field.getPropertyName(), '.');
+        TranslatedEntity entityType = getTranslatedEntity(path);
+        String translatedProperty = path[path.length - 1];
+
+        // Translations are keyed by the id of the entity that owns the property
+        Map<String, Long> productIdsByEntityId = new HashMap<String, Long>();
+        for (RowValues row : rows.values()) {
+            Long entityId = TranslatedEntity.SKU.equals(entityType) ? row.defaultSkuId : row.productId;
+            if (entityId != null) {
+                productIdsByEntityId.put(String.valueOf(entityId), row.productId);
+            }
+        }
+
+        Map<Long, Map<String, String>> translations = new HashMap<Long, Map<String, String>>();
+        if (translationEnabled && !productIdsByEntityId.isEmpty()) {
+            CriteriaBuilder builder = em.getCriteriaBuilder();
+            CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+            Root<TranslationImpl> translation = criteria.from(TranslationImpl.class);
+            criteria.multiselect(translation.get("entityId"), translation.get("localeCode"),
+                    translation.get("translatedValue"));
+            criteria.where(
+                builder.equal(translation.get("entityType"), entityType.getFriendlyType()),
+                builder.equal(translation.get("fieldName"), translatedProperty),
+                translation.get("entityId").as(String.class).in(productIdsByEntityId.keySet())
+            );
+
+            for (Object[] result : em.createQuery(criteria).getResultList()) {
+                Long productId = productIdsByEntityId.get(result[0]);
+                Map<String, String> productTranslations = translations.get(productId);
+                if (productTranslations == null) {
+                    productTranslations = new HashMap<String, String>();
+                    translations.put(productId, productTranslations);
+                }
+                productTranslations.put((String) result[1], (String) result[2]);
+            }
+        }
+
+        for (RowValues row : rows.values()) {
+            Object defaultValue = defaultValues == null ? null : defaultValues.get(row.productId);
+            Map<String, String> productTranslations = translations.get(row.productId);
+            for (Locale locale : locales) {
+                String localeCode = locale.getLocaleCode();
+                String translated = TranslationLocaleUtils.findTranslatedValue(productTranslations, localeCode);
+                Object value = translated == null ? defaultValue : translated;
+                row.addPropertyValue(field.getPropertyName(), localeCode, value);
+            }
+        }
+    }
+
+    /**
+     * @param path
+     * @return the type of entity that owns the translations for the given property path, or null if the property is
+     * not owned by the product or its default sku
+     */
+    protected TranslatedEntity getTranslatedEntity(String[] path) {
+        if (path.length == 1) {
+            return TranslatedEntity.PRODUCT;
+        }
+        if (path.length == 2 && DEFAULT_SKU.equals(path[0])) {
+            return TranslatedEntity.SKU;
+        }
+        return null;
+    }
+
+    protected Path<?> getPath(Root<?> root, Map<String, From<?, ?>> joins, String propertyName) {
+        int lastDot = propertyName.lastIndexOf('.');
+        if (lastDot < 0) {
+            return root.get(propertyName);
+        }
+        From<?, ?> from = root;
+        String[] path = StringUtils.split(propertyName.substring(0, lastDot), '.');
+        StringBuilder joinPath = new StringBuilder();
+        for (String segment : path) {
+            if (joinPath.length() > 0) {
+                joinPath.append('.');
+            }
+            joinPath.append(segment);
+            from = getJoin(from, joins, joinPath.toString());
+        }
+        return from.get(propertyName.substring(lastDot + 1));
+    }
+
+    protected From<?, ?> getJoin(From<?, ?> parent, Map<String, From<?, ?>> joins, String joinPath) {
+        From<?, ?> join = joins.get(joinPath);
+        if (join == null) {
+            String attribute = joinPath.contains(".") ? StringUtils.substringAfterLast(joinPath, ".") : joinPath;
+            join = parent.join(attribute, JoinType.LEFT);
+            joins.put(joinPath, join);
+        }
+        return join;
+    }
+
+    protected boolean isAttributeProperty(String propertyName) {
+        return propertyName.startsWith(ATTR_MAP + ".");
+    }
+
+    /**
+     * Collects the values read for a single product before they are frozen into a {@link ProductIndexRow}
+     */
+    protected static class RowValues {
+
+        protected final Long productId;
+        protected final Long defaultSkuId;
+        protected final List<Long> parentCategoryIds = new ArrayList<Long>();
+        protected final Map<String, Map<String, Object>> propertyValues = new HashMap<String, Map<String, Object>>();
+
+        public RowValues(Long productId, Long defaultSkuId) {
+            this.productId = productId;
+            this.defaultSkuId = defaultSkuId;
+        }
+
+        public void addPropertyValue(String propertyName, String prefix, Object value) {
+            Map<String, Object> values = propertyValues.get(propertyName);
+            if (values == null) {
+                values = new HashMap<String, Object>();
+                propertyValues.put(propertyName, values);
+            }
+            values.put(prefix, value);
+        }
+
+        public ProductIndexRow toProductIndexRow() {
+            return new ProductIndexRow(productId, defaultSkuId, parentCategoryIds, propertyValues);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Class<? extends Product> getProductClass() {
+        return (Class<? extends Product>) entityConfiguration.lookupEntityClass(Product.class.getName());
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.domain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the data needed to build the search document for a single product. This is populated by
+ * {@link org.broadleafcommerce.core.search.dao.ProductIndexDao} with a few set-based queries per batch of products
+ * instead of hydrating the full Product and Sku entity graphs.
+ * 
+ * Property values are keyed first by the {@link Field#getPropertyName()} they were read for and then by prefix. 
+ * Values that are not translated have an empty prefix, while translated values are prefixed by locale code, which
+ * matches the map produced by the entity based indexing path.
+ */
+public class ProductIndexRow {
+
+    protected final Long productId;
+    protected final Long defaultSkuId;
+    protected final List<Long> parentCategoryIds;
+    protected final Map<String, Map<String, Object>> propertyValues;
+
+    /**
+     * @param productId
+     * @param defaultSkuId
+     * @param parentCategoryIds the ids of the categories that explicitly contain the product
+     * @param propertyValues the prefix to value map of each property name
+     */
+    public ProductIndexRow(Long productId, Long defaultSkuId, List<Long> parentCategoryIds,
+            Map<String, Map<String, Object>> propertyValues) {
+        this.productId = productId;
+        this.defaultSkuId = defaultSkuId;
+        this.parentCategoryIds = Collections.unmodifiableList(new ArrayList<Long>(parentCategoryIds));
+        Map<String, Map<String, Object>> values = new HashMap<String, Map<String, Object>>(propertyValues.size());
+        for (Map.Entry<String, Map<String, Object>> entry : propertyValues.entrySet()) {
+            values.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<String, Object>(entry.getValue())));
+        }
+        this.propertyValues = Collections.unmodifiableMap(values);
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public Long getDefaultSkuId() {
+        return defaultSkuId;
+    }
+
+    /**
+     * @return the ids of the categories that explicitly contain this product
+     */
+    public List<Long> getParentCategoryIds() {
+        return parentCategoryIds;
+    }
+
+    /**
+     * @param propertyName
+     * @return the prefix to value map for the given property, which is empty if no value was read for it
+     */
+    public Map<String, Object> getPropertyValues(String propertyName) {
+        Map<String, Object> values = propertyValues.get(propertyName);
+        if (values == null) {
+            return Collections.emptyMap();
+        }
+        return values;
+    }
+
+}
@@ -17,6 +17,7 @@
 package org.broadleafcommerce.core.search.domain;
 
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductSummary;
 
 import java.util.List;
 
@@ -27,13 +28,30 @@ import java.util.List;
  */
 public class ProductSearchResult {
     
+    protected List<Long> productIds;
     protected List<Product> products;
+    protected List<ProductSummary> productSummaries;
     protected List<SearchFacetDTO> facets;
     
     protected Integer totalResults;
     protected Integer page;
     protected Integer pageSize;
 
+    /**
+     * @return the ids of the products on this page of results, in result order
+     */
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public void setProductIds(List<Long> productIds) {
+        this.productIds = productIds;
+    }
+
+    /**
+     * @return the products on this page of results, or null if the search service was configured to only return 
+     * {@link #getProductSummaries()}
+     */
     public List<Product> getProducts() {
         return products;
     }
@@ -42,6 +60,18 @@ public class ProductSearchResult {
         this.products = products;
     }
 
+    /**
+     * @return the summaries of the products on this page of results, or null if the search service does not provide 
+     * them
+     */
+    public List<ProductSummary> getProductSummaries() {
+        return productSummaries;
+    }
+
+    public void setProductSummaries(List<ProductSummary> productSummaries) {
+        this.productSummaries = productSummaries;
+    }
+
     public List<SearchFacetDTO> getFacets() {
         return facets;
     }
@@ -75,7 +105,7 @@ public class ProductSearchResult {
     }
     
     public Integer getStartResult() {
-        return (products == null || products.size() == 0) ? 0 : ((page - 1) * pageSize) + 1;
+        return getResultCount() == 0 ? 0 : ((page - 1) * pageSize) + 1;
     }
     
     public Integer getEndResult() {
@@ -83,7 +113,19 @@ public class ProductSearchResult {
     }
     
     public Integer getTotalPages() {
-        return (products == null || products.size() == 0) ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+        return getResultCount() == 0 ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+    }
+    
+    /**
+     * @return the number of results on this page, whether they were returned as products, summaries or only ids
+     */
+    protected int getResultCount() {
+        if (products != null) {
+            return products.size();
+        } else if (productSummaries != null) {
+            return productSummaries.size();
+        }
+        return productIds == null ? 0 : productIds.size();
     }
 
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Holds the position of every product within each of its categories as well as the full ancestry of every category.
+ * This is computed once per reindex from id-only queries so that building a document does not have to walk 
+ * {@link org.broadleafcommerce.core.catalog.domain.Category#getAllProductXrefs()} or 
+ * {@link org.broadleafcommerce.core.catalog.domain.Category#buildFullCategoryHierarchy(List)} for every product.
+ * 
+ * Instances are immutable once constructed and are safe to share between document builder threads.
+ */
+public class CategoryPositionIndex {
+
+    protected final Map<Long, Map<Long, Integer>> productPositions;
+    protected final Map<Long, Set<Long>> categoryHierarchies;
+
+    /**
+     * @param productIdsByCategory category id to the ordered ids of the products in that category
+     * @param parentIdsByCategory category id to the ids of its direct parents
+     */
+    public CategoryPositionIndex(Map<Long, List<Long>> productIdsByCategory, Map<Long, Set<Long>> parentIdsByCategory) {
+        productPositions = new HashMap<Long, Map<Long, Integer>>(productIdsByCategory.size());
+        for (Entry<Long, List<Long>> entry : productIdsByCategory.entrySet()) {
+            List<Long> productIds = entry.getValue();
+            Map<Long, Integer> positions = new HashMap<Long, Integer>(productIds.size());
+            for (int i = 0; i < productIds.size(); i++) {
+                // Keep the first occurrence, matching a linear scan of the product xrefs
+                if (!positions.containsKey(productIds.get(i))) {
+                    positions.put(productIds.get(i), i);
+                }
+            }
+            productPositions.put(entry.getKey(), positions);
+        }
+
+        categoryHierarchies = new HashMap<Long, Set<Long>>();
+        Set<Long> categoryIds = new HashSet<Long>(productIdsByCategory.keySet());
+        categoryIds.addAll(parentIdsByCategory.keySet());
+        for (Long categoryId : categoryIds) {
+            categoryHierarchies.put(categoryId, 
+                    Collections.unmodifiableSet(buildHierarchy(categoryId, parentIdsByCategory)));
+        }
+    }
+
+    /**
+     * Walks up every parent path of the given category. Each category is only visited once, which also protects 
+     * against cycles in the category graph.
+     */
+    protected Set<Long> buildHierarchy(Long categoryId, Map<Long, Set<Long>> parentIdsByCategory) {
+        Set<Long> hierarchy = new HashSet<Long>();
+        List<Long> toVisit = new ArrayList<Long>();
+        toVisit.add(categoryId);
+        while (!toVisit.isEmpty()) {
+            Long current = toVisit.remove(toVisit.size() - 1);
+            if (hierarchy.add(current)) {
+                Set<Long> parentIds = parentIdsByCategory.get(current);
+                if (parentIds != null) {
+                    toVisit.addAll(parentIds);
+                }
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * @param categoryId
+     * @param productId
+     * @return the 0-based position of the product in the category, or -1 if the product is not in the category
+     */
+    public int getPosition(Long categoryId, Long productId) {
+        Map<Long, Integer> positions = productPositions.get(categoryId);
+        if (positions == null) {
+            return -1;
+        }
+        Integer position = positions.get(productId);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * @param categoryId
+     * @return the ids of the given category and all of its ancestors, equivalent to the categories returned by
+     * {@link org.broadleafcommerce.core.catalog.domain.Category#buildFullCategoryHierarchy(List)}
+     */
+    public Set<Long> getFullCategoryHierarchy(Long categoryId) {
+        Set<Long> hierarchy = categoryHierarchies.get(categoryId);
+        return hierarchy == null ? Collections.singleton(categoryId) : hierarchy;
+    }
+
+}
@@ -22,6 +22,7 @@ import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
 
 import java.util.List;
@@ -114,6 +115,12 @@ public interface SolrHelperService {
      */
     public String getSolrDocumentId(SolrInputDocument document, Product product);
 
+    /**
+     * @param row
+     * @return the Solr id of the product represented by this index row
+     */
+    public String getSolrDocumentId(SolrInputDocument document, ProductIndexRow row);
+
     /**
      * @return the name of the field that keeps track what namespace this document belongs to
      */
@@ -145,6 +152,12 @@ public interface SolrHelperService {
      */
     public String getCategorySortFieldName(Category category);
 
+    /**
+     * @param categoryId
+     * @return the default sort field name for the category with this id
+     */
+    public String getCategorySortFieldName(Long categoryId);
+
     /**
      * Determines if there is a locale prefix that needs to be applied to the given field for this particular request.
      * By default, a locale prefix is not applicable for category, explicitCategory, or fields that have type Price.
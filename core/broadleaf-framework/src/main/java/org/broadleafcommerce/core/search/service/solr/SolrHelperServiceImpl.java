@@ -30,6 +30,7 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
 import org.springframework.stereotype.Service;
 
@@ -167,6 +168,11 @@ public class SolrHelperServiceImpl implements SolrHelperService {
     public String getSolrDocumentId(SolrInputDocument document, Product product) {
         return String.valueOf(product.getId());
     }
+
+    @Override
+    public String getSolrDocumentId(SolrInputDocument document, ProductIndexRow row) {
+        return String.valueOf(row.getProductId());
+    }
     
     @Override
     public String getNamespaceFieldName() {
@@ -195,9 +201,14 @@ public class SolrHelperServiceImpl implements SolrHelperService {
 
     @Override
     public String getCategorySortFieldName(Category category) {
+        return getCategorySortFieldName(category.getId());
+    }
+
+    @Override
+    public String getCategorySortFieldName(Long categoryId) {
         return new StringBuilder()
                 .append(getCategoryFieldName())
-                .append("_").append(category.getId()).append("_").append("sort_i")
+                .append("_").append(categoryId).append("_").append("sort_i")
                 .toString();
     }
 
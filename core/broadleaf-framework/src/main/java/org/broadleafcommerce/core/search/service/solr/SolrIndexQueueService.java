@@ -0,0 +1,56 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import java.util.Collection;
+
+/**
+ * Collects the ids of products whose documents are out of date and periodically pushes rebuilt documents for only
+ * those products into the active Solr core via {@link SolrIndexService#updateIndex(Collection)}. Multiple changes to 
+ * the same product between two runs result in a single document update.
+ * 
+ * @see {@link org.broadleafcommerce.core.catalog.domain.CatalogPersistedEntityListener}
+ */
+public interface SolrIndexQueueService {
+
+    /**
+     * Queues the given product to have its document rebuilt on the next run of {@link #processQueue()}
+     * 
+     * @param productId
+     */
+    public void queueProduct(Long productId);
+
+    /**
+     * Queues the given products to have their documents rebuilt on the next run of {@link #processQueue()}
+     * 
+     * @param productIds
+     */
+    public void queueProducts(Collection<Long> productIds);
+
+    /**
+     * Rebuilds the documents for all currently queued products. Products that are queued while this runs are left
+     * for the next run. If a full rebuild is in progress, the queue is left untouched so that the changes are applied
+     * to the core that is active once the rebuild has finished.
+     */
+    public void processQueue();
+
+    /**
+     * @return the number of distinct products currently waiting to be indexed
+     */
+    public int getQueueSize();
+
+}
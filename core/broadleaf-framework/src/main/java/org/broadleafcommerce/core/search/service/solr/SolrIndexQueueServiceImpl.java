@@ -0,0 +1,140 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link SolrIndexQueueService}. Queued product ids are held in a concurrent set, which
+ * coalesces duplicates, and are drained on a fixed delay of solr.index.delta.interval milliseconds. Changes are
+ * picked up through {@link CatalogPersistedEvent}s, which are published once the transaction that changed the 
+ * catalog has committed - this includes saves made through the admin.
+ * 
+ * Note that this only keeps the index current in the JVM that made the change. Since every JVM writes to the same 
+ * Solr server, this is sufficient as long as every application that edits the catalog has this service enabled.
+ */
+@Service("blSolrIndexQueueService")
+@ManagedResource(objectName="org.broadleafcommerce:name=SolrIndexQueueService", description="Solr Index Queue Service", currencyTimeLimit=15)
+public class SolrIndexQueueServiceImpl implements SolrIndexQueueService, ApplicationListener<CatalogPersistedEvent> {
+    private static final Log LOG = LogFactory.getLog(SolrIndexQueueServiceImpl.class);
+
+    @Resource(name = "blSolrIndexService")
+    protected SolrIndexService solrIndexService;
+
+    @Value("${solr.index.delta.enabled}")
+    protected boolean enabled;
+
+    @Value("${solr.index.delta.batchSize}")
+    protected int batchSize;
+
+    protected final ConcurrentHashMap<Long, Boolean> queuedProductIds = new ConcurrentHashMap<Long, Boolean>();
+    protected final AtomicLong productsIndexed = new AtomicLong();
+    protected final AtomicLong failedRuns = new AtomicLong();
+
+    @Override
+    public void onApplicationEvent(CatalogPersistedEvent event) {
+        queueProduct(event.getProductId());
+    }
+
+    @Override
+    public void queueProduct(Long productId) {
+        if (enabled && productId != null) {
+            queuedProductIds.put(productId, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void queueProducts(Collection<Long> productIds) {
+        for (Long productId : productIds) {
+            queueProduct(productId);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${solr.index.delta.interval}")
+    public void processQueue() {
+        if (!enabled || queuedProductIds.isEmpty() || SolrContext.getServer() == null) {
+            return;
+        }
+        if (solrIndexService.isReindexInProgress()) {
+            LOG.debug("A full reindex is in progress; delaying incremental index updates");
+            return;
+        }
+
+        List<Long> batch = new ArrayList<Long>();
+        Iterator<Long> itr = queuedProductIds.keySet().iterator();
+        while (itr.hasNext()) {
+            batch.add(itr.next());
+            itr.remove();
+            if (batch.size() >= batchSize || !itr.hasNext()) {
+                indexBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a single batch of products to the index. If the update fails, the products are queued again so that 
+     * they are retried on the next run.
+     * 
+     * @param productIds
+     */
+    protected void indexBatch(List<Long> productIds) {
+        try {
+            solrIndexService.updateIndex(productIds);
+            productsIndexed.addAndGet(productIds.size());
+        } catch (Exception e) {
+            LOG.error("Could not update the index for products " + productIds + ", they will be retried", e);
+            failedRuns.incrementAndGet();
+            queueProducts(productIds);
+        }
+    }
+
+    @Override
+    @ManagedAttribute(description="The number of products waiting to be indexed", currencyTimeLimit=15)
+    public int getQueueSize() {
+        return queuedProductIds.size();
+    }
+
+    @ManagedAttribute(description="The number of products incrementally indexed since startup", currencyTimeLimit=15)
+    public long getProductsIndexed() {
+        return productsIndexed.get();
+    }
+
+    @ManagedAttribute(description="The number of incremental index batches that failed since startup", currencyTimeLimit=15)
+    public long getFailedRuns() {
+        return failedRuns.get();
+    }
+
+}
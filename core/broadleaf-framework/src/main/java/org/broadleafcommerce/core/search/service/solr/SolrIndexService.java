@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.search.service.solr;
 import org.broadleafcommerce.common.exception.ServiceException;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * @author Andre Azzolini (apazzolini)
@@ -33,4 +34,30 @@ public interface SolrIndexService {
      */
     public void rebuildIndex() throws ServiceException, IOException;
 
+    /**
+     * Rebuilds the documents for the given products in the active index and removes the documents of any of them 
+     * that are no longer active. Unlike {@link #rebuildIndex()}, this does not swap cores and only touches the 
+     * documents for the given products.
+     * 
+     * @param productIds
+     * @throws ServiceException
+     * @throws IOException
+     */
+    public void updateIndex(Collection<Long> productIds) throws ServiceException, IOException;
+
+    /**
+     * @return whether or not {@link #rebuildIndex()} is currently running
+     */
+    public boolean isReindexInProgress();
+
+    /**
+     * Returns a number that changes whenever the documents visible to searches in this JVM change, either because 
+     * {@link #rebuildIndex()} swapped cores or because {@link #updateIndex(Collection)} committed. It does not change
+     * for changes made by other nodes; {@link SolrQueryResultCacheService} uses it to read the shared index version 
+     * again right away after a local change.
+     * 
+     * @return the current index generation
+     */
+    public long getIndexGeneration();
+
 }
\ No newline at end of file
@@ -18,14 +18,26 @@ package org.broadleafcommerce.core.search.service.solr;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Resource;
 
@@ -36,6 +48,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
 import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.common.locale.service.LocaleService;
@@ -43,19 +56,27 @@ import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.StopWatch;
 import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeSnapshot;
 import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuActiveDatesService;
 import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuActiveDateConsiderationContext;
 import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
 import org.broadleafcommerce.core.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.core.search.dao.FieldDao;
+import org.broadleafcommerce.core.search.dao.ProductIndexDao;
 import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -68,18 +89,67 @@ import org.springframework.transaction.TransactionStatus;
  * @author Andre Azzolini (apazzolini)
  */
 @Service("blSolrIndexService")
+@ManagedResource(objectName="org.broadleafcommerce:name=SolrIndexService", description="Solr Index Service", currencyTimeLimit=15)
 public class SolrIndexServiceImpl implements SolrIndexService {
     private static final Log LOG = LogFactory.getLog(SolrIndexServiceImpl.class);
 
     @Value("${solr.index.product.pageSize}")
     protected int pageSize;
 
+    /**
+     * When true, {@link #rebuildIndex()} reads product ids with keyset paging, builds documents on a pool of
+     * {@link #indexThreads} threads and commits the reindex core once at the end instead of after every page.
+     */
+    @Value("${solr.index.product.pipelined}")
+    protected boolean pipelined;
+
+    @Value("${solr.index.product.threads}")
+    protected int indexThreads;
+
+    @Value("${solr.index.product.writeBatchSize}")
+    protected int writeBatchSize;
+
+    /**
+     * When true, documents built during a reindex are read through {@link ProductIndexDao} projections instead of
+     * by loading Product entities, as long as {@link #canUseProjection(List)} allows it
+     */
+    @Value("${solr.index.product.useProjection}")
+    protected boolean useProjection = false;
+
+    /**
+     * Product properties whose getters apply dynamic sku pricing, which the projections do not
+     */
+    protected Set<String> dynamicallyPricedProperties = new HashSet<String>(Arrays.asList("defaultSku.retailPrice",
+            "defaultSku.salePrice"));
+
+    protected volatile boolean reindexInProgress = false;
+    protected final AtomicLong reindexProductsRead = new AtomicLong();
+    protected final AtomicLong reindexDocumentsBuilt = new AtomicLong();
+    protected final AtomicLong reindexDocumentsWritten = new AtomicLong();
+    protected final AtomicLong indexGeneration = new AtomicLong();
+    protected volatile long reindexStartTime = 0L;
+    protected volatile long lastReindexDuration = 0L;
+
+    /**
+     * Category positions and hierarchies for the reindex that is currently running, or null outside of a reindex
+     */
+    protected volatile CategoryPositionIndex categoryPositionIndex;
+
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Resource(name = "blCategoryTreeService")
+    protected CategoryTreeService categoryTreeService;
+
     @Resource(name = "blFieldDao")
     protected FieldDao fieldDao;
 
+    @Resource(name = "blProductIndexDao")
+    protected ProductIndexDao productIndexDao;
+
     @Resource(name = "blLocaleService")
     protected LocaleService localeService;
 
@@ -103,6 +173,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         // If we are in single core mode, we have to delete the documents before reindexing
         if (SolrContext.isSingleCoreMode()) {
             deleteAllDocuments();
+            indexGeneration.incrementAndGet();
         }
 
         // Populate the reindex core with the necessary information
@@ -111,14 +182,20 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         DynamicSkuPricingService savedPricingService = SkuPricingConsiderationContext.getSkuPricingService();
         DynamicSkuActiveDatesService savedActiveDateServcie = SkuActiveDateConsiderationContext.getSkuActiveDatesService();
         try {
-            Long numProducts = productDao.readCountAllActiveProducts(SystemTime.asDate());
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("There are " + numProducts + " total products");
-            }
-            int page = 0;
-            while ((page * pageSize) < numProducts) {
-                buildIncrementalIndex(page, pageSize);
-                page++;
+            reindexStarted();
+            categoryPositionIndex = buildCategoryPositionIndex();
+            if (pipelined) {
+                buildIndexPipelined();
+            } else {
+                Long numProducts = productDao.readCountAllActiveProducts(SystemTime.asDate());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("There are " + numProducts + " total products");
+                }
+                int page = 0;
+                while ((page * pageSize) < numProducts) {
+                    buildIncrementalIndex(page, pageSize);
+                    page++;
+                }
             }
             try {
                 if (LOG.isDebugEnabled()) {
@@ -131,6 +208,9 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         } catch (ServiceException e) {
             throw e;
         } finally {
+            reindexFinished();
+            categoryPositionIndex = null;
+
             // Restore the current context, regardless of whether an exception happened or not
             BroadleafRequestContext.setBroadleafRequestContext(savedContext);
             SkuPricingConsiderationContext.setSkuPricingConsiderationContext(savedPricing);
@@ -140,6 +220,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
 
         // Swap the active and the reindex cores
         shs.swapActiveCores();
+        indexGeneration.incrementAndGet();
 
         // If we are not in single core mode, we delete the documents for the unused core after swapping
         if (!SolrContext.isSingleCoreMode()) {
@@ -149,6 +230,76 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         LOG.info(String.format("Finished building index in %s", s.toLapString()));
     }
 
+    @Override
+    public void updateIndex(Collection<Long> productIds) throws ServiceException, IOException {
+        if (CollectionUtils.isEmpty(productIds) || SolrContext.getServer() == null) {
+            return;
+        }
+        StopWatch s = new StopWatch();
+
+        TransactionStatus status = TransactionUtils.createTransaction("updateIndex",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<Product> products = productDao.readProductsByIds(new ArrayList<Long>(productIds));
+            List<Field> fields = fieldDao.readAllProductFields();
+            List<Locale> locales = getAllLocales();
+
+            Set<Long> removedIds = new HashSet<Long>(productIds);
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            if (products != null) {
+                for (Product product : products) {
+                    if (product.isActive()) {
+                        documents.add(buildDocument(product, fields, locales));
+                        removedIds.remove(product.getId());
+                    }
+                }
+            }
+
+            if (!removedIds.isEmpty()) {
+                SolrContext.getServer().deleteByQuery(buildDeleteQuery(removedIds));
+            }
+            if (!documents.isEmpty()) {
+                SolrContext.getServer().add(documents);
+            }
+            SolrContext.getServer().commit();
+            indexGeneration.incrementAndGet();
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Updated [%s] and removed [%s] documents in [%s]", documents.size(), 
+                        removedIds.size(), s.toLapString()));
+            }
+        } catch (SolrServerException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw new ServiceException("Could not update index", e);
+        } catch (IOException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * @param productIds
+     * @return a query matching the documents of the given products in the current namespace
+     */
+    protected String buildDeleteQuery(Collection<Long> productIds) {
+        StringBuilder query = new StringBuilder();
+        query.append(shs.getNamespaceFieldName()).append(":\"").append(shs.getCurrentNamespace()).append("\" AND ");
+        query.append(shs.getProductIdFieldName()).append(":(");
+        boolean first = true;
+        for (Long productId : productIds) {
+            if (!first) {
+                query.append(" OR ");
+            }
+            query.append(productId);
+            first = false;
+        }
+        return query.append(")").toString();
+    }
+
     protected void deleteAllDocuments() throws ServiceException {
         try {
             String deleteQuery = "*:*";
@@ -204,6 +355,386 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
     }
 
+    /**
+     * Builds the reindex core as a pipeline. The calling thread acts as the producer, reading pages of active product 
+     * ids via keyset paging, and as the writer, sending finished documents to the reindex core in batches of 
+     * {@link #writeBatchSize}. Documents are built by a pool of {@link #indexThreads} threads, each page in its own 
+     * read-only transaction. At most two pages per builder thread are in flight at a time, which bounds the memory
+     * used by the pipeline. The reindex core is committed once, after all documents have been added.
+     * 
+     * @throws ServiceException
+     */
+    protected void buildIndexPipelined() throws ServiceException {
+        final Date currentDate = SystemTime.asDate();
+        final int threads = Math.max(1, indexThreads);
+        final int maxPagesInFlight = threads * 2;
+
+        ExecutorService builders = Executors.newFixedThreadPool(threads, new IndexThreadFactory());
+        CompletionService<List<SolrInputDocument>> completionService = 
+                new ExecutorCompletionService<List<SolrInputDocument>>(builders);
+        List<SolrInputDocument> pendingDocuments = new ArrayList<SolrInputDocument>();
+        try {
+            Long lastId = null;
+            boolean exhausted = false;
+            int pagesInFlight = 0;
+            while (!exhausted || pagesInFlight > 0) {
+                while (!exhausted && pagesInFlight < maxPagesInFlight) {
+                    List<Long> productIds = readActiveProductIds(lastId, pageSize, currentDate);
+                    if (CollectionUtils.isEmpty(productIds)) {
+                        exhausted = true;
+                    } else {
+                        lastId = productIds.get(productIds.size() - 1);
+                        reindexProductsRead.addAndGet(productIds.size());
+                        completionService.submit(createDocumentBuilderTask(productIds));
+                        pagesInFlight++;
+                    }
+                }
+
+                if (pagesInFlight > 0) {
+                    List<SolrInputDocument> documents = completionService.take().get();
+                    pagesInFlight--;
+                    pendingDocuments.addAll(documents);
+                    if (pendingDocuments.size() >= writeBatchSize) {
+                        writeDocuments(pendingDocuments);
+                        pendingDocuments.clear();
+                    }
+                }
+            }
+
+            writeDocuments(pendingDocuments);
+            SolrContext.getReindexServer().commit();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Could not rebuild index", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ServiceException) {
+                throw (ServiceException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ServiceException("Could not rebuild index", e.getCause());
+        } catch (SolrServerException e) {
+            throw new ServiceException("Could not rebuild index", e);
+        } catch (IOException e) {
+            throw new ServiceException("Could not rebuild index", e);
+        } finally {
+            builders.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the next page of active product ids for {@link #buildIndexPipelined()} in a read-only transaction
+     * 
+     * @param lastId the last id of the previous page, or null for the first page
+     * @param pageSize
+     * @param currentDate
+     * @return the ids of the next page of active products
+     */
+    protected List<Long> readActiveProductIds(Long lastId, int pageSize, Date currentDate) {
+        TransactionStatus status = TransactionUtils.createTransaction("readProductIds",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<Long> productIds = productDao.readAllActiveProductIds(lastId, pageSize, currentDate);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return productIds;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates the task that builds the documents for a single page of product ids. The task runs on one of the index
+     * builder threads, so the request context of the thread calling {@link #rebuildIndex()} is propagated to it.
+     * Each task gets its own copy of the context since extension handlers may change it, for example to switch
+     * the locale while reading translated values.
+     * 
+     * @param productIds
+     * @return the task
+     */
+    protected Callable<List<SolrInputDocument>> createDocumentBuilderTask(final List<Long> productIds) {
+        final BroadleafRequestContext context = copyRequestContext(BroadleafRequestContext.getBroadleafRequestContext());
+        final HashMap pricingConsiderations = SkuPricingConsiderationContext.getSkuPricingConsiderationContext();
+        final DynamicSkuPricingService pricingService = SkuPricingConsiderationContext.getSkuPricingService();
+        final DynamicSkuActiveDatesService activeDatesService = SkuActiveDateConsiderationContext.getSkuActiveDatesService();
+
+        return new Callable<List<SolrInputDocument>>() {
+            @Override
+            public List<SolrInputDocument> call() throws Exception {
+                BroadleafRequestContext.setBroadleafRequestContext(context);
+                SkuPricingConsiderationContext.setSkuPricingConsiderationContext(pricingConsiderations);
+                SkuPricingConsiderationContext.setSkuPricingService(pricingService);
+                SkuActiveDateConsiderationContext.setSkuActiveDatesService(activeDatesService);
+                try {
+                    return buildDocuments(productIds);
+                } finally {
+                    ThreadLocalManager.remove();
+                }
+            }
+        };
+    }
+
+    /**
+     * Copies the parts of the given request context that are relevant outside of a servlet request
+     * 
+     * @param context
+     * @return the copy, or null if the given context is null
+     */
+    protected BroadleafRequestContext copyRequestContext(BroadleafRequestContext context) {
+        if (context == null) {
+            return null;
+        }
+        BroadleafRequestContext copy = new BroadleafRequestContext();
+        copy.setSite(context.getSite());
+        copy.setSandbox(context.getSandbox());
+        copy.setLocale(context.getLocale());
+        copy.setBroadleafCurrency(context.getBroadleafCurrency());
+        copy.setTimeZone(context.getTimeZone());
+        copy.setTheme(context.getTheme());
+        copy.setCurrentCatalog(context.getCurrentCatalog());
+        copy.setIgnoreSite(context.getIgnoreSite());
+        copy.setMessageSource(context.getMessageSource());
+        copy.getAdditionalProperties().putAll(context.getAdditionalProperties());
+        return copy;
+    }
+
+    /**
+     * Builds the documents for the given product ids in a new read-only transaction
+     * 
+     * @param productIds
+     * @return the documents
+     */
+    protected List<SolrInputDocument> buildDocuments(List<Long> productIds) {
+        TransactionStatus status = TransactionUtils.createTransaction("buildDocuments",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        StopWatch s = new StopWatch();
+        try {
+            List<Field> fields = fieldDao.readAllProductFields();
+            List<Locale> locales = getAllLocales();
+
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            if (canUseProjection(fields)) {
+                for (ProductIndexRow row : productIndexDao.readProductIndexRows(productIds, fields, locales)) {
+                    documents.add(buildDocument(row, fields));
+                }
+            } else {
+                List<Product> products = productDao.readProductsByIds(productIds);
+                if (products != null) {
+                    for (Product product : products) {
+                        documents.add(buildDocument(product, fields, locales));
+                    }
+                }
+            }
+            reindexDocumentsBuilt.addAndGet(documents.size());
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Built [%s] documents in [%s]", documents.size(), s.toLapString()));
+            }
+            return documents;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Determines whether documents can be built from {@link ProductIndexRow}s. Projections are only used during a 
+     * reindex, when the category positions have been precomputed. They are not used when a price field is indexed
+     * while dynamic pricing is in effect, when an extension handler contributes values through the Product based
+     * hooks, or when one of the fields cannot be projected.
+     * 
+     * @param fields
+     * @return whether or not to use the projection based path
+     */
+    protected boolean canUseProjection(List<Field> fields) {
+        if (!useProjection || categoryPositionIndex == null) {
+            return false;
+        }
+
+        if (SkuPricingConsiderationContext.hasDynamicPricing()) {
+            for (Field field : fields) {
+                if (dynamicallyPricedProperties.contains(field.getPropertyName())) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Building documents from Product entities since " + field.getPropertyName()
+                                + " is dynamically priced");
+                    }
+                    return false;
+                }
+            }
+        }
+
+        if (hasProductOnlyExtensionHandlers()) {
+            return false;
+        }
+
+        List<Field> unsupportedFields = productIndexDao.findUnsupportedFields(fields);
+        if (!unsupportedFields.isEmpty()) {
+            if (LOG.isDebugEnabled()) {
+                List<String> names = new ArrayList<String>();
+                for (Field field : unsupportedFields) {
+                    names.add(field.getPropertyName());
+                }
+                LOG.debug("Building documents from Product entities since the following fields cannot be projected: "
+                        + names);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Looks for extension handlers that override the Product based indexing hooks, which are not invoked when 
+     * documents are built from projections. The i18n handler is ignored since {@link ProductIndexDao} reads 
+     * translations itself.
+     * 
+     * @return whether any registered handler only takes part in the entity based path
+     */
+    protected boolean hasProductOnlyExtensionHandlers() {
+        for (SolrSearchServiceExtensionHandler handler : extensionManager.getHandlers()) {
+            Class<?> handlerClass = AopUtils.getTargetClass(handler);
+            if (I18nSolrSearchServiceExtensionHandler.class.equals(handlerClass)) {
+                continue;
+            }
+            if (overridesProductHook(handlerClass, "addPropertyValues", Product.class, Field.class, FieldType.class,
+                    Map.class, String.class, List.class)
+                    || overridesProductHook(handlerClass, "attachAdditionalBasicFields", Product.class,
+                            SolrInputDocument.class, SolrHelperService.class)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Building documents from Product entities since " + handlerClass.getName()
+                            + " indexes through the Product based extension hooks");
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean overridesProductHook(Class<?> handlerClass, String methodName, Class<?>... parameterTypes) {
+        try {
+            Method method = handlerClass.getMethod(methodName, parameterTypes);
+            return !AbstractSolrSearchServiceExtensionHandler.class.equals(method.getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Adds the given documents to the reindex core without committing
+     * 
+     * @param documents
+     * @throws SolrServerException
+     * @throws IOException
+     */
+    protected void writeDocuments(Collection<SolrInputDocument> documents) throws SolrServerException, IOException {
+        if (CollectionUtils.isEmpty(documents)) {
+            return;
+        }
+
+        if (LOG.isTraceEnabled()) {
+            for (SolrInputDocument document : documents) {
+                LOG.trace(document);
+            }
+        }
+
+        SolrContext.getReindexServer().add(documents);
+        reindexDocumentsWritten.addAndGet(documents.size());
+    }
+
+    /**
+     * Reads the category positions and hierarchies used by every document of a reindex in a read-only transaction
+     * 
+     * @return the index
+     */
+    protected CategoryPositionIndex buildCategoryPositionIndex() {
+        TransactionStatus status = TransactionUtils.createTransaction("readCategoryPositions",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        StopWatch s = new StopWatch();
+        try {
+            CategoryPositionIndex index = new CategoryPositionIndex(categoryDao.readAllProductIdsByCategory(),
+                    categoryDao.readAllParentCategoryIdsByCategory());
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Built category position index in [%s]", s.toLapString()));
+            }
+            return index;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    protected void reindexStarted() {
+        reindexProductsRead.set(0L);
+        reindexDocumentsBuilt.set(0L);
+        reindexDocumentsWritten.set(0L);
+        reindexStartTime = System.currentTimeMillis();
+        reindexInProgress = true;
+    }
+
+    protected void reindexFinished() {
+        lastReindexDuration = System.currentTimeMillis() - reindexStartTime;
+        reindexInProgress = false;
+    }
+
+    @Override
+    @ManagedAttribute(description="Whether or not a reindex is currently running", currencyTimeLimit=15)
+    public boolean isReindexInProgress() {
+        return reindexInProgress;
+    }
+
+    @Override
+    @ManagedAttribute(description="The generation of the index, which changes whenever searchable documents change", currencyTimeLimit=15)
+    public long getIndexGeneration() {
+        return indexGeneration.get();
+    }
+
+    @ManagedAttribute(description="The number of product ids read by the current or last reindex", currencyTimeLimit=15)
+    public long getReindexProductsRead() {
+        return reindexProductsRead.get();
+    }
+
+    @ManagedAttribute(description="The number of documents built by the current or last reindex", currencyTimeLimit=15)
+    public long getReindexDocumentsBuilt() {
+        return reindexDocumentsBuilt.get();
+    }
+
+    @ManagedAttribute(description="The number of documents sent to Solr by the current or last reindex", currencyTimeLimit=15)
+    public long getReindexDocumentsWritten() {
+        return reindexDocumentsWritten.get();
+    }
+
+    @ManagedAttribute(description="The documents built per second by the current or last reindex", currencyTimeLimit=15)
+    public double getReindexDocumentsPerSecond() {
+        long elapsed = reindexInProgress ? System.currentTimeMillis() - reindexStartTime : lastReindexDuration;
+        if (elapsed <= 0) {
+            return 0D;
+        }
+        return reindexDocumentsBuilt.get() * 1000D / elapsed;
+    }
+
+    @ManagedAttribute(description="The duration in milliseconds of the last completed reindex", currencyTimeLimit=15)
+    public long getLastReindexDuration() {
+        return lastReindexDuration;
+    }
+
+    /**
+     * Names the index builder threads so they can be identified in thread dumps. The threads are daemons so that
+     * an abandoned reindex never prevents the JVM from shutting down.
+     */
+    protected static class IndexThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "solr-index-builder-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     /**
      * This method to read all active products will be slow if you have a large catalog. In this case, you will want to
      * read the products in a different manner. For example, if you know the fields that will be indexed, you can configure
@@ -262,18 +793,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
                     List<FieldType> searchableFieldTypes = shs.getSearchableFieldTypes(field);
                     for (FieldType sft : searchableFieldTypes) {
                         Map<String, Object> propertyValues = getPropertyValues(product, field, sft, locales);
-
-                        // Build out the field for every prefix
-                        for (Entry<String, Object> entry : propertyValues.entrySet()) {
-                            String prefix = entry.getKey();
-                            prefix = StringUtils.isBlank(prefix) ? prefix : prefix + "_";
-
-                            String solrPropertyName = shs.getPropertyNameForFieldSearchable(field, sft, prefix);
-                            Object value = entry.getValue();
-
-                            document.addField(solrPropertyName, value);
-                            addedProperties.add(solrPropertyName);
-                        }
+                        addSearchableFieldValues(document, field, sft, propertyValues, addedProperties);
                     }
                 }
 
@@ -281,19 +801,7 @@ public class SolrIndexServiceImpl implements SolrIndexService {
                 FieldType facetType = field.getFacetFieldType();
                 if (facetType != null) {
                     Map<String, Object> propertyValues = getPropertyValues(product, field, facetType, locales);
-
-                    // Build out the field for every prefix
-                    for (Entry<String, Object> entry : propertyValues.entrySet()) {
-                        String prefix = entry.getKey();
-                        prefix = StringUtils.isBlank(prefix) ? prefix : prefix + "_";
-
-                        String solrFacetPropertyName = shs.getPropertyNameForFieldFacet(field, prefix);
-                        Object value = entry.getValue();
-
-                        if (!addedProperties.contains(solrFacetPropertyName)) {
-                            document.addField(solrFacetPropertyName, value);
-                        }
-                    }
+                    addFacetFieldValues(document, field, propertyValues, addedProperties);
                 }
             } catch (Exception e) {
                 LOG.trace("Could not get value for property[" + field.getQualifiedFieldName() + "] for product id["
@@ -304,6 +812,86 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         return document;
     }
 
+    /**
+     * Builds the SolrInputDocument for a product from its projected {@link ProductIndexRow}. The row already holds 
+     * the value of every field for every prefix, so no entities are touched.
+     * 
+     * @param row
+     * @param fields
+     * @return the document
+     */
+    protected SolrInputDocument buildDocument(ProductIndexRow row, List<Field> fields) {
+        SolrInputDocument document = new SolrInputDocument();
+
+        attachBasicDocumentFields(row, document);
+
+        List<String> addedProperties = new ArrayList<String>();
+
+        for (Field field : fields) {
+            Map<String, Object> propertyValues = row.getPropertyValues(field.getPropertyName());
+            if (field.getSearchable()) {
+                for (FieldType sft : shs.getSearchableFieldTypes(field)) {
+                    addSearchableFieldValues(document, field, sft, propertyValues, addedProperties);
+                }
+            }
+
+            if (field.getFacetFieldType() != null) {
+                addFacetFieldValues(document, field, propertyValues, addedProperties);
+            }
+        }
+
+        return document;
+    }
+
+    /**
+     * Adds the searchable Solr field for every prefix in the given map of prefix to value
+     * 
+     * @param document
+     * @param field
+     * @param fieldType
+     * @param propertyValues
+     * @param addedProperties the Solr property names added so far, which is updated by this method
+     */
+    protected void addSearchableFieldValues(SolrInputDocument document, Field field, FieldType fieldType,
+            Map<String, Object> propertyValues, List<String> addedProperties) {
+        // Build out the field for every prefix
+        for (Entry<String, Object> entry : propertyValues.entrySet()) {
+            String prefix = entry.getKey();
+            prefix = StringUtils.isBlank(prefix) ? prefix : prefix + "_";
+
+            String solrPropertyName = shs.getPropertyNameForFieldSearchable(field, fieldType, prefix);
+            Object value = entry.getValue();
+
+            document.addField(solrPropertyName, value);
+            addedProperties.add(solrPropertyName);
+        }
+    }
+
+    /**
+     * Adds the facet Solr field for every prefix in the given map of prefix to value, unless it was already added
+     * as a searchable field
+     * 
+     * @param document
+     * @param field
+     * @param propertyValues
+     * @param addedProperties
+     */
+    protected void addFacetFieldValues(SolrInputDocument document, Field field, Map<String, Object> propertyValues,
+            List<String> addedProperties) {
+        // Build out the field for every prefix
+        for (Entry<String, Object> entry : propertyValues.entrySet()) {
+            String prefix = entry.getKey();
+            prefix = StringUtils.isBlank(prefix) ? prefix : prefix + "_";
+
+            String solrFacetPropertyName = shs.getPropertyNameForFieldFacet(field, prefix);
+            Object value = entry.getValue();
+
+            if (!addedProperties.contains(solrFacetPropertyName)) {
+                document.addField(solrFacetPropertyName, value);
+            }
+        }
+    }
+
     /**
      * Adds the ID, category, and explicitCategory fields for the product to the document
      * 
@@ -317,6 +905,12 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         document.addField(shs.getProductIdFieldName(), product.getId());
         extensionManager.getProxy().attachAdditionalBasicFields(product, document, shs);
 
+        CategoryPositionIndex positionIndex = categoryPositionIndex;
+        if (positionIndex != null) {
+            attachCategoryFields(product, document, positionIndex);
+            return;
+        }
+
         // The explicit categories are the ones defined by the product itself
         for (CategoryProductXref categoryXref : product.getAllParentCategoryXrefs()) {
             document.addField(shs.getExplicitCategoryFieldName(), categoryXref.getCategory().getId());
@@ -335,12 +929,67 @@ public class SolrIndexServiceImpl implements SolrIndexService {
         }
 
         // This is the entire tree of every category defined on the product
-        Set<Category> fullCategoryHierarchy = new HashSet<Category>();
+        Set<Long> fullCategoryHierarchy = new HashSet<Long>();
+        CategoryTreeSnapshot categoryTree = categoryTreeService.getSnapshot();
+        for (CategoryProductXref categoryXref : product.getAllParentCategoryXrefs()) {
+            Long categoryId = categoryXref.getCategory().getId();
+            if (categoryTree != null && categoryTree.contains(categoryId)) {
+                fullCategoryHierarchy.addAll(categoryTree.getFullCategoryHierarchy(categoryId));
+            } else {
+                for (Category category : categoryXref.getCategory().buildFullCategoryHierarchy(null)) {
+                    fullCategoryHierarchy.add(category.getId());
+                }
+            }
+        }
+        for (Long categoryId : fullCategoryHierarchy) {
+            document.addField(shs.getCategoryFieldName(), categoryId);
+        }
+    }
+
+    /**
+     * Adds the category and explicitCategory fields for the product to the document using the positions and 
+     * hierarchies precomputed for the current reindex instead of walking the category entities
+     * 
+     * @param product
+     * @param document
+     * @param index
+     */
+    protected void attachCategoryFields(Product product, SolrInputDocument document, CategoryPositionIndex index) {
+        Set<Long> fullCategoryHierarchy = new HashSet<Long>();
         for (CategoryProductXref categoryXref : product.getAllParentCategoryXrefs()) {
-            fullCategoryHierarchy.addAll(categoryXref.getCategory().buildFullCategoryHierarchy(null));
+            Category category = categoryXref.getCategory();
+            document.addField(shs.getExplicitCategoryFieldName(), category.getId());
+            document.addField(shs.getCategorySortFieldName(category), index.getPosition(category.getId(), product.getId()));
+            fullCategoryHierarchy.addAll(index.getFullCategoryHierarchy(category.getId()));
+        }
+        for (Long categoryId : fullCategoryHierarchy) {
+            document.addField(shs.getCategoryFieldName(), categoryId);
+        }
+    }
+
+    /**
+     * Adds the ID, category, and explicitCategory fields for the projected product to the document. This is only
+     * used during a reindex, so the category fields always come from {@link #categoryPositionIndex}.
+     * 
+     * @param row
+     * @param document
+     */
+    protected void attachBasicDocumentFields(ProductIndexRow row, SolrInputDocument document) {
+        document.addField(shs.getNamespaceFieldName(), shs.getCurrentNamespace());
+        document.addField(shs.getIdFieldName(), shs.getSolrDocumentId(document, row));
+        document.addField(shs.getProductIdFieldName(), row.getProductId());
+        extensionManager.getProxy().attachAdditionalBasicFields(row, document, shs);
+
+        CategoryPositionIndex positionIndex = categoryPositionIndex;
+        Set<Long> fullCategoryHierarchy = new HashSet<Long>();
+        for (Long categoryId : row.getParentCategoryIds()) {
+            document.addField(shs.getExplicitCategoryFieldName(), categoryId);
+            document.addField(shs.getCategorySortFieldName(categoryId),
+                    positionIndex.getPosition(categoryId, row.getProductId()));
+            fullCategoryHierarchy.addAll(positionIndex.getFullCategoryHierarchy(categoryId));
         }
-        for (Category category : fullCategoryHierarchy) {
-            document.addField(shs.getCategoryFieldName(), category.getId());
+        for (Long categoryId : fullCategoryHierarchy) {
+            document.addField(shs.getCategoryFieldName(), categoryId);
         }
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
+import org.broadleafcommerce.core.search.domain.SearchFacetResultDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The immutable outcome of a Solr query, as held by the {@link SolrQueryResultCacheService}. Facet values are kept
+ * without their SearchFacet entities so that an entry can be shared between requests; they are copied onto the facet
+ * DTOs of the request that reads the entry.
+ */
+public class SolrQueryResult {
+
+    protected final String indexVersion;
+    protected final List<Long> productIds;
+    protected final long totalResults;
+    protected final Map<String, List<FacetValue>> facetValues;
+
+    /**
+     * @param indexVersion the version of the index the query was run against
+     * @param productIds the ids of the products on the requested page, in result order
+     * @param totalResults the total number of matching products
+     * @param namedFacetMap the facet DTOs, by Solr field key, after their results have been set and sorted
+     */
+    public SolrQueryResult(String indexVersion, List<Long> productIds, long totalResults,
+            Map<String, SearchFacetDTO> namedFacetMap) {
+        this.indexVersion = indexVersion;
+        this.productIds = Collections.unmodifiableList(new ArrayList<Long>(productIds));
+        this.totalResults = totalResults;
+
+        Map<String, List<FacetValue>> values = new HashMap<String, List<FacetValue>>();
+        for (Entry<String, SearchFacetDTO> entry : namedFacetMap.entrySet()) {
+            List<FacetValue> facetValues = new ArrayList<FacetValue>();
+            for (SearchFacetResultDTO resultDTO : entry.getValue().getFacetValues()) {
+                facetValues.add(new FacetValue(resultDTO.getValue(), resultDTO.getMinValue(), 
+                        resultDTO.getMaxValue(), resultDTO.getQuantity()));
+            }
+            values.put(entry.getKey(), Collections.unmodifiableList(facetValues));
+        }
+        this.facetValues = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Adds the cached facet values to the matching facet DTOs of the current request
+     * 
+     * @param namedFacetMap the facet DTOs, by Solr field key
+     */
+    public void applyFacetResults(Map<String, SearchFacetDTO> namedFacetMap) {
+        for (Entry<String, SearchFacetDTO> entry : namedFacetMap.entrySet()) {
+            List<FacetValue> values = facetValues.get(entry.getKey());
+            if (values == null) {
+                continue;
+            }
+            SearchFacetDTO facetDTO = entry.getValue();
+            for (FacetValue value : values) {
+                SearchFacetResultDTO resultDTO = new SearchFacetResultDTO();
+                resultDTO.setFacet(facetDTO.getFacet());
+                resultDTO.setValue(value.value);
+                resultDTO.setMinValue(value.minValue);
+                resultDTO.setMaxValue(value.maxValue);
+                resultDTO.setQuantity(value.quantity);
+                facetDTO.getFacetValues().add(resultDTO);
+            }
+        }
+    }
+
+    public String getIndexVersion() {
+        return indexVersion;
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public long getTotalResults() {
+        return totalResults;
+    }
+
+    protected static class FacetValue {
+
+        protected final String value;
+        protected final BigDecimal minValue;
+        protected final BigDecimal maxValue;
+        protected final Integer quantity;
+
+        public FacetValue(String value, BigDecimal minValue, BigDecimal maxValue, Integer quantity) {
+            this.value = value;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.quantity = quantity;
+        }
+
+    }
+
+}
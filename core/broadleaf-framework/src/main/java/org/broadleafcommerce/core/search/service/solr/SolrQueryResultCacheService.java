@@ -0,0 +1,63 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+
+/**
+ * Caches the outcome of Solr queries - the matching product ids, the total number of results and the facet counts - 
+ * so that identical browse and search requests do not have to query Solr again. Entries are no longer returned once the 
+ * {@link #getIndexVersion() index version} they were read at is no longer current.
+ * 
+ * @see {@link SolrQueryResult}
+ */
+public interface SolrQueryResultCacheService {
+
+    /**
+     * @param key a key describing the query, such as one built by {@link #buildQueryKey(SolrQuery)}
+     * @return the cached result of the query, or null if it is not cached or the index has changed since it was
+     */
+    public SolrQueryResult getResult(String key);
+
+    /**
+     * Caches the result of the query described by the given key against the index version it was read at
+     * 
+     * @param key
+     * @param result
+     */
+    public void putResult(String key, SolrQueryResult result);
+
+    /**
+     * @param query the fully built query, including paging, sorting, filters and facets
+     * @return a key made of every parameter of the query
+     */
+    public String buildQueryKey(SolrQuery query);
+
+    /**
+     * Returns the version of the index that searches currently read. The version comes from Solr, so it is the same on
+     * every node searching the same core and changes whenever any node commits to it or swaps cores.
+     * 
+     * @return the current index version, or null if it could not be determined
+     */
+    public String getIndexVersion();
+
+    /**
+     * Removes every cached result
+     */
+    public void clearCache();
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+/**
+ * Default implementation of {@link SolrQueryResultCacheService} backed by a Guava cache holding at most 
+ * solr.query.cache.size results for solr.query.cache.ttl seconds.
+ * 
+ * Query keys are made of the query parameters, with the values of order-insensitive parameters such as filter queries 
+ * sorted, so that the same browse page requested with its facets in a different order shares one entry. The 
+ * namespace and any locale specific field names are part of the parameters.
+ * 
+ * The index version is part of the key, so once it changes the previous entries are no longer read and age out of 
+ * the cache. The version is the directory and version of the index reported by the primary core, which is shared by 
+ * every node and changes with every commit and core swap. It is read again at most every 
+ * solr.query.cache.versionCheckInterval milliseconds, and right away once this JVM changes the index, so changes made 
+ * by other nodes are seen within that interval.
+ */
+@Service("blSolrQueryResultCacheService")
+@ManagedResource(objectName="org.broadleafcommerce:name=SolrQueryResultCache", description="Solr Query Result Cache", currencyTimeLimit=15)
+public class SolrQueryResultCacheServiceImpl implements SolrQueryResultCacheService {
+    private static final Log LOG = LogFactory.getLog(SolrQueryResultCacheServiceImpl.class);
+
+    protected static final Set<String> UNORDERED_PARAMS = new HashSet<String>(Arrays.asList(CommonParams.FQ,
+            FacetParams.FACET_FIELD, FacetParams.FACET_QUERY));
+
+    @Resource(name = "blSolrIndexService")
+    protected SolrIndexService solrIndexService;
+
+    @Value("${solr.query.cache.enabled}")
+    protected boolean enabled = true;
+
+    @Value("${solr.query.cache.size}")
+    protected long maximumSize = 1000;
+
+    @Value("${solr.query.cache.ttl}")
+    protected long timeToLive = 300;
+
+    @Value("${solr.query.cache.versionCheckInterval}")
+    protected long versionCheckInterval = 1000;
+
+    protected volatile Cache<String, SolrQueryResult> cache;
+    protected volatile IndexVersion indexVersion;
+
+    @Override
+    public SolrQueryResult getResult(String key) {
+        if (!enabled) {
+            return null;
+        }
+        String version = getIndexVersion();
+        if (version == null) {
+            return null;
+        }
+        return getCache().getIfPresent(version + '|' + key);
+    }
+
+    @Override
+    public void putResult(String key, SolrQueryResult result) {
+        if (enabled && result.getIndexVersion() != null) {
+            getCache().put(result.getIndexVersion() + '|' + key, result);
+        }
+    }
+
+    @Override
+    public String getIndexVersion() {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        long indexGeneration = solrIndexService.getIndexGeneration();
+        IndexVersion current = indexVersion;
+        if (current == null || current.indexGeneration != indexGeneration 
+                || now - current.checkTime >= versionCheckInterval) {
+            current = new IndexVersion(readIndexVersion(), indexGeneration, now);
+            indexVersion = current;
+        }
+        return current.version;
+    }
+
+    /**
+     * Reads the directory and version of the index served by the primary core through the Luke request handler
+     * 
+     * @return the version, or null if it could not be read
+     */
+    protected String readIndexVersion() {
+        SolrServer server = SolrContext.getServer();
+        if (server == null) {
+            return null;
+        }
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set("show", "index");
+        params.set("numTerms", 0);
+        QueryRequest request = new QueryRequest(params);
+        request.setPath("/admin/luke");
+        try {
+            NamedList<?> index = (NamedList<?>) server.request(request).get("index");
+            if (index == null || index.get("version") == null) {
+                return null;
+            }
+            return index.get("directory") + "@" + index.get("version");
+        } catch (Exception e) {
+            LOG.warn("Could not read the version of the index, search results will not be cached", e);
+            return null;
+        }
+    }
+
+    @Override
+    @ManagedOperation(description="Removes every cached query result")
+    public void clearCache() {
+        getCache().invalidateAll();
+    }
+
+    @Override
+    public String buildQueryKey(SolrQuery query) {
+        StringBuilder key = new StringBuilder("query|");
+        Set<String> names = new TreeSet<String>(query.getParameterNames());
+        for (String name : names) {
+            String[] values = query.getParams(name);
+            if (values == null) {
+                continue;
+            }
+            if (UNORDERED_PARAMS.contains(name)) {
+                values = values.clone();
+                Arrays.sort(values);
+            }
+            for (String value : values) {
+                key.append(name).append('=').append(value).append('&');
+            }
+        }
+        return key.toString();
+    }
+
+    protected Cache<String, SolrQueryResult> getCache() {
+        Cache<String, SolrQueryResult> result = cache;
+        if (result == null) {
+            synchronized (this) {
+                result = cache;
+                if (result == null) {
+                    result = CacheBuilder.newBuilder()
+                            .maximumSize(maximumSize)
+                            .expireAfterWrite(timeToLive, TimeUnit.SECONDS)
+                            .recordStats()
+                            .build();
+                    cache = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @ManagedAttribute(description="The version of the index that cached query results are currently read for")
+    public String getCurrentIndexVersion() {
+        IndexVersion current = indexVersion;
+        return current == null ? null : current.version;
+    }
+
+    @ManagedAttribute(description="The number of query results in the cache")
+    public long getSize() {
+        return getCache().size();
+    }
+
+    @ManagedAttribute(description="The number of searches answered from the cache")
+    public long getHitCount() {
+        return getCache().stats().hitCount();
+    }
+
+    @ManagedAttribute(description="The number of searches that had to query Solr")
+    public long getMissCount() {
+        return getCache().stats().missCount();
+    }
+
+    @ManagedAttribute(description="The ratio of searches answered from the cache")
+    public double getHitRate() {
+        return getCache().stats().hitRate();
+    }
+
+    @ManagedAttribute(description="The number of query results evicted to stay within the maximum size")
+    public long getEvictionCount() {
+        return getCache().stats().evictionCount();
+    }
+
+    /**
+     * An index version along with the local index generation and the time it was read at
+     */
+    protected static class IndexVersion {
+
+        protected final String version;
+        protected final long indexGeneration;
+        protected final long checkTime;
+
+        public IndexVersion(String version, long indexGeneration, long checkTime) {
+            this.version = version;
+            this.indexGeneration = indexGeneration;
+            this.checkTime = checkTime;
+        }
+
+    }
+
+}
@@ -23,6 +23,7 @@ import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.extension.ExtensionHandler;
 import org.broadleafcommerce.core.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
 import org.broadleafcommerce.core.search.domain.ProductSearchCriteria;
 import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
 import org.broadleafcommerce.core.search.domain.SearchFacetRange;
@@ -96,4 +97,18 @@ public interface SolrSearchServiceExtensionHandler extends ExtensionHandler {
      */
     public ExtensionResultStatusType attachAdditionalBasicFields(Product product, SolrInputDocument document,
             SolrHelperService shs);
+
+    /**
+     * Provides an extension point to contribute additional fields to the document built from a projected 
+     * {@link ProductIndexRow} rather than a Product entity. This is the counterpart of 
+     * {@link #attachAdditionalBasicFields(Product, SolrInputDocument, SolrHelperService)} for the projection based
+     * indexing path.
+     * 
+     * @param row
+     * @param document
+     * @param shs
+     * @return the result of the handler
+     */
+    public ExtensionResultStatusType attachAdditionalBasicFields(ProductIndexRow row, SolrInputDocument document,
+            SolrHelperService shs);
 }
@@ -40,6 +40,7 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.service.ProductSummaryService;
 import org.broadleafcommerce.core.search.dao.FieldDao;
 import org.broadleafcommerce.core.search.dao.SearchFacetDao;
 import org.broadleafcommerce.core.search.domain.CategorySearchFacet;
@@ -53,7 +54,9 @@ import org.broadleafcommerce.core.search.domain.SearchFacetRange;
 import org.broadleafcommerce.core.search.domain.SearchFacetResultDTO;
 import org.broadleafcommerce.core.search.domain.solr.FieldType;
 import org.broadleafcommerce.core.search.service.SearchService;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedInputStream;
@@ -64,15 +67,18 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import javax.annotation.Resource;
 import javax.xml.parsers.ParserConfigurationException;
@@ -106,6 +112,35 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     @Resource(name = "blSolrSearchServiceExtensionManager")
     protected SolrSearchServiceExtensionManager extensionManager;
 
+    @Resource(name = "blSolrQueryResultCacheService")
+    protected SolrQueryResultCacheService queryResultCacheService;
+
+    @Resource(name = "blProductSummaryService")
+    protected ProductSummaryService productSummaryService;
+
+    /**
+     * If true, results carry the cached {@link org.broadleafcommerce.core.catalog.domain.ProductSummary} of each product, which listing pages can render from
+     */
+    @Value("${search.result.productSummaries}")
+    protected boolean provideProductSummaries = false;
+
+    /**
+     * If false, results only carry product ids and summaries, and the Product entities are not read
+     */
+    @Value("${search.result.hydrateProducts}")
+    protected boolean hydrateProducts = true;
+
+    /**
+     * Runs Solr embedded in the application. Passing "solrhome" keeps the index in a temporary directory; passing any
+     * other value uses it as the path of the solr home, which gives a durable index that survives restarts. When the
+     * application does not provide a solrconfig.xml or schema.xml, defaults that match the documents built by
+     * {@link SolrIndexService} are used.
+     * 
+     * @param solrServer "solrhome" or the path to the solr home directory
+     * @throws IOException
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     */
     public SolrSearchServiceImpl(String solrServer) throws IOException, ParserConfigurationException, SAXException {
         if ("solrhome".equals(solrServer)) {
 
@@ -121,9 +156,16 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
             }
 
             solrServer = tempDir.getAbsolutePath();
+        } else {
+            File solrHome = new File(solrServer);
+            if (!solrHome.exists()) {
+                solrHome.mkdirs();
+            }
         }
 
         File solrXml = copyConfigToSolrHome(this.getClass().getResourceAsStream("/solr-default.xml"), solrServer, "solr-default.xml");
+        copyDefaultCoreConfig(solrServer, "solrconfig.xml", "/solr-default-solrconfig.xml");
+        copyDefaultCoreConfig(solrServer, "schema.xml", "/solr-default-schema.xml");
 
         LOG.debug(String.format("Using [%s] as solrhome", solrServer));
         LOG.debug(String.format("Using [%s] as solr.xml", solrXml.getAbsoluteFile()));
@@ -194,6 +236,32 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         return destFile;
     }
 
+    /**
+     * Writes the default core configuration file to the conf directory of both the primary and the reindex core
+     * unless the application supplies its own version of the file at the root of the classpath (which Solr will
+     * then resolve for each core) or the core already has one, for instance from a previous startup.
+     * 
+     * @param solrHome
+     * @param configFileSimpleName the name Solr expects for the file, such as schema.xml
+     * @param defaultConfigResource the classpath location of the default configuration
+     * @throws IOException
+     */
+    protected void copyDefaultCoreConfig(String solrHome, String configFileSimpleName, String defaultConfigResource) throws IOException {
+        if (this.getClass().getResource("/" + configFileSimpleName) != null) {
+            return;
+        }
+        for (String coreDir : new String[] { "core0dir", "core1dir" }) {
+            File confDir = new File(new File(solrHome, coreDir), "conf");
+            if (new File(confDir, configFileSimpleName).exists()) {
+                continue;
+            }
+            if (!confDir.exists()) {
+                confDir.mkdirs();
+            }
+            copyConfigToSolrHome(this.getClass().getResourceAsStream(defaultConfigResource), confDir.getAbsolutePath(), configFileSimpleName);
+        }
+    }
+
     public SolrSearchServiceImpl(SolrServer solrServer) {
         SolrContext.setPrimaryServer(solrServer);
     }
@@ -315,6 +383,58 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
             ProductSearchCriteria searchCriteria, String defaultSort, String... filterQueries) throws ServiceException {
         Map<String, SearchFacetDTO> namedFacetMap = getNamedFacetMap(facets, searchCriteria);
 
+        // Unless an extension handler takes part in building the query, the query only depends on the arguments and
+        // a cached result can be found before the query and its facets are built
+        String cacheKey = null;
+        SolrQueryResult queryResult = null;
+        if (!hasQueryExtensionHandlers()) {
+            cacheKey = buildRequestCacheKey(qualifiedSolrQuery, facets, searchCriteria, defaultSort, filterQueries);
+            queryResult = queryResultCacheService.getResult(cacheKey);
+        }
+
+        if (queryResult != null) {
+            markActiveFacets(namedFacetMap, searchCriteria);
+            queryResult.applyFacetResults(namedFacetMap);
+        } else {
+            SolrQuery solrQuery = buildSolrQuery(qualifiedSolrQuery, facets, namedFacetMap, searchCriteria, defaultSort,
+                    filterQueries);
+            if (cacheKey == null) {
+                cacheKey = queryResultCacheService.buildQueryKey(solrQuery);
+                queryResult = queryResultCacheService.getResult(cacheKey);
+            }
+            if (queryResult != null) {
+                queryResult.applyFacetResults(namedFacetMap);
+            } else {
+                queryResult = querySolr(solrQuery, namedFacetMap);
+                queryResultCacheService.putResult(cacheKey, queryResult);
+            }
+        }
+
+        // Get the products
+        List<Long> productIds = queryResult.getProductIds();
+
+        ProductSearchResult result = new ProductSearchResult();
+        result.setFacets(facets);
+        result.setProductIds(productIds);
+        if (hydrateProducts) {
+            result.setProducts(getProducts(productIds));
+        }
+        if (provideProductSummaries) {
+            result.setProductSummaries(productSummaryService.findProductSummaries(productIds));
+        }
+        setPagingAttributes(result, queryResult.getTotalResults(), searchCriteria);
+        return result;
+    }
+
+    /**
+     * Builds the query for {@link #findProducts(String, List, ProductSearchCriteria, String, String...)}, including 
+     * paging, sorting, active facet filters and facets
+     * 
+     * @return the query
+     */
+    protected SolrQuery buildSolrQuery(String qualifiedSolrQuery, List<SearchFacetDTO> facets,
+            Map<String, SearchFacetDTO> namedFacetMap, ProductSearchCriteria searchCriteria, String defaultSort,
+            String... filterQueries) {
         // Build the basic query
         SolrQuery solrQuery = new SolrQuery()
                 .setQuery(qualifiedSolrQuery)
@@ -343,12 +463,23 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
                 LOG.trace("Couldn't UTF-8 URL Decode: " + solrQuery.toString());
             }
         }
+        return solrQuery;
+    }
 
-        // Query solr
+    /**
+     * Runs the given query against the active core and sets the facet results on the given facet DTOs
+     * 
+     * @param solrQuery
+     * @param namedFacetMap
+     * @return the outcome of the query
+     * @throws ServiceException
+     */
+    protected SolrQueryResult querySolr(SolrQuery solrQuery, Map<String, SearchFacetDTO> namedFacetMap)
+            throws ServiceException {
+        // Read before querying so that a result read while the index changes is never cached as current
+        String indexVersion = queryResultCacheService.getIndexVersion();
         QueryResponse response;
         try {
-            //solrQuery = new SolrQuery().setQuery("*:*");
-            
             response = SolrContext.getServer().query(solrQuery);
             if (LOG.isTraceEnabled()) {
                 LOG.trace(response.toString());
@@ -365,14 +496,96 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         setFacetResults(namedFacetMap, response);
         sortFacetResults(namedFacetMap);
 
-        // Get the products
-        List<Product> products = getProducts(response);
+        return new SolrQueryResult(indexVersion, getProductIds(response), response.getResults().getNumFound(),
+                namedFacetMap);
+    }
 
-        ProductSearchResult result = new ProductSearchResult();
-        result.setFacets(facets);
-        result.setProducts(products);
-        setPagingAttributes(result, response, searchCriteria);
-        return result;
+    /**
+     * Builds a cache key from the arguments of {@link #findProducts(String, List, ProductSearchCriteria, String, String...)}
+     * along with the namespace and locale, which together determine the query as long as no extension handler 
+     * modifies it. Facets are identified by their id, so changes to the ranges of a facet are picked up once the cached 
+     * entries expire. Filter queries, facets and filter criteria are sorted so that their order does not matter.
+     * 
+     * @return the key
+     */
+    protected String buildRequestCacheKey(String qualifiedSolrQuery, List<SearchFacetDTO> facets,
+            ProductSearchCriteria searchCriteria, String defaultSort, String... filterQueries) {
+        StringBuilder key = new StringBuilder("request|");
+        key.append(shs.getCurrentNamespace()).append('|').append(getLocalePrefix()).append('|');
+        key.append(qualifiedSolrQuery).append('|');
+
+        if (filterQueries != null) {
+            String[] sortedFilterQueries = filterQueries.clone();
+            Arrays.sort(sortedFilterQueries);
+            for (String filterQuery : sortedFilterQueries) {
+                key.append(filterQuery).append('&');
+            }
+        }
+        key.append('|');
+
+        List<Long> facetIds = new ArrayList<Long>();
+        for (SearchFacetDTO facet : facets) {
+            facetIds.add(facet.getFacet().getId());
+        }
+        Collections.sort(facetIds);
+        key.append(facetIds).append('|');
+
+        key.append(searchCriteria.getPage()).append('|').append(searchCriteria.getPageSize()).append('|');
+        key.append(StringUtils.isBlank(searchCriteria.getSortQuery()) ? defaultSort : searchCriteria.getSortQuery());
+        key.append('|');
+        if (searchCriteria.getFilterCriteria() != null) {
+            Map<String, String[]> filterCriteria = new TreeMap<String, String[]>(searchCriteria.getFilterCriteria());
+            for (Entry<String, String[]> entry : filterCriteria.entrySet()) {
+                String[] values = entry.getValue().clone();
+                Arrays.sort(values);
+                key.append(entry.getKey()).append('=').append(StringUtils.join(values, ',')).append('&');
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Marks the facets that the search criteria filter on as active, as {@link #attachActiveFacetFilters} does 
+     * while building the query
+     * 
+     * @param namedFacetMap
+     * @param searchCriteria
+     */
+    protected void markActiveFacets(Map<String, SearchFacetDTO> namedFacetMap, ProductSearchCriteria searchCriteria) {
+        for (String abbreviation : searchCriteria.getFilterCriteria().keySet()) {
+            for (SearchFacetDTO facet : namedFacetMap.values()) {
+                if (facet.getFacet().getField().getAbbreviation().equals(abbreviation)) {
+                    facet.setActive(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks for extension handlers that modify the query or the facet ranges, which can depend on more than the 
+     * arguments of a search
+     * 
+     * @return whether any registered handler takes part in building the query
+     */
+    protected boolean hasQueryExtensionHandlers() {
+        for (SolrSearchServiceExtensionHandler handler : extensionManager.getHandlers()) {
+            Class<?> handlerClass = AopUtils.getTargetClass(handler);
+            if (overridesQueryHook(handlerClass, "modifySolrQuery", SolrQuery.class, String.class, List.class,
+                    ProductSearchCriteria.class, String.class)
+                    || overridesQueryHook(handlerClass, "filterSearchFacetRanges", SearchFacetDTO.class, List.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean overridesQueryHook(Class<?> handlerClass, String methodName, Class<?>... parameterTypes) {
+        try {
+            Method method = handlerClass.getMethod(methodName, parameterTypes);
+            return !AbstractSolrSearchServiceExtensionHandler.class.equals(method.getDeclaringClass());
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
     }
 
     @Override
@@ -574,7 +787,19 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
      */
     public void setPagingAttributes(ProductSearchResult result, QueryResponse response,
             ProductSearchCriteria searchCriteria) {
-        result.setTotalResults(new Long(response.getResults().getNumFound()).intValue());
+        setPagingAttributes(result, response.getResults().getNumFound(), searchCriteria);
+    }
+
+    /**
+     * Sets the total results, the current page, and the page size on the ProductSearchResult
+     * 
+     * @param result
+     * @param totalResults the total number of matching products
+     * @param searchCriteria
+     */
+    public void setPagingAttributes(ProductSearchResult result, long totalResults,
+            ProductSearchCriteria searchCriteria) {
+        result.setTotalResults(new Long(totalResults).intValue());
         result.setPage(searchCriteria.getPage());
         result.setPageSize(searchCriteria.getPageSize());
     }
@@ -588,19 +813,40 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
      * @return the actual Product instances as a result of the search
      */
     protected List<Product> getProducts(QueryResponse response) {
-        final List<Long> productIds = new ArrayList<Long>();
+        return getProducts(getProductIds(response));
+    }
+
+    /**
+     * @param response
+     * @return the ids of the products in the response, in result order
+     */
+    protected List<Long> getProductIds(QueryResponse response) {
+        List<Long> productIds = new ArrayList<Long>();
         SolrDocumentList docs = response.getResults();
         for (SolrDocument doc : docs) {
             productIds.add((Long) doc.getFieldValue(shs.getProductIdFieldName()));
         }
+        return productIds;
+    }
 
+    /**
+     * Looks up the given IDs via the productDao and returns the Products sorted by the order of the IDs
+     * 
+     * @param productIds
+     * @return the actual Product instances
+     */
+    protected List<Product> getProducts(List<Long> productIds) {
         List<Product> products = productDao.readProductsByIds(productIds);
 
         // We have to sort the products list by the order of the productIds list to maintain sortability in the UI
         if (products != null) {
+            final Map<Long, Integer> positions = new HashMap<Long, Integer>(productIds.size());
+            for (int i = 0; i < productIds.size(); i++) {
+                positions.put(productIds.get(i), i);
+            }
             Collections.sort(products, new Comparator<Product>() {
                 public int compare(Product o1, Product o2) {
-                    return new Integer(productIds.indexOf(o1.getId())).compareTo(productIds.indexOf(o2.getId()));
+                    return positions.get(o1.getId()).compareTo(positions.get(o2.getId()));
                 }
             });
         }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.core.rating.domain.RatingDetailImpl;
+import org.broadleafcommerce.core.rating.domain.RatingSummary;
+import org.broadleafcommerce.core.rating.domain.RatingSummaryImpl;
+import org.broadleafcommerce.core.rating.service.type.RatingType;
+
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class CatalogPersistedEntityListenerTest extends TestCase {
+
+    protected CatalogPersistedEntityListener listener = new CatalogPersistedEntityListener();
+
+    public void testProductRatingsResolveToProduct() {
+        RatingSummary summary = new RatingSummaryImpl("12", RatingType.PRODUCT);
+
+        assertEquals(Long.valueOf(12L), listener.getAffectedProductId(summary));
+        assertEquals(Long.valueOf(12L), listener.getAffectedProductId(new RatingDetailImpl(summary, 4.0, new Date(), null)));
+    }
+
+    public void testOtherRatingsAreIgnored() {
+        assertNull(listener.getAffectedProductId(new RatingSummaryImpl("12", new RatingType("ARTICLE"))));
+        assertNull(listener.getAffectedProductId(new RatingSummaryImpl("abc", RatingType.PRODUCT)));
+        assertNull(listener.getAffectedProductId(new RatingDetailImpl(null, 4.0, new Date(), null)));
+    }
+
+}
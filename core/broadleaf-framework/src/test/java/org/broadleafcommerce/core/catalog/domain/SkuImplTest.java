@@ -0,0 +1,131 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.service.dynamic.DefaultDynamicSkuPricingServiceImpl;
+import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPrices;
+import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+public class SkuImplTest extends TestCase {
+
+    protected int pricingCalls;
+
+    /**
+     * Overrides only the {@link Sku} variant, marking prices up by one from the stored prices it reads off the sku
+     */
+    protected DynamicSkuPricingService markupPricingService = new DefaultDynamicSkuPricingServiceImpl() {
+        @Override
+        @SuppressWarnings("rawtypes")
+        public DynamicSkuPrices getSkuPrices(Sku sku, HashMap skuPricingConsiderations) {
+            pricingCalls++;
+            DynamicSkuPrices prices = new DynamicSkuPrices();
+            prices.setRetailPrice(sku.getRetailPrice().add(new Money(1)));
+            prices.setSalePrice(sku.getSalePrice() == null ? null : sku.getSalePrice().add(new Money(1)));
+            return prices;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        pricingCalls = 0;
+        SkuPricingConsiderationContext.setSkuPricingService(markupPricingService);
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(new HashMap<String, Object>());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SkuPricingConsiderationContext.setSkuPricingService(null);
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(null);
+    }
+
+    public void testOverriddenSkuPricesDrivePrices() throws Exception {
+        Sku sku = buildSku(1L, 10, 8);
+
+        assertEquals(new Money(11), sku.getRetailPrice());
+        assertEquals(new Money(9), sku.getSalePrice());
+        assertEquals(new Money(11), sku.getRetailPrice());
+        // Priced once and then served from the request cache
+        assertEquals(1, pricingCalls);
+    }
+
+    public void testPricesRefreshedWithConsiderations() throws Exception {
+        Sku sku = buildSku(1L, 10, 8);
+
+        assertEquals(new Money(11), sku.getRetailPrice());
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(new HashMap<String, Object>());
+        assertEquals(new Money(11), sku.getRetailPrice());
+        assertEquals(2, pricingCalls);
+
+        sku.clearDynamicPrices();
+        assertEquals(new Money(11), sku.getRetailPrice());
+        assertEquals(3, pricingCalls);
+    }
+
+    public void testBundleItemSalePriceOverride() throws Exception {
+        Sku sku = buildSku(1L, 10, 8);
+        SkuBundleItem bundleItem = new SkuBundleItemImpl();
+        bundleItem.setSku(sku);
+        bundleItem.setSalePrice(new Money(5));
+
+        // The override is what the pricing service sees as the stored sale price
+        assertEquals(new Money(6), bundleItem.getSalePrice());
+        assertEquals(new Money(9), sku.getSalePrice());
+    }
+
+    public void testDirectImplementation() throws Exception {
+        SkuPricingConsiderationContext.setSkuPricingService(new DynamicSkuPricingService() {
+            @Override
+            @SuppressWarnings("rawtypes")
+            public DynamicSkuPrices getSkuPrices(Sku sku, HashMap skuPricingConsiderations) {
+                DynamicSkuPrices prices = new DynamicSkuPrices();
+                prices.setRetailPrice(new Money(3));
+                return prices;
+            }
+
+            @Override
+            @SuppressWarnings("rawtypes")
+            public DynamicSkuPrices getSkuBundleItemPrice(SkuBundleItem sku, HashMap skuPricingConsiderations) {
+                return new DynamicSkuPrices();
+            }
+
+            @Override
+            @SuppressWarnings("rawtypes")
+            public DynamicSkuPrices getPriceAdjustment(ProductOptionValueImpl productOptionValueImpl, Money priceAdjustment,
+                    HashMap skuPricingConsiderationContext) {
+                return new DynamicSkuPrices();
+            }
+        });
+        Sku sku = buildSku(2L, 10, 8);
+
+        assertEquals(new Money(3), sku.getRetailPrice());
+    }
+
+    protected Sku buildSku(Long id, int retailPrice, int salePrice) {
+        Sku sku = new SkuImpl();
+        sku.setId(id);
+        sku.setRetailPrice(new Money(retailPrice));
+        sku.setSalePrice(new Money(salePrice));
+        return sku;
+    }
+
+}
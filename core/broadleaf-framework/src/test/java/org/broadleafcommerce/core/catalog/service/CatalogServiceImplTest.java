@@ -0,0 +1,114 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryXref;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CatalogServiceImplTest extends TestCase {
+
+    protected CatalogServiceImpl catalogService;
+    protected CategoryDao categoryDao;
+    protected CategoryTreeService categoryTreeService;
+
+    @Override
+    protected void setUp() throws Exception {
+        categoryDao = EasyMock.createMock(CategoryDao.class);
+        categoryTreeService = EasyMock.createMock(CategoryTreeService.class);
+
+        catalogService = new CatalogServiceImpl();
+        catalogService.setCategoryDao(categoryDao);
+        catalogService.categoryTreeService = categoryTreeService;
+    }
+
+    public void testSnapshotAnswersWithoutReadingCategories() {
+        EasyMock.expect(categoryTreeService.getSnapshot()).andReturn(CategoryTreeSnapshotTest.buildSnapshot()).anyTimes();
+        EasyMock.replay(categoryDao, categoryTreeService);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(5L, 2L, 4L, 1L)), catalogService.findCategoryHierarchyIds(5L));
+        assertEquals(new HashSet<Long>(Arrays.asList(3L, 5L)), catalogService.findDescendantCategoryIds(2L));
+        assertEquals(Arrays.asList(2L), catalogService.findActiveChildCategoryIds(1L));
+        assertEquals(Arrays.asList(1L, 2L, 3L), catalogService.getChildCategoryURLMapByCategoryId(1L).get("/men/shirts"));
+        EasyMock.verify(categoryDao);
+    }
+
+    public void testCategoriesUsedWithoutSnapshot() {
+        Category shirts = createCategory(3L);
+        Category men = createCategory(2L);
+        Category sale = createCategory(5L);
+        CategoryXref saleXref = createXref(sale);
+        CategoryXref shirtsXref = createXref(shirts);
+        Map<String, List<Long>> urlMap = Collections.singletonMap("/men", Arrays.asList(2L));
+        EasyMock.expect(categoryTreeService.getSnapshot()).andReturn(null).anyTimes();
+        EasyMock.expect(categoryDao.readCategoryById(3L)).andReturn(shirts);
+        EasyMock.expect(shirts.buildFullCategoryHierarchy(null)).andReturn(Arrays.asList(shirts, men));
+        EasyMock.expect(categoryDao.readCategoryById(2L)).andReturn(men).times(3);
+        EasyMock.expect(men.getChildCategoryXrefs()).andReturn(Arrays.asList(saleXref, shirtsXref));
+        EasyMock.expect(men.getChildCategoryURLMap()).andReturn(urlMap);
+        EasyMock.expect(categoryDao.readAllSubCategories(men)).andReturn(Arrays.asList(shirts));
+        EasyMock.expect(men.getAllChildCategoryXrefs()).andReturn(Arrays.asList(saleXref));
+        EasyMock.expect(categoryDao.readAllSubCategories(shirts)).andReturn(new ArrayList<Category>());
+        EasyMock.expect(shirts.getAllChildCategoryXrefs()).andReturn(new ArrayList<CategoryXref>());
+        EasyMock.expect(categoryDao.readAllSubCategories(sale)).andReturn(new ArrayList<Category>());
+        EasyMock.expect(sale.getAllChildCategoryXrefs()).andReturn(new ArrayList<CategoryXref>());
+        EasyMock.replay(categoryDao, categoryTreeService, shirts, men, sale);
+
+        assertEquals(new HashSet<Long>(Arrays.asList(3L, 2L)), catalogService.findCategoryHierarchyIds(3L));
+        assertEquals(Arrays.asList(5L, 3L), catalogService.findActiveChildCategoryIds(2L));
+        assertSame(urlMap, catalogService.getChildCategoryURLMapByCategoryId(2L));
+        assertEquals(new HashSet<Long>(Arrays.asList(3L, 5L)), catalogService.findDescendantCategoryIds(2L));
+        EasyMock.verify(categoryDao, shirts, men, sale);
+    }
+
+    public void testCategoriesUsedWhenMissingFromSnapshot() {
+        EasyMock.expect(categoryTreeService.getSnapshot()).andReturn(CategoryTreeSnapshotTest.buildSnapshot()).anyTimes();
+        EasyMock.expect(categoryDao.readCategoryById(99L)).andReturn(null).times(4);
+        EasyMock.replay(categoryDao, categoryTreeService);
+
+        assertTrue(catalogService.findCategoryHierarchyIds(99L).isEmpty());
+        assertTrue(catalogService.findDescendantCategoryIds(99L).isEmpty());
+        assertTrue(catalogService.findActiveChildCategoryIds(99L).isEmpty());
+        assertNull(catalogService.getChildCategoryURLMapByCategoryId(99L));
+        EasyMock.verify(categoryDao);
+    }
+
+    protected Category createCategory(Long id) {
+        Category category = EasyMock.createMock(Category.class);
+        EasyMock.expect(category.getId()).andReturn(id).anyTimes();
+        return category;
+    }
+
+    protected CategoryXref createXref(Category subCategory) {
+        CategoryXref xref = EasyMock.createMock(CategoryXref.class);
+        EasyMock.expect(xref.getSubCategory()).andReturn(subCategory).anyTimes();
+        EasyMock.replay(xref);
+        return xref;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.domain.CategoryPersistedEvent;
+import org.easymock.EasyMock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import junit.framework.TestCase;
+
+public class CategoryTreeServiceImplTest extends TestCase {
+
+    protected CategoryTreeServiceImpl treeService;
+    protected CategoryDao categoryDao;
+
+    @Override
+    protected void setUp() throws Exception {
+        categoryDao = EasyMock.createMock(CategoryDao.class);
+        PlatformTransactionManager transactionManager = EasyMock.createNiceMock(PlatformTransactionManager.class);
+        EasyMock.expect(transactionManager.getTransaction(EasyMock.isA(TransactionDefinition.class)))
+                .andReturn(new SimpleTransactionStatus()).anyTimes();
+        EasyMock.replay(transactionManager);
+
+        treeService = new CategoryTreeServiceImpl();
+        treeService.categoryDao = categoryDao;
+        treeService.transactionManager = transactionManager;
+    }
+
+    public void testSnapshotBuiltOnceAndShared() {
+        expectReads(1);
+        EasyMock.replay(categoryDao);
+
+        CategoryTreeSnapshot snapshot = treeService.getSnapshot();
+
+        assertSame(snapshot, treeService.getSnapshot());
+        EasyMock.verify(categoryDao);
+        assertEquals(5, treeService.getCategoryCount());
+        assertEquals(1, treeService.getRebuildCount());
+    }
+
+    public void testCategoryPersistedEventRebuildsSnapshot() {
+        expectReads(2);
+        EasyMock.replay(categoryDao);
+
+        CategoryTreeSnapshot snapshot = treeService.getSnapshot();
+        treeService.onApplicationEvent(new CategoryPersistedEvent(2L));
+        CategoryTreeSnapshot rebuilt = treeService.getSnapshot();
+
+        EasyMock.verify(categoryDao);
+        assertNotSame(snapshot, rebuilt);
+        assertSame(rebuilt, treeService.getSnapshot());
+        assertEquals(2, treeService.getRebuildCount());
+    }
+
+    public void testExpiredSnapshotRebuilt() {
+        treeService.refreshInterval = -1;
+        expectReads(2);
+        EasyMock.replay(categoryDao);
+
+        CategoryTreeSnapshot snapshot = treeService.getSnapshot();
+
+        assertNotSame(snapshot, treeService.getSnapshot());
+        EasyMock.verify(categoryDao);
+    }
+
+    public void testFailedRebuildKeepsPreviousSnapshot() {
+        expectReads(1);
+        EasyMock.expect(categoryDao.readAllCategoryTreeNodes()).andThrow(new RuntimeException("database unavailable"));
+        expectReads(1);
+        EasyMock.replay(categoryDao);
+
+        CategoryTreeSnapshot snapshot = treeService.getSnapshot();
+        treeService.invalidateSnapshot();
+
+        assertSame(snapshot, treeService.getSnapshot());
+        // Still stale, so the next call tries again
+        CategoryTreeSnapshot rebuilt = treeService.getSnapshot();
+        assertNotSame(snapshot, rebuilt);
+        EasyMock.verify(categoryDao);
+    }
+
+    public void testDisabledSnapshot() {
+        treeService.enabled = false;
+        EasyMock.replay(categoryDao);
+
+        assertNull(treeService.getSnapshot());
+        EasyMock.verify(categoryDao);
+    }
+
+    protected void expectReads(int count) {
+        EasyMock.expect(categoryDao.readAllCategoryTreeNodes()).andReturn(CategoryTreeSnapshotTest.buildNodeRows()).times(count);
+        EasyMock.expect(categoryDao.readAllParentCategoryIdsByCategory()).andReturn(CategoryTreeSnapshotTest.buildParentIds()).times(count);
+        EasyMock.expect(categoryDao.readAllChildCategoryIdsByCategory()).andReturn(CategoryTreeSnapshotTest.buildChildIds()).times(count);
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.common.util.UrlUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CategoryTreeSnapshotTest extends TestCase {
+
+    protected static final Date PAST = new Date(System.currentTimeMillis() - 86400000L);
+    protected static final Date FUTURE = new Date(System.currentTimeMillis() + 86400000L);
+
+    /**
+     * Rows in the layout of {@link org.broadleafcommerce.core.catalog.dao.CategoryDao#readAllCategoryTreeNodes()}:
+     * 1 is the root, 2 (men) and 4 (women, not yet active) are below it, 3 (shirts) and 5 (sale, no url key) are below 
+     * men, and 5 is also linked below women
+     */
+    public static List<Object[]> buildNodeRows() {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { 1L, null, "/", "Root", PAST, null, 'N' });
+        rows.add(new Object[] { 2L, 1L, "men", "Men", PAST, null, 'N' });
+        rows.add(new Object[] { 3L, 2L, "shirts", "Shirts", PAST, null, 'N' });
+        rows.add(new Object[] { 4L, 1L, "women", "Women", FUTURE, null, 'N' });
+        rows.add(new Object[] { 5L, 2L, null, "Summer Sale", PAST, null, 'N' });
+        return rows;
+    }
+
+    public static Map<Long, Set<Long>> buildParentIds() {
+        Map<Long, Set<Long>> parentIds = new HashMap<Long, Set<Long>>();
+        parentIds.put(2L, Collections.singleton(1L));
+        parentIds.put(3L, Collections.singleton(2L));
+        parentIds.put(4L, Collections.singleton(1L));
+        parentIds.put(5L, new HashSet<Long>(Arrays.asList(2L, 4L)));
+        return parentIds;
+    }
+
+    public static Map<Long, List<Long>> buildChildIds() {
+        Map<Long, List<Long>> childIds = new HashMap<Long, List<Long>>();
+        childIds.put(1L, Arrays.asList(4L, 2L));
+        childIds.put(2L, Arrays.asList(5L, 3L));
+        childIds.put(4L, Arrays.asList(5L));
+        return childIds;
+    }
+
+    public static CategoryTreeSnapshot buildSnapshot() {
+        return CategoryTreeSnapshot.build(buildNodeRows(), buildParentIds(), buildChildIds(), System.currentTimeMillis());
+    }
+
+    public void testHierarchyIncludesAllParents() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        assertEquals(5, snapshot.size());
+        assertEquals(ids(5L, 2L, 4L, 1L), snapshot.getFullCategoryHierarchy(5L));
+        assertEquals(ids(3L, 2L, 1L), snapshot.getFullCategoryHierarchy(3L));
+        assertEquals(ids(1L), snapshot.getFullCategoryHierarchy(1L));
+        assertTrue(snapshot.isInHierarchy(4L, 5L));
+        assertFalse(snapshot.isInHierarchy(4L, 3L));
+    }
+
+    public void testDescendantsFollowAllParents() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        assertEquals(ids(2L, 3L, 4L, 5L), snapshot.getDescendantCategoryIds(1L));
+        assertEquals(ids(3L, 5L), snapshot.getDescendantCategoryIds(2L));
+        assertEquals(ids(5L), snapshot.getDescendantCategoryIds(4L));
+        assertTrue(snapshot.getDescendantCategoryIds(3L).isEmpty());
+    }
+
+    public void testChildrenKeepDisplayOrder() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        assertEquals(Arrays.asList(4L, 2L), snapshot.getChildCategoryIds(1L));
+        assertEquals(Arrays.asList(5L, 3L), snapshot.getChildCategoryIds(2L));
+        // Women has not started yet
+        assertEquals(Arrays.asList(2L), snapshot.getActiveChildCategoryIds(1L));
+        assertTrue(snapshot.getChildCategoryIds(3L).isEmpty());
+    }
+
+    public void testDepthAndGeneratedUrlFollowDefaultParents() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+        String saleUrlKey = UrlUtil.generateUrlKey("Summer Sale");
+
+        assertEquals(0, snapshot.getDepth(1L));
+        assertEquals(2, snapshot.getDepth(3L));
+        assertEquals(2, snapshot.getDepth(5L));
+        assertEquals("/", snapshot.getGeneratedUrl(1L));
+        assertEquals("men/shirts", snapshot.getGeneratedUrl(3L));
+        assertEquals("men/" + saleUrlKey, snapshot.getGeneratedUrl(5L));
+    }
+
+    public void testChildCategoryURLMapSkipsInactiveCategories() {
+        Map<String, List<Long>> urlMap = buildSnapshot().getChildCategoryURLMap(1L);
+        String saleUrlKey = UrlUtil.generateUrlKey("Summer Sale");
+
+        assertEquals(4, urlMap.size());
+        assertEquals(Arrays.asList(1L), urlMap.get(""));
+        assertEquals(Arrays.asList(1L, 2L), urlMap.get("/men"));
+        assertEquals(Arrays.asList(1L, 2L, 3L), urlMap.get("/men/shirts"));
+        assertEquals(Arrays.asList(1L, 2L, 5L), urlMap.get("/men/" + saleUrlKey));
+        assertFalse(urlMap.containsKey("/women"));
+    }
+
+    public void testUnknownCategory() {
+        CategoryTreeSnapshot snapshot = buildSnapshot();
+
+        assertFalse(snapshot.contains(99L));
+        assertEquals(ids(99L), snapshot.getFullCategoryHierarchy(99L));
+        assertTrue(snapshot.getDescendantCategoryIds(99L).isEmpty());
+        assertTrue(snapshot.getActiveChildCategoryIds(99L).isEmpty());
+        assertEquals(-1, snapshot.getDepth(99L));
+        assertNull(snapshot.getGeneratedUrl(99L));
+        assertNull(snapshot.getChildCategoryURLMap(99L));
+    }
+
+    public void testCyclesTerminate() {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { 10L, 11L, "a", "A", PAST, null, 'N' });
+        rows.add(new Object[] { 11L, 10L, "b", "B", PAST, null, 'N' });
+        Map<Long, Set<Long>> parentIds = new HashMap<Long, Set<Long>>();
+        parentIds.put(10L, Collections.singleton(11L));
+        parentIds.put(11L, Collections.singleton(10L));
+        Map<Long, List<Long>> childIds = new HashMap<Long, List<Long>>();
+        childIds.put(10L, Arrays.asList(11L));
+        childIds.put(11L, Arrays.asList(10L));
+
+        CategoryTreeSnapshot snapshot = CategoryTreeSnapshot.build(rows, parentIds, childIds, System.currentTimeMillis());
+
+        assertEquals(ids(10L, 11L), snapshot.getFullCategoryHierarchy(10L));
+        assertEquals(ids(11L), snapshot.getDescendantCategoryIds(10L));
+        assertEquals(1, snapshot.getDepth(10L));
+        assertEquals("b/a", snapshot.getGeneratedUrl(10L));
+        assertEquals(2, snapshot.getChildCategoryURLMap(10L).size());
+    }
+
+    protected Set<Long> ids(Long... ids) {
+        return new HashSet<Long>(Arrays.asList(ids));
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.Configuration;
+
+import org.broadleafcommerce.common.media.domain.Media;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEvent;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductSummary;
+import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
+import org.broadleafcommerce.core.rating.domain.RatingSummary;
+import org.broadleafcommerce.core.rating.service.RatingService;
+import org.broadleafcommerce.core.rating.service.type.RatingType;
+import org.easymock.EasyMock;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ProductSummaryServiceImplTest extends TestCase {
+
+    protected ProductSummaryServiceImpl summaryService;
+    protected ProductDao productDao;
+    protected RatingService ratingService;
+    protected CacheManager cacheManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        productDao = EasyMock.createMock(ProductDao.class);
+        ratingService = EasyMock.createNiceMock(RatingService.class);
+        EasyMock.expect(ratingService.readRatingSummaries(EasyMock.<List<String>>anyObject(), EasyMock.eq(RatingType.PRODUCT)))
+                .andReturn(new HashMap<String, RatingSummary>()).anyTimes();
+        EasyMock.replay(ratingService);
+
+        cacheManager = new CacheManager(new Configuration().name("ProductSummaryServiceImplTest"));
+        Cache cache = new Cache(ProductSummaryServiceImpl.CACHE_NAME, 100, false, true, 0, 0);
+        cacheManager.addCache(cache);
+
+        summaryService = new ProductSummaryServiceImpl();
+        summaryService.productDao = productDao;
+        summaryService.ratingService = ratingService;
+        summaryService.cache = cache;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(null);
+        SkuPricingConsiderationContext.setSkuPricingService(null);
+        cacheManager.shutdown();
+    }
+
+    public void testSummariesAreCachedInRequestedOrder() {
+        EasyMock.expect(productDao.readProductsByIds(Arrays.asList(1L, 2L)))
+                .andReturn(Arrays.asList(createProduct(2L), createProduct(1L))).once();
+        EasyMock.replay(productDao);
+
+        List<ProductSummary> first = summaryService.findProductSummaries(Arrays.asList(1L, 2L));
+        List<ProductSummary> second = summaryService.findProductSummaries(Arrays.asList(2L, 1L));
+
+        EasyMock.verify(productDao);
+        assertEquals(Long.valueOf(1L), first.get(0).getProductId());
+        assertEquals(Long.valueOf(2L), first.get(1).getProductId());
+        assertSame(first.get(1), second.get(0));
+        assertSame(first.get(0), second.get(1));
+        assertEquals(2, summaryService.getCachedProductCount());
+    }
+
+    public void testCatalogPersistedEventEvictsProduct() {
+        EasyMock.expect(productDao.readProductsByIds(Arrays.asList(1L, 2L)))
+                .andReturn(Arrays.asList(createProduct(1L), createProduct(2L)));
+        EasyMock.expect(productDao.readProductsByIds(Arrays.asList(1L)))
+                .andReturn(Arrays.asList(createProduct(1L)));
+        EasyMock.replay(productDao);
+
+        List<ProductSummary> first = summaryService.findProductSummaries(Arrays.asList(1L, 2L));
+        summaryService.onApplicationEvent(new CatalogPersistedEvent(1L));
+        assertEquals(1, summaryService.getCachedProductCount());
+        List<ProductSummary> second = summaryService.findProductSummaries(Arrays.asList(1L, 2L));
+
+        EasyMock.verify(productDao);
+        assertNotSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+    }
+
+    public void testDynamicPricingBypassesCache() {
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(new HashMap());
+        SkuPricingConsiderationContext.setSkuPricingService(EasyMock.createMock(DynamicSkuPricingService.class));
+        EasyMock.expect(productDao.readProductsByIds(Arrays.asList(1L)))
+                .andReturn(Arrays.asList(createProduct(1L))).times(2);
+        EasyMock.replay(productDao);
+
+        ProductSummary first = summaryService.findProductSummary(1L);
+        ProductSummary second = summaryService.findProductSummary(1L);
+
+        EasyMock.verify(productDao);
+        assertNotSame(first, second);
+        assertEquals(0, summaryService.getCachedProductCount());
+    }
+
+    protected Product createProduct(Long id) {
+        Product product = EasyMock.createNiceMock(Product.class);
+        EasyMock.expect(product.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(product.getName()).andReturn("product " + id).anyTimes();
+        EasyMock.expect(product.getMedia()).andReturn(new HashMap<String, Media>()).anyTimes();
+        EasyMock.replay(product);
+        return product;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext.SkuPriceKey;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+public class SkuPricingConsiderationContextTest extends TestCase {
+
+    protected int pricingCalls;
+
+    @Override
+    protected void setUp() throws Exception {
+        pricingCalls = 0;
+        SkuPricingConsiderationContext.setSkuPricingService(new DefaultDynamicSkuPricingServiceImpl() {
+            @Override
+            @SuppressWarnings("rawtypes")
+            public DynamicSkuPrices getSkuPrices(Sku sku, HashMap skuPricingConsiderations) {
+                pricingCalls++;
+                return new DynamicSkuPrices();
+            }
+        });
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(new HashMap<String, Object>());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SkuPricingConsiderationContext.setSkuPricingService(null);
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(null);
+    }
+
+    public void testOverrideKeysIgnoreScale() {
+        Sku sku = buildSku(1L);
+
+        SkuPriceKey key = new SkuPriceKey(buildView(sku).withSalePriceOverride(buildMoney("5", 2)));
+        SkuPriceKey rescaled = new SkuPriceKey(buildView(sku).withSalePriceOverride(buildMoney("5", 4)));
+        SkuPriceKey zero = new SkuPriceKey(buildView(sku).withSalePriceOverride(buildMoney("0", 2)));
+        SkuPriceKey rescaledZero = new SkuPriceKey(buildView(sku).withSalePriceOverride(buildMoney("0", 4)));
+
+        assertEquals(key, rescaled);
+        assertEquals(key.hashCode(), rescaled.hashCode());
+        assertEquals(zero, rescaledZero);
+        assertEquals(zero.hashCode(), rescaledZero.hashCode());
+        assertFalse(key.equals(zero));
+        assertFalse(key.equals(new SkuPriceKey(buildView(sku))));
+    }
+
+    public void testOverridesOfDifferentScalePricedOnce() {
+        Sku sku = buildSku(1L);
+
+        SkuPricingConsiderationContext.getSkuPrices(buildView(sku).withSalePriceOverride(buildMoney("5", 2)));
+        SkuPricingConsiderationContext.getSkuPrices(buildView(sku).withSalePriceOverride(buildMoney("5", 4)));
+        assertEquals(1, pricingCalls);
+
+        SkuPricingConsiderationContext.getSkuPrices(buildView(sku).withSalePriceOverride(buildMoney("6", 2)));
+        assertEquals(2, pricingCalls);
+    }
+
+    protected SkuPriceView buildView(Sku sku) {
+        return new SkuPriceView(sku, new Money(10), new Money(8));
+    }
+
+    protected Money buildMoney(String amount, int scale) {
+        return new Money(new BigDecimal(amount), Currency.getInstance("USD"), scale);
+    }
+
+    protected Sku buildSku(Long id) {
+        Sku sku = new SkuImpl();
+        sku.setId(id);
+        return sku;
+    }
+
+}
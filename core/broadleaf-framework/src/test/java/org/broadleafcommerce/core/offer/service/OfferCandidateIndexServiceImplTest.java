@@ -0,0 +1,237 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferPersistedEvent;
+import org.broadleafcommerce.core.offer.service.OfferCandidateIndexServiceImpl.IndexedOffer;
+import org.broadleafcommerce.core.offer.service.OfferCandidateIndexServiceImpl.ItemKeyConstraint;
+import org.broadleafcommerce.core.offer.service.OfferCandidateIndexServiceImpl.ItemKeyType;
+import org.broadleafcommerce.core.offer.service.OfferCandidateIndexServiceImpl.OfferIndex;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.easymock.EasyMock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import junit.framework.TestCase;
+
+public class OfferCandidateIndexServiceImplTest extends TestCase {
+
+    protected OfferCandidateIndexServiceImpl service = new OfferCandidateIndexServiceImpl();
+
+    public void testFieldEqualsId() {
+        List<ItemKeyConstraint> constraints = service.parseConstraints("discreteOrderItem.?sku.?id == 5");
+        assertEquals(1, constraints.size());
+        assertConstraint(constraints.get(0), ItemKeyType.SKU, 5L);
+    }
+
+    public void testIdEqualsField() {
+        List<ItemKeyConstraint> constraints = service.parseConstraints("(5 == orderItem.?product.?id.longValue())");
+        assertEquals(1, constraints.size());
+        assertConstraint(constraints.get(0), ItemKeyType.PRODUCT, 5L);
+    }
+
+    public void testContainsField() {
+        List<ItemKeyConstraint> constraints = service.parseConstraints(
+                "([5,6] contains discreteOrderItem.?category.?id.intValue())");
+        assertEquals(1, constraints.size());
+        assertConstraint(constraints.get(0), ItemKeyType.CATEGORY, 5L, 6L);
+    }
+
+    public void testTopLevelConjuncts() {
+        List<ItemKeyConstraint> constraints = service.parseConstraints(
+                "discreteOrderItem.?quantity > 1 && (discreteOrderItem.?sku.?id == 5) && ([7] contains discreteOrderItem.?product.?id)");
+        assertEquals(2, constraints.size());
+        assertConstraint(constraints.get(0), ItemKeyType.SKU, 5L);
+        assertConstraint(constraints.get(1), ItemKeyType.PRODUCT, 7L);
+    }
+
+    public void testUnreadableRules() {
+        // A disjunction does not require either condition to hold
+        assertTrue(service.parseConstraints("discreteOrderItem.?sku.?id == 5 || discreteOrderItem.?sku.?id == 6").isEmpty());
+        // Neither does a negation or a nested disjunction
+        assertTrue(service.parseConstraints("!(discreteOrderItem.?sku.?id == 5)").isEmpty());
+        assertTrue(service.parseConstraints("discreteOrderItem.?quantity > 1 && (discreteOrderItem.?sku.?id == 5 || discreteOrderItem.?sku.?id == 6)").isEmpty());
+        // Operators inside string literals are not conjunctions
+        assertTrue(service.parseConstraints("discreteOrderItem.?name == 'a && discreteOrderItem.?sku.?id == 5'").isEmpty());
+        assertTrue(service.parseConstraints("discreteOrderItem.?sku.?name == 'Hot Sauce'").isEmpty());
+    }
+
+    public void testCandidateOffers() {
+        OfferIndex index = new OfferIndex(0L);
+        index.add(buildIndexedOffer(1L, "discreteOrderItem.?sku.?id == 5"));
+        index.add(buildIndexedOffer(2L, "discreteOrderItem.?sku.?id == 5 && [7,8] contains discreteOrderItem.?category.?id"));
+        index.add(buildIndexedOffer(3L, "discreteOrderItem.?sku.?id == 5 || discreteOrderItem.?sku.?id == 6"));
+        index.add(buildIndexedOffer(4L, "discreteOrderItem.?sku.?id == 6"));
+
+        assertEquals(new HashSet<Long>(Arrays.asList(3L)), index.unrestrictedOfferIds);
+        assertEquals(new HashSet<Long>(Arrays.asList(1L, 3L)), index.findCandidateOfferIds(buildOrderKeys(5L, null)));
+        assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)), index.findCandidateOfferIds(buildOrderKeys(5L, 8L)));
+        assertEquals(new HashSet<Long>(Arrays.asList(3L)), index.findCandidateOfferIds(buildOrderKeys(null, 8L)));
+    }
+
+    public void testIndexRebuiltInBackground() {
+        Offer skuOffer = buildOffer(1L, "discreteOrderItem.?sku.?id == 5");
+        Offer otherOffer = buildOffer(2L, "discreteOrderItem.?sku.?id == 6");
+        List<Offer> offers = Arrays.asList(skuOffer, otherOffer);
+        Order order = buildOrder(5L);
+        OfferDao offerDao = EasyMock.createMock(OfferDao.class);
+        EasyMock.expect(offerDao.readOffersByAutomaticDeliveryType()).andReturn(offers).times(2);
+        EasyMock.replay(offerDao);
+        List<Runnable> pendingRebuilds = new ArrayList<Runnable>();
+        OfferCandidateIndexServiceImpl indexService = buildIndexService(offerDao, pendingRebuilds);
+
+        // Every offer is evaluated until the first index is built, and only one rebuild is scheduled
+        assertEquals(offers, indexService.filterCandidateOffers(offers, order));
+        assertEquals(offers, indexService.filterCandidateOffers(offers, order));
+        assertEquals(1, pendingRebuilds.size());
+
+        runPendingRebuilds(pendingRebuilds);
+        assertEquals(Arrays.asList(skuOffer), indexService.filterCandidateOffers(offers, order));
+        assertTrue(pendingRebuilds.isEmpty());
+
+        // The previous index keeps being used until the rebuild has run
+        indexService.onApplicationEvent(new OfferPersistedEvent(skuOffer));
+        assertEquals(Arrays.asList(skuOffer), indexService.filterCandidateOffers(offers, order));
+        assertEquals(Arrays.asList(skuOffer), indexService.filterCandidateOffers(offers, order));
+        assertEquals(1, pendingRebuilds.size());
+        assertEquals(1, indexService.getRebuildCount());
+
+        runPendingRebuilds(pendingRebuilds);
+        assertEquals(2, indexService.getRebuildCount());
+        EasyMock.verify(offerDao);
+    }
+
+    public void testFailedRebuildScheduledAgain() {
+        Offer skuOffer = buildOffer(1L, "discreteOrderItem.?sku.?id == 5");
+        Offer otherOffer = buildOffer(2L, "discreteOrderItem.?sku.?id == 6");
+        List<Offer> offers = Arrays.asList(skuOffer, otherOffer);
+        Order order = buildOrder(5L);
+        OfferDao offerDao = EasyMock.createMock(OfferDao.class);
+        EasyMock.expect(offerDao.readOffersByAutomaticDeliveryType()).andThrow(new RuntimeException("database unavailable"));
+        EasyMock.expect(offerDao.readOffersByAutomaticDeliveryType()).andReturn(offers);
+        EasyMock.replay(offerDao);
+        List<Runnable> pendingRebuilds = new ArrayList<Runnable>();
+        OfferCandidateIndexServiceImpl indexService = buildIndexService(offerDao, pendingRebuilds);
+
+        assertEquals(offers, indexService.filterCandidateOffers(offers, order));
+        runPendingRebuilds(pendingRebuilds);
+        assertEquals(0, indexService.getRebuildCount());
+
+        assertEquals(offers, indexService.filterCandidateOffers(offers, order));
+        assertEquals(1, pendingRebuilds.size());
+        runPendingRebuilds(pendingRebuilds);
+        assertEquals(Arrays.asList(skuOffer), indexService.filterCandidateOffers(offers, order));
+        EasyMock.verify(offerDao);
+    }
+
+    protected OfferCandidateIndexServiceImpl buildIndexService(OfferDao offerDao, final List<Runnable> pendingRebuilds) {
+        PlatformTransactionManager transactionManager = EasyMock.createNiceMock(PlatformTransactionManager.class);
+        EasyMock.expect(transactionManager.getTransaction(EasyMock.isA(TransactionDefinition.class)))
+                .andReturn(new SimpleTransactionStatus()).anyTimes();
+        EasyMock.replay(transactionManager);
+
+        OfferCandidateIndexServiceImpl indexService = new OfferCandidateIndexServiceImpl() {
+            @Override
+            protected Executor getRebuildExecutor() {
+                return new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        pendingRebuilds.add(command);
+                    }
+                };
+            }
+        };
+        indexService.offerDao = offerDao;
+        indexService.transactionManager = transactionManager;
+        return indexService;
+    }
+
+    protected void runPendingRebuilds(List<Runnable> pendingRebuilds) {
+        List<Runnable> rebuilds = new ArrayList<Runnable>(pendingRebuilds);
+        pendingRebuilds.clear();
+        for (Runnable rebuild : rebuilds) {
+            rebuild.run();
+        }
+    }
+
+    protected Offer buildOffer(Long offerId, String matchRule) {
+        OfferItemCriteria criteria = EasyMock.createNiceMock(OfferItemCriteria.class);
+        EasyMock.expect(criteria.getMatchRule()).andReturn(matchRule).anyTimes();
+        EasyMock.replay(criteria);
+        Offer offer = EasyMock.createNiceMock(Offer.class);
+        EasyMock.expect(offer.getId()).andReturn(offerId).anyTimes();
+        EasyMock.expect(offer.getType()).andReturn(OfferType.ORDER).anyTimes();
+        EasyMock.expect(offer.getQualifyingItemCriteria()).andReturn(Collections.singleton(criteria)).anyTimes();
+        EasyMock.replay(offer);
+        return offer;
+    }
+
+    protected Order buildOrder(Long skuId) {
+        Sku sku = EasyMock.createNiceMock(Sku.class);
+        EasyMock.expect(sku.getId()).andReturn(skuId).anyTimes();
+        DiscreteOrderItem orderItem = EasyMock.createNiceMock(DiscreteOrderItem.class);
+        EasyMock.expect(orderItem.getSku()).andReturn(sku).anyTimes();
+        Order order = EasyMock.createNiceMock(Order.class);
+        EasyMock.expect(order.getOrderItems()).andReturn(Collections.<OrderItem>singletonList(orderItem)).anyTimes();
+        EasyMock.replay(sku, orderItem, order);
+        return order;
+    }
+
+    protected IndexedOffer buildIndexedOffer(Long offerId, String matchRule) {
+        IndexedOffer indexedOffer = new IndexedOffer(offerId, OfferType.ORDER_ITEM, null, null);
+        indexedOffer.constraints.addAll(service.parseConstraints(matchRule));
+        return indexedOffer;
+    }
+
+    protected Map<ItemKeyType, Set<Long>> buildOrderKeys(Long skuId, Long categoryId) {
+        Map<ItemKeyType, Set<Long>> keys = new EnumMap<ItemKeyType, Set<Long>>(ItemKeyType.class);
+        for (ItemKeyType type : ItemKeyType.values()) {
+            keys.put(type, new HashSet<Long>());
+        }
+        if (skuId != null) {
+            keys.get(ItemKeyType.SKU).add(skuId);
+        }
+        if (categoryId != null) {
+            keys.get(ItemKeyType.CATEGORY).add(categoryId);
+        }
+        return keys;
+    }
+
+    protected void assertConstraint(ItemKeyConstraint constraint, ItemKeyType type, Long... ids) {
+        assertEquals(type, constraint.type);
+        assertEquals(new HashSet<Long>(Arrays.asList(ids)), constraint.ids);
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.offer.service;
 
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
 import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.core.offer.dao.CustomerOfferDao;
 import org.broadleafcommerce.core.offer.dao.OfferCodeDao;
@@ -108,6 +109,7 @@ public class OfferServiceTest extends TestCase {
         offerTimeZoneProcessorMock = EasyMock.createMock(OfferTimeZoneProcessor.class);
 
         OrderOfferProcessorImpl orderProcessor = new OrderOfferProcessorImpl();
+        orderProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         orderProcessor.setOfferDao(offerDaoMock);
         orderProcessor.setOrderItemDao(orderItemDaoMock);
         orderProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
@@ -115,11 +117,13 @@ public class OfferServiceTest extends TestCase {
         offerService.setOrderOfferProcessor(orderProcessor);
 
         ItemOfferProcessor itemProcessor = new ItemOfferProcessorImpl();
+        itemProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         itemProcessor.setOfferDao(offerDaoMock);
         itemProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
         offerService.setItemOfferProcessor(itemProcessor);
 
         FulfillmentGroupOfferProcessor fgProcessor = new FulfillmentGroupOfferProcessorImpl();
+        fgProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         fgProcessor.setOfferDao(offerDaoMock);
         fgProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
         offerService.setFulfillmentGroupOfferProcessor(fgProcessor);
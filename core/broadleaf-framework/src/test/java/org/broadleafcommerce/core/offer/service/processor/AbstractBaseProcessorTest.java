@@ -0,0 +1,80 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class AbstractBaseProcessorTest extends TestCase {
+
+    protected MvelExpressionCacheServiceImpl expressionCacheService;
+    protected OrderOfferProcessorImpl processor;
+
+    @Override
+    protected void setUp() throws Exception {
+        expressionCacheService = new MvelExpressionCacheServiceImpl();
+        processor = new OrderOfferProcessorImpl();
+        processor.setExpressionCacheService(expressionCacheService);
+    }
+
+    public void testExpressionUsesOfferImports() {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("type", OfferType.ORDER);
+        assertTrue(processor.executeExpression("type == OfferType.ORDER", vars));
+
+        vars.put("type", OfferType.FULFILLMENT_GROUP);
+        assertFalse(processor.executeExpression("type == OfferType.ORDER", vars));
+    }
+
+    public void testExpressionCompiledOnce() {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("quantity", 3);
+
+        assertTrue(processor.executeExpression("quantity > 2", vars));
+        vars.put("quantity", 1);
+        assertFalse(processor.executeExpression("quantity > 2", vars));
+
+        assertEquals(1, expressionCacheService.getMissCount());
+        assertEquals(1, expressionCacheService.getHitCount());
+        assertEquals(1, expressionCacheService.getSize());
+    }
+
+    public void testInvalidExpressionReturnsFalse() {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("quantity", 3);
+
+        assertFalse(processor.executeExpression("(quantity > 2", vars));
+        assertFalse(processor.executeExpression("(quantity > 2", vars));
+        assertEquals(2, expressionCacheService.getCompileFailureCount());
+        assertEquals(0, expressionCacheService.getSize());
+    }
+
+    public void testExpressionErrorAtRuntimeReturnsFalse() {
+        Map<String, Object> vars = new HashMap<String, Object>();
+        vars.put("customer", null);
+
+        assertFalse(processor.executeExpression("customer.registered == true", vars));
+        assertEquals(1, expressionCacheService.getSize());
+    }
+
+}
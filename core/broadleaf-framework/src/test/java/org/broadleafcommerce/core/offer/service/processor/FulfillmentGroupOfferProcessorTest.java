@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.offer.service.processor;
 
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
 import org.broadleafcommerce.core.offer.dao.CustomerOfferDao;
 import org.broadleafcommerce.core.offer.dao.OfferCodeDao;
 import org.broadleafcommerce.core.offer.dao.OfferDao;
@@ -98,11 +99,13 @@ public class FulfillmentGroupOfferProcessorTest extends TestCase {
         multishipOptionServiceMock = EasyMock.createMock(OrderMultishipOptionService.class);
 
         fgProcessor = new FulfillmentGroupOfferProcessorImpl();
+        fgProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         fgProcessor.setOfferDao(offerDaoMock);
         fgProcessor.setOrderItemDao(orderItemDaoMock);
         fgProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
 
         OrderOfferProcessorImpl orderProcessor = new OrderOfferProcessorImpl();
+        orderProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         orderProcessor.setOfferDao(offerDaoMock);
         orderProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
         offerTimeZoneProcessorMock = EasyMock.createMock(OfferTimeZoneProcessor.class);
@@ -110,6 +113,7 @@ public class FulfillmentGroupOfferProcessorTest extends TestCase {
         orderProcessor.setOrderItemDao(orderItemDaoMock);
 
         ItemOfferProcessor itemProcessor = new ItemOfferProcessorImpl();
+        itemProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         itemProcessor.setOfferDao(offerDaoMock);
         itemProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
         itemProcessor.setOrderItemDao(orderItemDaoMock);
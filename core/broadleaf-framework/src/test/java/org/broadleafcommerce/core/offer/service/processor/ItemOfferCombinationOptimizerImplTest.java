@@ -0,0 +1,169 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableCandidateItemOffer;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ItemOfferCombinationOptimizerImplTest extends TestCase {
+
+    protected ItemOfferCombinationOptimizerImpl optimizer;
+    protected Map<PromotableCandidateItemOffer, Integer> savings;
+    protected PromotableCandidateItemOffer blockingOffer;
+    protected PromotableCandidateItemOffer blockedOffer;
+    protected PromotableCandidateItemOffer soloOffer;
+    protected int evaluations;
+
+    /**
+     * Prices a combination at 100 less the savings of each offer, except that the blocked offer saves nothing when
+     * combined with the blocking offer and the solo offer saves nothing when combined with anything else
+     */
+    protected ItemOfferCombinationEvaluator evaluator = new ItemOfferCombinationEvaluator() {
+        @Override
+        public Money evaluate(List<PromotableCandidateItemOffer> offers) {
+            evaluations++;
+            int subtotal = 100;
+            for (PromotableCandidateItemOffer offer : offers) {
+                if (offer == blockedOffer && offers.contains(blockingOffer)) {
+                    continue;
+                }
+                if (offer == soloOffer && offers.size() > 1) {
+                    continue;
+                }
+                subtotal -= savings.get(offer);
+            }
+            return new Money(subtotal);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        optimizer = new ItemOfferCombinationOptimizerImpl();
+        optimizer.searchEnabled = true;
+        optimizer.maxEvaluations = 64;
+        optimizer.maxTime = 10000L;
+        savings = new IdentityHashMap<PromotableCandidateItemOffer, Integer>();
+        evaluations = 0;
+    }
+
+    public void testSeedsOnlyWhenSearchDisabled() throws Exception {
+        optimizer.searchEnabled = false;
+        PromotableCandidateItemOffer a = createOffer(10, true, false);
+        PromotableCandidateItemOffer b = createOffer(5, true, false);
+        PromotableCandidateItemOffer c = createOffer(20, true, false);
+        blockingOffer = a;
+        blockedOffer = c;
+
+        List<PromotableCandidateItemOffer> seed = Arrays.asList(a, b, c);
+        List<PromotableCandidateItemOffer> best = optimizer.findBestCombination(Arrays.asList(a, b, c),
+                wrap(seed), evaluator);
+
+        assertEquals(seed, best);
+        assertEquals(1, evaluations);
+    }
+
+    public void testSearchBeatsSeeds() throws Exception {
+        PromotableCandidateItemOffer a = createOffer(10, true, false);
+        PromotableCandidateItemOffer b = createOffer(5, true, false);
+        PromotableCandidateItemOffer c = createOffer(20, true, false);
+        blockingOffer = a;
+        blockedOffer = c;
+
+        List<PromotableCandidateItemOffer> best = optimizer.findBestCombination(Arrays.asList(a, b, c),
+                wrap(Arrays.asList(a, b, c)), evaluator);
+
+        assertEquals(Arrays.asList(b, c), best);
+        assertEquals(new Money(75), evaluator.evaluate(best));
+        assertEquals(1L, optimizer.getImprovementCount());
+        assertEquals(0L, optimizer.getBudgetExhaustedCount());
+    }
+
+    public void testExclusiveOfferTriedAlone() throws Exception {
+        PromotableCandidateItemOffer totalitarian = createOffer(30, true, true);
+        PromotableCandidateItemOffer a = createOffer(10, true, false);
+        PromotableCandidateItemOffer b = createOffer(5, true, false);
+        soloOffer = totalitarian;
+
+        List<PromotableCandidateItemOffer> best = optimizer.findBestCombination(Arrays.asList(totalitarian, a, b),
+                wrap(Arrays.asList(totalitarian, a, b)), evaluator);
+
+        assertEquals(Arrays.asList(totalitarian), best);
+    }
+
+    public void testEvaluationBudget() throws Exception {
+        optimizer.maxEvaluations = 4;
+        List<PromotableCandidateItemOffer> offers = new ArrayList<PromotableCandidateItemOffer>();
+        for (int i = 0; i < 6; i++) {
+            // Without potential savings nothing can be pruned, so only the budget ends the search
+            offers.add(createOffer(i + 1, false, false));
+        }
+
+        optimizer.findBestCombination(offers, wrap(offers), evaluator);
+
+        assertEquals(4, evaluations);
+        assertEquals(1L, optimizer.getBudgetExhaustedCount());
+    }
+
+    public void testTimeBudget() throws Exception {
+        optimizer.maxTime = -1L;
+        PromotableCandidateItemOffer a = createOffer(10, true, false);
+        PromotableCandidateItemOffer b = createOffer(5, true, false);
+        PromotableCandidateItemOffer c = createOffer(20, true, false);
+        blockingOffer = a;
+        blockedOffer = c;
+
+        List<PromotableCandidateItemOffer> seed = Arrays.asList(a, b, c);
+        List<PromotableCandidateItemOffer> best = optimizer.findBestCombination(seed, wrap(seed), evaluator);
+
+        // The seeds are always evaluated, even once the time budget is spent
+        assertEquals(seed, best);
+        assertEquals(1, evaluations);
+        assertEquals(1L, optimizer.getBudgetExhaustedCount());
+    }
+
+    protected List<List<PromotableCandidateItemOffer>> wrap(List<PromotableCandidateItemOffer> seed) {
+        List<List<PromotableCandidateItemOffer>> seeds = new ArrayList<List<PromotableCandidateItemOffer>>();
+        seeds.add(seed);
+        return seeds;
+    }
+
+    protected PromotableCandidateItemOffer createOffer(int saving, boolean knownSavings, boolean totalitarian) {
+        Offer offer = EasyMock.createMock(Offer.class);
+        EasyMock.expect(offer.isTotalitarianOffer()).andReturn(Boolean.valueOf(totalitarian)).anyTimes();
+        EasyMock.expect(offer.isCombinableWithOtherOffers()).andReturn(true).anyTimes();
+
+        PromotableCandidateItemOffer itemOffer = EasyMock.createMock(PromotableCandidateItemOffer.class);
+        EasyMock.expect(itemOffer.getOffer()).andReturn(offer).anyTimes();
+        EasyMock.expect(itemOffer.isLegacyOffer()).andReturn(false).anyTimes();
+        EasyMock.expect(itemOffer.getPotentialSavings()).andReturn(knownSavings ? new Money(saving) : null).anyTimes();
+        EasyMock.replay(offer, itemOffer);
+
+        savings.put(itemOffer, saving);
+        return itemOffer;
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.offer.service.processor;
 
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
 import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.core.offer.dao.CustomerOfferDao;
 import org.broadleafcommerce.core.offer.dao.OfferCodeDao;
@@ -92,6 +93,7 @@ public class ItemOfferProcessorTest extends TestCase {
         offerTimeZoneProcessorMock = EasyMock.createMock(OfferTimeZoneProcessor.class);
 
         itemProcessor = new ItemOfferProcessorImpl();
+        itemProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         itemProcessor.setOfferDao(offerDaoMock);
         itemProcessor.setOrderItemDao(orderItemDaoMock);
         itemProcessor.setOfferTimeZoneProcessor(offerTimeZoneProcessorMock);
@@ -100,6 +102,7 @@ public class ItemOfferProcessorTest extends TestCase {
         offerService = new OfferServiceImpl();
 
         OrderOfferProcessorImpl orderProcessor = new OrderOfferProcessorImpl();
+        orderProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         orderProcessor.setOfferDao(offerDaoMock);
         orderProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
         orderProcessor.setOfferTimeZoneProcessor(offerTimeZoneProcessorMock);
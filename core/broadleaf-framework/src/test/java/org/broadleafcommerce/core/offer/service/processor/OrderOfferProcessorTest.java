@@ -16,6 +16,7 @@
 
 package org.broadleafcommerce.core.offer.service.processor;
 
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
 import org.broadleafcommerce.core.offer.dao.OfferDao;
 import org.broadleafcommerce.core.offer.domain.Offer;
 import org.broadleafcommerce.core.offer.domain.OfferImpl;
@@ -51,6 +52,7 @@ public class OrderOfferProcessorTest extends TestCase {
         offerDaoMock = EasyMock.createMock(OfferDao.class);
         offerTimeZoneProcessorMock = EasyMock.createMock(OfferTimeZoneProcessor.class);
         orderProcessor = new OrderOfferProcessorImpl();
+        orderProcessor.setExpressionCacheService(new MvelExpressionCacheServiceImpl());
         orderProcessor.setOfferDao(offerDaoMock);
         orderProcessor.setOfferTimeZoneProcessor(offerTimeZoneProcessorMock);
         orderProcessor.setPromotableItemFactory(new PromotableItemFactoryImpl());
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.order.service;
+
+import org.broadleafcommerce.core.order.service.exception.CartOperationLockException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class CartOperationCoordinatorImplTest extends TestCase {
+
+    protected CartOperationCoordinatorImpl coordinator;
+
+    @Override
+    protected void setUp() throws Exception {
+        coordinator = new CartOperationCoordinatorImpl();
+        coordinator.lockTimeout = 100L;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    public void testLockReleasedWithoutTransaction() throws Exception {
+        assertFalse(coordinator.lockOrder(1L));
+        assertEquals(1, coordinator.getActiveLockCount());
+
+        coordinator.unlockOrder(1L);
+
+        assertEquals(0, coordinator.getActiveLockCount());
+        assertTrue(lockOnOtherThread(1L));
+    }
+
+    public void testNestedLocksReleasedOneAtATime() throws Exception {
+        coordinator.lockOrder(1L);
+        coordinator.lockOrder(1L);
+
+        coordinator.unlockOrder(1L);
+        assertFalse(lockOnOtherThread(1L));
+
+        coordinator.unlockOrder(1L);
+        assertTrue(lockOnOtherThread(1L));
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    public void testTimeoutFailsInsteadOfRunningUnlocked() throws Exception {
+        HeldLock held = holdOnOtherThread(1L);
+        try {
+            coordinator.lockOrder(1L);
+            fail("Expected the lock to time out");
+        } catch (CartOperationLockException e) {
+            // expected
+        } finally {
+            held.release();
+        }
+
+        assertEquals(1L, coordinator.getLockTimeoutCount());
+        assertEquals(0, coordinator.getActiveLockCount());
+        // The timed out attempt does not leave anything to unlock
+        assertFalse(coordinator.lockOrder(1L));
+        coordinator.unlockOrder(1L);
+    }
+
+    public void testWaitingOperationReportsStaleOrder() throws Exception {
+        coordinator.lockTimeout = 10000L;
+        HeldLock held = holdOnOtherThread(1L);
+        held.releaseAfter(50L);
+
+        assertTrue(coordinator.lockOrder(1L));
+        coordinator.unlockOrder(1L);
+        assertEquals(1L, coordinator.getContendedLockCount());
+    }
+
+    public void testOtherOrdersDoNotWait() throws Exception {
+        HeldLock held = holdOnOtherThread(1L);
+        try {
+            assertFalse(coordinator.lockOrder(2L));
+            coordinator.unlockOrder(2L);
+        } finally {
+            held.release();
+        }
+        assertEquals(0L, coordinator.getContendedLockCount());
+    }
+
+    public void testLockHeldUntilTransactionCompletes() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        coordinator.lockOrder(1L);
+        // Nested operations in the same transaction neither wait nor release the lock
+        assertFalse(coordinator.lockOrder(1L));
+        coordinator.unlockOrder(1L);
+        assertFalse(lockOnOtherThread(1L));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertTrue(lockOnOtherThread(1L));
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    /**
+     * @return whether another thread could lock the given order within the lock timeout. The lock is released again.
+     */
+    protected boolean lockOnOtherThread(final Long orderId) throws Exception {
+        final boolean[] locked = new boolean[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    coordinator.lockOrder(orderId);
+                    locked[0] = true;
+                    coordinator.unlockOrder(orderId);
+                } catch (CartOperationLockException e) {
+                    locked[0] = false;
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        return locked[0];
+    }
+
+    protected HeldLock holdOnOtherThread(Long orderId) throws Exception {
+        HeldLock held = new HeldLock(orderId);
+        held.start();
+        assertTrue(held.locked.await(5, TimeUnit.SECONDS));
+        return held;
+    }
+
+    /**
+     * Holds the lock of an order on its own thread until released
+     */
+    protected class HeldLock extends Thread {
+
+        protected final Long orderId;
+        protected final CountDownLatch locked = new CountDownLatch(1);
+        protected final CountDownLatch release = new CountDownLatch(1);
+        protected long holdTime = 0;
+
+        public HeldLock(Long orderId) {
+            this.orderId = orderId;
+        }
+
+        @Override
+        public void run() {
+            coordinator.lockOrder(orderId);
+            locked.countDown();
+            try {
+                release.await();
+                Thread.sleep(holdTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                coordinator.unlockOrder(orderId);
+            }
+        }
+
+        public void release() throws InterruptedException {
+            release.countDown();
+            join();
+        }
+
+        public void releaseAfter(long millis) {
+            holdTime = millis;
+            release.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.order.service;
+
+import org.broadleafcommerce.core.order.dao.OrderDao;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.service.call.OrderItemRequestDTO;
+import org.broadleafcommerce.core.order.service.exception.AddToCartException;
+import org.broadleafcommerce.core.order.service.exception.CartOperationLockException;
+import org.broadleafcommerce.core.order.service.exception.ItemNotFoundException;
+import org.broadleafcommerce.core.order.service.exception.UpdateCartException;
+import org.broadleafcommerce.core.order.service.workflow.CartOperationContext;
+import org.broadleafcommerce.core.order.service.workflow.CartOperationRequest;
+import org.broadleafcommerce.core.pricing.service.PricingService;
+import org.broadleafcommerce.core.pricing.service.exception.PricingException;
+import org.broadleafcommerce.core.workflow.ProcessContext;
+import org.broadleafcommerce.core.workflow.SequenceProcessor;
+import org.broadleafcommerce.core.workflow.WorkflowException;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class OrderServiceImplTest extends TestCase {
+
+    private static final Long ORDER_ID = 1L;
+
+    protected OrderServiceImpl orderService;
+    protected CartOperationCoordinatorImpl coordinator;
+    protected OrderDao orderDao;
+    protected Order order;
+
+    protected final AtomicInteger runningOperations = new AtomicInteger();
+    protected final AtomicInteger maxRunningOperations = new AtomicInteger();
+    protected final AtomicInteger completedOperations = new AtomicInteger();
+    protected final AtomicInteger orderSaves = new AtomicInteger();
+    protected final AtomicInteger orderPricings = new AtomicInteger();
+    protected final List<String> appliedOperations = Collections.synchronizedList(new ArrayList<String>());
+    protected final List<Integer> orderSavesDuringWorkflow = Collections.synchronizedList(new ArrayList<Integer>());
+    protected volatile WorkflowException workflowFailure;
+    // If true, the workflows save the order the way the cart activities do
+    protected volatile boolean saveInWorkflow;
+
+    @Override
+    protected void setUp() throws Exception {
+        order = new OrderImpl();
+        order.setId(ORDER_ID);
+
+        orderDao = EasyMock.createMock(OrderDao.class);
+        EasyMock.expect(orderDao.readOrderById(ORDER_ID)).andReturn(order).anyTimes();
+        EasyMock.expect(orderDao.readOrderById(ORDER_ID, true)).andReturn(order).anyTimes();
+        EasyMock.expect(orderDao.isManaged(order)).andReturn(true).anyTimes();
+        EasyMock.expect(orderDao.save(order)).andAnswer(new IAnswer<Order>() {
+            @Override
+            public Order answer() throws Throwable {
+                orderSaves.incrementAndGet();
+                return order;
+            }
+        }).anyTimes();
+        EasyMock.replay(orderDao);
+
+        PricingService pricingService = EasyMock.createMock(PricingService.class);
+        EasyMock.expect(pricingService.executePricing(order)).andAnswer(new IAnswer<Order>() {
+            @Override
+            public Order answer() throws Throwable {
+                orderPricings.incrementAndGet();
+                return order;
+            }
+        }).anyTimes();
+        EasyMock.replay(pricingService);
+
+        PlatformTransactionManager transactionManager = EasyMock.createMock(PlatformTransactionManager.class);
+        EasyMock.expect(transactionManager.getTransaction((TransactionDefinition) EasyMock.anyObject()))
+                .andReturn(new SimpleTransactionStatus()).anyTimes();
+        transactionManager.commit((TransactionStatus) EasyMock.anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(transactionManager);
+
+        coordinator = new CartOperationCoordinatorImpl();
+
+        orderService = new OrderServiceImpl();
+        orderService.orderDao = orderDao;
+        orderService.pricingService = pricingService;
+        orderService.transactionManager = transactionManager;
+        orderService.cartOperationCoordinator = coordinator;
+        orderService.automaticallyMergeLikeItems = false;
+        orderService.addItemWorkflow = new RecordingWorkflow("add");
+        orderService.updateItemWorkflow = new RecordingWorkflow("update");
+        orderService.removeItemWorkflow = new RecordingWorkflow("remove");
+    }
+
+    public void testConcurrentOperationsOnOneCartAreSerialized() throws Exception {
+        final int operationsPerThread = 5;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread adder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        orderService.addItem(ORDER_ID, new OrderItemRequestDTO(null, 10L, 1), false);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }
+        };
+        Thread updater = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        OrderItemRequestDTO update = new OrderItemRequestDTO().setOrderItemId(100L).setQuantity(2);
+                        orderService.updateItemQuantity(ORDER_ID, update, false);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }
+        };
+        adder.start();
+        updater.start();
+        start.countDown();
+        adder.join();
+        updater.join();
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(2 * operationsPerThread, completedOperations.get());
+        assertEquals(1, maxRunningOperations.get());
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    public void testLockReleasedWhenOperationFailsWithoutTransaction() throws Exception {
+        workflowFailure = new WorkflowException(new IllegalStateException("Inventory unavailable"));
+        try {
+            orderService.addItem(ORDER_ID, new OrderItemRequestDTO(null, 10L, 1), false);
+            fail("Expected the add to fail");
+        } catch (AddToCartException e) {
+            // expected
+        }
+
+        assertEquals(0, coordinator.getActiveLockCount());
+        workflowFailure = null;
+        orderService.removeItem(ORDER_ID, 100L, false);
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    public void testTimeoutDoesNotRunOperation() throws Exception {
+        coordinator.lockTimeout = 50L;
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                coordinator.lockOrder(ORDER_ID);
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    coordinator.unlockOrder(ORDER_ID);
+                }
+            }
+        };
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        try {
+            orderService.addItem(ORDER_ID, new OrderItemRequestDTO(null, 10L, 1), false);
+            fail("Expected the lock to time out");
+        } catch (CartOperationLockException e) {
+            // expected
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertEquals(0, completedOperations.get());
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    public void testNestedUnitsOfWork() throws Exception {
+        assertTrue(orderService.beginCartUnitOfWork(ORDER_ID));
+        assertFalse(orderService.beginCartUnitOfWork(ORDER_ID));
+        assertTrue(orderService.beginCartUnitOfWork(2L));
+
+        assertNotNull(orderService.endCartUnitOfWork(ORDER_ID));
+        assertNull(orderService.getCartUnitOfWork(ORDER_ID));
+        assertNotNull(orderService.getCartUnitOfWork(2L));
+
+        assertNotNull(orderService.endCartUnitOfWork(2L));
+        assertNull(orderService.cartUnitsOfWork.get());
+    }
+
+    public void testNestedOperationsPriceAndSaveOnce() throws Exception {
+        saveInWorkflow = true;
+        order.getOrderItems().add(createOrderItem(100L, false));
+        order.getOrderItems().add(createOrderItem(101L, true));
+        order.getOrderItems().add(createOrderItem(102L, false));
+
+        orderService.removeInactiveItems(ORDER_ID, true);
+
+        assertEquals(2, completedOperations.get());
+        // Nothing was saved while the items were being removed
+        assertEquals(Arrays.asList(0, 0), orderSavesDuringWorkflow);
+        assertEquals(1, orderPricings.get());
+        // The order is saved before and after pricing
+        assertEquals(2, orderSaves.get());
+        assertNull(orderService.cartUnitsOfWork.get());
+    }
+
+    public void testDeferredSaveIsFlushed() throws Exception {
+        saveInWorkflow = true;
+
+        orderService.addItem(ORDER_ID, new OrderItemRequestDTO(null, 10L, 1), false);
+
+        assertEquals(Arrays.asList(0), orderSavesDuringWorkflow);
+        assertEquals(0, orderPricings.get());
+        assertEquals(1, orderSaves.get());
+        assertNull(orderService.cartUnitsOfWork.get());
+    }
+
+    public void testFailedOperationEndsUnitOfWork() throws Exception {
+        saveInWorkflow = true;
+        workflowFailure = new WorkflowException(new IllegalStateException("Inventory unavailable"));
+        try {
+            orderService.addItem(ORDER_ID, new OrderItemRequestDTO(null, 10L, 1), true);
+            fail("Expected the add to fail");
+        } catch (AddToCartException e) {
+            // expected
+        }
+
+        assertNull(orderService.cartUnitsOfWork.get());
+        assertEquals(0, orderPricings.get());
+        assertEquals(0, orderSaves.get());
+
+        // The next operation on this thread is not deferred into the abandoned unit of work
+        orderService.save(order, true);
+        assertEquals(1, orderPricings.get());
+        assertEquals(2, orderSaves.get());
+    }
+
+    public void testMixedBatchAppliesEveryRequestInOrder() throws Exception {
+        saveInWorkflow = true;
+        order.getOrderItems().add(createOrderItem(100L, true));
+        order.getOrderItems().add(createOrderItem(101L, true));
+
+        List<OrderItemRequestDTO> requests = new ArrayList<OrderItemRequestDTO>();
+        requests.add(new OrderItemRequestDTO(null, 10L, 1));
+        requests.add(new OrderItemRequestDTO().setOrderItemId(100L).setQuantity(3));
+        requests.add(new OrderItemRequestDTO().setOrderItemId(101L).setQuantity(0));
+
+        orderService.updateItems(ORDER_ID, requests, true);
+
+        assertEquals(Arrays.asList("add", "update", "remove"), appliedOperations);
+        // The whole batch is priced and saved once
+        assertEquals(Arrays.asList(0, 0, 0), orderSavesDuringWorkflow);
+        assertEquals(1, orderPricings.get());
+        assertEquals(2, orderSaves.get());
+        assertNull(orderService.cartUnitsOfWork.get());
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    public void testBatchRejectsAddWithoutPositiveQuantity() throws Exception {
+        order.getOrderItems().add(createOrderItem(100L, true));
+
+        assertBatchRejected(IllegalArgumentException.class, new OrderItemRequestDTO().setOrderItemId(100L).setQuantity(2),
+                new OrderItemRequestDTO(null, 10L, 0));
+        assertBatchRejected(IllegalArgumentException.class, new OrderItemRequestDTO().setOrderItemId(100L).setQuantity(2),
+                new OrderItemRequestDTO().setSkuId(10L));
+        assertBatchRejected(IllegalArgumentException.class, new OrderItemRequestDTO(null, 10L, -1));
+    }
+
+    public void testBatchRejectsUnknownItem() throws Exception {
+        order.getOrderItems().add(createOrderItem(100L, true));
+
+        assertBatchRejected(ItemNotFoundException.class, new OrderItemRequestDTO(null, 10L, 1),
+                new OrderItemRequestDTO().setOrderItemId(200L).setQuantity(1));
+        assertBatchRejected(IllegalArgumentException.class, new OrderItemRequestDTO().setOrderItemId(100L));
+    }
+
+    /**
+     * Asserts that the batch fails with the given cause before any of its requests have been applied
+     */
+    protected void assertBatchRejected(Class<? extends Throwable> expectedCause, OrderItemRequestDTO... requests) throws Exception {
+        try {
+            orderService.updateItems(ORDER_ID, Arrays.asList(requests), true);
+            fail("Expected the batch to be rejected");
+        } catch (UpdateCartException e) {
+            assertTrue(String.valueOf(e.getCause()), expectedCause.isInstance(e.getCause()));
+        }
+
+        assertTrue(appliedOperations.isEmpty());
+        assertEquals(0, orderSaves.get());
+        assertNull(orderService.cartUnitsOfWork.get());
+        assertEquals(0, coordinator.getActiveLockCount());
+    }
+
+    protected OrderItem createOrderItem(Long id, boolean skuActive) {
+        OrderItem orderItem = EasyMock.createMock(OrderItem.class);
+        EasyMock.expect(orderItem.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(orderItem.isSkuActive()).andReturn(skuActive).anyTimes();
+        EasyMock.replay(orderItem);
+        return orderItem;
+    }
+
+    /**
+     * Stands in for the cart workflows, recording how many operations run at the same time
+     */
+    protected class RecordingWorkflow extends SequenceProcessor {
+
+        protected final String operation;
+
+        public RecordingWorkflow(String operation) {
+            this.operation = operation;
+        }
+
+        @Override
+        public ProcessContext doActivities(Object seedData) throws WorkflowException {
+            int running = runningOperations.incrementAndGet();
+            try {
+                int max = maxRunningOperations.get();
+                while (running > max && !maxRunningOperations.compareAndSet(max, running)) {
+                    max = maxRunningOperations.get();
+                }
+                if (workflowFailure != null) {
+                    throw workflowFailure;
+                }
+                Thread.sleep(10);
+                if (saveInWorkflow) {
+                    CartOperationRequest request = (CartOperationRequest) seedData;
+                    orderService.save(request.getOrder(), request.isPriceOrder());
+                    orderSavesDuringWorkflow.add(orderSaves.get());
+                }
+                appliedOperations.add(operation);
+                completedOperations.incrementAndGet();
+            } catch (InterruptedException e) {
+                throw new WorkflowException(e);
+            } catch (PricingException e) {
+                throw new WorkflowException(e);
+            } finally {
+                runningOperations.decrementAndGet();
+            }
+            CartOperationContext context = new CartOperationContext();
+            context.setSeedData(seedData);
+            return context;
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.core.pricing.service;
+
+import org.broadleafcommerce.cms.common.MvelExpressionCacheServiceImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuFee;
+import org.broadleafcommerce.core.catalog.domain.SkuFeeImpl;
+import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupImpl;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItemImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.easymock.EasyMock;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SkuFeeRuleEvaluatorImplTest extends TestCase {
+
+    protected static final String REFERENCE_A_EXPRESSION = "fulfillmentGroup.referenceNumber == 'A'";
+
+    protected MvelExpressionCacheServiceImpl expressionCacheService;
+    protected SkuFeeRuleEvaluatorImpl evaluator;
+
+    @Override
+    protected void setUp() throws Exception {
+        expressionCacheService = new MvelExpressionCacheServiceImpl();
+        evaluator = new SkuFeeRuleEvaluatorImpl();
+        evaluator.expressionCacheService = expressionCacheService;
+    }
+
+    public void testMatchingRuleApplies() {
+        SkuFee fee = createFee(REFERENCE_A_EXPRESSION);
+        FulfillmentGroup group = createFulfillmentGroup("A", createItem(fee));
+
+        assertTrue(evaluator.appliesToFulfillmentGroup(fee, group));
+
+        Map<FulfillmentGroup, List<SkuFee>> fees = evaluator.evaluateFulfillmentFees(createOrder(group));
+        assertEquals(1, fees.size());
+        assertEquals(Arrays.asList(fee), fees.get(group));
+    }
+
+    public void testNonMatchingRuleDoesNotApply() {
+        SkuFee fee = createFee(REFERENCE_A_EXPRESSION);
+        SkuFee nonBooleanFee = createFee("fulfillmentGroup.referenceNumber");
+        FulfillmentGroup group = createFulfillmentGroup("B", createItem(fee, nonBooleanFee));
+
+        assertFalse(evaluator.appliesToFulfillmentGroup(fee, group));
+        assertFalse(evaluator.appliesToFulfillmentGroup(nonBooleanFee, group));
+        assertTrue(evaluator.evaluateFulfillmentFees(createOrder(group)).isEmpty());
+    }
+
+    public void testFeeWithoutExpressionOrOfOtherTypes() {
+        SkuFee unconditionalFee = createFee(null);
+        SkuFee otherTypeFee = createFee(null);
+        otherTypeFee.setFeeType(null);
+        FulfillmentGroup group = createFulfillmentGroup("B", createItem(unconditionalFee, otherTypeFee));
+
+        Map<FulfillmentGroup, List<SkuFee>> fees = evaluator.evaluateFulfillmentFees(createOrder(group));
+        assertEquals(Arrays.asList(unconditionalFee), fees.get(group));
+        assertEquals(0, evaluator.getEvaluationCount());
+    }
+
+    public void testCompiledExpressionReusedAcrossCalls() {
+        SkuFee fee = createFee(REFERENCE_A_EXPRESSION);
+        FulfillmentGroup groupA = createFulfillmentGroup("A", createItem(fee), createItem(fee));
+        FulfillmentGroup groupB = createFulfillmentGroup("B", createItem(fee));
+        Order order = createOrder(groupA, groupB);
+
+        Map<FulfillmentGroup, List<SkuFee>> fees = evaluator.evaluateFulfillmentFees(order);
+        // The fee is listed for every item that carries it, but evaluated once per fulfillment group
+        assertEquals(Arrays.asList(fee, fee), fees.get(groupA));
+        assertFalse(fees.containsKey(groupB));
+        assertEquals(2, evaluator.getEvaluationCount());
+        assertEquals(1, expressionCacheService.getMissCount());
+        assertEquals(0, expressionCacheService.getHitCount());
+
+        fees = evaluator.evaluateFulfillmentFees(order);
+        assertEquals(Arrays.asList(fee, fee), fees.get(groupA));
+        assertEquals(4, evaluator.getEvaluationCount());
+        assertEquals(1, expressionCacheService.getMissCount());
+        assertEquals(1, expressionCacheService.getHitCount());
+
+        assertTrue(evaluator.appliesToFulfillmentGroup(fee, groupA));
+        assertEquals(1, expressionCacheService.getMissCount());
+        assertEquals(2, expressionCacheService.getHitCount());
+        assertEquals(1, expressionCacheService.getSize());
+    }
+
+    protected SkuFee createFee(String expression) {
+        SkuFee fee = new SkuFeeImpl();
+        fee.setFeeType(SkuFeeType.FULFILLMENT);
+        fee.setExpression(expression);
+        return fee;
+    }
+
+    protected FulfillmentGroupItem createItem(SkuFee... fees) {
+        Sku sku = EasyMock.createNiceMock(Sku.class);
+        EasyMock.expect(sku.getFees()).andReturn(Arrays.asList(fees)).anyTimes();
+        DiscreteOrderItem orderItem = EasyMock.createNiceMock(DiscreteOrderItem.class);
+        EasyMock.expect(orderItem.getSku()).andReturn(sku).anyTimes();
+        EasyMock.replay(sku, orderItem);
+
+        FulfillmentGroupItem item = new FulfillmentGroupItemImpl();
+        item.setOrderItem(orderItem);
+        return item;
+    }
+
+    protected FulfillmentGroup createFulfillmentGroup(String referenceNumber, FulfillmentGroupItem... items) {
+        FulfillmentGroup group = new FulfillmentGroupImpl();
+        group.setReferenceNumber(referenceNumber);
+        for (FulfillmentGroupItem item : items) {
+            group.addFulfillmentGroupItem(item);
+        }
+        return group;
+    }
+
+    protected Order createOrder(FulfillmentGroup... groups) {
+        Order order = new OrderImpl();
+        order.setFulfillmentGroups(Arrays.asList(groups));
+        return order;
+    }
+
+}
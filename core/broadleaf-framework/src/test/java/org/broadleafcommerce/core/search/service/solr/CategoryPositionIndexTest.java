@@ -0,0 +1,78 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CategoryPositionIndexTest extends TestCase {
+
+    protected CategoryPositionIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        Map<Long, List<Long>> productIdsByCategory = new HashMap<Long, List<Long>>();
+        productIdsByCategory.put(10L, Arrays.asList(100L, 101L, 102L, 101L));
+        productIdsByCategory.put(20L, Arrays.asList(102L));
+
+        // 20 has two parents, 1 and 2, which share the root 0. 30 and 31 are each other's parent.
+        Map<Long, Set<Long>> parentIdsByCategory = new HashMap<Long, Set<Long>>();
+        parentIdsByCategory.put(20L, new HashSet<Long>(Arrays.asList(1L, 2L)));
+        parentIdsByCategory.put(1L, Collections.singleton(0L));
+        parentIdsByCategory.put(2L, Collections.singleton(0L));
+        parentIdsByCategory.put(30L, Collections.singleton(31L));
+        parentIdsByCategory.put(31L, Collections.singleton(30L));
+
+        index = new CategoryPositionIndex(productIdsByCategory, parentIdsByCategory);
+    }
+
+    public void testPositions() throws Exception {
+        assertEquals(0, index.getPosition(10L, 100L));
+        // The first occurrence wins, as it does when scanning the product xrefs of the category
+        assertEquals(1, index.getPosition(10L, 101L));
+        assertEquals(2, index.getPosition(10L, 102L));
+        assertEquals(0, index.getPosition(20L, 102L));
+        assertEquals(-1, index.getPosition(20L, 100L));
+        assertEquals(-1, index.getPosition(99L, 100L));
+    }
+
+    public void testFullCategoryHierarchy() throws Exception {
+        assertEquals(new HashSet<Long>(Arrays.asList(20L, 1L, 2L, 0L)), index.getFullCategoryHierarchy(20L));
+        assertEquals(new HashSet<Long>(Arrays.asList(1L, 0L)), index.getFullCategoryHierarchy(1L));
+        assertEquals(Collections.singleton(10L), index.getFullCategoryHierarchy(10L));
+        assertEquals(new HashSet<Long>(Arrays.asList(30L, 31L)), index.getFullCategoryHierarchy(30L));
+        // Categories that were not read are their own hierarchy
+        assertEquals(Collections.singleton(99L), index.getFullCategoryHierarchy(99L));
+    }
+
+    public void testHierarchiesAreImmutable() throws Exception {
+        try {
+            index.getFullCategoryHierarchy(20L).add(5L);
+            fail("Expected the hierarchy to be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+}
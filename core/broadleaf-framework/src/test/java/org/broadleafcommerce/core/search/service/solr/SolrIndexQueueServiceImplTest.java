@@ -0,0 +1,170 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.core.catalog.domain.CatalogPersistedEvent;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class SolrIndexQueueServiceImplTest extends TestCase {
+
+    protected SolrIndexQueueServiceImpl queueService;
+    protected SolrIndexService solrIndexService;
+    protected List<Collection<Long>> updates;
+
+    @Override
+    protected void setUp() throws Exception {
+        SolrContext.setPrimaryServer(new SolrIndexServiceImplTest.RecordingSolrServer());
+        solrIndexService = EasyMock.createMock(SolrIndexService.class);
+        updates = new ArrayList<Collection<Long>>();
+
+        queueService = new SolrIndexQueueServiceImpl();
+        queueService.solrIndexService = solrIndexService;
+        queueService.enabled = true;
+        queueService.batchSize = 2;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SolrContext.setPrimaryServer(null);
+    }
+
+    public void testQueueCoalescesProducts() {
+        queueService.queueProduct(1L);
+        queueService.queueProducts(Arrays.asList(1L, 2L));
+        queueService.onApplicationEvent(new CatalogPersistedEvent(2L));
+        queueService.queueProduct(null);
+
+        assertEquals(2, queueService.getQueueSize());
+    }
+
+    public void testDisabledQueueIgnoresProducts() {
+        queueService.enabled = false;
+        EasyMock.replay(solrIndexService);
+
+        queueService.queueProducts(Arrays.asList(1L, 2L));
+        queueService.processQueue();
+
+        EasyMock.verify(solrIndexService);
+        assertEquals(0, queueService.getQueueSize());
+    }
+
+    public void testProcessQueueDrainsInBatches() throws Exception {
+        EasyMock.expect(solrIndexService.isReindexInProgress()).andReturn(false);
+        recordUpdates(3);
+        EasyMock.replay(solrIndexService);
+
+        queueService.queueProducts(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        queueService.processQueue();
+
+        EasyMock.verify(solrIndexService);
+        assertEquals(Arrays.asList(2, 2, 1), batchSizes());
+        assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 3L, 4L, 5L)), indexedIds());
+        assertEquals(0, queueService.getQueueSize());
+        assertEquals(5L, queueService.getProductsIndexed());
+        assertEquals(0L, queueService.getFailedRuns());
+    }
+
+    public void testProcessQueueWaitsForReindex() {
+        EasyMock.expect(solrIndexService.isReindexInProgress()).andReturn(true);
+        EasyMock.replay(solrIndexService);
+
+        queueService.queueProducts(Arrays.asList(1L, 2L, 3L));
+        queueService.processQueue();
+
+        EasyMock.verify(solrIndexService);
+        assertEquals(3, queueService.getQueueSize());
+        assertEquals(0L, queueService.getProductsIndexed());
+    }
+
+    public void testProcessQueueWithoutServerLeavesQueue() {
+        SolrContext.setPrimaryServer(null);
+        EasyMock.replay(solrIndexService);
+
+        queueService.queueProduct(1L);
+        queueService.processQueue();
+
+        EasyMock.verify(solrIndexService);
+        assertEquals(1, queueService.getQueueSize());
+    }
+
+    public void testFailedBatchIsRequeued() throws Exception {
+        queueService.batchSize = 3;
+        EasyMock.expect(solrIndexService.isReindexInProgress()).andReturn(false).times(2);
+        solrIndexService.updateIndex(EasyMock.<Collection<Long>>anyObject());
+        EasyMock.expectLastCall().andThrow(new ServiceException("Solr is unavailable"));
+        recordUpdates(1);
+        EasyMock.replay(solrIndexService);
+
+        queueService.queueProducts(Arrays.asList(1L, 2L));
+        queueService.processQueue();
+
+        assertEquals(2, queueService.getQueueSize());
+        assertEquals(0L, queueService.getProductsIndexed());
+        assertEquals(1L, queueService.getFailedRuns());
+
+        queueService.processQueue();
+
+        EasyMock.verify(solrIndexService);
+        assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L)), indexedIds());
+        assertEquals(0, queueService.getQueueSize());
+        assertEquals(2L, queueService.getProductsIndexed());
+        assertEquals(1L, queueService.getFailedRuns());
+    }
+
+    /**
+     * Expects the given number of successful updates, recording a copy of each batch since the queue reuses the list
+     */
+    protected void recordUpdates(int count) throws Exception {
+        solrIndexService.updateIndex(EasyMock.<Collection<Long>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object answer() throws Throwable {
+                updates.add(new ArrayList<Long>((Collection<Long>) EasyMock.getCurrentArguments()[0]));
+                return null;
+            }
+        }).times(count);
+    }
+
+    protected List<Integer> batchSizes() {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (Collection<Long> update : updates) {
+            sizes.add(update.size());
+        }
+        return sizes;
+    }
+
+    protected HashSet<Long> indexedIds() {
+        HashSet<Long> ids = new HashSet<Long>();
+        for (Collection<Long> update : updates) {
+            ids.addAll(update);
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.locale.service.LocaleService;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricingService;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext;
+import org.broadleafcommerce.core.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.core.search.dao.FieldDao;
+import org.broadleafcommerce.core.search.dao.ProductIndexDao;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.broadleafcommerce.core.search.domain.FieldImpl;
+import org.broadleafcommerce.core.search.domain.solr.FieldType;
+import org.easymock.EasyMock;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class SolrIndexServiceImplTest extends TestCase {
+
+    protected TestSolrIndexService indexService;
+    protected SolrHelperService shs;
+    protected RecordingSolrServer primaryServer;
+    protected RecordingSolrServer reindexServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        primaryServer = new RecordingSolrServer();
+        reindexServer = new RecordingSolrServer();
+        SolrContext.setPrimaryServer(primaryServer);
+        SolrContext.setReindexServer(reindexServer);
+
+        shs = EasyMock.createMock(SolrHelperService.class);
+
+        indexService = new TestSolrIndexService();
+        indexService.shs = shs;
+        indexService.extensionManager = new SolrSearchServiceExtensionManager();
+        indexService.pipelined = true;
+        indexService.indexThreads = 2;
+        indexService.pageSize = 2;
+        indexService.writeBatchSize = 3;
+        indexService.useProjection = true;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SolrContext.setPrimaryServer(null);
+        SolrContext.setReindexServer(null);
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(null);
+        SkuPricingConsiderationContext.setSkuPricingService(null);
+    }
+
+    public void testPipelinedRebuildCommitsOnceAndSwaps() throws Exception {
+        shs.swapActiveCores();
+        EasyMock.expectLastCall().once();
+        EasyMock.replay(shs);
+
+        indexService.rebuildIndex();
+
+        EasyMock.verify(shs);
+        assertEquals(7, reindexServer.documentsAdded.size());
+        assertEquals(new ArrayList<Long>(indexService.productIds), sortedIds(reindexServer.documentsAdded));
+        // The documents are written in batches, then committed and optimized once before the swap, after which the
+        // old documents are deleted from the core that is no longer active
+        List<String> actions = reindexServer.actions;
+        int optimize = actions.indexOf("optimize");
+        assertEquals(Collections.singletonList("commit"), withoutAdds(actions.subList(0, optimize)));
+        assertEquals(Arrays.asList("optimize", "delete", "commit"), actions.subList(optimize, actions.size()));
+        assertTrue(primaryServer.actions.isEmpty());
+        assertEquals(7, indexService.getReindexProductsRead());
+        assertEquals(7, indexService.getReindexDocumentsWritten());
+        assertFalse(indexService.isReindexInProgress());
+        assertNull(indexService.categoryPositionIndex);
+    }
+
+    public void testBuilderFailureFailsRebuildWithoutSwap() throws Exception {
+        EasyMock.replay(shs);
+        indexService.failingProductId = 5L;
+
+        try {
+            indexService.rebuildIndex();
+            fail("Expected the rebuild to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Could not build product 5", e.getMessage());
+        }
+
+        EasyMock.verify(shs);
+        assertFalse(reindexServer.actions.contains("commit"));
+        assertFalse(reindexServer.actions.contains("optimize"));
+        assertTrue(primaryServer.actions.isEmpty());
+        assertFalse(indexService.isReindexInProgress());
+        assertNull(indexService.categoryPositionIndex);
+    }
+
+    public void testWriteFailureFailsRebuildWithoutSwap() throws Exception {
+        EasyMock.replay(shs);
+        reindexServer.addFailure = new SolrServerException("Solr is unavailable");
+
+        try {
+            indexService.rebuildIndex();
+            fail("Expected the rebuild to fail");
+        } catch (ServiceException e) {
+            assertSame(reindexServer.addFailure, e.getCause());
+        }
+
+        EasyMock.verify(shs);
+        assertFalse(reindexServer.actions.contains("commit"));
+        assertTrue(primaryServer.actions.isEmpty());
+        assertFalse(indexService.isReindexInProgress());
+    }
+
+    public void testUpdateIndexReplacesChangedAndDeletesRemovedProducts() throws Exception {
+        List<Long> productIds = Arrays.asList(1L, 2L, 3L);
+        PlatformTransactionManager transactionManager = setUpUpdateIndex(productIds, 
+                Arrays.asList(createProduct(1L, true), createProduct(2L, false)));
+        EasyMock.expect(shs.getNamespaceFieldName()).andReturn("namespace");
+        EasyMock.expect(shs.getCurrentNamespace()).andReturn("d");
+        EasyMock.expect(shs.getProductIdFieldName()).andReturn("productId");
+        transactionManager.commit(EasyMock.isA(TransactionStatus.class));
+        EasyMock.replay(shs, transactionManager);
+
+        indexService.updateIndex(productIds);
+
+        EasyMock.verify(shs, transactionManager);
+        assertEquals(Arrays.asList("delete", "add", "commit"), primaryServer.actions);
+        assertEquals(Collections.singletonList("namespace:\"d\" AND productId:(2 OR 3)"), primaryServer.deleteQueries);
+        assertEquals(Collections.singletonList(1L), sortedIds(primaryServer.documentsAdded));
+        assertTrue(reindexServer.actions.isEmpty());
+        assertEquals(1L, indexService.getIndexGeneration());
+    }
+
+    public void testUpdateIndexFailureRollsBack() throws Exception {
+        List<Long> productIds = Arrays.asList(1L);
+        PlatformTransactionManager transactionManager = setUpUpdateIndex(productIds, 
+                Arrays.asList(createProduct(1L, true)));
+        transactionManager.rollback(EasyMock.isA(TransactionStatus.class));
+        EasyMock.replay(shs, transactionManager);
+        primaryServer.addFailure = new SolrServerException("Solr is unavailable");
+
+        try {
+            indexService.updateIndex(productIds);
+            fail("Expected the update to fail");
+        } catch (ServiceException e) {
+            assertSame(primaryServer.addFailure, e.getCause());
+        }
+
+        EasyMock.verify(shs, transactionManager);
+        assertFalse(primaryServer.actions.contains("commit"));
+        assertEquals(0L, indexService.getIndexGeneration());
+    }
+
+    public void testCanUseProjection() throws Exception {
+        List<Field> fields = Arrays.asList(createField("manufacturer"), createField("defaultSku.retailPrice"));
+        ProductIndexDao productIndexDao = EasyMock.createMock(ProductIndexDao.class);
+        EasyMock.expect(productIndexDao.findUnsupportedFields(fields)).andReturn(new ArrayList<Field>()).anyTimes();
+        EasyMock.replay(productIndexDao);
+        indexService.productIndexDao = productIndexDao;
+
+        // Projections need the category positions of a reindex
+        assertFalse(indexService.canUseProjection(fields));
+        indexService.categoryPositionIndex = new CategoryPositionIndex(new HashMap<Long, List<Long>>(), 
+                new HashMap<Long, Set<Long>>());
+        assertTrue(indexService.canUseProjection(fields));
+
+        indexService.useProjection = false;
+        assertFalse(indexService.canUseProjection(fields));
+        indexService.useProjection = true;
+
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(new HashMap<Object, Object>());
+        SkuPricingConsiderationContext.setSkuPricingService(EasyMock.createMock(DynamicSkuPricingService.class));
+        assertFalse(indexService.canUseProjection(fields));
+        assertTrue(indexService.canUseProjection(Arrays.asList(createField("manufacturer"))));
+    }
+
+    public void testCannotUseProjectionForUnsupportedFields() throws Exception {
+        List<Field> fields = Arrays.asList(createField("manufacturer"), createField("url"));
+        ProductIndexDao productIndexDao = EasyMock.createMock(ProductIndexDao.class);
+        EasyMock.expect(productIndexDao.findUnsupportedFields(fields)).andReturn(Arrays.asList(fields.get(1)));
+        EasyMock.replay(productIndexDao);
+        indexService.productIndexDao = productIndexDao;
+        indexService.categoryPositionIndex = new CategoryPositionIndex(new HashMap<Long, List<Long>>(), 
+                new HashMap<Long, Set<Long>>());
+
+        assertFalse(indexService.canUseProjection(fields));
+        EasyMock.verify(productIndexDao);
+    }
+
+    public void testProductOnlyExtensionHandlers() throws Exception {
+        List<SolrSearchServiceExtensionHandler> handlers = new ArrayList<SolrSearchServiceExtensionHandler>();
+        handlers.add(new I18nSolrSearchServiceExtensionHandler());
+        handlers.add(new AbstractSolrSearchServiceExtensionHandler() {});
+        indexService.extensionManager.setHandlers(handlers);
+        assertFalse(indexService.hasProductOnlyExtensionHandlers());
+
+        handlers.add(new AbstractSolrSearchServiceExtensionHandler() {
+            @Override
+            public ExtensionResultStatusType addPropertyValues(Product product, Field field, FieldType fieldType,
+                    Map<String, Object> values, String propertyName, List<Locale> locales) {
+                return ExtensionResultStatusType.HANDLED;
+            }
+        });
+        assertTrue(indexService.hasProductOnlyExtensionHandlers());
+    }
+
+    protected PlatformTransactionManager setUpUpdateIndex(List<Long> productIds, List<Product> products) {
+        PlatformTransactionManager transactionManager = EasyMock.createMock(PlatformTransactionManager.class);
+        EasyMock.expect(transactionManager.getTransaction(EasyMock.isA(TransactionDefinition.class)))
+                .andReturn(new SimpleTransactionStatus());
+        indexService.transactionManager = transactionManager;
+
+        ProductDao productDao = EasyMock.createMock(ProductDao.class);
+        EasyMock.expect(productDao.readProductsByIds(productIds)).andReturn(products);
+        FieldDao fieldDao = EasyMock.createMock(FieldDao.class);
+        EasyMock.expect(fieldDao.readAllProductFields()).andReturn(new ArrayList<Field>());
+        LocaleService localeService = EasyMock.createMock(LocaleService.class);
+        EasyMock.expect(localeService.findAllLocales()).andReturn(new ArrayList<Locale>());
+        EasyMock.replay(productDao, fieldDao, localeService);
+        indexService.productDao = productDao;
+        indexService.fieldDao = fieldDao;
+        indexService.localeService = localeService;
+        return transactionManager;
+    }
+
+    protected Product createProduct(Long id, boolean active) {
+        Product product = EasyMock.createNiceMock(Product.class);
+        EasyMock.expect(product.getId()).andReturn(id).anyTimes();
+        EasyMock.expect(product.isActive()).andReturn(active).anyTimes();
+        EasyMock.replay(product);
+        return product;
+    }
+
+    protected Field createField(String propertyName) {
+        Field field = new FieldImpl();
+        field.setEntityType(FieldEntity.PRODUCT);
+        field.setPropertyName(propertyName);
+        return field;
+    }
+
+    protected List<Long> sortedIds(List<SolrInputDocument> documents) {
+        List<Long> ids = new ArrayList<Long>();
+        for (SolrInputDocument document : documents) {
+            ids.add((Long) document.getFieldValue("productId"));
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    protected List<String> withoutAdds(List<String> actions) {
+        List<String> result = new ArrayList<String>(actions);
+        result.removeAll(Collections.singleton("add"));
+        return result;
+    }
+
+    /**
+     * Reads product ids 1 through 7 and builds a document with only the product id for each of them, optionally 
+     * failing for one product. Documents for updates are built the same way from the given products.
+     */
+    protected static class TestSolrIndexService extends SolrIndexServiceImpl {
+
+        protected final List<Long> productIds = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        protected volatile Long failingProductId;
+
+        @Override
+        protected CategoryPositionIndex buildCategoryPositionIndex() {
+            return new CategoryPositionIndex(new HashMap<Long, List<Long>>(), new HashMap<Long, Set<Long>>());
+        }
+
+        @Override
+        protected List<Long> readActiveProductIds(Long lastId, int pageSize, Date currentDate) {
+            List<Long> page = new ArrayList<Long>();
+            for (Long productId : productIds) {
+                if ((lastId == null || productId > lastId) && page.size() < pageSize) {
+                    page.add(productId);
+                }
+            }
+            return page;
+        }
+
+        @Override
+        protected SolrInputDocument buildDocument(Product product, List<Field> fields, List<Locale> locales) {
+            SolrInputDocument document = new SolrInputDocument();
+            document.addField("productId", product.getId());
+            return document;
+        }
+
+        @Override
+        protected List<SolrInputDocument> buildDocuments(List<Long> productIds) {
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            for (Long productId : productIds) {
+                if (productId.equals(failingProductId)) {
+                    throw new IllegalStateException("Could not build product " + productId);
+                }
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField("productId", productId);
+                documents.add(document);
+            }
+            return documents;
+        }
+    }
+
+    /**
+     * Records the update requests sent to a core instead of sending them to Solr
+     */
+    protected static class RecordingSolrServer extends SolrServer {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<String> actions = Collections.synchronizedList(new ArrayList<String>());
+        protected final List<SolrInputDocument> documentsAdded = 
+                Collections.synchronizedList(new ArrayList<SolrInputDocument>());
+        protected final List<String> deleteQueries = Collections.synchronizedList(new ArrayList<String>());
+        protected volatile SolrServerException addFailure;
+
+        @Override
+        public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+            if (request instanceof UpdateRequest) {
+                UpdateRequest update = (UpdateRequest) request;
+                if (update.getDocuments() != null) {
+                    if (addFailure != null) {
+                        throw addFailure;
+                    }
+                    documentsAdded.addAll(update.getDocuments());
+                    actions.add("add");
+                }
+                if (update.getDeleteQuery() != null) {
+                    deleteQueries.addAll(update.getDeleteQuery());
+                    actions.add("delete");
+                }
+                SolrParams params = update.getParams();
+                if (params != null && params.getBool(UpdateParams.OPTIMIZE, false)) {
+                    actions.add("optimize");
+                } else if (params != null && params.getBool(UpdateParams.COMMIT, false)) {
+                    actions.add("commit");
+                }
+            }
+            return new NamedList<Object>();
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to release
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class SolrQueryResultCacheServiceImplTest extends TestCase {
+
+    protected SolrQueryResultCacheServiceImpl cacheService;
+    protected AtomicLong indexGeneration;
+    protected LukeSolrServer server;
+
+    @Override
+    protected void setUp() throws Exception {
+        indexGeneration = new AtomicLong();
+        SolrIndexService solrIndexService = EasyMock.createMock(SolrIndexService.class);
+        EasyMock.expect(solrIndexService.getIndexGeneration()).andAnswer(new IAnswer<Long>() {
+            @Override
+            public Long answer() throws Throwable {
+                return indexGeneration.get();
+            }
+        }).anyTimes();
+        EasyMock.replay(solrIndexService);
+
+        server = new LukeSolrServer();
+        server.version = 1L;
+        SolrContext.setPrimaryServer(server);
+
+        cacheService = new SolrQueryResultCacheServiceImpl();
+        cacheService.solrIndexService = solrIndexService;
+        cacheService.versionCheckInterval = 60000;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SolrContext.setPrimaryServer(null);
+    }
+
+    public void testQueryKeyIgnoresOrderOfUnorderedParameters() {
+        SolrQuery query = new SolrQuery("*:*").addFilterQuery("category:1", "namespace:d").setStart(0).setRows(15);
+        query.addFacetField("color_s", "size_s");
+        SolrQuery reordered = new SolrQuery("*:*").addFilterQuery("namespace:d", "category:1").setStart(0).setRows(15);
+        reordered.addFacetField("size_s", "color_s");
+
+        String key = cacheService.buildQueryKey(query);
+        assertEquals(key, cacheService.buildQueryKey(reordered));
+        assertFalse(key.equals(cacheService.buildQueryKey(reordered.setStart(15))));
+    }
+
+    public void testIndexVersionIsReadFromSolr() {
+        assertEquals("/var/solr/primary/data/index@1", cacheService.getIndexVersion());
+        assertEquals(Arrays.asList("/admin/luke"), server.paths);
+        assertEquals("index", server.params.get(0).get("show"));
+        assertEquals("/var/solr/primary/data/index@1", cacheService.getCurrentIndexVersion());
+    }
+
+    public void testResultIsReadUntilIndexVersionChanges() {
+        SolrQueryResult result = createResult(cacheService.getIndexVersion());
+        cacheService.putResult("key", result);
+
+        assertSame(result, cacheService.getResult("key"));
+        assertNull(cacheService.getResult("other"));
+
+        // Another node commits; the version is not read again before the check interval has passed
+        server.version = 2L;
+        assertSame(result, cacheService.getResult("key"));
+        cacheService.versionCheckInterval = 0;
+        assertNull(cacheService.getResult("key"));
+        assertEquals("/var/solr/primary/data/index@2", cacheService.getIndexVersion());
+    }
+
+    public void testLocalIndexChangeReadsVersionRightAway() {
+        cacheService.putResult("key", createResult(cacheService.getIndexVersion()));
+        assertEquals(1, server.paths.size());
+
+        cacheService.getResult("key");
+        assertEquals(1, server.paths.size());
+
+        server.version = 2L;
+        indexGeneration.incrementAndGet();
+        assertNull(cacheService.getResult("key"));
+        assertEquals(2, server.paths.size());
+    }
+
+    public void testResultsAreNotCachedWithoutIndexVersion() {
+        server.failure = new SolrServerException("Solr is unavailable");
+
+        assertNull(cacheService.getIndexVersion());
+        cacheService.putResult("key", createResult(null));
+        assertNull(cacheService.getResult("key"));
+        assertEquals(0L, cacheService.getSize());
+    }
+
+    public void testDisabledCacheDoesNotReadVersion() {
+        cacheService.enabled = false;
+
+        cacheService.putResult("key", createResult("/var/solr/primary/data/index@1"));
+
+        assertNull(cacheService.getIndexVersion());
+        assertNull(cacheService.getResult("key"));
+        assertTrue(server.paths.isEmpty());
+    }
+
+    protected SolrQueryResult createResult(String indexVersion) {
+        return new SolrQueryResult(indexVersion, Arrays.asList(1L, 2L), 2, new HashMap<String, SearchFacetDTO>());
+    }
+
+    /**
+     * Answers Luke requests with the index information of a core
+     */
+    protected static class LukeSolrServer extends SolrServer {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<String> paths = new ArrayList<String>();
+        protected final List<SolrParams> params = new ArrayList<SolrParams>();
+        protected volatile long version;
+        protected volatile SolrServerException failure;
+
+        @Override
+        public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+            paths.add(request.getPath());
+            params.add(request.getParams());
+            if (failure != null) {
+                throw failure;
+            }
+            NamedList<Object> index = new NamedList<Object>();
+            index.add("numDocs", 2);
+            index.add("version", version);
+            index.add("directory", "/var/solr/primary/data/index");
+            NamedList<Object> response = new NamedList<Object>();
+            response.add("index", index);
+            return response;
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to release
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.broadleafcommerce.core.extension.ExtensionResultStatusType;
+import org.broadleafcommerce.core.search.dao.FieldDao;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.broadleafcommerce.core.search.domain.FieldImpl;
+import org.broadleafcommerce.core.search.domain.ProductSearchCriteria;
+import org.broadleafcommerce.core.search.domain.ProductSearchResult;
+import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
+import org.broadleafcommerce.core.search.domain.SearchFacetImpl;
+import org.broadleafcommerce.core.search.domain.SearchFacetRange;
+import org.easymock.EasyMock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class SolrSearchServiceImplTest extends TestCase {
+
+    protected SolrSearchServiceImpl searchService;
+    protected SearchSolrServer server;
+    protected FieldDao fieldDao;
+    protected List<Field> fields;
+
+    @Override
+    protected void setUp() throws Exception {
+        server = new SearchSolrServer();
+        searchService = new SolrSearchServiceImpl(server);
+        searchService.hydrateProducts = false;
+        searchService.provideProductSummaries = false;
+
+        SolrHelperService shs = EasyMock.createNiceMock(SolrHelperService.class);
+        EasyMock.expect(shs.getProductIdFieldName()).andReturn("productId").anyTimes();
+        EasyMock.expect(shs.getNamespaceFieldName()).andReturn("namespace").anyTimes();
+        EasyMock.expect(shs.getCurrentNamespace()).andReturn("d").anyTimes();
+        EasyMock.expect(shs.getGlobalFacetTagField()).andReturn("blcFacetTag").anyTimes();
+        EasyMock.expect(shs.getPropertyNameForFieldFacet(EasyMock.isA(Field.class))).andReturn("color_s").anyTimes();
+        EasyMock.replay(shs);
+        searchService.shs = shs;
+
+        Field color = new FieldImpl();
+        color.setEntityType(FieldEntity.PRODUCT);
+        color.setPropertyName("productAttributes.color");
+        color.setAbbreviation("color");
+        color.setSearchable(false);
+        fields = Arrays.asList(color);
+        fieldDao = EasyMock.createMock(FieldDao.class);
+        searchService.fieldDao = fieldDao;
+
+        SolrIndexService solrIndexService = EasyMock.createMock(SolrIndexService.class);
+        EasyMock.expect(solrIndexService.getIndexGeneration()).andReturn(0L).anyTimes();
+        EasyMock.replay(solrIndexService);
+        SolrQueryResultCacheServiceImpl queryResultCacheService = new SolrQueryResultCacheServiceImpl() {
+            @Override
+            protected String readIndexVersion() {
+                return "/var/solr/primary/data/index@1";
+            }
+        };
+        queryResultCacheService.solrIndexService = solrIndexService;
+        searchService.queryResultCacheService = queryResultCacheService;
+
+        searchService.extensionManager = new SolrSearchServiceExtensionManager();
+        searchService.extensionManager.setHandlers(new ArrayList<SolrSearchServiceExtensionHandler>());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SolrContext.setPrimaryServer(null);
+    }
+
+    public void testCachedResultIsFoundBeforeQueryIsBuilt() throws Exception {
+        // Only the first search builds the query, which reads the fields for the query fields and the sort
+        EasyMock.expect(fieldDao.readAllProductFields()).andReturn(fields).times(2);
+        EasyMock.replay(fieldDao);
+
+        ProductSearchResult first = search(createCriteria(1), createFacet(1L));
+        List<SearchFacetDTO> facets = Arrays.asList(createFacet(1L));
+        ProductSearchResult second = search(createCriteria(1), facets.get(0));
+
+        EasyMock.verify(fieldDao);
+        assertEquals(1, server.queries.size());
+        assertEquals(Arrays.asList(5L, 7L), first.getProductIds());
+        assertEquals(first.getProductIds(), second.getProductIds());
+        assertEquals(Integer.valueOf(2), second.getTotalResults());
+
+        SearchFacetDTO facet = facets.get(0);
+        assertTrue(facet.isActive());
+        assertEquals(2, facet.getFacetValues().size());
+        assertEquals("blue", facet.getFacetValues().get(0).getValue());
+        assertEquals(Integer.valueOf(1), facet.getFacetValues().get(0).getQuantity());
+        assertEquals("red", facet.getFacetValues().get(1).getValue());
+        assertSame(facet.getFacet(), facet.getFacetValues().get(1).getFacet());
+    }
+
+    public void testRequestKeyFollowsArguments() throws Exception {
+        EasyMock.expect(fieldDao.readAllProductFields()).andReturn(fields).anyTimes();
+        EasyMock.replay(fieldDao);
+
+        search(createCriteria(1), createFacet(1L));
+        search(createCriteria(2), createFacet(1L));
+        search(createCriteria(1));
+        searchService.findProducts("(shirt)", Arrays.asList(createFacet(1L)), createCriteria(1), null, 
+                "category:1");
+
+        assertEquals(4, server.queries.size());
+    }
+
+    public void testQueryExtensionHandlersAreKeyedByQuery() throws Exception {
+        EasyMock.expect(fieldDao.readAllProductFields()).andReturn(fields).anyTimes();
+        EasyMock.replay(fieldDao);
+        final String[] segment = new String[] { "a" };
+        List<SolrSearchServiceExtensionHandler> handlers = new ArrayList<SolrSearchServiceExtensionHandler>();
+        handlers.add(new AbstractSolrSearchServiceExtensionHandler() {
+            @Override
+            public ExtensionResultStatusType modifySolrQuery(SolrQuery query, String qualifiedSolrQuery,
+                    List<SearchFacetDTO> facets, ProductSearchCriteria searchCriteria, String defaultSort) {
+                query.addFilterQuery("segment:" + segment[0]);
+                return ExtensionResultStatusType.HANDLED;
+            }
+        });
+        searchService.extensionManager.setHandlers(handlers);
+
+        search(createCriteria(1), createFacet(1L));
+        search(createCriteria(1), createFacet(1L));
+        assertEquals(1, server.queries.size());
+
+        segment[0] = "b";
+        search(createCriteria(1), createFacet(1L));
+        assertEquals(2, server.queries.size());
+        assertTrue(Arrays.asList(server.queries.get(1).getParams(CommonParams.FQ)).contains("segment:b"));
+    }
+
+    protected ProductSearchResult search(ProductSearchCriteria searchCriteria, SearchFacetDTO... facets) 
+            throws Exception {
+        return searchService.findProducts("*:*", Arrays.asList(facets), searchCriteria, "category_sort asc", 
+                "category:1");
+    }
+
+    protected ProductSearchCriteria createCriteria(int page) {
+        ProductSearchCriteria searchCriteria = new ProductSearchCriteria();
+        searchCriteria.setPage(page);
+        searchCriteria.setPageSize(15);
+        Map<String, String[]> filterCriteria = new HashMap<String, String[]>();
+        filterCriteria.put("color", new String[] { "red" });
+        searchCriteria.setFilterCriteria(filterCriteria);
+        return searchCriteria;
+    }
+
+    protected SearchFacetDTO createFacet(Long id) {
+        SearchFacetImpl facet = new SearchFacetImpl();
+        facet.setId(id);
+        facet.setField(fields.get(0));
+        facet.setSearchFacetRanges(new ArrayList<SearchFacetRange>());
+        SearchFacetDTO dto = new SearchFacetDTO();
+        dto.setFacet(facet);
+        dto.setShowQuantity(true);
+        return dto;
+    }
+
+    /**
+     * Answers every query with products 5 and 7, and red and blue color facet counts
+     */
+    protected static class SearchSolrServer extends SolrServer {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<SolrParams> queries = new ArrayList<SolrParams>();
+
+        @Override
+        public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException {
+            queries.add(request.getParams());
+
+            SolrDocumentList documents = new SolrDocumentList();
+            documents.setNumFound(2);
+            for (Long productId : Arrays.asList(5L, 7L)) {
+                SolrDocument document = new SolrDocument();
+                document.addField("productId", productId);
+                documents.add(document);
+            }
+
+            NamedList<Object> colors = new NamedList<Object>();
+            colors.add("red", 2);
+            colors.add("blue", 1);
+            NamedList<Object> facetFields = new NamedList<Object>();
+            facetFields.add("color_s", colors);
+            NamedList<Object> facetCounts = new NamedList<Object>();
+            facetCounts.add("facet_queries", new NamedList<Object>());
+            facetCounts.add("facet_fields", facetFields);
+
+            NamedList<Object> response = new NamedList<Object>();
+            response.add("response", documents);
+            response.add("facet_counts", facetCounts);
+            return response;
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to release
+        }
+    }
+
+}
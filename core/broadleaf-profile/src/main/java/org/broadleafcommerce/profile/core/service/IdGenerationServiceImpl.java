@@ -16,9 +16,20 @@
 
 package org.broadleafcommerce.profile.core.service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.persistence.OptimisticLockException;
 
@@ -26,9 +37,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.profile.core.dao.IdGenerationDao;
 import org.broadleafcommerce.profile.core.domain.IdGeneration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.stereotype.Service;
 
+/**
+ * Hands out ids from ranges reserved through the {@link IdGenerationDao}. Ids are taken from the current range of 
+ * each id type with an atomic counter, so callers only ever lock when a range runs out. Once 
+ * id.generation.prefetch.threshold percent of a range remains, the next range is reserved on a background thread, 
+ * so that switching ranges normally does not wait on the database.
+ * 
+ * Ranges are handed out in the order in which they were reserved. Each reservation takes as many consecutive batches 
+ * as are expected to last id.generation.prefetch.targetDuration milliseconds at the observed rate of consumption, up to
+ * id.generation.prefetch.maxBatches. Ids that were reserved but not handed out before a restart are never used.
+ */
 @Service("blIdGenerationService")
+@ManagedResource(objectName="org.broadleafcommerce:name=IdGenerationService", description="Id Generation Service", currencyTimeLimit=15)
 public class IdGenerationServiceImpl implements IdGenerationService {
 
     private static final Log LOG = LogFactory.getLog(IdGenerationServiceImpl.class);
@@ -36,42 +61,44 @@ public class IdGenerationServiceImpl implements IdGenerationService {
     @Resource(name="blIdGenerationDao")
     protected IdGenerationDao idGenerationDao;
 
-    protected Map<String, Id> idTypeIdMap = new HashMap<String, Id>();
+    @Value("${id.generation.prefetch.enabled}")
+    protected boolean prefetchEnabled = true;
+
+    @Value("${id.generation.prefetch.threshold}")
+    protected int prefetchThreshold = 25;
+
+    @Value("${id.generation.prefetch.maxBatches}")
+    protected int maxBatchesPerFetch = 8;
+
+    @Value("${id.generation.prefetch.targetDuration}")
+    protected long targetFetchDuration = 10000L;
+
+    protected ConcurrentMap<String, IdAllocator> idTypeAllocators = new ConcurrentHashMap<String, IdAllocator>();
+
+    protected volatile ExecutorService prefetchExecutor;
+
+    protected final AtomicLong rangeFetches = new AtomicLong();
+    protected final AtomicLong synchronousFetches = new AtomicLong();
+    protected final AtomicLong prefetches = new AtomicLong();
+    protected final AtomicLong prefetchFailures = new AtomicLong();
+    protected final AtomicLong contendedRangeSwitches = new AtomicLong();
 
     public Long findNextId(String idType) {
-        Id id;
-        synchronized (idTypeIdMap) {
-            id = idTypeIdMap.get(idType);
-            if (id == null) {
-                // recheck, another thread may have added this.
-                id = idTypeIdMap.get(idType);
-                if (id == null) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting the initial id from the database.");
-                    }
-                    IdGeneration idGeneration = getCurrentIdRange(idType);
-                    id = new Id(idGeneration.getBatchStart(), idGeneration.getBatchSize());
-                }
-                idTypeIdMap.put(idType, id);
-            }
-        }
+        return getAllocator(idType).nextId();
+    }
 
-        synchronized(id) {
-            if (id.batchSize == 0L) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Updating batch size for idType " + idType);
-                }
-                IdGeneration idGeneration = getCurrentIdRange(idType);
-                id.nextId = idGeneration.getBatchStart();
-                id.batchSize = idGeneration.getBatchSize();
+    protected IdAllocator getAllocator(String idType) {
+        IdAllocator allocator = idTypeAllocators.get(idType);
+        if (allocator == null) {
+            IdAllocator newAllocator = new IdAllocator(idType);
+            allocator = idTypeAllocators.putIfAbsent(idType, newAllocator);
+            if (allocator == null) {
+                allocator = newAllocator;
             }
-            Long retId = id.nextId++;
-            id.batchSize--;
-
-            return retId;
         }
+        return allocator;
     }
-    
+
     private IdGeneration getCurrentIdRange(String idType) {
         IdGeneration idGeneration = null;
         int retryCount = 0;
@@ -93,16 +120,231 @@ public class IdGenerationServiceImpl implements IdGenerationService {
             }
             retryCount++;
         }
+        rangeFetches.incrementAndGet();
         return idGeneration;
     }
 
-    private class Id {
-        public Long nextId;
-        public Long batchSize;
+    protected ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    prefetchExecutor = Executors.newSingleThreadExecutor(new IdPrefetchThreadFactory());
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    @PreDestroy
+    public void shutdownPrefetchExecutor() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdown();
+        }
+    }
+
+    @ManagedAttribute(description="The number of id ranges reserved in the database", currencyTimeLimit=15)
+    public long getRangeFetches() {
+        return rangeFetches.get();
+    }
+
+    @ManagedAttribute(description="The number of times a caller had to wait for an id range to be reserved", currencyTimeLimit=15)
+    public long getSynchronousFetches() {
+        return synchronousFetches.get();
+    }
+
+    @ManagedAttribute(description="The number of id range reservations made in the background", currencyTimeLimit=15)
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+
+    @ManagedAttribute(description="The number of background id range reservations that failed", currencyTimeLimit=15)
+    public long getPrefetchFailures() {
+        return prefetchFailures.get();
+    }
+
+    @ManagedAttribute(description="The number of times a caller waited on another thread switching to a new id range", currencyTimeLimit=15)
+    public long getContendedRangeSwitches() {
+        return contendedRangeSwitches.get();
+    }
+
+    /**
+     * A reserved block of ids. Ids are claimed by incrementing next, so a range is exhausted once next reaches end.
+     */
+    protected static class IdRange {
+
+        protected final long end;
+        protected final long size;
+        protected final long prefetchAt;
+        protected final AtomicLong next;
+
+        protected IdRange(long start, long size, int prefetchThreshold) {
+            this.end = start + size;
+            this.size = size;
+            this.prefetchAt = end - Math.max(1L, size * prefetchThreshold / 100);
+            this.next = new AtomicLong(start);
+        }
+
+    }
+
+    /**
+     * Hands out the ids of a single id type
+     */
+    protected class IdAllocator {
+
+        protected final String idType;
+        protected volatile IdRange current;
+        protected final Queue<IdRange> reserved = new ConcurrentLinkedQueue<IdRange>();
+        // Guards the switch to a new range
+        protected final ReentrantLock switchLock = new ReentrantLock();
+        // Serializes reservations so that ranges are queued in the order they were reserved
+        protected final ReentrantLock fetchLock = new ReentrantLock();
+        protected final AtomicBoolean prefetchScheduled = new AtomicBoolean();
+        protected volatile double idsPerMillisecond;
+        protected volatile long lastBatchSize = 1L;
+        protected long lastSwitchTime;
+
+        protected IdAllocator(String idType) {
+            this.idType = idType;
+        }
+
+        protected Long nextId() {
+            while (true) {
+                IdRange range = current;
+                if (range != null) {
+                    long id = range.next.getAndIncrement();
+                    if (id < range.end) {
+                        if (id == range.prefetchAt) {
+                            schedulePrefetch();
+                        }
+                        return id;
+                    }
+                }
+                switchRange(range);
+            }
+        }
+
+        /**
+         * Replaces the exhausted range with the next reserved one, reserving it on this thread if the background
+         * reservation has not completed
+         */
+        protected void switchRange(IdRange exhausted) {
+            if (!switchLock.tryLock()) {
+                contendedRangeSwitches.incrementAndGet();
+                switchLock.lock();
+            }
+            try {
+                if (current != exhausted) {
+                    return;
+                }
+                IdRange next = reserved.poll();
+                if (next == null) {
+                    // Waits for a background reservation in progress rather than reserving a range out of order
+                    fetchLock.lock();
+                    try {
+                        next = reserved.poll();
+                        if (next == null) {
+                            if (LOG.isDebugEnabled()) {
+                                LOG.debug("Getting the next id range from the database for idType " + idType);
+                            }
+                            synchronousFetches.incrementAndGet();
+                            reserveRanges();
+                            next = reserved.poll();
+                        }
+                    } finally {
+                        fetchLock.unlock();
+                    }
+                }
+                recordConsumption(exhausted);
+                current = next;
+            } finally {
+                switchLock.unlock();
+            }
+        }
+
+        protected void schedulePrefetch() {
+            if (!prefetchEnabled || !reserved.isEmpty() || !prefetchScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                getPrefetchExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            fetchLock.lock();
+                            try {
+                                if (reserved.isEmpty()) {
+                                    reserveRanges();
+                                    prefetches.incrementAndGet();
+                                }
+                            } finally {
+                                fetchLock.unlock();
+                            }
+                        } catch (RuntimeException e) {
+                            prefetchFailures.incrementAndGet();
+                            LOG.warn("Unable to prefetch the next id range for idType " + idType, e);
+                        } finally {
+                            prefetchScheduled.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                prefetchScheduled.set(false);
+            }
+        }
+
+        /**
+         * Reserves as many batches as are expected to last targetFetchDuration at the observed rate. Must be called
+         * while holding the fetchLock.
+         * 
+         * @throws IllegalStateException if the database does not hand out a batch with a positive size, since nextId 
+         * would otherwise keep asking for ranges that never arrive
+         */
+        protected void reserveRanges() {
+            int batches = getBatchesPerFetch();
+            for (int i = 0; i < batches; i++) {
+                IdGeneration idGeneration = getCurrentIdRange(idType);
+                Long batchSize = idGeneration.getBatchSize();
+                if (batchSize == null || batchSize <= 0) {
+                    if (reserved.isEmpty()) {
+                        throw new IllegalStateException("The id generation batch size for idType " + idType 
+                                + " must be positive, but was " + batchSize);
+                    }
+                    break;
+                }
+                reserved.add(new IdRange(idGeneration.getBatchStart(), batchSize, prefetchThreshold));
+                lastBatchSize = batchSize;
+            }
+        }
+
+        protected int getBatchesPerFetch() {
+            double wanted = idsPerMillisecond * targetFetchDuration / lastBatchSize;
+            return (int) Math.min(Math.max(1, maxBatchesPerFetch), Math.max(1L, (long) Math.ceil(wanted)));
+        }
+
+        /**
+         * Updates the consumption rate from the time it took to use up the exhausted range. Must be called while 
+         * holding the switchLock.
+         */
+        protected void recordConsumption(IdRange exhausted) {
+            long now = System.currentTimeMillis();
+            if (exhausted != null && lastSwitchTime > 0) {
+                double rate = (double) exhausted.size / Math.max(1L, now - lastSwitchTime);
+                idsPerMillisecond = idsPerMillisecond == 0 ? rate : (idsPerMillisecond + rate) / 2;
+            }
+            lastSwitchTime = now;
+        }
+
+    }
+
+    protected static class IdPrefetchThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger threadNumber = new AtomicInteger(1);
 
-        public Id(Long nextId, Long batchSize) {
-            this.nextId = nextId;
-            this.batchSize = batchSize;
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "id-generation-prefetch-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.broadleafcommerce.profile.core.service;
+
+import junit.framework.TestCase;
+import org.broadleafcommerce.profile.core.dao.IdGenerationDao;
+import org.broadleafcommerce.profile.core.domain.IdGeneration;
+import org.broadleafcommerce.profile.core.domain.IdGenerationImpl;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+public class IdGenerationServiceImplTest extends TestCase {
+
+    private static final String ID_TYPE = "test";
+
+    private IdGenerationServiceImpl service;
+    private StubIdGenerationDao dao;
+
+    @Override
+    protected void setUp() throws Exception {
+        dao = new StubIdGenerationDao();
+        service = new IdGenerationServiceImpl();
+        service.idGenerationDao = dao;
+        service.prefetchEnabled = false;
+        service.prefetchThreshold = 25;
+        service.maxBatchesPerFetch = 1;
+        service.targetFetchDuration = 10000L;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        service.shutdownPrefetchExecutor();
+    }
+
+    public void testHandsOutConsecutiveIdsAcrossRanges() throws Exception {
+        for (long i = 1; i <= 25; i++) {
+            assertEquals(Long.valueOf(i), service.findNextId(ID_TYPE));
+        }
+        assertEquals(3L, service.getRangeFetches());
+        assertEquals(3L, service.getSynchronousFetches());
+    }
+
+    public void testIdTypesHaveSeparateRanges() throws Exception {
+        assertEquals(Long.valueOf(1), service.findNextId(ID_TYPE));
+        assertEquals(Long.valueOf(11), service.findNextId("other"));
+        assertEquals(Long.valueOf(2), service.findNextId(ID_TYPE));
+    }
+
+    public void testPrefetchReservesNextRangeInBackground() throws Exception {
+        service.prefetchEnabled = true;
+        // With a batch of 10 and a threshold of 25 percent, claiming id 9 schedules the prefetch
+        for (long i = 1; i <= 9; i++) {
+            assertEquals(Long.valueOf(i), service.findNextId(ID_TYPE));
+        }
+        awaitPrefetch();
+
+        assertEquals(1L, service.getPrefetches());
+        assertEquals(1, service.getAllocator(ID_TYPE).reserved.size());
+        for (long i = 10; i <= 20; i++) {
+            assertEquals(Long.valueOf(i), service.findNextId(ID_TYPE));
+        }
+        // Only the first range was reserved on the calling thread
+        assertEquals(1L, service.getSynchronousFetches());
+        assertEquals(2L, service.getRangeFetches());
+    }
+
+    public void testPrefetchFailureIsCountedAndRetriedSynchronously() throws Exception {
+        service.prefetchEnabled = true;
+        for (long i = 1; i <= 8; i++) {
+            service.findNextId(ID_TYPE);
+        }
+        dao.failures = 1;
+        service.findNextId(ID_TYPE);
+        awaitPrefetch();
+
+        assertEquals(1L, service.getPrefetchFailures());
+        assertFalse(service.getAllocator(ID_TYPE).prefetchScheduled.get());
+        assertEquals(Long.valueOf(10), service.findNextId(ID_TYPE));
+        assertEquals(Long.valueOf(11), service.findNextId(ID_TYPE));
+        assertEquals(2L, service.getSynchronousFetches());
+    }
+
+    public void testBatchesPerFetchFollowConsumptionRate() throws Exception {
+        service.maxBatchesPerFetch = 8;
+        service.targetFetchDuration = 1000L;
+        IdGenerationServiceImpl.IdAllocator allocator = service.getAllocator(ID_TYPE);
+        allocator.lastBatchSize = 100L;
+
+        allocator.idsPerMillisecond = 0;
+        assertEquals(1, allocator.getBatchesPerFetch());
+        // 0.5 ids per millisecond over a second uses up 5 batches of 100
+        allocator.idsPerMillisecond = 0.5;
+        assertEquals(5, allocator.getBatchesPerFetch());
+        allocator.idsPerMillisecond = 1;
+        assertEquals(8, allocator.getBatchesPerFetch());
+        service.maxBatchesPerFetch = 0;
+        assertEquals(1, allocator.getBatchesPerFetch());
+    }
+
+    public void testReservesConsecutiveBatchesAndTracksTheirSize() throws Exception {
+        service.maxBatchesPerFetch = 8;
+        IdGenerationServiceImpl.IdAllocator allocator = service.getAllocator(ID_TYPE);
+        service.targetFetchDuration = 1200L;
+        allocator.lastBatchSize = 100L;
+        allocator.idsPerMillisecond = 0.25;
+
+        // 0.25 ids per millisecond over 1.2 seconds uses up 3 batches of 100
+        allocator.reserveRanges();
+
+        assertEquals(3, allocator.reserved.size());
+        assertEquals(3L, service.getRangeFetches());
+        assertEquals(10L, allocator.lastBatchSize);
+        for (long i = 1; i <= 30; i++) {
+            assertEquals(Long.valueOf(i), service.findNextId(ID_TYPE));
+        }
+        assertEquals(0L, service.getSynchronousFetches());
+    }
+
+    public void testRejectsNonPositiveBatchSize() throws Exception {
+        dao.batchSize = 0L;
+        try {
+            service.findNextId(ID_TYPE);
+            fail("Expected the empty batch to be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        dao.batchSize = null;
+        try {
+            service.findNextId(ID_TYPE);
+            fail("Expected the missing batch size to be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void testKeepsBatchesReservedBeforeAnEmptyOne() throws Exception {
+        service.maxBatchesPerFetch = 8;
+        IdGenerationServiceImpl.IdAllocator allocator = service.getAllocator(ID_TYPE);
+        allocator.lastBatchSize = 10L;
+        allocator.idsPerMillisecond = 1;
+        dao.batchSizes.add(10L);
+        dao.batchSizes.add(0L);
+
+        allocator.reserveRanges();
+
+        assertEquals(1, allocator.reserved.size());
+        assertEquals(2L, service.getRangeFetches());
+    }
+
+    protected void awaitPrefetch() throws InterruptedException {
+        service.getPrefetchExecutor().shutdown();
+        assertTrue(service.getPrefetchExecutor().awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Hands out consecutive batches of ids, starting from 1
+     */
+    protected static class StubIdGenerationDao implements IdGenerationDao {
+
+        protected long nextStart = 1L;
+        protected Long batchSize = 10L;
+        protected Queue<Long> batchSizes = new LinkedList<Long>();
+        protected int failures = 0;
+
+        @Override
+        public synchronized IdGeneration findNextId(String idType) {
+            if (failures > 0) {
+                failures--;
+                throw new RuntimeException("Unable to reach the database");
+            }
+            Long size = batchSizes.isEmpty() ? batchSize : batchSizes.poll();
+            IdGeneration idGeneration = new IdGenerationImpl();
+            idGeneration.setType(idType);
+            idGeneration.setBatchStart(nextStart);
+            idGeneration.setBatchSize(size);
+            if (size != null && size > 0) {
+                nextStart += size;
+            }
+            return idGeneration;
+        }
+
+        @Override
+        public IdGeneration findNextId(String idType, Long batchSize) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
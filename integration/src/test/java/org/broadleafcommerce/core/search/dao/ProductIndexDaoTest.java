@@ -0,0 +1,140 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.dao;
+
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.ProductAttributeImpl;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.broadleafcommerce.core.search.domain.FieldImpl;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
+import org.broadleafcommerce.test.BaseTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+public class ProductIndexDaoTest extends BaseTest {
+
+    @Resource
+    private ProductIndexDao productIndexDao;
+
+    @Resource
+    private CatalogService catalogService;
+
+    @Test(groups = "testReadProductIndexRows")
+    @Transactional
+    public void testReadProductIndexRows() {
+        Category category = new CategoryImpl();
+        category.setName("Hot Sauces");
+        category = catalogService.saveCategory(category);
+
+        Sku sku = new SkuImpl();
+        sku.setName("Green Ghost");
+        sku.setRetailPrice(new Money(11.99));
+        sku = catalogService.saveSku(sku);
+
+        Product product = new ProductImpl();
+        product.setDefaultSku(sku);
+        product.setManufacturer("Spice Exchange");
+        product.setModel("GG-1");
+        product = catalogService.saveProduct(product);
+
+        ProductAttribute attribute = new ProductAttributeImpl();
+        attribute.setName("heatRange");
+        attribute.setValue("4");
+        attribute.setProduct(product);
+        product.getProductAttributes().put("heatRange", attribute);
+        CategoryProductXref categoryXref = new CategoryProductXrefImpl();
+        categoryXref.setCategory(category);
+        categoryXref.setProduct(product);
+        product.getAllParentCategoryXrefs().add(categoryXref);
+        product = catalogService.saveProduct(product);
+        em.flush();
+
+        List<Field> fields = Arrays.asList(createField("manufacturer"), createField("model"), 
+                createField("defaultSku.name"), createField("defaultSku.retailPrice"), 
+                createField("productAttributes.heatRange"), createField("productAttributes.missing"));
+        assert productIndexDao.findUnsupportedFields(fields).isEmpty();
+
+        List<ProductIndexRow> rows = productIndexDao.readProductIndexRows(Arrays.asList(product.getId(), -1L), fields,
+                new ArrayList<Locale>());
+        assert rows.size() == 1;
+        ProductIndexRow row = rows.get(0);
+        assert row.getProductId().equals(product.getId());
+        assert row.getDefaultSkuId().equals(sku.getId());
+        assert row.getParentCategoryIds().equals(Collections.singletonList(category.getId()));
+
+        // Every value matches the entity getter used by the entity based indexing path
+        assert "Spice Exchange".equals(row.getPropertyValues("manufacturer").get(""));
+        assert "GG-1".equals(row.getPropertyValues("model").get(""));
+        assert "Green Ghost".equals(row.getPropertyValues("defaultSku.name").get(""));
+        assert ((BigDecimal) row.getPropertyValues("defaultSku.retailPrice").get(""))
+                .compareTo(product.getDefaultSku().getRetailPrice().getAmount()) == 0;
+        assert "4".equals(row.getPropertyValues("productAttributes.heatRange").get(""));
+        assert row.getPropertyValues("productAttributes.missing").containsKey("");
+        assert row.getPropertyValues("productAttributes.missing").get("") == null;
+    }
+
+    @Test(groups = "testFindUnsupportedFields")
+    @Transactional
+    public void testFindUnsupportedFields() {
+        Field skuName = createField("defaultSku.name");
+        skuName.setTranslatable(true);
+        Field categoryName = createField("defaultCategory.name");
+        categoryName.setTranslatable(true);
+
+        // The url has a computed fallback, the name is read through the default sku, the xrefs are a collection,
+        // the default sku is an entity and translations are only read for the product and its default sku
+        List<Field> fields = Arrays.asList(createField("url"), createField("name"), createField("allParentCategoryXrefs"),
+                createField("defaultSku"), categoryName, createField("manufacturer"), skuName, 
+                createField("productAttributes.heatRange"));
+        List<String> unsupported = new ArrayList<String>();
+        for (Field field : productIndexDao.findUnsupportedFields(fields)) {
+            unsupported.add(field.getPropertyName());
+        }
+        assert unsupported.equals(Arrays.asList("url", "name", "allParentCategoryXrefs", "defaultSku", 
+                "defaultCategory.name"));
+    }
+
+    protected Field createField(String propertyName) {
+        Field field = new FieldImpl();
+        field.setEntityType(FieldEntity.PRODUCT);
+        field.setPropertyName(propertyName);
+        field.setAbbreviation(propertyName.replace('.', '_'));
+        field.setSearchable(true);
+        return field;
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2008-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.broadleafcommerce.core.search.service.solr;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
+import org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductAttribute;
+import org.broadleafcommerce.core.catalog.domain.ProductAttributeImpl;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.CategoryTreeService;
+import org.broadleafcommerce.core.search.dao.ProductIndexDao;
+import org.broadleafcommerce.core.search.domain.Field;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.broadleafcommerce.core.search.domain.FieldImpl;
+import org.broadleafcommerce.core.search.domain.ProductIndexRow;
+import org.broadleafcommerce.core.search.domain.solr.FieldType;
+import org.broadleafcommerce.test.BaseTest;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+/**
+ * Checks that a document built from a {@link ProductIndexRow} matches the document built from the Product entity
+ */
+public class SolrIndexProjectionTest extends BaseTest {
+
+    @Resource(name = "blSolrHelperService")
+    private SolrHelperService shs;
+
+    @Resource(name = "blSolrSearchServiceExtensionManager")
+    private SolrSearchServiceExtensionManager extensionManager;
+
+    @Resource(name = "blProductIndexDao")
+    private ProductIndexDao productIndexDao;
+
+    @Resource(name = "blCategoryDao")
+    private CategoryDao categoryDao;
+
+    @Resource(name = "blCategoryTreeService")
+    private CategoryTreeService categoryTreeService;
+
+    @Resource
+    private CatalogService catalogService;
+
+    @Test(groups = "testProjectionBuildsEntityDocument")
+    @Transactional
+    public void testProjectionBuildsEntityDocument() {
+        Category parent = new CategoryImpl();
+        parent.setName("Condiments");
+        parent = catalogService.saveCategory(parent);
+        Category child = new CategoryImpl();
+        child.setName("Hot Sauces");
+        child.setDefaultParentCategory(parent);
+        child = catalogService.saveCategory(child);
+        Category sale = new CategoryImpl();
+        sale.setName("On Sale");
+        sale = catalogService.saveCategory(sale);
+
+        Product other = createProduct("Other Sauce", 5.99);
+        Product product = createProduct("Green Ghost", 11.99);
+        product.setManufacturer("Spice Exchange");
+        product.setModel("GG-1");
+        ProductAttribute attribute = new ProductAttributeImpl();
+        attribute.setName("heatRange");
+        attribute.setValue("4");
+        attribute.setProduct(product);
+        product.getProductAttributes().put("heatRange", attribute);
+        addToCategory(other, sale, 1L);
+        addToCategory(product, child, 1L);
+        addToCategory(product, sale, 2L);
+        Long productId = catalogService.saveProduct(product).getId();
+        catalogService.saveProduct(other);
+        em.flush();
+        em.clear();
+        product = catalogService.findProductById(productId);
+
+        List<Field> fields = new ArrayList<Field>();
+        fields.add(createField("manufacturer", FieldType.STRING, FieldType.TEXT));
+        fields.add(createField("model", null, FieldType.TEXT));
+        fields.add(createField("defaultSku.name", FieldType.STRING, FieldType.TEXT));
+        fields.add(createField("defaultSku.retailPrice", FieldType.PRICE));
+        fields.add(createField("productAttributes.heatRange", FieldType.STRING));
+        List<Locale> locales = new ArrayList<Locale>();
+
+        SolrIndexServiceImpl indexService = new SolrIndexServiceImpl();
+        indexService.shs = shs;
+        indexService.extensionManager = extensionManager;
+        indexService.productIndexDao = productIndexDao;
+        indexService.categoryTreeService = categoryTreeService;
+
+        // Outside of a reindex, category positions and hierarchies are read through the category entities
+        Map<String, List<String>> entityDocument = normalize(indexService.buildDocument(product, fields, locales));
+
+        indexService.categoryPositionIndex = new CategoryPositionIndex(categoryDao.readAllProductIdsByCategory(),
+                categoryDao.readAllParentCategoryIdsByCategory());
+        Map<String, List<String>> reindexEntityDocument = normalize(indexService.buildDocument(product, fields, locales));
+
+        List<ProductIndexRow> rows = productIndexDao.readProductIndexRows(Collections.singletonList(productId), fields,
+                locales);
+        assert rows.size() == 1;
+        Map<String, List<String>> projectionDocument = normalize(indexService.buildDocument(rows.get(0), fields));
+
+        assert entityDocument.equals(reindexEntityDocument) : entityDocument + " != " + reindexEntityDocument;
+        assert entityDocument.equals(projectionDocument) : entityDocument + " != " + projectionDocument;
+        assert entityDocument.get(shs.getCategoryFieldName()).equals(sorted(parent.getId(), child.getId(), sale.getId()));
+        assert entityDocument.get(shs.getCategorySortFieldName(sale.getId())).equals(Arrays.asList("1"));
+    }
+
+    protected Product createProduct(String name, double retailPrice) {
+        Sku sku = new SkuImpl();
+        sku.setName(name);
+        sku.setRetailPrice(new Money(retailPrice));
+        sku = catalogService.saveSku(sku);
+
+        Product product = new ProductImpl();
+        product.setDefaultSku(sku);
+        return catalogService.saveProduct(product);
+    }
+
+    protected void addToCategory(Product product, Category category, Long displayOrder) {
+        CategoryProductXref categoryXref = new CategoryProductXrefImpl();
+        categoryXref.setCategory(category);
+        categoryXref.setProduct(product);
+        categoryXref.setDisplayOrder(displayOrder);
+        product.getAllParentCategoryXrefs().add(categoryXref);
+    }
+
+    protected Field createField(String propertyName, FieldType facetFieldType, FieldType... searchableFieldTypes) {
+        Field field = new FieldImpl();
+        field.setEntityType(FieldEntity.PRODUCT);
+        field.setPropertyName(propertyName);
+        field.setAbbreviation(propertyName.replace('.', '_'));
+        field.setFacetFieldType(facetFieldType);
+        field.setSearchable(searchableFieldTypes.length > 0);
+        field.setSearchableFieldTypes(Arrays.asList(searchableFieldTypes));
+        return field;
+    }
+
+    /**
+     * Converts the document into Solr field name to sorted values as Solr would receive them. Prices are compared by
+     * amount, since the entity path yields Money while the projection yields the stored BigDecimal.
+     */
+    protected Map<String, List<String>> normalize(SolrInputDocument document) {
+        Map<String, List<String>> fields = new HashMap<String, List<String>>();
+        for (String name : document.getFieldNames()) {
+            List<String> values = new ArrayList<String>();
+            for (Object value : document.getFieldValues(name)) {
+                if (value instanceof Money) {
+                    value = ((Money) value).getAmount();
+                }
+                if (value instanceof BigDecimal) {
+                    value = ((BigDecimal) value).stripTrailingZeros().toPlainString();
+                }
+                values.add(String.valueOf(value));
+            }
+            Collections.sort(values);
+            fields.put(name, values);
+        }
+        return fields;
+    }
+
+    protected List<String> sorted(Long... ids) {
+        List<String> values = new ArrayList<String>();
+        for (Long id : ids) {
+            values.add(String.valueOf(id));
+        }
+        Collections.sort(values);
+        return values;
+    }
+
+}